@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.identity.password.validator.hibp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.identity.password.validator.hibp.range.HashRange;
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+import org.wso2.identity.password.validator.hibp.range.RangeParser;
+import org.wso2.identity.password.validator.hibp.util.Utils;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of hashing a password and looking up its suffix in a range, before and after hashing into a per-thread
+ * digest and looking the suffix up straight from the digest.
+ *
+ * Run with the GC profiler to get the allocation rate per operation as well:
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar HashingBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HashingBenchmark {
+
+    @Param({"password123", "correct horse battery staple"})
+    private String password;
+
+    private HashRange range;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        // A range of a typical size that contains the password, as most looked up passwords are pwned.
+        Random random = new Random(42);
+        String suffix = Utils.getSHA1(password).substring(HexUtils.PREFIX_LENGTH);
+        StringBuilder response = new StringBuilder(suffix).append(":42\r\n");
+        for (int i = 0; i < 800; i++) {
+            response.append(String.format("%03X%016X%016X:%d\r\n", random.nextInt(4096), random.nextLong(),
+                    random.nextLong(), random.nextInt(1000) + 1));
+        }
+        range = RangeParser.parse(response.toString());
+    }
+
+    /**
+     * Hex hash as computed before, with a new digest instance and a BigInteger round trip.
+     */
+    @Benchmark
+    public String legacyHash() throws Exception {
+
+        return legacySHA1(password);
+    }
+
+    @Benchmark
+    public String hash() throws Exception {
+
+        return Utils.getSHA1(password);
+    }
+
+    @Benchmark
+    public byte[] digest() throws Exception {
+
+        return Utils.getSHA1Digest(password);
+    }
+
+    /**
+     * Lookup as done before: hex hash, prefix and suffix substrings, and a decoded copy of the suffix.
+     */
+    @Benchmark
+    public int legacyLookup() throws Exception {
+
+        String passwordHash = legacySHA1(password);
+        String prefix = passwordHash.substring(0, HexUtils.PREFIX_LENGTH);
+        String suffix = passwordHash.substring(HexUtils.PREFIX_LENGTH);
+        return prefix.length() + range.getCount(suffix);
+    }
+
+    /**
+     * Lookup from the digest, encoding only the prefix used as range request and cache key.
+     */
+    @Benchmark
+    public int lookup() throws Exception {
+
+        byte[] digest = Utils.getSHA1Digest(password);
+        String prefix = HexUtils.encodePrefix(digest, 0);
+        return prefix.length() + range.getDigestCount(digest, 0);
+    }
+
+    private static String legacySHA1(String value) throws Exception {
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        digest.reset();
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        return String.format("%040x", new BigInteger(1, digest.digest())).toUpperCase();
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.base.MultitenantConstants;
+import org.wso2.carbon.identity.application.common.model.Property;
+import org.wso2.identity.password.validator.hibp.HIBPService;
+import org.wso2.identity.password.validator.hibp.cache.ConnectorConfigCache;
+import org.wso2.identity.password.validator.hibp.cache.PrefixRangeCache;
+import org.wso2.identity.password.validator.hibp.client.HIBPAsyncHttpClient;
+import org.wso2.identity.password.validator.hibp.client.HIBPHttpClientManager;
+import org.wso2.identity.password.validator.hibp.exception.HIBPException;
+import org.wso2.identity.password.validator.hibp.internal.HIBPDataHolder;
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+import org.wso2.identity.password.validator.hibp.util.Constants;
+import org.wso2.identity.password.validator.hibp.util.Utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end benchmarks of {@link HIBPService#getPasswordAppearanceCount(String, String)} and its non-blocking
+ * variant, against a local server serving compressed ranges of 1000 lines.
+ *
+ * The lookups cycle through a fixed set of passwords. Without the range cache, every lookup requests the range of
+ * its password from the server, so the benchmark covers the HTTP client, decompression and parsing. With the cache,
+ * ranges are only requested during warm-up, and the benchmark covers the lookup path of a busy node.
+ *
+ * Both throughput and the latency distribution are reported. Run with more threads to measure lookups under
+ * contention, and with the GC profiler to get the allocation rate per lookup:
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar LookupBenchmark -t 8 -prof gc
+ * </pre>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+// Without TCP_NODELAY, the local server sends the body of a response after its headers only once they are
+// acknowledged, which the client delays by up to 40ms.
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+@State(Scope.Benchmark)
+public class LookupBenchmark {
+
+    private static final int PASSWORD_COUNT = 256;
+    private static final int RANGE_LINES = 1000;
+    private static final String TENANT_DOMAIN = MultitenantConstants.SUPER_TENANT_DOMAIN_NAME;
+
+    @Param({"false", "true"})
+    private boolean cached;
+
+    private String[] passwords;
+    private RangeServer server;
+    private HIBPHttpClientManager httpClientManager;
+    private HIBPAsyncHttpClient asyncHttpClient;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        Random random = new Random(42);
+        passwords = new String[PASSWORD_COUNT];
+        Map<String, List<String>> suffixesByPrefix = new HashMap<>();
+        for (int i = 0; i < passwords.length; i++) {
+            passwords[i] = "password" + i;
+            String hash = Utils.getSHA1(passwords[i]);
+            suffixesByPrefix.computeIfAbsent(hash.substring(0, HexUtils.PREFIX_LENGTH), prefix -> new ArrayList<>())
+                    .add(hash.substring(HexUtils.PREFIX_LENGTH));
+        }
+        server = new RangeServer(Runtime.getRuntime().availableProcessors());
+        for (Map.Entry<String, List<String>> entry : suffixesByPrefix.entrySet()) {
+            server.setRange(entry.getKey(), Ranges.build(random, RANGE_LINES, false,
+                    entry.getValue().toArray(new String[0])));
+        }
+        System.setProperty(Constants.API_URL, server.getRangeUrl());
+
+        httpClientManager = new HIBPHttpClientManager(64, 64, 60000L, 30000L);
+        asyncHttpClient = new HIBPAsyncHttpClient(4);
+        HIBPDataHolder.getInstance().setHttpClientManager(httpClientManager);
+        HIBPDataHolder.getInstance().setAsyncHttpClient(asyncHttpClient);
+
+        // The connector configuration is served from its cache, so that no identity governance service is needed.
+        ConnectorConfigCache connectorConfigCache = new ConnectorConfigCache(16, TimeUnit.DAYS.toMillis(1));
+        connectorConfigCache.put(TENANT_DOMAIN, new Property[]{newProperty(Constants.CONNECTOR_ENABLE, "true"),
+                newProperty(Constants.CONNECTOR_API_KEY, "benchmark")});
+        HIBPDataHolder.getInstance().setConnectorConfigCache(connectorConfigCache);
+        if (cached) {
+            HIBPDataHolder.getInstance().setPrefixRangeCache(new PrefixRangeCache(PASSWORD_COUNT * 2,
+                    TimeUnit.DAYS.toMillis(1)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        HIBPDataHolder.getInstance().setPrefixRangeCache(null);
+        HIBPDataHolder.getInstance().setConnectorConfigCache(null);
+        HIBPDataHolder.getInstance().setAsyncHttpClient(null);
+        HIBPDataHolder.getInstance().setHttpClientManager(null);
+        System.clearProperty(Constants.API_URL);
+        asyncHttpClient.close();
+        httpClientManager.close();
+        server.close();
+    }
+
+    /**
+     * Password each benchmark thread looks up next.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        String next(String[] passwords) {
+
+            next = (next + 1) % passwords.length;
+            return passwords[next];
+        }
+    }
+
+    @Benchmark
+    public int lookup(Cursor cursor) throws HIBPException {
+
+        return HIBPService.getPasswordAppearanceCount(cursor.next(passwords), TENANT_DOMAIN);
+    }
+
+    @Benchmark
+    public int lookupAsync(Cursor cursor) {
+
+        return HIBPService.getPasswordAppearanceCountAsync(cursor.next(passwords), TENANT_DOMAIN).join();
+    }
+
+    private static Property newProperty(String name, String value) {
+
+        Property property = new Property();
+        property.setName(name);
+        property.setValue(value);
+        return property;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.identity.password.validator.hibp.client.ContentEncoding;
+import org.wso2.identity.password.validator.hibp.range.HashRange;
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+import org.wso2.identity.password.validator.hibp.range.RangeParser;
+import org.wso2.identity.password.validator.hibp.util.Utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Benchmarks of parsing range responses of realistic sizes, with and without padding entries, as received
+ * uncompressed or gzip compressed, and of looking up a digest in a parsed range.
+ *
+ * Run with the GC profiler to get the allocation rate per operation as well:
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar RangeParsingBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RangeParsingBenchmark {
+
+    private static final String PASSWORD = "password123";
+
+    @Param({"800", "1000"})
+    private int lines;
+
+    @Param({"false", "true"})
+    private boolean padded;
+
+    private String response;
+    private byte[] responseBytes;
+    private byte[] compressedResponseBytes;
+    private byte[] digest;
+    private HashRange range;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        String suffix = Utils.getSHA1(PASSWORD).substring(HexUtils.PREFIX_LENGTH);
+        response = Ranges.build(new Random(42), lines, padded, suffix);
+        responseBytes = response.getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(responseBytes);
+        }
+        compressedResponseBytes = compressed.toByteArray();
+        digest = Utils.getSHA1Digest(PASSWORD);
+        range = RangeParser.parse(response);
+    }
+
+    @Benchmark
+    public HashRange parseString() {
+
+        return RangeParser.parse(response);
+    }
+
+    @Benchmark
+    public HashRange parseStream() throws IOException {
+
+        return RangeParser.parse(new ByteArrayInputStream(responseBytes));
+    }
+
+    /**
+     * Parse a response as received with compression, inflating it while it is parsed.
+     */
+    @Benchmark
+    public HashRange parseCompressedStream() throws IOException {
+
+        try (InputStream in = ContentEncoding.decode(new ByteArrayInputStream(compressedResponseBytes), "gzip")) {
+            return RangeParser.parse(in);
+        }
+    }
+
+    /**
+     * Find the count of a digest in a parsed range, as done for every lookup.
+     */
+    @Benchmark
+    public int lookup() {
+
+        return range.getDigestCount(digest, 0);
+    }
+}
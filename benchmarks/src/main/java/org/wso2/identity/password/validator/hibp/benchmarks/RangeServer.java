@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local HTTP server that serves range responses at "/range/{prefix}", gzip compressed for requests that accept it.
+ * Responses are prepared up front, so that serving them costs as little as possible next to the lookups measured.
+ */
+final class RangeServer implements Closeable {
+
+    private static final String RANGE_PATH = "/range/";
+    private static final byte[] EMPTY = new byte[0];
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, byte[]> responses = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> compressedResponses = new ConcurrentHashMap<>();
+
+    /**
+     * Start a server on a free local port.
+     *
+     * @param threads number of threads serving requests.
+     * @throws IOException if the server cannot be started.
+     */
+    RangeServer(int threads) throws IOException {
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext(RANGE_PATH, this::handle);
+        server.start();
+    }
+
+    /**
+     * Get the base URL of the range API.
+     *
+     * @return base URL ending with "/range/".
+     */
+    String getRangeUrl() {
+
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + RANGE_PATH;
+    }
+
+    /**
+     * Set the range served for a prefix.
+     *
+     * @param prefix 5 character hash prefix.
+     * @param body   range response.
+     * @throws IOException if the response cannot be compressed.
+     */
+    void setRange(String prefix, String body) throws IOException {
+
+        byte[] response = body.getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(response);
+        }
+        responses.put(prefix, response);
+        compressedResponses.put(prefix, compressed.toByteArray());
+    }
+
+    @Override
+    public void close() {
+
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+
+        String prefix = exchange.getRequestURI().getPath().substring(RANGE_PATH.length());
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean compressed = acceptEncoding != null && acceptEncoding.contains("gzip")
+                && compressedResponses.containsKey(prefix);
+        byte[] body = (compressed ? compressedResponses : responses).getOrDefault(prefix, EMPTY);
+        if (compressed) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/plain");
+        exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.benchmarks;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Builds range responses shaped like those of the HIBP API.
+ */
+final class Ranges {
+
+    private Ranges() {
+
+    }
+
+    /**
+     * Build a range response of random suffixes in ascending order, with CRLF line endings.
+     *
+     * Padded responses mix in entries with a count of 0, as the HIBP API does when padding is requested with the
+     * "Add-Padding" header, so that a fifth of their lines are padding.
+     *
+     * @param random   source of the suffixes and counts.
+     * @param lines    number of lines of the response.
+     * @param padded   true to mix in padding entries.
+     * @param suffixes suffixes to include with a non zero count, e.g. those of the passwords looked up.
+     * @return range response.
+     */
+    static String build(Random random, int lines, boolean padded, String... suffixes) {
+
+        TreeMap<String, Integer> entries = new TreeMap<>();
+        for (String suffix : suffixes) {
+            entries.put(suffix, 42);
+        }
+        while (entries.size() < lines) {
+            String suffix = String.format("%03X%016X%016X", random.nextInt(4096), random.nextLong(),
+                    random.nextLong());
+            entries.putIfAbsent(suffix, padded && random.nextInt(5) == 0 ? 0 : random.nextInt(1000) + 1);
+        }
+        StringBuilder response = new StringBuilder(lines * 40);
+        entries.forEach((suffix, count) -> response.append(suffix).append(':').append(count).append("\r\n"));
+        return response.toString();
+    }
+}
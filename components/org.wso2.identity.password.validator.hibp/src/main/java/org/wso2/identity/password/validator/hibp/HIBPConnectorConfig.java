@@ -102,6 +102,8 @@ public class HIBPConnectorConfig implements IdentityConnectorConfig {
         Map<String, String> nameMapping = new HashMap<>();
         nameMapping.put(Constants.CONNECTOR_ENABLE, "Enable HaveIBeenPwned pwned password checker");
         nameMapping.put(Constants.CONNECTOR_API_KEY, "HaveIBeenPwned API key");
+        nameMapping.put(Constants.CONNECTOR_LOCAL_LOOKUP, "Use local Pwned Passwords store");
+        nameMapping.put(Constants.CONNECTOR_FAIL_OPEN, "Accept passwords while HaveIBeenPwned is unavailable");
         return nameMapping;
     }
 
@@ -117,6 +119,10 @@ public class HIBPConnectorConfig implements IdentityConnectorConfig {
         descriptionMapping.put(Constants.CONNECTOR_ENABLE, "Validate user passwords with HaveIBeenPwned pwned " +
                 "password checker.");
         descriptionMapping.put(Constants.CONNECTOR_API_KEY, "API key for the HaveIBeenPwned service.");
+        descriptionMapping.put(Constants.CONNECTOR_LOCAL_LOOKUP, "Look up passwords in the local Pwned " +
+                "Passwords store of the server instead of calling the HaveIBeenPwned API.");
+        descriptionMapping.put(Constants.CONNECTOR_FAIL_OPEN, "Accept passwords that cannot be checked because " +
+                "the HaveIBeenPwned API is unavailable, instead of failing the check.");
         return descriptionMapping;
     }
 
@@ -130,13 +136,16 @@ public class HIBPConnectorConfig implements IdentityConnectorConfig {
     public String[] getPropertyNames() {
         return new String[]{
                 Constants.CONNECTOR_ENABLE,
-                Constants.CONNECTOR_API_KEY
+                Constants.CONNECTOR_API_KEY,
+                Constants.CONNECTOR_LOCAL_LOOKUP,
+                Constants.CONNECTOR_FAIL_OPEN
         };
     }
 
     /**
      * Provides default values for all properties when the connector is first initialized.
-     * By default, the connector is disabled and no API key is set.
+     * By default, the connector is disabled, no API key is set, the HIBP API is used for lookups and checks fail
+     * while the HIBP API is unavailable.
      * 
      * @param tenantDomain The tenant domain for which to get default properties
      * @return A Properties object containing the default values
@@ -147,6 +156,8 @@ public class HIBPConnectorConfig implements IdentityConnectorConfig {
         Map<String, String> defaultProperties = new HashMap<>();
         defaultProperties.put(Constants.CONNECTOR_ENABLE, "false");
         defaultProperties.put(Constants.CONNECTOR_API_KEY, "");
+        defaultProperties.put(Constants.CONNECTOR_LOCAL_LOOKUP, "false");
+        defaultProperties.put(Constants.CONNECTOR_FAIL_OPEN, "false");
         Properties properties = new Properties();
         properties.putAll(defaultProperties);
         return properties;
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp;
+
+import org.apache.http.HttpHeaders;
+import org.wso2.identity.password.validator.hibp.cache.CacheWarmer;
+import org.wso2.identity.password.validator.hibp.cache.ConnectorConfigCache;
+import org.wso2.identity.password.validator.hibp.cache.DiskRangeCache;
+import org.wso2.identity.password.validator.hibp.cache.PrefixRangeCache;
+import org.wso2.identity.password.validator.hibp.client.CircuitBreaker;
+import org.wso2.identity.password.validator.hibp.client.PeerGroup;
+import org.wso2.identity.password.validator.hibp.client.RequestHedger;
+import org.wso2.identity.password.validator.hibp.client.SingleFlight;
+import org.wso2.identity.password.validator.hibp.internal.HIBPDataHolder;
+import org.wso2.identity.password.validator.hibp.metrics.HIBPMetrics;
+import org.wso2.identity.password.validator.hibp.metrics.PrometheusTextWriter;
+import org.wso2.identity.password.validator.hibp.range.HashRange;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Locale;
+
+/**
+ * Servlet exposing the metrics of the HIBP connector in the Prometheus text format.
+ *
+ * The metrics include per-tenant error counts and the internal state of the connector, so requests must carry the
+ * configured token as a bearer token in their Authorization header, as Prometheus sends it with its
+ * "authorization" scrape setting.
+ */
+public class HIBPMetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 4420190317505946713L;
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final String token;
+
+    /**
+     * Create a metrics servlet.
+     *
+     * @param token bearer token that requests must carry.
+     */
+    public HIBPMetricsServlet(String token) {
+
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("Metrics token must not be empty.");
+        }
+        this.token = token;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        if (!isAuthorized(request.getHeader(HttpHeaders.AUTHORIZATION))) {
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        HIBPMetrics metrics = HIBPDataHolder.getInstance().getMetrics();
+        if (metrics == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        PrometheusTextWriter writer = new PrometheusTextWriter();
+        metrics.writeTo(writer);
+        writeComponentMetrics(writer);
+
+        response.setContentType(PrometheusTextWriter.CONTENT_TYPE);
+        PrintWriter out = response.getWriter();
+        out.print(writer);
+        out.flush();
+    }
+
+    /**
+     * Check the Authorization header of a request against the token, in constant time.
+     */
+    private boolean isAuthorized(String authorization) {
+
+        return authorization != null && authorization.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())
+                && MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                authorization.substring(BEARER_PREFIX.length()).trim().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write the counters the components of the connector keep for themselves. Components that are disabled are
+     * left out.
+     */
+    private static void writeComponentMetrics(PrometheusTextWriter writer) {
+
+        PrefixRangeCache prefixRangeCache = HIBPDataHolder.getInstance().getPrefixRangeCache();
+        if (prefixRangeCache != null) {
+            writer.family("hibp_range_cache_requests_total", PrometheusTextWriter.COUNTER,
+                    "Lookups of the prefix range cache.");
+            writer.sample("hibp_range_cache_requests_total", prefixRangeCache.getHitCount(), "result", "hit");
+            writer.sample("hibp_range_cache_requests_total", prefixRangeCache.getMissCount(), "result", "miss");
+            writer.family("hibp_range_cache_evictions_total", PrometheusTextWriter.COUNTER,
+                    "Ranges evicted from the prefix range cache.");
+            writer.sample("hibp_range_cache_evictions_total", prefixRangeCache.getEvictionCount());
+            writer.family("hibp_range_cache_stale_total", PrometheusTextWriter.COUNTER,
+                    "Expired ranges served from the prefix range cache, while revalidating or on an API failure.");
+            writer.sample("hibp_range_cache_stale_total", prefixRangeCache.getStaleHitCount(), "reason",
+                    "revalidate");
+            writer.sample("hibp_range_cache_stale_total", prefixRangeCache.getStaleIfErrorCount(), "reason", "error");
+            writer.family("hibp_range_cache_revalidation_failures_total", PrometheusTextWriter.COUNTER,
+                    "Background revalidations of expired ranges that failed.");
+            writer.sample("hibp_range_cache_revalidation_failures_total",
+                    prefixRangeCache.getRevalidationFailureCount());
+
+            DiskRangeCache diskRangeCache = prefixRangeCache.getDiskCache();
+            if (diskRangeCache != null) {
+                writer.family("hibp_disk_cache_requests_total", PrometheusTextWriter.COUNTER,
+                        "Lookups of the disk tier of the prefix range cache.");
+                writer.sample("hibp_disk_cache_requests_total", diskRangeCache.getHitCount(), "result", "hit");
+                writer.sample("hibp_disk_cache_requests_total", diskRangeCache.getMissCount(), "result", "miss");
+                writer.family("hibp_disk_cache_ranges", PrometheusTextWriter.GAUGE,
+                        "Ranges stored in the disk tier of the prefix range cache.");
+                writer.sample("hibp_disk_cache_ranges", diskRangeCache.size());
+                writer.family("hibp_disk_cache_bytes", PrometheusTextWriter.GAUGE,
+                        "Size of the segment files of the disk tier of the prefix range cache.");
+                writer.sample("hibp_disk_cache_bytes", diskRangeCache.getSizeBytes());
+                writer.family("hibp_disk_cache_dropped_writes_total", PrometheusTextWriter.COUNTER,
+                        "Ranges not written to the disk tier of the prefix range cache as its write queue was full.");
+                writer.sample("hibp_disk_cache_dropped_writes_total", diskRangeCache.getDroppedWriteCount());
+            }
+        }
+
+        CacheWarmer cacheWarmer = HIBPDataHolder.getInstance().getCacheWarmer();
+        if (cacheWarmer != null) {
+            writer.family("hibp_cache_warmup_prefixes_total", PrometheusTextWriter.COUNTER,
+                    "Popular prefixes processed by the range cache warm-up.");
+            writer.sample("hibp_cache_warmup_prefixes_total", cacheWarmer.getFetchedCount(), "result", "fetched");
+            writer.sample("hibp_cache_warmup_prefixes_total", cacheWarmer.getCachedCount(), "result", "cached");
+            writer.sample("hibp_cache_warmup_prefixes_total", cacheWarmer.getFailureCount(), "result", "failed");
+        }
+
+        PeerGroup peerGroup = HIBPDataHolder.getInstance().getPeerGroup();
+        if (peerGroup != null) {
+            writer.family("hibp_peer_ranges_total", PrometheusTextWriter.COUNTER,
+                    "Ranges owned by other members of the peer cache, by where they were got from.");
+            writer.sample("hibp_peer_ranges_total", peerGroup.getHitCount(), "source", "peer");
+            writer.sample("hibp_peer_ranges_total", peerGroup.getFallbackCount(), "source", "local");
+            writer.family("hibp_peer_failures_total", PrometheusTextWriter.COUNTER,
+                    "Range requests to other members of the peer cache that failed.");
+            writer.sample("hibp_peer_failures_total", peerGroup.getFailureCount());
+            writer.family("hibp_peer_members", PrometheusTextWriter.GAUGE,
+                    "Members of the peer cache on the hash ring, including this node.");
+            writer.sample("hibp_peer_members", peerGroup.getLiveMemberCount());
+        }
+
+        ConnectorConfigCache connectorConfigCache = HIBPDataHolder.getInstance().getConnectorConfigCache();
+        if (connectorConfigCache != null) {
+            writer.family("hibp_config_cache_requests_total", PrometheusTextWriter.COUNTER,
+                    "Lookups of the connector configuration cache.");
+            writer.sample("hibp_config_cache_requests_total", connectorConfigCache.getHitCount(), "result", "hit");
+            writer.sample("hibp_config_cache_requests_total", connectorConfigCache.getMissCount(), "result", "miss");
+        }
+
+        SingleFlight<String, HashRange> rangeFlights = HIBPDataHolder.getInstance().getRangeFlights();
+        writer.family("hibp_range_requests_total", PrometheusTextWriter.COUNTER,
+                "Range requests of lookups, coalesced when they shared the request of a concurrent lookup.");
+        writer.sample("hibp_range_requests_total", rangeFlights.getLoadCount(), "coalesced", "false");
+        writer.sample("hibp_range_requests_total", rangeFlights.getSharedCount(), "coalesced", "true");
+
+        CircuitBreaker circuitBreaker = HIBPDataHolder.getInstance().getCircuitBreaker();
+        if (circuitBreaker != null) {
+            writer.family("hibp_circuit_breaker_state", PrometheusTextWriter.GAUGE,
+                    "State of the circuit breaker around calls to the HIBP API.");
+            CircuitBreaker.State state = circuitBreaker.getState();
+            for (CircuitBreaker.State value : CircuitBreaker.State.values()) {
+                writer.sample("hibp_circuit_breaker_state", value == state ? 1 : 0, "state",
+                        value.name().toLowerCase(Locale.ROOT));
+            }
+            writer.family("hibp_circuit_breaker_opened_total", PrometheusTextWriter.COUNTER,
+                    "Times the circuit breaker opened.");
+            writer.sample("hibp_circuit_breaker_opened_total", circuitBreaker.getOpenCount());
+            writer.family("hibp_circuit_breaker_rejected_total", PrometheusTextWriter.COUNTER,
+                    "Calls rejected while the circuit breaker was open.");
+            writer.sample("hibp_circuit_breaker_rejected_total", circuitBreaker.getRejectedCount());
+        }
+
+        RequestHedger requestHedger = HIBPDataHolder.getInstance().getRequestHedger();
+        if (requestHedger != null) {
+            writer.family("hibp_hedge_requests_total", PrometheusTextWriter.COUNTER,
+                    "Range requests that could be hedged.");
+            writer.sample("hibp_hedge_requests_total", requestHedger.getRequestCount());
+            writer.family("hibp_hedges_total", PrometheusTextWriter.COUNTER,
+                    "Hedges sent, by whether they answered first.");
+            // A hedge is counted before it wins, so the wins read first never exceed the hedges read after them.
+            long hedgeWinCount = requestHedger.getHedgeWinCount();
+            writer.sample("hibp_hedges_total", hedgeWinCount, "won", "true");
+            writer.sample("hibp_hedges_total", requestHedger.getHedgeCount() - hedgeWinCount, "won", "false");
+            writer.family("hibp_hedges_skipped_total", PrometheusTextWriter.COUNTER,
+                    "Hedges not sent, by whether the hedge budget was spent or the hedge threads were all busy.");
+            writer.sample("hibp_hedges_skipped_total", requestHedger.getBudgetExhaustedCount(), "reason", "budget");
+            writer.sample("hibp_hedges_skipped_total", requestHedger.getSaturatedCount(), "reason", "saturated");
+            writer.family("hibp_hedge_delay_seconds", PrometheusTextWriter.GAUGE,
+                    "Time after which range requests are hedged, -1 until enough latencies are recorded.");
+            long delayMicros = requestHedger.getDelayMicros();
+            writer.sample("hibp_hedge_delay_seconds", delayMicros < 0 ? -1.0 : delayMicros / 1e6);
+        }
+    }
+}
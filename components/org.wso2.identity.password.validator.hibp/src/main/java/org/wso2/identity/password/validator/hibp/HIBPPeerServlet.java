@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpHeaders;
+import org.wso2.identity.password.validator.hibp.client.PeerGroup;
+import org.wso2.identity.password.validator.hibp.exception.HIBPRateLimitException;
+import org.wso2.identity.password.validator.hibp.internal.HIBPDataHolder;
+import org.wso2.identity.password.validator.hibp.range.HashRange;
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+import org.wso2.identity.password.validator.hibp.util.Constants;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servlet serving the ranges this node owns to the other members of the peer cache.
+ *
+ * Ranges are requested as {@code <path>/<prefix>} and returned in the format of the HIBP range API, from the local
+ * cache or fetched from the API with the background API key of this node. A failure to get a range from the API is answered
+ * with "502 Bad Gateway", or with "429 Too Many Requests" when the API rate limits the connector, so that the peer
+ * does not take this node off the ring for it.
+ */
+public class HIBPPeerServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 3184907715206338265L;
+
+    private static final Log LOG = LogFactory.getLog(HIBPPeerServlet.class);
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        PeerGroup peerGroup = HIBPDataHolder.getInstance().getPeerGroup();
+        if (peerGroup == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!peerGroup.isAuthorized(request.getHeader(Constants.HIBP_PEER_SECRET_HEADER))) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        String pathInfo = request.getPathInfo();
+        String hashPrefix = pathInfo == null ? null : pathInfo.substring(1).toUpperCase(Locale.ROOT);
+        if (HexUtils.decodePrefix(hashPrefix) < 0) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        HashRange range;
+        try {
+            range = HIBPService.getPeerRange(hashPrefix);
+        } catch (HIBPRateLimitException e) {
+            response.setStatus(Constants.TOO_MANY_REQUESTS);
+            if (e.getRetryAfterMillis() >= 0) {
+                response.setHeader(HttpHeaders.RETRY_AFTER,
+                        Long.toString(TimeUnit.MILLISECONDS.toSeconds(e.getRetryAfterMillis() + 999)));
+            }
+            return;
+        } catch (Exception e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Failed to get the HIBP range of prefix " + hashPrefix + " for a peer.", e);
+            }
+            response.setStatus(HttpServletResponse.SC_BAD_GATEWAY);
+            return;
+        }
+
+        response.setContentType("text/plain");
+        OutputStream out = response.getOutputStream();
+        range.writeTo(out);
+        out.flush();
+    }
+}
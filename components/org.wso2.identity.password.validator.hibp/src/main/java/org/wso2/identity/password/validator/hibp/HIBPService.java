@@ -20,10 +20,39 @@ package org.wso2.identity.password.validator.hibp;
 
 import org.apache.commons.lang.StringUtils;
 import org.wso2.carbon.identity.application.common.model.Property;
+import org.wso2.identity.password.validator.hibp.cache.ConnectorConfigCache;
+import org.wso2.identity.password.validator.hibp.cache.PrefixPopularitySketch;
+import org.wso2.identity.password.validator.hibp.cache.PrefixRangeCache;
+import org.wso2.identity.password.validator.hibp.client.CircuitBreaker;
+import org.wso2.identity.password.validator.hibp.client.HIBPAsyncHttpClient;
+import org.wso2.identity.password.validator.hibp.client.PeerGroup;
+import org.wso2.identity.password.validator.hibp.client.RequestHedger;
 import org.wso2.identity.password.validator.hibp.exception.HIBPException;
+import org.wso2.identity.password.validator.hibp.exception.HIBPUnavailableException;
+import org.wso2.identity.password.validator.hibp.internal.HIBPDataHolder;
+import org.wso2.identity.password.validator.hibp.metrics.HIBPMetrics;
+import org.wso2.identity.password.validator.hibp.range.HashRange;
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+import org.wso2.identity.password.validator.hibp.range.RangeResponse;
+import org.wso2.identity.password.validator.hibp.store.LocalPwnedPasswordStore;
+import org.wso2.identity.password.validator.hibp.store.PwnedPasswordFilter;
+import org.wso2.identity.password.validator.hibp.util.ConfigUtils;
+import org.wso2.identity.password.validator.hibp.util.Constants;
 import org.wso2.identity.password.validator.hibp.util.Utils;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * HIBP Service implementation.
@@ -39,28 +68,222 @@ public class HIBPService {
      */
     public static int getPasswordAppearanceCount(String password, String tenantDomain) throws HIBPException {
 
+        long start = System.nanoTime();
+        Property[] connectorConfigs = null;
         try {
-            Property[] connectorConfigs = Utils.getConnectorConfiguration(tenantDomain);
+            connectorConfigs = Utils.getConnectorConfiguration(tenantDomain);
 
             // Connector is not enabled
-            if (connectorConfigs == null || connectorConfigs.length != 2
-                    || !Boolean.parseBoolean(connectorConfigs[0].getValue())
-                    || StringUtils.isBlank(connectorConfigs[1].getValue())) {
+            if (connectorConfigs == null || connectorConfigs.length < 2
+                    || !Boolean.parseBoolean(connectorConfigs[0].getValue())) {
+                return 0;
+            }
+            boolean localLookup = Boolean.parseBoolean(getPropertyValue(connectorConfigs,
+                    Constants.CONNECTOR_LOCAL_LOOKUP));
+            if (!localLookup && StringUtils.isBlank(connectorConfigs[1].getValue())) {
                 return 0;
             }
 
-            String passwordHash = Utils.getSHA1(password);
-            String firstFiveLettersOfHash = passwordHash.substring(0, 5);
-            String remainingLettersOfHash = passwordHash.substring(5);
+            byte[] digest = Utils.getSHA1Digest(password);
+            int offlineCount = getOfflineCount(digest, localLookup);
+            if (offlineCount >= 0) {
+                return offlineCount;
+            }
 
-            Map<String, Integer> appearanceMap = Utils.getHIBPAppearanceMap(connectorConfigs[1].getValue(),
-                    firstFiveLettersOfHash);
-            if (appearanceMap.isEmpty() || !appearanceMap.containsKey(remainingLettersOfHash)) {
-                return 0;
+            // The suffix is looked up straight from the digest, only the prefix is hex encoded for the request.
+            return getRange(HIBPDataHolder.getInstance().getPrefixRangeCache(),
+                    HIBPDataHolder.getInstance().getPeerGroup(), connectorConfigs[1].getValue(),
+                    HexUtils.encodePrefix(digest, 0)).getDigestCount(digest, 0);
+        } catch (Exception e) {
+            throw toHIBPException("Error while getting password appearance count", e, connectorConfigs,
+                    tenantDomain);
+        } finally {
+            HIBPMetrics metrics = HIBPDataHolder.getInstance().getMetrics();
+            if (metrics != null) {
+                metrics.record(HIBPMetrics.Stage.TOTAL, start);
+            }
+        }
+    }
+
+    /**
+     * Get password appearance count without blocking on the HIBP API.
+     *
+     * The tenant configuration, the filter and the local store are checked on the calling thread. Ranges that are
+     * not cached are requested with the non-blocking HTTP client, and the returned future is completed by one of
+     * its threads, so dependent stages should not block.
+     *
+     * @param password     password.
+     * @param tenantDomain tenant domain.
+     * @return future of the appearance count, failed with {@link HIBPException} in case of failure.
+     */
+    public static CompletableFuture<Integer> getPasswordAppearanceCountAsync(String password, String tenantDomain) {
+
+        HIBPMetrics metrics = HIBPDataHolder.getInstance().getMetrics();
+        if (metrics == null) {
+            return lookUpPasswordAppearanceCountAsync(password, tenantDomain);
+        }
+        long start = System.nanoTime();
+        CompletableFuture<Integer> passwordAppearanceCount = lookUpPasswordAppearanceCountAsync(password,
+                tenantDomain);
+        passwordAppearanceCount.whenComplete((count, e) -> metrics.record(HIBPMetrics.Stage.TOTAL, start));
+        return passwordAppearanceCount;
+    }
+
+    private static CompletableFuture<Integer> lookUpPasswordAppearanceCountAsync(String password,
+                                                                                 String tenantDomain) {
+
+        Property[] connectorConfigs = null;
+        try {
+            connectorConfigs = Utils.getConnectorConfiguration(tenantDomain);
+
+            // Connector is not enabled
+            if (connectorConfigs == null || connectorConfigs.length < 2
+                    || !Boolean.parseBoolean(connectorConfigs[0].getValue())) {
+                return CompletableFuture.completedFuture(0);
+            }
+            boolean localLookup = Boolean.parseBoolean(getPropertyValue(connectorConfigs,
+                    Constants.CONNECTOR_LOCAL_LOOKUP));
+            if (!localLookup && StringUtils.isBlank(connectorConfigs[1].getValue())) {
+                return CompletableFuture.completedFuture(0);
+            }
+
+            byte[] digest = Utils.getSHA1Digest(password);
+            int offlineCount = getOfflineCount(digest, localLookup);
+            if (offlineCount >= 0) {
+                return CompletableFuture.completedFuture(offlineCount);
             }
-            return appearanceMap.get(remainingLettersOfHash);
+
+            String firstFiveLettersOfHash = HexUtils.encodePrefix(digest, 0);
+            String apiKey = connectorConfigs[1].getValue();
+            PeerGroup peerGroup = HIBPDataHolder.getInstance().getPeerGroup();
+            if (peerGroup == null || peerGroup.isOwner(firstFiveLettersOfHash)) {
+                recordPopularity(firstFiveLettersOfHash);
+            }
+            PrefixRangeCache prefixRangeCache = HIBPDataHolder.getInstance().getPrefixRangeCache();
+            if (prefixRangeCache != null) {
+                HashRange range = prefixRangeCache.get(firstFiveLettersOfHash, getRevalidator(apiKey));
+                if (range != null) {
+                    return CompletableFuture.completedFuture(range.getDigestCount(digest, 0));
+                }
+            }
+            HIBPAsyncHttpClient asyncHttpClient = HIBPDataHolder.getInstance().getAsyncHttpClient();
+            if (asyncHttpClient == null) {
+                throw new HIBPException("HIBP async HTTP client is not initialized.");
+            }
+
+            // Concurrent lookups of the same prefix with the same API key share one request, which is hedged if it is
+            // slow. Ranges owned by another member of the peer cache are requested from that member first.
+            CircuitBreaker circuitBreaker = HIBPDataHolder.getInstance().getCircuitBreaker();
+            RequestHedger requestHedger = HIBPDataHolder.getInstance().getRequestHedger();
+            Supplier<CompletableFuture<RangeResponse>> request = () -> requestHedger == null
+                    ? asyncHttpClient.getRange(apiKey, firstFiveLettersOfHash)
+                    : requestHedger.execute(attempt -> asyncHttpClient.getRange(apiKey, firstFiveLettersOfHash,
+                            Utils.getApiUrl(attempt)));
+            CompletableFuture<HashRange> rangeFuture = HIBPDataHolder.getInstance().getRangeFlights()
+                    .executeAsync(getFlightKey(apiKey, firstFiveLettersOfHash), () -> (peerGroup == null
+                            ? CompletableFuture.<HashRange>completedFuture(null)
+                            : peerGroup.getRange(firstFiveLettersOfHash))
+                            .thenCompose(peerRange -> peerRange != null ? CompletableFuture.completedFuture(peerRange)
+                                    : (circuitBreaker == null ? request.get() : circuitBreaker.executeAsync(request))
+                                    .thenApply(response -> {
+                                        if (prefixRangeCache != null) {
+                                            prefixRangeCache.put(firstFiveLettersOfHash, response.getRange(),
+                                                    response.getETag(), response.getLastModified());
+                                        }
+                                        return response.getRange();
+                                    })));
+
+            CompletableFuture<Integer> passwordAppearanceCount = new CompletableFuture<>();
+            Property[] tenantConfigs = connectorConfigs;
+            rangeFuture.whenComplete((range, e) -> {
+                HashRange staleRange = e == null || prefixRangeCache == null ? null
+                        : prefixRangeCache.getStale(firstFiveLettersOfHash);
+                if (staleRange != null) {
+                    passwordAppearanceCount.complete(staleRange.getDigestCount(digest, 0));
+                } else if (e != null) {
+                    passwordAppearanceCount.completeExceptionally(toHIBPException(
+                            "Error while getting password appearance count",
+                            e instanceof CompletionException && e.getCause() != null ? e.getCause() : e,
+                            tenantConfigs, tenantDomain));
+                } else {
+                    passwordAppearanceCount.complete(range.getDigestCount(digest, 0));
+                }
+            });
+            return passwordAppearanceCount;
         } catch (Exception e) {
-            throw new HIBPException("Error while getting password appearance count", e);
+            return CompletableFuture.failedFuture(toHIBPException("Error while getting password appearance count", e,
+                    connectorConfigs, tenantDomain));
+        }
+    }
+
+    /**
+     * Get the appearance counts of a batch of passwords.
+     *
+     * Passwords are grouped by the 5 character prefix of their hash, so that the range of each distinct prefix is
+     * fetched only once. Distinct prefixes are fetched in parallel on the batch lookup executor.
+     *
+     * @param values       passwords, or their SHA-1 hashes as 40 hex characters.
+     * @param hashed       true if the values are SHA-1 hashes.
+     * @param tenantDomain tenant domain.
+     * @return appearance counts, in the order of the values.
+     * @throws HIBPException in case of failure.
+     */
+    public static int[] getPasswordAppearanceCounts(String[] values, boolean hashed, String tenantDomain)
+            throws HIBPException {
+
+        int[] counts = new int[values.length];
+        Property[] connectorConfigs = null;
+        try {
+            connectorConfigs = Utils.getConnectorConfiguration(tenantDomain);
+
+            // Connector is not enabled
+            if (connectorConfigs == null || connectorConfigs.length < 2
+                    || !Boolean.parseBoolean(connectorConfigs[0].getValue())) {
+                return counts;
+            }
+            boolean localLookup = Boolean.parseBoolean(getPropertyValue(connectorConfigs,
+                    Constants.CONNECTOR_LOCAL_LOOKUP));
+            if (!localLookup && StringUtils.isBlank(connectorConfigs[1].getValue())) {
+                return counts;
+            }
+            LocalPwnedPasswordStore localPasswordStore = HIBPDataHolder.getInstance().getLocalPasswordStore();
+            if (localLookup && localPasswordStore == null) {
+                throw new HIBPException("Local Pwned Passwords store is not available.");
+            }
+            PwnedPasswordFilter passwordFilter = HIBPDataHolder.getInstance().getPasswordFilter();
+
+            byte[][] digests = new byte[values.length][];
+            Map<String, List<Integer>> indexesByPrefix = new LinkedHashMap<>();
+            for (int i = 0; i < values.length; i++) {
+                digests[i] = hashed ? HexUtils.decodeHash(values[i].trim()) : Utils.getSHA1Digest(values[i]);
+                if (digests[i] == null) {
+                    throw new HIBPException("Invalid SHA-1 hash at index " + i);
+                }
+                if (passwordFilter != null && !passwordFilter.mightContain(digests[i])) {
+                    continue;
+                }
+                if (localLookup) {
+                    counts[i] = localPasswordStore.getCount(digests[i]);
+                    continue;
+                }
+                indexesByPrefix.computeIfAbsent(HexUtils.encodePrefix(digests[i], 0), prefix -> new ArrayList<>())
+                        .add(i);
+            }
+            if (indexesByPrefix.isEmpty()) {
+                return counts;
+            }
+
+            List<String> prefixes = new ArrayList<>(indexesByPrefix.keySet());
+            HashRange[] ranges = getRanges(connectorConfigs[1].getValue(), prefixes);
+            for (int i = 0; i < prefixes.size(); i++) {
+                for (int index : indexesByPrefix.get(prefixes.get(i))) {
+                    counts[index] = ranges[i].getDigestCount(digests[index], 0);
+                }
+            }
+            return counts;
+        } catch (Exception e) {
+            throw toHIBPException("Error while getting password appearance counts", e, connectorConfigs,
+                    tenantDomain);
         }
     }
 
@@ -77,7 +300,7 @@ public class HIBPService {
             Property[] connectorConfigs = Utils.getConnectorConfiguration(tenantDomain);
 
             // Connector is not enabled
-            if (connectorConfigs == null || connectorConfigs.length != 2) {
+            if (connectorConfigs == null || connectorConfigs.length < 2) {
                 return false;
             }
 
@@ -86,4 +309,303 @@ public class HIBPService {
             throw new HIBPException("Error while checking if HIBP is enabled", e);
         }
     }
+
+    /**
+     * Update the HIBP connector configuration of a tenant. The cached configuration of the tenant is dropped, so
+     * that the change applies to the next password check on this node.
+     *
+     * @param tenantDomain     tenant domain.
+     * @param connectorConfigs names and new values of the connector properties to update.
+     * @throws HIBPException in case of failure.
+     */
+    public static void updateConnectorConfiguration(String tenantDomain, Map<String, String> connectorConfigs)
+            throws HIBPException {
+
+        try {
+            Utils.updateConnectorConfiguration(tenantDomain, connectorConfigs);
+        } catch (Exception e) {
+            throw new HIBPException("Error while updating HIBP connector configuration", e);
+        }
+    }
+
+    /**
+     * Drop the cached HIBP connector configuration of a tenant, e.g. when it was updated directly through the
+     * identity governance service, so that it is read again on the next password check.
+     *
+     * @param tenantDomain tenant domain.
+     */
+    public static void invalidateConnectorConfiguration(String tenantDomain) {
+
+        ConnectorConfigCache connectorConfigCache = HIBPDataHolder.getInstance().getConnectorConfigCache();
+        if (connectorConfigCache != null) {
+            connectorConfigCache.invalidate(tenantDomain);
+        }
+    }
+
+    /**
+     * Get the appearance count of a password without calling the HIBP API, when the filter rules the password
+     * out or the tenant looks passwords up in the local store.
+     *
+     * @param digest      SHA-1 digest of the password.
+     * @param localLookup true if the tenant looks passwords up in the local store.
+     * @return appearance count, or -1 if the range of the hash has to be requested from the HIBP API.
+     * @throws HIBPException if the local store is not available.
+     */
+    private static int getOfflineCount(byte[] digest, boolean localLookup) throws HIBPException {
+
+        PwnedPasswordFilter passwordFilter = HIBPDataHolder.getInstance().getPasswordFilter();
+        if (passwordFilter != null && !passwordFilter.mightContain(digest)) {
+            // Definitely not in the corpus, so no lookup is needed.
+            return 0;
+        }
+        if (localLookup) {
+            LocalPwnedPasswordStore localPasswordStore = HIBPDataHolder.getInstance().getLocalPasswordStore();
+            if (localPasswordStore == null) {
+                throw new HIBPException("Local Pwned Passwords store is not available.");
+            }
+            return localPasswordStore.getCount(digest);
+        }
+        return -1;
+    }
+
+    /**
+     * Get the range of a hash prefix on behalf of another member of the peer cache. The range is served from the
+     * prefix range cache or fetched from the HIBP API, but never requested from a peer, so that members whose views
+     * of the ring differ for a moment do not pass requests around. Peers do not send the API keys of their tenants,
+     * so ranges are fetched with the background API key of this node.
+     *
+     * @param hashPrefix first five characters of the password hash.
+     * @return range of the prefix.
+     * @throws Exception in case of failure.
+     */
+    public static HashRange getPeerRange(String hashPrefix) throws Exception {
+
+        return getRange(HIBPDataHolder.getInstance().getPrefixRangeCache(), null,
+                ConfigUtils.getString(Constants.BACKGROUND_API_KEY, null), hashPrefix);
+    }
+
+    /**
+     * Get the range of the given hash prefix, served from the prefix range cache when possible. Concurrent requests
+     * for the same prefix with the same API key are coalesced, so that only one of them calls the HIBP API and the
+     * others share its result. A recently expired range is served while it is revalidated in the background, or if
+     * the HIBP API fails.
+     *
+     * Ranges owned by another member of the peer cache are requested from that member, and fetched from the HIBP
+     * API only if it cannot provide them. Ranges provided by a peer are not kept in the local cache, so that each
+     * range is cached once across the cluster.
+     *
+     * @param prefixRangeCache prefix range cache, or null if ranges are not cached.
+     * @param peerGroup        members of the peer cache, or null if ranges are not shared.
+     * @param apiKey           HIBP API key.
+     * @param hashPrefix       first five characters of the password hash.
+     * @return range of the prefix.
+     * @throws Exception in case of failure.
+     */
+    private static HashRange getRange(PrefixRangeCache prefixRangeCache, PeerGroup peerGroup, String apiKey,
+                                      String hashPrefix) throws Exception {
+
+        // The owner of a prefix records its popularity when a peer requests it
+        if (peerGroup == null || peerGroup.isOwner(hashPrefix)) {
+            recordPopularity(hashPrefix);
+        }
+        if (prefixRangeCache != null) {
+            HashRange range = prefixRangeCache.get(hashPrefix, getRevalidator(apiKey));
+            if (range != null) {
+                return range;
+            }
+        }
+        try {
+            return HIBPDataHolder.getInstance().getRangeFlights().execute(getFlightKey(apiKey, hashPrefix), () -> {
+                if (peerGroup != null) {
+                    HashRange peerRange = peerGroup.getRange(hashPrefix).join();
+                    if (peerRange != null) {
+                        return peerRange;
+                    }
+                }
+                RangeResponse response = Utils.getHIBPRange(apiKey, hashPrefix, null, null);
+                if (prefixRangeCache != null) {
+                    // Keep the validators of the response so that the range can be refreshed with a conditional
+                    // request.
+                    prefixRangeCache.put(hashPrefix, response.getRange(), response.getETag(),
+                            response.getLastModified());
+                }
+                return response.getRange();
+            }, getFlightWaitTimeout(peerGroup));
+        } catch (Exception e) {
+            HashRange staleRange = prefixRangeCache == null ? null : prefixRangeCache.getStale(hashPrefix);
+            if (staleRange == null) {
+                throw e;
+            }
+            return staleRange;
+        }
+    }
+
+    /**
+     * Get the time a lookup waits for the range request already in flight for its prefix, which is as long as the
+     * request itself may take to get an answer: a peer request when a peer group is configured, then a connection
+     * to and a read from the HIBP API.
+     *
+     * @param peerGroup group of cluster members sharing their range caches, or null.
+     * @return wait timeout in milliseconds.
+     */
+    private static long getFlightWaitTimeout(PeerGroup peerGroup) {
+
+        long waitTimeout = ConfigUtils.getInt(Constants.HTTP_CLIENT_CONNECT_TIMEOUT,
+                Constants.DEFAULT_HTTP_CLIENT_CONNECT_TIMEOUT)
+                + ConfigUtils.getInt(Constants.HTTP_CLIENT_READ_TIMEOUT, Constants.DEFAULT_HTTP_CLIENT_READ_TIMEOUT);
+        if (peerGroup != null) {
+            waitTimeout += ConfigUtils.getLong(Constants.PEER_TIMEOUT, Constants.DEFAULT_PEER_TIMEOUT);
+        }
+        return waitTimeout;
+    }
+
+    /**
+     * Get the key under which concurrent requests for a range are coalesced. Requests with different API keys are
+     * never coalesced, so that a tenant does not get the failure of a request sent with the invalid or revoked key of
+     * another tenant, nor a range fetched with another tenant's key.
+     *
+     * @param apiKey     HIBP API key.
+     * @param hashPrefix first five characters of the password hash.
+     * @return key of the range request.
+     */
+    private static String getFlightKey(String apiKey, String hashPrefix) {
+
+        return hashPrefix + ':' + apiKey;
+    }
+
+    /**
+     * Get a revalidator of expired cached ranges, which sends conditional requests with the given API key on the
+     * batch lookup executor.
+     *
+     * @param apiKey HIBP API key.
+     * @return revalidator, or null if the bundle is not active.
+     */
+    private static PrefixRangeCache.Revalidator getRevalidator(String apiKey) {
+
+        ExecutorService batchExecutor = HIBPDataHolder.getInstance().getBatchExecutor();
+        if (batchExecutor == null) {
+            return null;
+        }
+        return (hashPrefix, etag, lastModified) -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return Utils.getHIBPRange(apiKey, hashPrefix, etag, lastModified);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, batchExecutor);
+    }
+
+    /**
+     * Record a range lookup of the given prefix, so that popular prefixes are fetched when the server starts.
+     */
+    private static void recordPopularity(String hashPrefix) {
+
+        PrefixPopularitySketch prefixPopularity = HIBPDataHolder.getInstance().getPrefixPopularity();
+        if (prefixPopularity != null) {
+            prefixPopularity.record(hashPrefix);
+        }
+    }
+
+    /**
+     * Get the ranges of the given prefixes, fetching distinct prefixes in parallel.
+     *
+     * A bounded number of workers take prefixes from a shared index until all are fetched, so a batch never queues
+     * more tasks than workers. The calling thread works as well, which guarantees progress when the executor is busy.
+     *
+     * @param apiKey   HIBP API key.
+     * @param prefixes distinct hash prefixes.
+     * @return ranges, in the order of the prefixes.
+     * @throws Exception in case of failure.
+     */
+    private static HashRange[] getRanges(String apiKey, List<String> prefixes) throws Exception {
+
+        PrefixRangeCache prefixRangeCache = HIBPDataHolder.getInstance().getPrefixRangeCache();
+        PeerGroup peerGroup = HIBPDataHolder.getInstance().getPeerGroup();
+        ExecutorService batchExecutor = HIBPDataHolder.getInstance().getBatchExecutor();
+        HashRange[] ranges = new HashRange[prefixes.size()];
+        AtomicInteger nextIndex = new AtomicInteger();
+        Callable<Void> worker = () -> {
+            try {
+                for (int i = nextIndex.getAndIncrement(); i < ranges.length; i = nextIndex.getAndIncrement()) {
+                    ranges[i] = getRange(prefixRangeCache, peerGroup, apiKey, prefixes.get(i));
+                }
+                return null;
+            } catch (Exception e) {
+                // Stop the other workers.
+                nextIndex.set(ranges.length);
+                throw e;
+            }
+        };
+
+        int workerCount = batchExecutor == null ? 1 : Math.min(prefixes.size(),
+                ConfigUtils.getInt(Constants.BATCH_CONCURRENCY, Constants.DEFAULT_BATCH_CONCURRENCY));
+        List<Future<Void>> futures = new ArrayList<>(workerCount - 1);
+        for (int i = 1; i < workerCount; i++) {
+            futures.add(batchExecutor.submit(worker));
+        }
+        Exception failure = null;
+        try {
+            worker.call();
+        } catch (Exception e) {
+            failure = e;
+        }
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return ranges;
+    }
+
+    /**
+     * Wrap a failure of a lookup. Failures to get a range from the HIBP API, including calls rejected by the open
+     * circuit breaker, are reported as {@link HIBPUnavailableException} along with the policy of the tenant for
+     * passwords that cannot be checked. The failure is counted for the tenant when metrics are enabled.
+     *
+     * @param message          error message.
+     * @param e                failure of the lookup.
+     * @param connectorConfigs connector properties of the tenant, or null if they could not be read.
+     * @param tenantDomain     tenant domain.
+     * @return exception to throw.
+     */
+    private static HIBPException toHIBPException(String message, Throwable e, Property[] connectorConfigs,
+                                                 String tenantDomain) {
+
+        boolean unavailable = e instanceof HIBPUnavailableException
+                || (e instanceof IOException && CircuitBreaker.isFailure(e));
+        HIBPMetrics metrics = HIBPDataHolder.getInstance().getMetrics();
+        if (metrics != null) {
+            metrics.countError(tenantDomain, unavailable);
+        }
+        if (unavailable) {
+            boolean failOpen = connectorConfigs != null && Boolean.parseBoolean(getPropertyValue(connectorConfigs,
+                    Constants.CONNECTOR_FAIL_OPEN));
+            return new HIBPUnavailableException(message, e, failOpen);
+        }
+        return new HIBPException(message, e);
+    }
+
+    /**
+     * Get the value of an optional connector property.
+     *
+     * @param connectorConfigs connector properties.
+     * @param name             property name.
+     * @return property value, or null if the property is not present.
+     */
+    private static String getPropertyValue(Property[] connectorConfigs, String name) {
+
+        for (Property property : connectorConfigs) {
+            if (property != null && name.equals(property.getName())) {
+                return property.getValue();
+            }
+        }
+        return null;
+    }
 }
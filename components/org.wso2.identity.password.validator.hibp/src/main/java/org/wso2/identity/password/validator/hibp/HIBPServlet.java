@@ -18,21 +18,43 @@
 
 package org.wso2.identity.password.validator.hibp;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.base.MultitenantConstants;
+import org.wso2.identity.password.validator.hibp.client.ClientRateLimiter;
 import org.wso2.identity.password.validator.hibp.exception.HIBPException;
+import org.wso2.identity.password.validator.hibp.exception.HIBPUnavailableException;
+import org.wso2.identity.password.validator.hibp.internal.HIBPDataHolder;
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+import org.wso2.identity.password.validator.hibp.util.ConfigUtils;
 import org.wso2.identity.password.validator.hibp.util.Constants;
 import org.wso2.identity.password.validator.hibp.util.Utils;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 /**
  * HIBP Servlet implementation.
@@ -43,15 +65,13 @@ public class HIBPServlet extends HttpServlet {
 
     private static final Log LOG = LogFactory.getLog(HIBPServlet.class);
 
+    private static final AtomicBoolean SYNC_FALLBACK_LOGGED = new AtomicBoolean();
+
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
 
-        String tenantDomain = MultitenantConstants.SUPER_TENANT_DOMAIN_NAME;
-        if (!StringUtils.isBlank(request.getParameter(Constants.TENANT_DOMAIN))) {
-            // TODO: Validate the tenant.
-            tenantDomain = request.getParameter(Constants.TENANT_DOMAIN).trim();
-        }
+        String tenantDomain = getTenantDomain(request);
 
         // Get HIBP connector status
         boolean isEnabled;
@@ -78,37 +98,310 @@ public class HIBPServlet extends HttpServlet {
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
 
-        // Validate request
-        if (StringUtils.isBlank(request.getParameter(Constants.PASSWORD_PARAM))) {
-            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        // The request is read on the container thread, only the lookup runs asynchronously
+        Lookup lookup;
+        String errorMessage;
+        if (isJsonRequest(request)) {
+            // JSON requests check a batch of passwords
+            lookup = getBatchLookup(request, response);
+            if (lookup == null) {
+                return;
+            }
+            errorMessage = "Failed to get appearance counts for the passwords.";
+        } else {
+            // Validate request
+            if (StringUtils.isBlank(request.getParameter(Constants.PASSWORD_PARAM))) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+
+            String password = request.getParameter(Constants.PASSWORD_PARAM);
+            String tenantDomain = getTenantDomain(request);
+            lookup = failOpen(() -> Utils.buildResponse(HIBPService.getPasswordAppearanceCount(password,
+                    tenantDomain)), () -> Utils.buildResponse(0, true));
+            errorMessage = "Failed to get appearance count for the password.";
+        }
+
+        ExecutorService lookupExecutor = HIBPDataHolder.getInstance().getLookupExecutor();
+        if (lookupExecutor != null && !request.isAsyncSupported() && SYNC_FALLBACK_LOGGED.compareAndSet(false, true)) {
+            LOG.info("The servlet container does not support asynchronous processing of HIBP requests. Passwords are "
+                    + "looked up on the container threads.");
+        }
+        if (lookupExecutor == null || !request.isAsyncSupported()) {
+            // Look up the password on the container thread
+            sendLookupResponse(response, lookup, errorMessage);
             return;
         }
+        startAsyncLookup(request, lookupExecutor, lookup, errorMessage);
+    }
 
-        String tenantDomain = MultitenantConstants.SUPER_TENANT_DOMAIN_NAME;
-        if (!StringUtils.isBlank(request.getParameter(Constants.TENANT_DOMAIN))) {
-            //TODO Validate tenant
-            tenantDomain = request.getParameter(Constants.TENANT_DOMAIN).trim();
+    /**
+     * Look up the passwords on the lookup executor and release the container thread. The response is written when
+     * the lookup completes, or with 503 Service Unavailable if the executor is saturated or the lookup does not
+     * complete within the async timeout.
+     */
+    private void startAsyncLookup(HttpServletRequest request, ExecutorService lookupExecutor, Lookup lookup,
+                                  String errorMessage) {
+
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(ConfigUtils.getLong(Constants.ASYNC_TIMEOUT, Constants.DEFAULT_ASYNC_TIMEOUT));
+
+        // Either the lookup or the container completes the request, whichever comes first
+        AtomicBoolean completed = new AtomicBoolean();
+        AtomicReference<Future<?>> lookupTask = new AtomicReference<>();
+        asyncContext.addListener(new AsyncListener() {
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+
+                if (completed.compareAndSet(false, true)) {
+                    cancel(lookupTask.get());
+                    LOG.warn("Timed out while getting appearance count for the password.");
+                    ((HttpServletResponse) asyncContext.getResponse())
+                            .setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    asyncContext.complete();
+                }
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+
+                if (completed.compareAndSet(false, true)) {
+                    cancel(lookupTask.get());
+                }
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+
+            }
+        });
+
+        try {
+            lookupTask.set(lookupExecutor.submit(() -> {
+                if (completed.get()) {
+                    // Timed out while waiting for a lookup thread
+                    return;
+                }
+                String responseString;
+                int errorStatus = 0;
+                try {
+                    responseString = lookup.call();
+                } catch (HIBPException e) {
+                    errorStatus = getErrorStatus(e, errorMessage);
+                    responseString = null;
+                }
+                if (!completed.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+                    if (responseString == null) {
+                        response.setStatus(errorStatus);
+                    } else {
+                        writeResponse(response, responseString);
+                    }
+                } catch (IOException e) {
+                    LOG.error("Failed to send the HIBP response.", e);
+                } finally {
+                    asyncContext.complete();
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            if (completed.compareAndSet(false, true)) {
+                LOG.warn("Rejected HIBP request as all lookup threads are busy.");
+                ((HttpServletResponse) asyncContext.getResponse())
+                        .setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                asyncContext.complete();
+            }
         }
+    }
+
+    private static void cancel(Future<?> lookupTask) {
+
+        if (lookupTask != null) {
+            lookupTask.cancel(true);
+        }
+    }
+
+    private static void sendLookupResponse(HttpServletResponse response, Lookup lookup, String errorMessage)
+            throws IOException {
 
         // Get appearance count
-        int passwordAppearanceCount;
+        String responseString;
         try {
-            passwordAppearanceCount = HIBPService
-                    .getPasswordAppearanceCount(request.getParameter(Constants.PASSWORD_PARAM), tenantDomain);
+            responseString = lookup.call();
         } catch (HIBPException e) {
-            LOG.error("Failed to get appearance count for the password.", e);
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            response.setStatus(getErrorStatus(e, errorMessage));
             return;
         }
 
-        // Build response
-        String responseString = Utils.buildResponse(passwordAppearanceCount);
-
         // Send response
+        writeResponse(response, responseString);
+    }
+
+    /**
+     * Log a failed lookup and get the status of its response. Lookups that failed because the HIBP API is
+     * unavailable get 503 Service Unavailable. They are only logged at debug level, as the circuit breaker already
+     * logs when the API becomes unavailable.
+     */
+    private static int getErrorStatus(HIBPException e, String errorMessage) {
+
+        if (e instanceof HIBPUnavailableException) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(errorMessage, e);
+            }
+            return HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+        }
+        LOG.error(errorMessage, e);
+        return HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+    }
+
+    /**
+     * Answer lookups that fail because the HIBP API is unavailable with the given response, flagged as unavailable,
+     * when the tenant fails open. Tenants that fail closed keep the failure.
+     */
+    private static Lookup failOpen(Lookup lookup, Supplier<String> unavailableResponse) {
+
+        return () -> {
+            try {
+                return lookup.call();
+            } catch (HIBPUnavailableException e) {
+                if (!e.isFailOpen()) {
+                    throw e;
+                }
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("HIBP API is unavailable, passwords are accepted without being checked.", e);
+                }
+                return unavailableResponse.get();
+            }
+        };
+    }
+
+    private static void writeResponse(HttpServletResponse response, String responseString) throws IOException {
+
         response.setContentType(Constants.APPLICATION_JSON);
         response.setCharacterEncoding(StandardCharsets.UTF_8.name());
         PrintWriter out = response.getWriter();
         out.print(responseString);
         out.flush();
     }
+
+    /**
+     * Read a batch of passwords, given as a JSON object with either a "passwords" array or a "hashes" array of
+     * SHA-1 hashes. The counts are returned in a "counts" array in the same order.
+     *
+     * @return lookup of the batch, or null if the request is invalid and the response status has been set.
+     */
+    private static Lookup getBatchLookup(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+
+        // The body is bounded before it is parsed, as the parser would otherwise read all of it
+        int maxBodySize = ConfigUtils.getInt(Constants.BATCH_MAX_BODY_SIZE, Constants.DEFAULT_BATCH_MAX_BODY_SIZE);
+        String body = request.getContentLength() > maxBodySize ? null : readBody(request, maxBodySize);
+        if (body == null) {
+            response.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return null;
+        }
+
+        JsonObject requestBody;
+        try {
+            JsonElement jsonElement = new JsonParser().parse(body);
+            requestBody = jsonElement.isJsonObject() ? jsonElement.getAsJsonObject() : null;
+        } catch (JsonParseException e) {
+            requestBody = null;
+        }
+        if (requestBody == null) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
+
+        // Exactly one of the passwords and the hashes must be given
+        boolean hashed = requestBody.has(Constants.HASHES_PARAM);
+        if (hashed == requestBody.has(Constants.PASSWORDS_PARAM)) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
+        JsonElement valuesElement = requestBody.get(hashed ? Constants.HASHES_PARAM : Constants.PASSWORDS_PARAM);
+        if (!valuesElement.isJsonArray() || valuesElement.getAsJsonArray().size() == 0) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
+        JsonArray valuesArray = valuesElement.getAsJsonArray();
+        if (valuesArray.size() > ConfigUtils.getInt(Constants.BATCH_MAX_SIZE, Constants.DEFAULT_BATCH_MAX_SIZE)) {
+            response.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return null;
+        }
+        String[] values = new String[valuesArray.size()];
+        for (int i = 0; i < values.length; i++) {
+            JsonElement value = valuesArray.get(i);
+            if (!value.isJsonPrimitive() || !value.getAsJsonPrimitive().isString()
+                    || (hashed && HexUtils.decodeHash(value.getAsString().trim()) == null)) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                return null;
+            }
+            values[i] = value.getAsString();
+        }
+
+        // Each password of a batch may cost a range request, so clients are limited in passwords rather than requests
+        ClientRateLimiter batchRateLimiter = HIBPDataHolder.getInstance().getBatchRateLimiter();
+        if (batchRateLimiter != null && !batchRateLimiter.tryAcquire(request.getRemoteAddr(), values.length)) {
+            response.setStatus(Constants.TOO_MANY_REQUESTS);
+            return null;
+        }
+
+        String tenantDomain = getTenantDomain(request);
+        return failOpen(() -> Utils.buildBatchResponse(HIBPService.getPasswordAppearanceCounts(values, hashed,
+                tenantDomain)), () -> Utils.buildBatchResponse(new int[values.length], true));
+    }
+
+    /**
+     * Read the body of a request as UTF-8, the encoding of JSON.
+     *
+     * @return body of the request, or null if it is larger than the given size.
+     */
+    private static String readBody(HttpServletRequest request, int maxBodySize) throws IOException {
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        InputStream in = request.getInputStream();
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            if (body.size() + read > maxBodySize) {
+                return null;
+            }
+            body.write(buffer, 0, read);
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static boolean isJsonRequest(HttpServletRequest request) {
+
+        String contentType = request.getContentType();
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith(Constants.APPLICATION_JSON);
+    }
+
+    private static String getTenantDomain(HttpServletRequest request) {
+
+        String tenantDomain = MultitenantConstants.SUPER_TENANT_DOMAIN_NAME;
+        if (!StringUtils.isBlank(request.getParameter(Constants.TENANT_DOMAIN))) {
+            // TODO: Validate the tenant.
+            tenantDomain = request.getParameter(Constants.TENANT_DOMAIN).trim();
+        }
+        return tenantDomain;
+    }
+
+    /**
+     * Lookup of the passwords of a request, producing the response body.
+     */
+    @FunctionalInterface
+    private interface Lookup {
+
+        String call() throws HIBPException;
+    }
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.identity.password.validator.hibp.range.RangeResponse;
+import org.wso2.identity.password.validator.hibp.util.Utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Warms up a {@link PrefixRangeCache} with the most popular prefixes when the server starts, so that most lookups
+ * are served from the cache before traffic arrives.
+ *
+ * The popularity of the prefixes is recorded in a {@link PrefixPopularitySketch}, which the warmer saves to a file
+ * periodically and when it is closed. When started, the warmer adds the sketch saved before the restart to the live
+ * one, and fetches the ranges of the most popular prefixes that are not cached yet, at a fixed maximum rate so that
+ * the HIBP API is not flooded. Failed warm up requests are not retried and are not counted by the circuit breaker,
+ * so the prefix is simply fetched on its first lookup.
+ */
+public class CacheWarmer implements Closeable {
+
+    private static final Log log = LogFactory.getLog(CacheWarmer.class);
+
+    private static final long TICK_INTERVAL = 1000L;
+
+    private final PrefixRangeCache prefixRangeCache;
+    private final PrefixPopularitySketch sketch;
+    private final Path sketchPath;
+    private final String apiKey;
+    private final int prefixCount;
+    private final int prefixesPerSecond;
+    private final long saveInterval;
+    private final ScheduledExecutorService scheduler;
+    private String[] prefixes;
+    private int nextPrefix;
+    private boolean closed;
+    private volatile boolean sketchLoaded;
+
+    private final LongAdder fetchedCount = new LongAdder();
+    private final LongAdder cachedCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+
+    /**
+     * Create a cache warmer. Warming up starts with {@link #start()}.
+     *
+     * @param prefixRangeCache  cache to warm up.
+     * @param sketch            sketch the popularity of the prefixes is recorded in.
+     * @param sketchPath        file the sketch is saved to.
+     * @param apiKey            HIBP API key to send, or null.
+     * @param prefixCount       number of the most popular prefixes to fetch.
+     * @param prefixesPerSecond maximum number of requests sent per second.
+     * @param saveInterval      time in milliseconds between saves of the sketch.
+     */
+    public CacheWarmer(PrefixRangeCache prefixRangeCache, PrefixPopularitySketch sketch, Path sketchPath,
+                       String apiKey, int prefixCount, int prefixesPerSecond, long saveInterval) {
+
+        if (prefixesPerSecond <= 0) {
+            throw new IllegalArgumentException("Warm-up rate must be positive.");
+        }
+        this.prefixRangeCache = prefixRangeCache;
+        this.sketch = sketch;
+        this.sketchPath = sketchPath;
+        this.apiKey = apiKey;
+        this.prefixCount = prefixCount;
+        this.prefixesPerSecond = prefixesPerSecond;
+        this.saveInterval = saveInterval;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hibp-cache-warmer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start warming up the cache and saving the sketch in the background.
+     */
+    public synchronized void start() {
+
+        if (closed) {
+            return;
+        }
+        scheduler.execute(this::loadSketch);
+        scheduler.scheduleWithFixedDelay(this::tick, 0L, TICK_INTERVAL, TimeUnit.MILLISECONDS);
+        if (saveInterval > 0) {
+            scheduler.scheduleWithFixedDelay(this::saveSketch, saveInterval, saveInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop warming up and save the sketch.
+     */
+    @Override
+    public void close() {
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(TICK_INTERVAL, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        saveSketch();
+    }
+
+    private void tick() {
+
+        try {
+            warmUp(prefixesPerSecond);
+        } catch (RuntimeException e) {
+            // An exception would cancel the scheduled task.
+            log.error("Error while warming up the HIBP range cache.", e);
+        }
+    }
+
+    /**
+     * Add the sketch saved before the restart to the live sketch, and pick the prefixes to warm up.
+     */
+    void loadSketch() {
+
+        if (Files.exists(sketchPath)) {
+            try {
+                sketch.merge(PrefixPopularitySketch.load(sketchPath));
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("Ignored the HIBP prefix popularity saved at " + sketchPath, e);
+            }
+        }
+        sketchLoaded = true;
+        String[] topPrefixes = sketch.getTopPrefixes(prefixCount);
+        synchronized (this) {
+            prefixes = topPrefixes;
+            nextPrefix = 0;
+        }
+        if (topPrefixes.length > 0) {
+            log.info("Warming up the HIBP range cache with the " + topPrefixes.length + " most popular prefixes.");
+        }
+    }
+
+    /**
+     * Fetch the ranges of the next popular prefixes that are not cached yet.
+     *
+     * @param maxRequests maximum number of requests to send.
+     * @return number of requests sent.
+     */
+    synchronized int warmUp(int maxRequests) {
+
+        if (prefixes == null) {
+            return 0;
+        }
+        int requests = 0;
+        while (requests < maxRequests && nextPrefix < prefixes.length) {
+            String prefix = prefixes[nextPrefix++];
+            if (prefixRangeCache.isCached(prefix)) {
+                cachedCount.increment();
+                continue;
+            }
+            requests++;
+            try {
+                RangeResponse response = Utils.getHIBPRangeInBackground(apiKey, prefix, null, null);
+                prefixRangeCache.put(prefix, response.getRange(), response.getETag(), response.getLastModified());
+                fetchedCount.increment();
+            } catch (Exception e) {
+                failureCount.increment();
+                if (log.isDebugEnabled()) {
+                    log.debug("Failed to warm up the HIBP range of prefix " + prefix, e);
+                }
+            }
+        }
+        if (nextPrefix == prefixes.length) {
+            if (prefixes.length > 0 && log.isDebugEnabled()) {
+                log.debug("Warmed up the HIBP range cache. Fetched: " + fetchedCount.sum() + ", already cached: "
+                        + cachedCount.sum() + ", failures: " + failureCount.sum());
+            }
+            prefixes = new String[0];
+            nextPrefix = 0;
+        }
+        return requests;
+    }
+
+    /**
+     * Save the sketch, so that the popularity of the prefixes outlives a restart. Until the saved sketch is loaded,
+     * the live one only holds the lookups since the start and is not saved over it.
+     */
+    void saveSketch() {
+
+        if (!sketchLoaded) {
+            return;
+        }
+        try {
+            sketch.save(sketchPath);
+        } catch (IOException e) {
+            log.warn("Failed to save the HIBP prefix popularity to " + sketchPath, e);
+        }
+    }
+
+    /**
+     * Get the number of ranges fetched to warm up the cache.
+     *
+     * @return number of fetched ranges.
+     */
+    public long getFetchedCount() {
+
+        return fetchedCount.sum();
+    }
+
+    /**
+     * Get the number of popular prefixes that were already cached, in memory or on disk.
+     *
+     * @return number of prefixes not fetched.
+     */
+    public long getCachedCount() {
+
+        return cachedCount.sum();
+    }
+
+    public long getFailureCount() {
+
+        return failureCount.sum();
+    }
+}
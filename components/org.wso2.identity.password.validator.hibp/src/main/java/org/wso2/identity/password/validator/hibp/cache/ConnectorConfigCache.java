@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.identity.password.validator.hibp.cache;
+
+import org.wso2.carbon.identity.application.common.model.Property;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Size bounded, time limited cache of the HIBP connector configuration of each tenant.
+ *
+ * Reading the connector configuration from the identity governance service usually means a registry or database
+ * read, which would otherwise be paid on every password check. Entries are served until their time to live expires
+ * or they are invalidated, which bounds how long a configuration change made elsewhere, e.g. on another node, goes
+ * unnoticed.
+ *
+ * Every invalidation of a tenant starts a new generation of the tenant. A configuration read before an invalidation
+ * is put with the generation it was read in, and dropped if that generation has ended, so that a read racing with an
+ * update cannot put the old configuration back after the update invalidated it. Generations are kept in a fixed
+ * number of stripes, so that they take no memory per tenant: invalidating a tenant only drops the reads in flight for
+ * the few tenants sharing its stripe, which are then read again on their next lookup.
+ *
+ * The cached property arrays are shared by all callers and must not be modified.
+ */
+public class ConnectorConfigCache {
+
+    private static final int GENERATION_STRIPES = 64;
+
+    private final Map<String, CacheEntry> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final long timeToLiveMillis;
+    private final LongSupplier clock;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * Create a connector configuration cache.
+     *
+     * @param maxEntries       Maximum number of tenants to keep in the cache
+     * @param timeToLiveMillis Time in milliseconds a configuration is served after it was read
+     */
+    public ConnectorConfigCache(int maxEntries, long timeToLiveMillis) {
+
+        this(maxEntries, timeToLiveMillis, System::currentTimeMillis);
+    }
+
+    ConnectorConfigCache(int maxEntries, long timeToLiveMillis, LongSupplier clock) {
+
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Maximum number of cache entries must be positive.");
+        }
+        this.maxEntries = maxEntries;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Get the cached connector configuration of a tenant.
+     *
+     * @param tenantDomain tenant domain.
+     * @return cached connector properties, or null if the tenant is not cached or has expired.
+     */
+    public Property[] get(String tenantDomain) {
+
+        CacheEntry entry = entries.get(tenantDomain);
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        if (clock.getAsLong() - entry.readAt >= timeToLiveMillis) {
+            entries.remove(tenantDomain, entry);
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        return entry.connectorConfigs;
+    }
+
+    /**
+     * Add the connector configuration of a tenant to the cache, replacing any existing entry.
+     *
+     * @param tenantDomain     tenant domain.
+     * @param connectorConfigs connector properties.
+     */
+    public void put(String tenantDomain, Property[] connectorConfigs) {
+
+        long now = clock.getAsLong();
+        makeRoom(tenantDomain, now);
+        entries.put(tenantDomain, new CacheEntry(connectorConfigs, now));
+    }
+
+    /**
+     * Add the connector configuration of a tenant to the cache, unless the cache was invalidated since the
+     * configuration was read.
+     *
+     * @param tenantDomain     tenant domain.
+     * @param connectorConfigs connector properties.
+     * @param generation       generation of the tenant, as given by {@link #getGeneration(String)} before the
+     *                         configuration was read.
+     */
+    public void put(String tenantDomain, Property[] connectorConfigs, long generation) {
+
+        long now = clock.getAsLong();
+        makeRoom(tenantDomain, now);
+        // Invalidations of the tenant lock the same entry, so they cannot slip between the check and the put.
+        entries.compute(tenantDomain, (key, entry) -> getGeneration(tenantDomain) == generation
+                ? new CacheEntry(connectorConfigs, now) : entry);
+    }
+
+    /**
+     * Get the current generation of a tenant, which changes whenever the tenant is invalidated.
+     *
+     * @param tenantDomain tenant domain.
+     * @return generation of the tenant.
+     */
+    public long getGeneration(String tenantDomain) {
+
+        return generations.get(getStripe(tenantDomain));
+    }
+
+    /**
+     * Remove the connector configuration of a tenant, so that it is read again on the next lookup.
+     *
+     * @param tenantDomain tenant domain.
+     */
+    public void invalidate(String tenantDomain) {
+
+        entries.compute(tenantDomain, (key, entry) -> {
+            generations.incrementAndGet(getStripe(tenantDomain));
+            return null;
+        });
+    }
+
+    /**
+     * Remove the connector configurations of all tenants.
+     */
+    public void invalidateAll() {
+
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        entries.clear();
+    }
+
+    private static int getStripe(String tenantDomain) {
+
+        return (tenantDomain.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+
+    /**
+     * Make room for a tenant that is not cached yet by dropping expired entries first, and any entry if all are
+     * still fresh.
+     */
+    private void makeRoom(String tenantDomain, long now) {
+
+        if (entries.size() >= maxEntries && !entries.containsKey(tenantDomain)) {
+            entries.values().removeIf(entry -> now - entry.readAt >= timeToLiveMillis);
+            Iterator<String> tenantDomains = entries.keySet().iterator();
+            while (entries.size() >= maxEntries && tenantDomains.hasNext()) {
+                tenantDomains.next();
+                tenantDomains.remove();
+            }
+        }
+    }
+
+    /**
+     * Get the number of cached tenants, including expired ones that have not been removed yet.
+     *
+     * @return number of cached tenants.
+     */
+    public int size() {
+
+        return entries.size();
+    }
+
+    public long getHitCount() {
+
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+
+        return missCount.sum();
+    }
+
+    /**
+     * Connector configuration of a tenant and the time it was read.
+     */
+    private static final class CacheEntry {
+
+        private final Property[] connectorConfigs;
+        private final long readAt;
+
+        private CacheEntry(Property[] connectorConfigs, long readAt) {
+
+            this.connectorConfigs = connectorConfigs;
+            this.readAt = readAt;
+        }
+    }
+}
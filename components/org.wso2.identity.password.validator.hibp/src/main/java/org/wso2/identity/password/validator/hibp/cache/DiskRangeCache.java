@@ -0,0 +1,741 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.identity.password.validator.hibp.range.HashRange;
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+
+/**
+ * Size bounded disk tier of the {@link PrefixRangeCache}, so that a restarted node serves most lookups without
+ * calling the HIBP API again.
+ *
+ * Ranges are appended to a log split into segment files in a directory. Each record holds the packed range of a
+ * prefix along with the time it was fetched and the validators of its response:
+ *
+ * <pre>
+ * segment header  16 bytes   magic, version
+ * record header   24 bytes   CRC32C of the rest of the record but the fetch time, prefix, fetch time, hash count,
+ *                            validator lengths
+ * validators                 ETag and Last-Modified in US-ASCII
+ * hashes          n * 22     packed suffixes followed by the appearance counts
+ * </pre>
+ *
+ * All numbers are big endian. A later record of a prefix replaces the earlier ones, and records are never changed
+ * once written except for their fetch time, which is updated in place when the range is revalidated. Only the
+ * location of the latest record of each prefix is kept in memory; ranges are read back from disk when the memory tier
+ * misses. Once the segments take more than the maximum size, the oldest segment is deleted along with any ranges
+ * still in it.
+ *
+ * Records are written by a single background thread, so that lookups never wait for the disk. When the queue of
+ * pending writes is full, further writes are dropped; the ranges stay cached in memory. Writes are not synced to disk
+ * one by one. A record cut short by a crash fails its checksum when the segments are loaded, and the segment is
+ * truncated before it, so the cache only ever serves complete ranges.
+ */
+public class DiskRangeCache implements Closeable {
+
+    private static final Log log = LogFactory.getLog(DiskRangeCache.class);
+
+    /**
+     * "HIBPRNG1" in ASCII.
+     */
+    static final long MAGIC = 0x48494250524E4731L;
+
+    static final int VERSION = 2;
+
+    static final int SEGMENT_HEADER_SIZE = 16;
+
+    static final int RECORD_HEADER_SIZE = 24;
+
+    /**
+     * Offset of the fetch time in a record, which is left out of the checksum as it is updated in place.
+     */
+    static final int FETCH_TIME_OFFSET = 8;
+
+    /**
+     * Number of segments the maximum size is split into, so that an eviction drops an eighth of the cache.
+     */
+    static final int SEGMENT_COUNT = 8;
+
+    private static final long MIN_SEGMENT_SIZE = 64 << 10;
+
+    /**
+     * Upper bound of the hashes in a range, used to reject corrupted record headers. Real ranges hold about 2000.
+     */
+    private static final int MAX_RANGE_SIZE = 1 << 16;
+
+    private static final String SEGMENT_FILE_PREFIX = "ranges-";
+
+    private static final String SEGMENT_FILE_SUFFIX = ".seg";
+
+    /**
+     * Time in seconds to wait on close for the pending writes to complete.
+     */
+    private static final long CLOSE_TIMEOUT = 5;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long segmentSize;
+    private final Map<Integer, Location> index = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor writer;
+
+    // Guarded by this
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long totalBytes;
+    private long nextSegmentId;
+    private boolean closed;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder writeCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder droppedWriteCount = new LongAdder();
+
+    private DiskRangeCache(Path directory, long maxBytes, int writeQueueSize) {
+
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.segmentSize = Math.max(maxBytes / SEGMENT_COUNT, MIN_SEGMENT_SIZE);
+        this.writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(writeQueueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "hibp-disk-cache-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (runnable, executor) -> {
+                    if (!executor.isShutdown()) {
+                        droppedWriteCount.increment();
+                    }
+                });
+    }
+
+    /**
+     * Open the disk cache in a directory, loading the ranges written before. Segments that are not valid are
+     * deleted, and segments that end with an incomplete record are truncated.
+     *
+     * @param directory      directory of the segment files, created if it does not exist.
+     * @param maxBytes       maximum size of the segment files in bytes.
+     * @param writeQueueSize maximum number of writes waiting for the writer thread.
+     * @return disk cache.
+     * @throws IOException if the directory cannot be read.
+     */
+    public static DiskRangeCache open(Path directory, long maxBytes, int writeQueueSize) throws IOException {
+
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Maximum size of the disk cache must be positive.");
+        }
+        if (writeQueueSize <= 0) {
+            throw new IllegalArgumentException("Write queue size of the disk cache must be positive.");
+        }
+        Files.createDirectories(directory);
+        DiskRangeCache cache = new DiskRangeCache(directory, maxBytes, writeQueueSize);
+        try {
+            cache.load();
+        } catch (IOException | RuntimeException e) {
+            cache.close();
+            throw e;
+        }
+        return cache;
+    }
+
+    /**
+     * Get the stored range of a prefix.
+     *
+     * @param hashPrefix 5 character hash prefix.
+     * @return stored range, or null if the prefix is not stored or its record cannot be read.
+     */
+    Entry get(String hashPrefix) {
+
+        int prefix = HexUtils.decodePrefix(hashPrefix);
+        Location location = prefix < 0 ? null : index.get(prefix);
+        if (location == null) {
+            missCount.increment();
+            return null;
+        }
+        try {
+            ByteBuffer record = ByteBuffer.allocate(location.length);
+            read(location.segment.channel, record, location.position);
+            Entry entry = decode(record, prefix);
+            if (entry != null) {
+                hitCount.increment();
+                return entry;
+            }
+            log.warn("Discarded the corrupted range of prefix " + hashPrefix + " in the HIBP disk cache.");
+            index.remove(prefix, location);
+        } catch (IOException e) {
+            // The segment may have been evicted while it was read
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to read the range of prefix " + hashPrefix + " from the HIBP disk cache.", e);
+            }
+            failureCount.increment();
+        }
+        missCount.increment();
+        return null;
+    }
+
+    /**
+     * Store the range of a prefix in the background, replacing any range stored before. Writes dropped as the queue
+     * is full and failures to write are counted and otherwise ignored, as the range is still cached in memory.
+     *
+     * @param hashPrefix   5 character hash prefix.
+     * @param range        range of the prefix.
+     * @param etag         ETag of the response, or null.
+     * @param lastModified Last-Modified date of the response, or null.
+     * @param fetchedAt    time in milliseconds the range was fetched or last revalidated.
+     */
+    void put(String hashPrefix, HashRange range, String etag, String lastModified, long fetchedAt) {
+
+        int prefix = HexUtils.decodePrefix(hashPrefix);
+        if (prefix < 0) {
+            return;
+        }
+        writer.execute(() -> append(prefix, hashPrefix, range, etag, lastModified, fetchedAt));
+    }
+
+    /**
+     * Update the fetch time of a revalidated range in the background, without writing the range again. The time is
+     * only updated if the stored range is still the one fetched at the previous time, so that an older range left by
+     * a dropped write is not made fresh.
+     *
+     * @param hashPrefix        5 character hash prefix.
+     * @param previousFetchedAt time in milliseconds the range was fetched or last revalidated before.
+     * @param fetchedAt         time in milliseconds the range was revalidated.
+     */
+    void touch(String hashPrefix, long previousFetchedAt, long fetchedAt) {
+
+        int prefix = HexUtils.decodePrefix(hashPrefix);
+        if (prefix < 0) {
+            return;
+        }
+        writer.execute(() -> updateFetchTime(prefix, hashPrefix, previousFetchedAt, fetchedAt));
+    }
+
+    /**
+     * Wait for the writes queued so far to complete.
+     */
+    void flush() throws InterruptedException {
+
+        CountDownLatch done = new CountDownLatch(1);
+        writer.execute(done::countDown);
+        done.await(CLOSE_TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Get the number of prefixes stored.
+     *
+     * @return number of stored ranges.
+     */
+    public int size() {
+
+        return index.size();
+    }
+
+    /**
+     * Get the size of the segment files.
+     *
+     * @return size in bytes.
+     */
+    public synchronized long getSizeBytes() {
+
+        return totalBytes;
+    }
+
+    public long getHitCount() {
+
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+
+        return missCount.sum();
+    }
+
+    public long getWriteCount() {
+
+        return writeCount.sum();
+    }
+
+    public long getFailureCount() {
+
+        return failureCount.sum();
+    }
+
+    /**
+     * Get the number of segments deleted to keep the cache within its maximum size.
+     *
+     * @return number of evicted segments.
+     */
+    public long getEvictionCount() {
+
+        return evictionCount.sum();
+    }
+
+    /**
+     * Get the number of writes dropped as the queue of pending writes was full.
+     *
+     * @return number of dropped writes.
+     */
+    public long getDroppedWriteCount() {
+
+        return droppedWriteCount.sum();
+    }
+
+    /**
+     * Complete the pending writes, then sync the segments to disk and close them.
+     */
+    @Override
+    public void close() {
+
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS)) {
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            index.clear();
+            Segment last = segments.peekLast();
+            for (Segment segment : segments) {
+                try {
+                    if (segment == last) {
+                        segment.channel.force(false);
+                    }
+                    segment.channel.close();
+                } catch (IOException e) {
+                    log.warn("Error while closing the HIBP disk cache segment " + segment.path, e);
+                }
+            }
+            segments.clear();
+        }
+    }
+
+    private void append(int prefix, String hashPrefix, HashRange range, String etag, String lastModified,
+                        long fetchedAt) {
+
+        ByteBuffer record = encode(prefix, range, etag, lastModified, fetchedAt);
+        List<Segment> evicted;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                Segment segment = segments.peekLast();
+                if (segment == null || segment.size + record.remaining() > segmentSize) {
+                    segment = createSegment();
+                }
+                long position = segment.size;
+                int length = record.remaining();
+                write(segment.channel, record, position);
+                segment.size += length;
+                totalBytes += length;
+                index.put(prefix, new Location(segment, position, length, fetchedAt));
+                writeCount.increment();
+            } catch (IOException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Failed to write the range of prefix " + hashPrefix + " to the HIBP disk cache.", e);
+                }
+                failureCount.increment();
+                return;
+            }
+            evicted = pollEvicted();
+        }
+        delete(evicted);
+    }
+
+    private synchronized void updateFetchTime(int prefix, String hashPrefix, long previousFetchedAt,
+                                              long fetchedAt) {
+
+        Location location = index.get(prefix);
+        if (closed || location == null || location.fetchedAt != previousFetchedAt) {
+            return;
+        }
+        ByteBuffer time = ByteBuffer.allocate(Long.BYTES);
+        time.putLong(0, fetchedAt);
+        try {
+            write(location.segment.channel, time, location.position + FETCH_TIME_OFFSET);
+            index.replace(prefix, location, new Location(location.segment, location.position, location.length,
+                    fetchedAt));
+        } catch (IOException e) {
+            // The segment may have been evicted
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to update the range of prefix " + hashPrefix + " in the HIBP disk cache.", e);
+            }
+            failureCount.increment();
+        }
+    }
+
+    private synchronized void load() throws IOException {
+
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_FILE_PREFIX + "*" + SEGMENT_FILE_SUFFIX)) {
+            for (Path path : stream) {
+                if (getSegmentId(path) >= 0) {
+                    paths.add(path);
+                }
+            }
+        }
+        paths.sort((a, b) -> Long.compare(getSegmentId(a), getSegmentId(b)));
+
+        for (Path path : paths) {
+            nextSegmentId = getSegmentId(path) + 1;
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                Segment segment = loadSegment(path, channel);
+                if (segment == null) {
+                    log.warn("Deleted the HIBP disk cache segment " + path + " as it is not valid.");
+                    channel.close();
+                    Files.delete(path);
+                    continue;
+                }
+                segments.addLast(segment);
+                totalBytes += segment.size;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+        delete(pollEvicted());
+    }
+
+    /**
+     * Read the records of a segment into the index, truncating the segment at the first record that is not valid.
+     *
+     * @return the segment, or null if its header is not valid.
+     */
+    private Segment loadSegment(Path path, FileChannel channel) throws IOException {
+
+        long fileSize = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        if (fileSize < SEGMENT_HEADER_SIZE || read(channel, header, 0) < SEGMENT_HEADER_SIZE
+                || header.getLong(0) != MAGIC || header.getInt(Long.BYTES) != VERSION) {
+            return null;
+        }
+
+        Segment segment = new Segment(path, channel);
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        long position = SEGMENT_HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= fileSize) {
+            recordHeader.clear();
+            read(channel, recordHeader, position);
+            int length = getRecordLength(recordHeader);
+            if (length < 0 || position + length > fileSize) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.allocate(length);
+            read(channel, record, position);
+            if (!isValid(record)) {
+                break;
+            }
+            index.put(record.getInt(Integer.BYTES), new Location(segment, position, length,
+                    record.getLong(FETCH_TIME_OFFSET)));
+            position += length;
+        }
+        if (position < fileSize) {
+            log.warn("Truncated the HIBP disk cache segment " + path + " after an incomplete record.");
+            channel.truncate(position);
+        }
+        segment.size = position;
+        return segment;
+    }
+
+    private Segment createSegment() throws IOException {
+
+        Path path = directory.resolve(String.format("%s%08d%s", SEGMENT_FILE_PREFIX, nextSegmentId++,
+                SEGMENT_FILE_SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            header.putLong(0, MAGIC);
+            header.putInt(Long.BYTES, VERSION);
+            write(channel, header, 0);
+        } catch (IOException e) {
+            channel.close();
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        Segment segment = new Segment(path, channel);
+        segment.size = SEGMENT_HEADER_SIZE;
+        segments.addLast(segment);
+        totalBytes += SEGMENT_HEADER_SIZE;
+        return segment;
+    }
+
+    /**
+     * Take the oldest segments off the log until the cache is within its maximum size. The segment being written to
+     * is kept.
+     *
+     * @return segments to delete.
+     */
+    private List<Segment> pollEvicted() {
+
+        List<Segment> evicted = new ArrayList<>();
+        while (totalBytes > maxBytes && segments.size() > 1) {
+            Segment segment = segments.pollFirst();
+            totalBytes -= segment.size;
+            evictionCount.increment();
+            evicted.add(segment);
+        }
+        return evicted;
+    }
+
+    /**
+     * Delete evicted segments along with the ranges still in them. Only the writer thread changes the log, so this
+     * does not hold the lock while the index is scanned and the files are deleted.
+     */
+    private void delete(List<Segment> evicted) {
+
+        for (Segment segment : evicted) {
+            index.values().removeIf(location -> location.segment == segment);
+            try {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                log.warn("Error while deleting the HIBP disk cache segment " + segment.path, e);
+            }
+        }
+    }
+
+    private static ByteBuffer encode(int prefix, HashRange range, String etag, String lastModified, long fetchedAt) {
+
+        byte[] etagBytes = toValidatorBytes(etag);
+        byte[] lastModifiedBytes = toValidatorBytes(lastModified);
+        int size = range.size();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + etagBytes.length + lastModifiedBytes.length
+                + size * (HexUtils.SUFFIX_BYTES + Integer.BYTES));
+        record.position(Integer.BYTES);
+        record.putInt(prefix);
+        record.putLong(fetchedAt);
+        record.putInt(size);
+        record.putShort((short) etagBytes.length);
+        record.putShort((short) lastModifiedBytes.length);
+        record.put(etagBytes);
+        record.put(lastModifiedBytes);
+        byte[] suffix = new byte[HexUtils.SUFFIX_BYTES];
+        for (int i = 0; i < size; i++) {
+            range.getSuffix(i, suffix, 0);
+            record.put(suffix);
+        }
+        for (int i = 0; i < size; i++) {
+            record.putInt(range.getCountAt(i));
+        }
+        record.putInt(0, checksum(record));
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Decode a record read back from a segment.
+     *
+     * @return the stored range, or null if the record is not valid.
+     */
+    private static Entry decode(ByteBuffer record, int prefix) {
+
+        if (!isValid(record) || record.getInt(Integer.BYTES) != prefix) {
+            return null;
+        }
+        record.position(RECORD_HEADER_SIZE);
+        long fetchedAt = record.getLong(FETCH_TIME_OFFSET);
+        int size = record.getInt(2 * Integer.BYTES + Long.BYTES);
+        String etag = readString(record, record.getShort(3 * Integer.BYTES + Long.BYTES) & 0xFFFF);
+        String lastModified = readString(record, record.getShort(3 * Integer.BYTES + Long.BYTES + Short.BYTES)
+                & 0xFFFF);
+        int countsPosition = record.position() + size * HexUtils.SUFFIX_BYTES;
+        HashRange.Builder builder = new HashRange.Builder(size);
+        byte[] suffixes = record.array();
+        for (int i = 0; i < size; i++) {
+            builder.add(suffixes, record.position() + i * HexUtils.SUFFIX_BYTES,
+                    record.getInt(countsPosition + i * Integer.BYTES));
+        }
+        return new Entry(builder.build(), etag, lastModified, fetchedAt);
+    }
+
+    /**
+     * Get the length of a record from its header.
+     *
+     * @return length in bytes, or -1 if the header is not valid.
+     */
+    private static int getRecordLength(ByteBuffer header) {
+
+        int prefix = header.getInt(Integer.BYTES);
+        int size = header.getInt(2 * Integer.BYTES + Long.BYTES);
+        if (prefix < 0 || prefix >= HexUtils.PREFIX_COUNT || size < 0 || size > MAX_RANGE_SIZE) {
+            return -1;
+        }
+        return RECORD_HEADER_SIZE + (header.getShort(3 * Integer.BYTES + Long.BYTES) & 0xFFFF)
+                + (header.getShort(3 * Integer.BYTES + Long.BYTES + Short.BYTES) & 0xFFFF)
+                + size * (HexUtils.SUFFIX_BYTES + Integer.BYTES);
+    }
+
+    private static boolean isValid(ByteBuffer record) {
+
+        return record.limit() >= RECORD_HEADER_SIZE && getRecordLength(record) == record.limit()
+                && record.getInt(0) == checksum(record);
+    }
+
+    /**
+     * Compute the CRC32C of a record, excluding the checksum itself and the fetch time.
+     */
+    private static int checksum(ByteBuffer record) {
+
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), Integer.BYTES, FETCH_TIME_OFFSET - Integer.BYTES);
+        int rest = FETCH_TIME_OFFSET + Long.BYTES;
+        crc.update(record.array(), rest, record.limit() - rest);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Encode a validator of a response. Validators that do not fit in a record are left out, which only costs a
+     * full request when the range is refreshed.
+     */
+    private static byte[] toValidatorBytes(String value) {
+
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.US_ASCII);
+        return bytes.length > 0xFFFF ? new byte[0] : bytes;
+    }
+
+    private static String readString(ByteBuffer record, int length) {
+
+        if (length == 0) {
+            return null;
+        }
+        String value = new String(record.array(), record.position(), length, StandardCharsets.US_ASCII);
+        record.position(record.position() + length);
+        return value;
+    }
+
+    private static long getSegmentId(Path path) {
+
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_FILE_PREFIX.length(),
+                    name.length() - SEGMENT_FILE_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private static int read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        buffer.flip();
+        return total;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+    }
+
+    /**
+     * Range read back from the disk cache, along with the validators of its response and the time it was fetched.
+     */
+    static final class Entry {
+
+        final HashRange range;
+        final String etag;
+        final String lastModified;
+        final long fetchedAt;
+
+        private Entry(HashRange range, String etag, String lastModified, long fetchedAt) {
+
+            this.range = range;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    /**
+     * Location of the latest record of a prefix.
+     */
+    private static final class Location {
+
+        private final Segment segment;
+        private final long position;
+        private final int length;
+        private final long fetchedAt;
+
+        private Location(Segment segment, long position, int length, long fetchedAt) {
+
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    /**
+     * Segment file of the log. Only the last segment is written to.
+     */
+    private static final class Segment {
+
+        private final Path path;
+        private final FileChannel channel;
+        private long size;
+
+        private Segment(Path path, FileChannel channel) {
+
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+}
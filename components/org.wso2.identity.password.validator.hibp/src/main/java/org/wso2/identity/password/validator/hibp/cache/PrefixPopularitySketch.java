@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.cache;
+
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Approximate lookup counts of the 2^20 range prefixes, used to warm up the range cache with the most popular
+ * prefixes when the server starts.
+ *
+ * The counts are kept in a count-min sketch: {@link #DEPTH} rows of counters, each indexed by a different hash of
+ * the prefix. A lookup increments one counter per row, and the estimated count of a prefix is the smallest of its
+ * counters, which is never below its actual count. As the prefixes can be enumerated, the most popular ones are found
+ * by estimating every prefix. Counters are updated without locks.
+ *
+ * Once as many lookups as {@link #SAMPLE_FACTOR} times the width are recorded, all counters are halved, so that the
+ * sketch follows changes in popularity and its counters do not overflow.
+ *
+ * The sketch can be saved to a file and loaded again:
+ *
+ * <pre>
+ * header    32 bytes          magic, version, width, depth, lookups since the counters were halved, checksum
+ * counters  depth * width * 4
+ * </pre>
+ *
+ * All numbers are big endian. The checksum is the CRC32C of the counters. The file is written next to its target and
+ * moved over it, so a crash leaves either the previous or the new file.
+ */
+public class PrefixPopularitySketch {
+
+    static final int DEPTH = 4;
+
+    /**
+     * Default number of counters per row, a sixteenth of the number of prefixes.
+     */
+    public static final int DEFAULT_WIDTH = 1 << 16;
+
+    static final int SAMPLE_FACTOR = 10;
+
+    /**
+     * "HIBPCMS1" in ASCII.
+     */
+    static final long MAGIC = 0x48494250434D5331L;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 32;
+
+    private static final int[] SEEDS = {0x9E3779B9, 0x7F4A7C15, 0x2545F491, 0x27D4EB2F};
+
+    private final int width;
+    private final int mask;
+    private final AtomicIntegerArray counters;
+    private final AtomicLong additions = new AtomicLong();
+    private final AtomicBoolean halving = new AtomicBoolean();
+
+    /**
+     * Create an empty sketch of {@link #DEFAULT_WIDTH} counters per row, which takes 1 MB.
+     */
+    public PrefixPopularitySketch() {
+
+        this(DEFAULT_WIDTH);
+    }
+
+    /**
+     * Create an empty sketch.
+     *
+     * @param width number of counters per row, a power of two.
+     */
+    public PrefixPopularitySketch(int width) {
+
+        if (width <= 0 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Width of the sketch must be a power of two.");
+        }
+        this.width = width;
+        this.mask = width - 1;
+        this.counters = new AtomicIntegerArray(DEPTH * width);
+    }
+
+    /**
+     * Record a lookup of a prefix.
+     *
+     * @param hashPrefix 5 character hash prefix.
+     */
+    public void record(String hashPrefix) {
+
+        int prefix = HexUtils.decodePrefix(hashPrefix);
+        if (prefix < 0) {
+            return;
+        }
+        for (int row = 0; row < DEPTH; row++) {
+            counters.incrementAndGet(indexOf(prefix, row));
+        }
+        if (additions.incrementAndGet() >= (long) SAMPLE_FACTOR * width && halving.compareAndSet(false, true)) {
+            try {
+                halve();
+            } finally {
+                halving.set(false);
+            }
+        }
+    }
+
+    /**
+     * Estimate the number of lookups of a prefix.
+     *
+     * @param prefix prefix between 0 and {@link HexUtils#PREFIX_COUNT} - 1.
+     * @return estimated count, never below the count recorded since the counters were last halved.
+     */
+    public int estimate(int prefix) {
+
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.get(indexOf(prefix, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Get the most popular prefixes.
+     *
+     * @param count maximum number of prefixes to return.
+     * @return prefixes that were looked up, most popular first.
+     */
+    public String[] getTopPrefixes(int count) {
+
+        if (count <= 0) {
+            return new String[0];
+        }
+        // Estimates and prefixes are packed into longs, ordered by estimate and then by prefix
+        PriorityQueue<Long> top = new PriorityQueue<>(count + 1);
+        for (int prefix = 0; prefix < HexUtils.PREFIX_COUNT; prefix++) {
+            int estimate = estimate(prefix);
+            if (estimate == 0) {
+                continue;
+            }
+            long candidate = ((long) estimate << 32) | (HexUtils.PREFIX_COUNT - 1 - prefix);
+            if (top.size() < count) {
+                top.add(candidate);
+            } else if (candidate > top.peek()) {
+                top.poll();
+                top.add(candidate);
+            }
+        }
+        String[] prefixes = new String[top.size()];
+        for (int i = prefixes.length - 1; i >= 0; i--) {
+            prefixes[i] = HexUtils.encodePrefix(HexUtils.PREFIX_COUNT - 1 - (int) (top.poll() & 0xFFFFFFFFL));
+        }
+        return prefixes;
+    }
+
+    /**
+     * Add the counts of another sketch of the same width, e.g. the one saved before a restart.
+     *
+     * @param other sketch to add.
+     */
+    public void merge(PrefixPopularitySketch other) {
+
+        if (other.width != width) {
+            throw new IllegalArgumentException("Only sketches of the same width can be merged.");
+        }
+        for (int i = 0; i < counters.length(); i++) {
+            int count = other.counters.get(i);
+            if (count != 0) {
+                counters.getAndUpdate(i, value -> (int) Math.min((long) value + count, Integer.MAX_VALUE));
+            }
+        }
+        additions.addAndGet(other.additions.get());
+    }
+
+    public int getWidth() {
+
+        return width;
+    }
+
+    /**
+     * Save the sketch to a file, replacing the file atomically.
+     *
+     * @param path path of the file.
+     * @throws IOException if the file cannot be written.
+     */
+    public void save(Path path) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + counters.length() * Integer.BYTES);
+        buffer.position(HEADER_SIZE);
+        for (int i = 0; i < counters.length(); i++) {
+            buffer.putInt(counters.get(i));
+        }
+        buffer.putLong(0, MAGIC);
+        buffer.putInt(8, VERSION);
+        buffer.putInt(12, width);
+        buffer.putInt(16, DEPTH);
+        buffer.putInt(20, (int) Math.min(additions.get(), Integer.MAX_VALUE));
+        buffer.putLong(24, checksum(buffer));
+        buffer.flip();
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load a sketch saved with {@link #save(Path)}.
+     *
+     * @param path path of the file.
+     * @return loaded sketch.
+     * @throws IOException if the file cannot be read or is not a valid sketch.
+     */
+    public static PrefixPopularitySketch load(Path path) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.limit() < HEADER_SIZE || buffer.getLong(0) != MAGIC || buffer.getInt(8) != VERSION
+                || buffer.getInt(16) != DEPTH) {
+            throw new IOException("Unsupported prefix popularity file format.");
+        }
+        int width = buffer.getInt(12);
+        if (width <= 0 || Integer.bitCount(width) != 1
+                || buffer.limit() != HEADER_SIZE + (long) DEPTH * width * Integer.BYTES) {
+            throw new IOException("Prefix popularity file is truncated.");
+        }
+        if (buffer.getLong(24) != checksum(buffer)) {
+            throw new IOException("Prefix popularity file is corrupted.");
+        }
+        PrefixPopularitySketch sketch = new PrefixPopularitySketch(width);
+        buffer.position(HEADER_SIZE);
+        for (int i = 0; i < sketch.counters.length(); i++) {
+            sketch.counters.set(i, buffer.getInt());
+        }
+        sketch.additions.set(buffer.getInt(20));
+        return sketch;
+    }
+
+    /**
+     * Halve all counters. Lookups recorded concurrently may be halved or not.
+     */
+    private void halve() {
+
+        for (int i = 0; i < counters.length(); i++) {
+            counters.getAndUpdate(i, value -> value >>> 1);
+        }
+        additions.updateAndGet(value -> value / 2);
+    }
+
+    /**
+     * Get the counter of a prefix in a row, hashing the prefix with the seed of the row.
+     */
+    private int indexOf(int prefix, int row) {
+
+        int hash = prefix ^ SEEDS[row];
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return row * width + (hash & mask);
+    }
+
+    private static long checksum(ByteBuffer buffer) {
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), HEADER_SIZE, buffer.limit() - HEADER_SIZE);
+        return crc.getValue();
+    }
+}
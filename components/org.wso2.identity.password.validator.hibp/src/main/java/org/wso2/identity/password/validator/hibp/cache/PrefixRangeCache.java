@@ -0,0 +1,550 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.identity.password.validator.hibp.range.HashRange;
+import org.wso2.identity.password.validator.hibp.range.RangeResponse;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Size bounded, time limited cache of HIBP range responses keyed by the 5 character hash prefix.
+ *
+ * The key is the k-anonymity prefix that is anyway sent to the HIBP API, and the value is the public range response
+ * for that prefix, so the cache does not hold any secret. The cache is split into independently locked segments,
+ * each of which evicts its least recently used entry once full. Hit, miss, eviction and expiration counters are
+ * kept in {@link LongAdder}s so that they do not add contention on the lookup path.
+ *
+ * Each entry also keeps the ETag and Last-Modified validators of its response, so that a {@link RangeRefresher} can
+ * revalidate it in place with a conditional request.
+ *
+ * A {@link DiskRangeCache} can be attached as a second tier. Every range put in the cache, or revalidated, is then
+ * written to disk as well, and prefixes that are not in memory are looked up on disk before they count as a miss.
+ *
+ * Expired entries are kept for a grace period. Within the stale-while-revalidate window, a lookup that brings a
+ * {@link Revalidator} is served the expired range right away, while a single background request revalidates the
+ * entry. Within the stale-if-error window, {@link #getStale(String)} serves the expired range when the HIBP API
+ * cannot be reached.
+ */
+public class PrefixRangeCache {
+
+    private static final Log log = LogFactory.getLog(PrefixRangeCache.class);
+
+    private static final int DEFAULT_SEGMENT_COUNT = 16;
+
+    private final Segment[] segments;
+    private final long timeToLiveMillis;
+    private final long staleWhileRevalidateMillis;
+    private final long staleIfErrorMillis;
+    private final long retentionMillis;
+    private final LongSupplier clock;
+    private volatile DiskRangeCache diskCache;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+    private final LongAdder staleHitCount = new LongAdder();
+    private final LongAdder staleIfErrorCount = new LongAdder();
+    private final LongAdder revalidationFailureCount = new LongAdder();
+
+    /**
+     * Create a prefix range cache.
+     *
+     * @param maxEntries       Maximum number of prefixes to keep in the cache
+     * @param timeToLiveMillis Time in milliseconds an entry is served after it was fetched
+     */
+    public PrefixRangeCache(int maxEntries, long timeToLiveMillis) {
+
+        this(maxEntries, timeToLiveMillis, 0, 0);
+    }
+
+    /**
+     * Create a prefix range cache that serves expired ranges for a grace period.
+     *
+     * @param maxEntries                 Maximum number of prefixes to keep in the cache
+     * @param timeToLiveMillis           Time in milliseconds an entry is served after it was fetched
+     * @param staleWhileRevalidateMillis Time in milliseconds an expired entry is served while it is revalidated
+     * @param staleIfErrorMillis         Time in milliseconds an expired entry is served when the HIBP API fails
+     */
+    public PrefixRangeCache(int maxEntries, long timeToLiveMillis, long staleWhileRevalidateMillis,
+                            long staleIfErrorMillis) {
+
+        this(maxEntries, timeToLiveMillis, staleWhileRevalidateMillis, staleIfErrorMillis,
+                System::currentTimeMillis);
+    }
+
+    PrefixRangeCache(int maxEntries, long timeToLiveMillis, LongSupplier clock) {
+
+        this(maxEntries, timeToLiveMillis, 0, 0, clock);
+    }
+
+    PrefixRangeCache(int maxEntries, long timeToLiveMillis, long staleWhileRevalidateMillis, long staleIfErrorMillis,
+                     LongSupplier clock) {
+
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Maximum number of cache entries must be positive.");
+        }
+        if (staleWhileRevalidateMillis < 0 || staleIfErrorMillis < 0) {
+            throw new IllegalArgumentException("Stale grace periods must not be negative.");
+        }
+        int segmentCount = Math.min(DEFAULT_SEGMENT_COUNT, Integer.highestOneBit(maxEntries));
+        int segmentCapacity = (maxEntries + segmentCount - 1) / segmentCount;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.staleWhileRevalidateMillis = staleWhileRevalidateMillis;
+        this.staleIfErrorMillis = staleIfErrorMillis;
+        this.retentionMillis = timeToLiveMillis + Math.max(staleWhileRevalidateMillis, staleIfErrorMillis);
+        this.clock = clock;
+    }
+
+    /**
+     * Get the cached range of the given prefix. Expired ranges are not served.
+     *
+     * @param hashPrefix 5 character hash prefix.
+     * @return cached range, or null if the prefix is not cached or has expired.
+     */
+    public HashRange get(String hashPrefix) {
+
+        return get(hashPrefix, null);
+    }
+
+    /**
+     * Get the cached range of the given prefix. A range that expired within the stale-while-revalidate window is
+     * served as well, and the revalidator is called to revalidate it in the background, unless a revalidation of
+     * the entry is already in flight.
+     *
+     * @param hashPrefix  5 character hash prefix.
+     * @param revalidator revalidator of expired ranges, or null to serve current ranges only.
+     * @return cached range, or null if the prefix is not cached or is too old to be served.
+     */
+    public HashRange get(String hashPrefix, Revalidator revalidator) {
+
+        AtomicReference<CacheEntry> slot = getSlot(hashPrefix);
+        if (slot == null) {
+            missCount.increment();
+            return null;
+        }
+        CacheEntry entry = slot.get();
+        long age = getAge(entry);
+        if (age < timeToLiveMillis) {
+            hitCount.increment();
+            return entry.range;
+        }
+        if (revalidator != null && age < timeToLiveMillis + staleWhileRevalidateMillis) {
+            hitCount.increment();
+            staleHitCount.increment();
+            revalidateInBackground(slot, entry, revalidator);
+            return entry.range;
+        }
+        missCount.increment();
+        return null;
+    }
+
+    /**
+     * Get the cached range of the given prefix after it could not be fetched from the HIBP API. A range that expired
+     * within the stale-if-error window is served as well. The lookup is not counted as a hit or a miss, as the
+     * preceding {@link #get(String)} already was.
+     *
+     * @param hashPrefix 5 character hash prefix.
+     * @return cached range, or null if the prefix is not cached or is too old to be served.
+     */
+    public HashRange getStale(String hashPrefix) {
+
+        AtomicReference<CacheEntry> slot = getSlot(hashPrefix);
+        if (slot == null) {
+            return null;
+        }
+        CacheEntry entry = slot.get();
+        long age = getAge(entry);
+        if (age < timeToLiveMillis) {
+            // Put by a concurrent lookup
+            return entry.range;
+        }
+        if (age < timeToLiveMillis + staleIfErrorMillis) {
+            staleIfErrorCount.increment();
+            return entry.range;
+        }
+        return null;
+    }
+
+    /**
+     * Check whether the range of a prefix is cached, loading it from the disk tier if it is only stored there. Unlike
+     * {@link #get(String)}, the check is not counted as a hit or a miss.
+     *
+     * @param hashPrefix 5 character hash prefix.
+     * @return true if the range is cached and has not expired.
+     */
+    boolean isCached(String hashPrefix) {
+
+        AtomicReference<CacheEntry> slot = getSlot(hashPrefix);
+        return slot != null && getAge(slot.get()) < timeToLiveMillis;
+    }
+
+    /**
+     * Get the holder of the entry of a prefix, loading it from the disk tier if it is not in memory. Entries that
+     * are past every grace period are removed.
+     */
+    private AtomicReference<CacheEntry> getSlot(String hashPrefix) {
+
+        Segment segment = segmentFor(hashPrefix);
+        synchronized (segment) {
+            AtomicReference<CacheEntry> slot = segment.get(hashPrefix);
+            if (slot != null) {
+                if (getAge(slot.get()) >= retentionMillis) {
+                    // The disk tier has no newer range, as every range put in memory is written to disk as well
+                    segment.remove(hashPrefix);
+                    expirationCount.increment();
+                    return null;
+                }
+                return slot;
+            }
+        }
+        return getFromDisk(segment, hashPrefix);
+    }
+
+    /**
+     * Look up a prefix in the disk tier, if attached, and keep its range in memory again if it is not past every
+     * grace period. The disk is read without holding the segment lock.
+     */
+    private AtomicReference<CacheEntry> getFromDisk(Segment segment, String hashPrefix) {
+
+        DiskRangeCache disk = diskCache;
+        if (disk == null) {
+            return null;
+        }
+        DiskRangeCache.Entry stored = disk.get(hashPrefix);
+        if (stored == null || clock.getAsLong() - stored.fetchedAt >= retentionMillis) {
+            return null;
+        }
+        CacheEntry entry = new CacheEntry(hashPrefix, stored.range, stored.etag, stored.lastModified,
+                stored.fetchedAt);
+        synchronized (segment) {
+            // Keep a range put while the disk was read
+            AtomicReference<CacheEntry> slot = segment.get(hashPrefix);
+            if (slot == null) {
+                slot = new AtomicReference<>(entry);
+                segment.put(hashPrefix, slot);
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * Revalidate an expired entry with a conditional request, unless a revalidation of the entry is already in
+     * flight. The entry keeps being served if the revalidation fails, and the next lookup tries again.
+     */
+    private void revalidateInBackground(AtomicReference<CacheEntry> slot, CacheEntry entry,
+                                        Revalidator revalidator) {
+
+        if (!entry.revalidating.compareAndSet(false, true)) {
+            return;
+        }
+        CompletableFuture<RangeResponse> revalidation;
+        try {
+            revalidation = revalidator.revalidate(entry.prefix, entry.etag, entry.lastModified);
+        } catch (RuntimeException e) {
+            revalidation = CompletableFuture.failedFuture(e);
+        }
+        revalidation.whenComplete((response, e) -> {
+            if (e != null) {
+                revalidationFailureCount.increment();
+                entry.revalidating.set(false);
+                if (log.isDebugEnabled()) {
+                    log.debug("Failed to revalidate the expired HIBP range of prefix " + entry.prefix, e);
+                }
+            } else if (response.isNotModified()) {
+                revalidate(slot, entry);
+            } else {
+                replace(slot, entry, response.getRange(), response.getETag(), response.getLastModified());
+            }
+        });
+    }
+
+    /**
+     * Add the range of the given prefix to the cache, replacing any existing entry.
+     *
+     * @param hashPrefix 5 character hash prefix.
+     * @param range      range of the prefix.
+     */
+    public void put(String hashPrefix, HashRange range) {
+
+        put(hashPrefix, range, null, null);
+    }
+
+    /**
+     * Add the range of the given prefix to the cache along with the validators of its response, replacing any
+     * existing entry.
+     *
+     * @param hashPrefix   5 character hash prefix.
+     * @param range        range of the prefix.
+     * @param etag         ETag of the response, or null.
+     * @param lastModified Last-Modified date of the response, or null.
+     */
+    public void put(String hashPrefix, HashRange range, String etag, String lastModified) {
+
+        CacheEntry entry = new CacheEntry(hashPrefix, range, etag, lastModified, clock.getAsLong());
+        Segment segment = segmentFor(hashPrefix);
+        synchronized (segment) {
+            segment.put(hashPrefix, new AtomicReference<>(entry));
+        }
+        writeToDisk(entry);
+    }
+
+    /**
+     * Attach a disk tier to the cache, or detach it. The disk cache is not closed when it is detached.
+     *
+     * @param diskCache disk cache, or null to keep ranges in memory only.
+     */
+    public void setDiskCache(DiskRangeCache diskCache) {
+
+        this.diskCache = diskCache;
+    }
+
+    /**
+     * Get the disk tier of the cache.
+     *
+     * @return disk cache, or null if ranges are kept in memory only.
+     */
+    public DiskRangeCache getDiskCache() {
+
+        return diskCache;
+    }
+
+    /**
+     * Remove all entries from the cache. Counters are not reset.
+     */
+    public void clear() {
+
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Get the number of entries currently held in the cache, including expired entries not yet removed.
+     *
+     * @return number of cached prefixes.
+     */
+    public int size() {
+
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+
+        return evictionCount.sum();
+    }
+
+    public long getExpirationCount() {
+
+        return expirationCount.sum();
+    }
+
+    public long getStaleHitCount() {
+
+        return staleHitCount.sum();
+    }
+
+    public long getStaleIfErrorCount() {
+
+        return staleIfErrorCount.sum();
+    }
+
+    public long getRevalidationFailureCount() {
+
+        return revalidationFailureCount.sum();
+    }
+
+    /**
+     * Get a snapshot of the entries of the cache. Unlike {@link #get(String)}, taking the snapshot neither changes
+     * the eviction order nor the counters.
+     *
+     * @return holders of the current entries.
+     */
+    List<AtomicReference<CacheEntry>> getEntries() {
+
+        List<AtomicReference<CacheEntry>> entries = new ArrayList<>();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                entries.addAll(segment.values());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Get the time in milliseconds since the range of an entry was fetched or last revalidated.
+     */
+    long getAge(CacheEntry entry) {
+
+        return clock.getAsLong() - entry.fetchedAt;
+    }
+
+    /**
+     * Mark an entry as current after its range was revalidated, unless the entry was replaced in the meantime.
+     *
+     * @return true if the entry was updated.
+     */
+    boolean revalidate(AtomicReference<CacheEntry> slot, CacheEntry entry) {
+
+        CacheEntry revalidated = new CacheEntry(entry.prefix, entry.range, entry.etag, entry.lastModified,
+                clock.getAsLong());
+        if (!slot.compareAndSet(entry, revalidated)) {
+            return false;
+        }
+        // The range is unchanged, so only its fetch time is updated on disk
+        DiskRangeCache disk = diskCache;
+        if (disk != null) {
+            disk.touch(entry.prefix, entry.fetchedAt, revalidated.fetchedAt);
+        }
+        return true;
+    }
+
+    /**
+     * Replace the range of an entry after it has changed, unless the entry was replaced in the meantime.
+     *
+     * @return true if the entry was updated.
+     */
+    boolean replace(AtomicReference<CacheEntry> slot, CacheEntry entry, HashRange range, String etag,
+                    String lastModified) {
+
+        CacheEntry replaced = new CacheEntry(entry.prefix, range, etag, lastModified, clock.getAsLong());
+        if (!slot.compareAndSet(entry, replaced)) {
+            return false;
+        }
+        writeToDisk(replaced);
+        return true;
+    }
+
+    private void writeToDisk(CacheEntry entry) {
+
+        DiskRangeCache disk = diskCache;
+        if (disk != null) {
+            disk.put(entry.prefix, entry.range, entry.etag, entry.lastModified, entry.fetchedAt);
+        }
+    }
+
+    private Segment segmentFor(String hashPrefix) {
+
+        int hash = hashPrefix.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[hash & (segments.length - 1)];
+    }
+
+    /**
+     * Revalidates the range of an expired entry with a conditional request to the HIBP API.
+     */
+    @FunctionalInterface
+    public interface Revalidator {
+
+        /**
+         * Request the range of a prefix, if it has changed since the response with the given validators.
+         *
+         * @param hashPrefix   5 character hash prefix.
+         * @param etag         ETag of the cached response, or null.
+         * @param lastModified Last-Modified date of the cached response, or null.
+         * @return future of the response, which is not modified if the cached range is still current.
+         */
+        CompletableFuture<RangeResponse> revalidate(String hashPrefix, String etag, String lastModified);
+    }
+
+    /**
+     * Cached range along with the validators of its response and the time it was fetched or last revalidated.
+     * Entries are immutable, apart from the flag of a background revalidation in flight; the segments hold them in
+     * {@link AtomicReference}s so that a refresh can swap an entry without a map update, which would count as an
+     * access.
+     */
+    static final class CacheEntry {
+
+        final String prefix;
+        final HashRange range;
+        final String etag;
+        final String lastModified;
+        final long fetchedAt;
+        final AtomicBoolean revalidating = new AtomicBoolean();
+
+        private CacheEntry(String prefix, HashRange range, String etag, String lastModified, long fetchedAt) {
+
+            this.prefix = prefix;
+            this.range = range;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    /**
+     * Access ordered map that drops its least recently used entry once the capacity is exceeded.
+     * All access is guarded by synchronizing on the segment itself.
+     */
+    private final class Segment extends LinkedHashMap<String, AtomicReference<CacheEntry>> {
+
+        private static final long serialVersionUID = 2404398465710945132L;
+
+        private final int capacity;
+
+        private Segment(int capacity) {
+
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, AtomicReference<CacheEntry>> eldest) {
+
+            if (size() > capacity) {
+                evictionCount.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.identity.password.validator.hibp.range.RangeResponse;
+import org.wso2.identity.password.validator.hibp.util.Utils;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the ranges of a {@link PrefixRangeCache} fresh in the background.
+ *
+ * The refresher walks the cached prefixes at a fixed maximum rate and revalidates each range older than the minimum
+ * age with a conditional request built from the ETag and Last-Modified validators of its response. Ranges that have
+ * not changed only cost a "304 Not Modified" response and have their age reset, while changed ranges are replaced.
+ * Ranges that are revalidated in time do not expire, so frequently used prefixes are never fetched on the lookup path.
+ * Refresh requests bypass the circuit breaker: a rate limited refresh only leaves the range to expire, and does not
+ * reject password checks.
+ */
+public class RangeRefresher implements Closeable {
+
+    private static final Log log = LogFactory.getLog(RangeRefresher.class);
+
+    private static final long TICK_INTERVAL = 1000L;
+
+    private final PrefixRangeCache prefixRangeCache;
+    private final String apiKey;
+    private final int prefixesPerSecond;
+    private final long minimumAge;
+    private final ScheduledExecutorService scheduler;
+    private Iterator<AtomicReference<PrefixRangeCache.CacheEntry>> cursor;
+
+    private final LongAdder notModifiedCount = new LongAdder();
+    private final LongAdder updatedCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+
+    /**
+     * Create a range refresher. Refreshing starts with {@link #start()}.
+     *
+     * @param prefixRangeCache  cache to refresh.
+     * @param apiKey            HIBP API key to send, or null.
+     * @param prefixesPerSecond maximum number of requests sent per second.
+     * @param minimumAge        age in milliseconds after which a range is revalidated.
+     */
+    public RangeRefresher(PrefixRangeCache prefixRangeCache, String apiKey, int prefixesPerSecond,
+                          long minimumAge) {
+
+        if (prefixesPerSecond <= 0) {
+            throw new IllegalArgumentException("Refresh rate must be positive.");
+        }
+        this.prefixRangeCache = prefixRangeCache;
+        this.apiKey = apiKey;
+        this.prefixesPerSecond = prefixesPerSecond;
+        this.minimumAge = minimumAge;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hibp-range-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start refreshing in the background.
+     */
+    public void start() {
+
+        scheduler.scheduleWithFixedDelay(this::tick, TICK_INTERVAL, TICK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop refreshing.
+     */
+    @Override
+    public void close() {
+
+        scheduler.shutdownNow();
+    }
+
+    private void tick() {
+
+        try {
+            refresh(prefixesPerSecond);
+        } catch (RuntimeException e) {
+            // An exception would cancel the scheduled task.
+            log.error("Error while refreshing HIBP ranges.", e);
+        }
+    }
+
+    /**
+     * Revalidate the next ranges that are older than the minimum age, continuing the walk of the cache where the
+     * previous call stopped. Each call walks the cache at most once.
+     *
+     * @param maxRequests maximum number of requests to send.
+     * @return number of requests sent.
+     */
+    synchronized int refresh(int maxRequests) {
+
+        int requests = 0;
+        boolean restarted = false;
+        while (requests < maxRequests) {
+            if (cursor == null || !cursor.hasNext()) {
+                if (restarted) {
+                    break;
+                }
+                cursor = prefixRangeCache.getEntries().iterator();
+                restarted = true;
+                continue;
+            }
+            AtomicReference<PrefixRangeCache.CacheEntry> slot = cursor.next();
+            PrefixRangeCache.CacheEntry entry = slot.get();
+            if (prefixRangeCache.getAge(entry) < minimumAge) {
+                continue;
+            }
+            requests++;
+            refresh(slot, entry);
+        }
+        return requests;
+    }
+
+    private void refresh(AtomicReference<PrefixRangeCache.CacheEntry> slot, PrefixRangeCache.CacheEntry entry) {
+
+        RangeResponse response;
+        try {
+            response = Utils.getHIBPRangeInBackground(apiKey, entry.prefix, entry.etag, entry.lastModified);
+        } catch (Exception e) {
+            failureCount.increment();
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to refresh the HIBP range of prefix " + entry.prefix, e);
+            }
+            return;
+        }
+        if (response.isNotModified()) {
+            prefixRangeCache.revalidate(slot, entry);
+            notModifiedCount.increment();
+        } else {
+            prefixRangeCache.replace(slot, entry, response.getRange(), response.getETag(),
+                    response.getLastModified());
+            updatedCount.increment();
+        }
+    }
+
+    public long getNotModifiedCount() {
+
+        return notModifiedCount.sum();
+    }
+
+    public long getUpdatedCount() {
+
+        return updatedCount.sum();
+    }
+
+    public long getFailureCount() {
+
+        return failureCount.sum();
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.client;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.client.HttpResponseException;
+import org.wso2.identity.password.validator.hibp.exception.HIBPUnavailableException;
+import org.wso2.identity.password.validator.hibp.util.Constants;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker around calls to the HIBP API.
+ *
+ * The breaker opens after a number of consecutive failed or slow calls. While it is open, calls are rejected with
+ * {@link HIBPUnavailableException} without reaching the API, so an outage costs a password check a few microseconds
+ * instead of a connect or read timeout. Once the open duration has passed, a single probe call is let through
+ * (half-open). The breaker closes if the probe succeeds and opens again if it fails.
+ *
+ * Client errors other than "429 Too Many Requests", e.g. a rejected API key, mean the API is up and do not count as
+ * failures.
+ */
+public class CircuitBreaker {
+
+    /**
+     * State of a circuit breaker.
+     */
+    public enum State {
+
+        /**
+         * Calls are let through.
+         */
+        CLOSED,
+
+        /**
+         * Calls are rejected.
+         */
+        OPEN,
+
+        /**
+         * A probe call is let through to find out whether the API has recovered, other calls are rejected.
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Permission given to a call.
+     */
+    private enum Permit {
+        REJECTED, CALL, PROBE
+    }
+
+    private static final Log LOG = LogFactory.getLog(CircuitBreaker.class);
+
+    private final int failureThreshold;
+    private final long slowCallNanos;
+    private final long openMillis;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probing;
+
+    private final LongAdder openCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * Create a circuit breaker.
+     *
+     * @param failureThreshold Number of consecutive failed or slow calls after which the breaker opens
+     * @param slowCallMillis   Duration in milliseconds after which a call counts as failed, or 0 to not count slow
+     *                         calls
+     * @param openMillis       Time in milliseconds calls are rejected before a probe call is let through
+     */
+    public CircuitBreaker(int failureThreshold, long slowCallMillis, long openMillis) {
+
+        this(failureThreshold, slowCallMillis, openMillis, System::currentTimeMillis);
+    }
+
+    CircuitBreaker(int failureThreshold, long slowCallMillis, long openMillis, LongSupplier clock) {
+
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("Failure threshold must be positive.");
+        }
+        this.failureThreshold = failureThreshold;
+        this.slowCallNanos = slowCallMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(slowCallMillis) : Long.MAX_VALUE;
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Make a call through the breaker.
+     *
+     * @param call call to the HIBP API.
+     * @param <T>  type of the result.
+     * @return result of the call.
+     * @throws HIBPUnavailableException if the breaker is open.
+     * @throws Exception                if the call fails.
+     */
+    public <T> T execute(Callable<T> call) throws Exception {
+
+        Permit permit = acquire();
+        if (permit == Permit.REJECTED) {
+            throw newRejectedException();
+        }
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = call.call();
+        } catch (Exception e) {
+            release(permit, isFailure(e));
+            throw e;
+        } catch (Error e) {
+            release(permit, false);
+            throw e;
+        }
+        release(permit, System.nanoTime() - start >= slowCallNanos);
+        return result;
+    }
+
+    /**
+     * Make a non-blocking call through the breaker.
+     *
+     * @param call call to the HIBP API.
+     * @param <T>  type of the result.
+     * @return future of the result of the call, failed with {@link HIBPUnavailableException} if the breaker is open.
+     */
+    public <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> call) {
+
+        Permit permit = acquire();
+        if (permit == Permit.REJECTED) {
+            return CompletableFuture.failedFuture(newRejectedException());
+        }
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException | Error e) {
+            release(permit, isFailure(e));
+            throw e;
+        }
+        return future.whenComplete((result, e) -> release(permit,
+                e != null ? isFailure(e) : System.nanoTime() - start >= slowCallNanos));
+    }
+
+    /**
+     * Get the state of the breaker. An open breaker whose open duration has passed is reported as open until the
+     * next call probes the API.
+     *
+     * @return state of the breaker.
+     */
+    public synchronized State getState() {
+
+        return state;
+    }
+
+    /**
+     * Get the number of times the breaker has opened, including reopening after a failed probe.
+     *
+     * @return number of times the breaker opened.
+     */
+    public long getOpenCount() {
+
+        return openCount.sum();
+    }
+
+    /**
+     * Get the number of calls rejected while the breaker was open.
+     *
+     * @return number of rejected calls.
+     */
+    public long getRejectedCount() {
+
+        return rejectedCount.sum();
+    }
+
+    /**
+     * Check whether a failed call counts towards opening the breaker.
+     *
+     * @param e failure of the call.
+     * @return false for client errors other than "429 Too Many Requests", true otherwise.
+     */
+    public static boolean isFailure(Throwable e) {
+
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        if (e instanceof HttpResponseException) {
+            int statusCode = ((HttpResponseException) e).getStatusCode();
+            return statusCode >= 500 || statusCode == Constants.TOO_MANY_REQUESTS || statusCode < 400;
+        }
+        return true;
+    }
+
+    private synchronized Permit acquire() {
+
+        if (state == State.CLOSED) {
+            return Permit.CALL;
+        }
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN && !probing) {
+            probing = true;
+            return Permit.PROBE;
+        }
+        rejectedCount.increment();
+        return Permit.REJECTED;
+    }
+
+    private synchronized void release(Permit permit, boolean failed) {
+
+        if (permit == Permit.PROBE) {
+            probing = false;
+            if (failed) {
+                open();
+            } else {
+                LOG.info("HIBP API is available again.");
+                state = State.CLOSED;
+                consecutiveFailures = 0;
+            }
+        } else if (state == State.CLOSED) {
+            // Calls that were let through before the breaker opened do not affect it once it is open.
+            if (!failed) {
+                consecutiveFailures = 0;
+            } else if (++consecutiveFailures >= failureThreshold) {
+                open();
+            }
+        }
+    }
+
+    private void open() {
+
+        if (state != State.OPEN) {
+            LOG.warn("HIBP API is unavailable, rejecting calls for " + openMillis + " ms.");
+        }
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+        consecutiveFailures = 0;
+        openCount.increment();
+    }
+
+    private static HIBPUnavailableException newRejectedException() {
+
+        return new HIBPUnavailableException("HIBP API is unavailable, circuit breaker is open.");
+    }
+}
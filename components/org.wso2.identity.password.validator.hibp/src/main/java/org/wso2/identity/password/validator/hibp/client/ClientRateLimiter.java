@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.client;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the rate at which each client of the validator endpoint checks passwords.
+ *
+ * Every client, identified by its address, has a bucket of permits that refills at a fixed rate up to a maximum
+ * burst, and a request takes one permit per password it checks. A request that would overdraw the bucket is rejected
+ * without taking any permit, so that a single request cannot make the connector fetch a large number of ranges on
+ * behalf of an unauthenticated client.
+ *
+ * At most a given number of clients are tracked. Buckets that have refilled are dropped to make room for new
+ * clients, and new clients are rejected while every tracked bucket is still refilling.
+ */
+public class ClientRateLimiter {
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final double permitsPerNano;
+    private final int burst;
+    private final int maxClients;
+    private final LongSupplier clock;
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * Create a client rate limiter.
+     *
+     * @param permitsPerSecond Rate at which the permits of a client refill
+     * @param burst            Maximum number of permits a client can save up
+     * @param maxClients       Maximum number of clients to track
+     */
+    public ClientRateLimiter(int permitsPerSecond, int burst, int maxClients) {
+
+        this(permitsPerSecond, burst, maxClients, System::nanoTime);
+    }
+
+    ClientRateLimiter(int permitsPerSecond, int burst, int maxClients, LongSupplier clock) {
+
+        if (permitsPerSecond <= 0 || burst <= 0 || maxClients <= 0) {
+            throw new IllegalArgumentException("Rate, burst and maximum number of clients must be positive.");
+        }
+        this.permitsPerNano = (double) permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.maxClients = maxClients;
+        this.clock = clock;
+    }
+
+    /**
+     * Take permits from the bucket of a client if it holds enough of them.
+     *
+     * @param client  address of the client.
+     * @param permits number of permits to take.
+     * @return true if the permits were taken, false if the request is rejected.
+     */
+    public boolean tryAcquire(String client, int permits) {
+
+        long now = clock.getAsLong();
+        Bucket bucket = buckets.get(client);
+        if (bucket == null) {
+            if (buckets.size() >= maxClients && !makeRoom(now)) {
+                rejectedCount.increment();
+                return false;
+            }
+            bucket = buckets.computeIfAbsent(client, key -> new Bucket(burst, now));
+        }
+        if (!bucket.tryAcquire(permits, now)) {
+            rejectedCount.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of requests rejected since the limiter was created.
+     *
+     * @return rejected request count.
+     */
+    public long getRejectedCount() {
+
+        return rejectedCount.sum();
+    }
+
+    /**
+     * Get the number of clients currently tracked.
+     *
+     * @return client count.
+     */
+    public int getClientCount() {
+
+        return buckets.size();
+    }
+
+    /**
+     * Drop the buckets that have refilled, as they would be created again in the same state.
+     *
+     * @return true if there is room for a new client.
+     */
+    private boolean makeRoom(long now) {
+
+        for (Iterator<Bucket> iterator = buckets.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().isFull(now)) {
+                iterator.remove();
+            }
+        }
+        return buckets.size() < maxClients;
+    }
+
+    /**
+     * Permits of a client and the time they were last updated.
+     */
+    private final class Bucket {
+
+        private double permits;
+        private long updatedAt;
+
+        private Bucket(double permits, long updatedAt) {
+
+            this.permits = permits;
+            this.updatedAt = updatedAt;
+        }
+
+        private synchronized boolean tryAcquire(int requested, long now) {
+
+            refill(now);
+            if (permits < requested) {
+                return false;
+            }
+            permits -= requested;
+            return true;
+        }
+
+        private synchronized boolean isFull(long now) {
+
+            refill(now);
+            return permits >= burst;
+        }
+
+        private void refill(long now) {
+
+            if (now > updatedAt) {
+                permits = Math.min(burst, permits + (now - updatedAt) * permitsPerNano);
+                updatedAt = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.identity.password.validator.hibp.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content codings negotiated for range responses.
+ *
+ * Range responses are plain text made of hex digits, which compress to a fraction of their size. Both HTTP clients
+ * advertise {@link #ACCEPT_ENCODING} and decode the response body with {@link #decode(InputStream, String)}, which
+ * inflates the body as it is read so that the range parser consumes decompressed bytes without the response ever
+ * being held in decompressed form.
+ */
+public final class ContentEncoding {
+
+    /**
+     * Value of the Accept-Encoding header of range requests.
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private ContentEncoding() {
+
+    }
+
+    /**
+     * Wrap a response body so that reading it returns the decoded content.
+     *
+     * @param in              response body as received.
+     * @param contentEncoding value of the Content-Encoding header of the response, or null if it does not have one.
+     * @return stream of the decoded body. Closing it closes the given stream.
+     * @throws IOException if the body uses an unsupported coding, or its header cannot be read.
+     */
+    public static InputStream decode(InputStream in, String contentEncoding) throws IOException {
+
+        if (contentEncoding == null) {
+            return in;
+        }
+        // Codings are listed in the order they were applied, so they are undone from the last one.
+        String[] codings = contentEncoding.split(",");
+        for (int i = codings.length - 1; i >= 0; i--) {
+            String coding = codings[i].trim().toLowerCase(Locale.ENGLISH);
+            switch (coding) {
+                case "":
+                case "identity":
+                    break;
+                case "gzip":
+                case "x-gzip":
+                    in = new GZIPInputStream(in, BUFFER_SIZE);
+                    break;
+                case "deflate":
+                    in = inflate(in);
+                    break;
+                default:
+                    in.close();
+                    throw new IOException("Unsupported content encoding: " + contentEncoding);
+            }
+        }
+        return in;
+    }
+
+    /**
+     * The "deflate" coding is a zlib stream, but some servers send a raw deflate stream instead. The two are told
+     * apart by the zlib header, which names the deflate method and is a multiple of 31.
+     */
+    private static InputStream inflate(InputStream in) throws IOException {
+
+        PushbackInputStream pushback = new PushbackInputStream(in, 2);
+        byte[] header = new byte[2];
+        int length = 0;
+        while (length < header.length) {
+            int read = pushback.read(header, length, header.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        pushback.unread(header, 0, length);
+        if (length == 0) {
+            // Nothing to inflate in an empty body
+            return pushback;
+        }
+
+        boolean zlib = length == header.length && (header[0] & 0x0F) == 8
+                && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+        return new InflaterInputStream(pushback, new Inflater(!zlib), BUFFER_SIZE) {
+
+            @Override
+            public void close() throws IOException {
+
+                // The stream only releases the native memory of inflaters it created itself.
+                try {
+                    super.close();
+                } finally {
+                    inf.end();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.client;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.HttpResponseException;
+import org.wso2.identity.password.validator.hibp.exception.HIBPRateLimitException;
+import org.wso2.identity.password.validator.hibp.internal.HIBPDataHolder;
+import org.wso2.identity.password.validator.hibp.metrics.HIBPMetrics;
+import org.wso2.identity.password.validator.hibp.range.HashRange;
+import org.wso2.identity.password.validator.hibp.range.RangeParser;
+import org.wso2.identity.password.validator.hibp.range.RangeResponse;
+import org.wso2.identity.password.validator.hibp.util.ConfigUtils;
+import org.wso2.identity.password.validator.hibp.util.Constants;
+import org.wso2.identity.password.validator.hibp.util.Utils;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking client of the HIBP range API.
+ *
+ * Requests are multiplexed by the JDK HTTP client, over HTTP/2 when the server supports it, so a single selector
+ * thread can have hundreds of range requests in flight. Responses are read into memory as they arrive and parsed
+ * on a small pool of worker threads, which never block on the network. Compressed responses are kept compressed in
+ * memory and only inflated while they are parsed.
+ */
+public class HIBPAsyncHttpClient implements Closeable {
+
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final Duration readTimeout;
+
+    /**
+     * Create a non-blocking HTTP client with the default connect and read timeouts.
+     *
+     * @param threads Number of threads completing requests and parsing responses
+     */
+    public HIBPAsyncHttpClient(int threads) {
+
+        this(threads, Constants.DEFAULT_HTTP_CLIENT_CONNECT_TIMEOUT, Constants.DEFAULT_HTTP_CLIENT_READ_TIMEOUT);
+    }
+
+    /**
+     * Create a non-blocking HTTP client.
+     *
+     * @param threads              Number of threads completing requests and parsing responses
+     * @param connectTimeoutMillis Timeout for connecting to the server
+     * @param readTimeoutMillis    Timeout for receiving the response once the request is sent
+     */
+    public HIBPAsyncHttpClient(int threads, int connectTimeoutMillis, int readTimeoutMillis) {
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "hibp-async-http-client-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpClient = HttpClient.newBuilder()
+                .executor(executor)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .build();
+        readTimeout = Duration.ofMillis(readTimeoutMillis);
+    }
+
+    /**
+     * Request the range of the given hash prefix.
+     *
+     * The returned future fails with {@link HIBPRateLimitException} if the API rejects the request with
+     * "429 Too Many Requests", with {@link HttpResponseException} for any other unexpected status, and with
+     * {@link java.net.http.HttpTimeoutException} if the response is not received within the read timeout.
+     *
+     * @param apiKey     HIBP API key, not sent if blank
+     * @param hashPrefix The first 5 characters of the SHA-1 hash of the password
+     * @return future of the range response
+     */
+    public CompletableFuture<RangeResponse> getRange(String apiKey, String hashPrefix) {
+
+        return getRange(apiKey, hashPrefix, ConfigUtils.getString(Constants.API_URL, Constants.HIBP_API_URL));
+    }
+
+    /**
+     * Request the range of the given hash prefix from the given HIBP API URL.
+     *
+     * Cancelling the returned future does not abort the request, whose response is then ignored.
+     *
+     * @param apiKey     HIBP API key, not sent if blank
+     * @param hashPrefix The first 5 characters of the SHA-1 hash of the password
+     * @param apiUrl     HIBP API URL the hash prefix is appended to
+     * @return future of the range response
+     * @see #getRange(String, String)
+     */
+    public CompletableFuture<RangeResponse> getRange(String apiKey, String hashPrefix, String apiUrl) {
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(apiUrl + hashPrefix))
+                .timeout(readTimeout)
+                .GET();
+        if (StringUtils.isNotBlank(apiKey)) {
+            request.header(Constants.HIBP_API_KEY_HEADER, apiKey);
+        }
+        if (ConfigUtils.getBoolean(Constants.HTTP_CLIENT_COMPRESSION_ENABLED,
+                Constants.DEFAULT_HTTP_CLIENT_COMPRESSION_ENABLED)) {
+            request.header(HttpHeaders.ACCEPT_ENCODING, ContentEncoding.ACCEPT_ENCODING);
+        }
+        HIBPMetrics metrics = HIBPDataHolder.getInstance().getMetrics();
+        if (metrics == null) {
+            return httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray())
+                    .thenApply(HIBPAsyncHttpClient::toRangeResponse);
+        }
+        long start = System.nanoTime();
+        return httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    metrics.record(HIBPMetrics.Stage.FETCH, start);
+                    metrics.countUpstreamStatus(response.statusCode());
+                    long received = System.nanoTime();
+                    try {
+                        return toRangeResponse(response);
+                    } finally {
+                        metrics.record(HIBPMetrics.Stage.PARSE, received);
+                    }
+                });
+    }
+
+    /**
+     * Stop the worker threads. Requests in flight are not completed.
+     */
+    @Override
+    public void close() {
+
+        executor.shutdownNow();
+    }
+
+    private static RangeResponse toRangeResponse(HttpResponse<byte[]> response) {
+
+        int statusCode = response.statusCode();
+        if (Constants.TOO_MANY_REQUESTS == statusCode) {
+            throw new CompletionException(new HIBPRateLimitException(Utils.getRetryAfterMillis(
+                    response.headers().firstValue(HttpHeaders.RETRY_AFTER).orElse(null))));
+        }
+        if (HttpServletResponse.SC_OK != statusCode) {
+            throw new CompletionException(new HttpResponseException(statusCode, "Failed to get HIBP API response."));
+        }
+        // The body is kept as received, and only decompressed while it is parsed.
+        HashRange range;
+        try (InputStream in = ContentEncoding.decode(new ByteArrayInputStream(response.body()),
+                response.headers().firstValue(HttpHeaders.CONTENT_ENCODING).orElse(null))) {
+            range = RangeParser.parse(in);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+        return new RangeResponse(range, response.headers().firstValue(HttpHeaders.ETAG).orElse(null),
+                response.headers().firstValue(HttpHeaders.LAST_MODIFIED).orElse(null));
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.client;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.wso2.identity.password.validator.hibp.util.Constants;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the long lived HTTP client used to talk to the HIBP range API.
+ *
+ * Connections are pooled so that consecutive lookups reuse an already established TCP/TLS connection instead of
+ * paying a full handshake per password check. A background task closes expired and idle connections so that the
+ * pool does not hold on to sockets the server has already given up on.
+ */
+public class HIBPHttpClientManager implements Closeable {
+
+    private static final Log LOG = LogFactory.getLog(HIBPHttpClientManager.class);
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final ScheduledExecutorService idleConnectionEvictor;
+
+    /**
+     * Create a pooled HTTP client with the default connect and read timeouts.
+     *
+     * @param maxConnections              Maximum number of connections in the pool
+     * @param maxConnectionsPerRoute      Maximum number of connections per route (host)
+     * @param keepAliveMillis             Maximum time a connection is kept alive when idle in the pool
+     * @param idleConnectionTimeoutMillis Idle time after which a pooled connection is closed by the evictor
+     */
+    public HIBPHttpClientManager(int maxConnections, int maxConnectionsPerRoute, long keepAliveMillis,
+                                 long idleConnectionTimeoutMillis) {
+
+        this(maxConnections, maxConnectionsPerRoute, keepAliveMillis, idleConnectionTimeoutMillis,
+                Constants.DEFAULT_HTTP_CLIENT_CONNECT_TIMEOUT, Constants.DEFAULT_HTTP_CLIENT_READ_TIMEOUT);
+    }
+
+    /**
+     * Create a pooled HTTP client.
+     *
+     * @param maxConnections              Maximum number of connections in the pool
+     * @param maxConnectionsPerRoute      Maximum number of connections per route (host)
+     * @param keepAliveMillis             Maximum time a connection is kept alive when idle in the pool
+     * @param idleConnectionTimeoutMillis Idle time after which a pooled connection is closed by the evictor
+     * @param connectTimeoutMillis        Timeout for connecting to the server, also used as the timeout for
+     *                                    getting a connection from the pool
+     * @param readTimeoutMillis           Timeout for each read of the response, i.e. the longest silence tolerated
+     */
+    public HIBPHttpClientManager(int maxConnections, int maxConnectionsPerRoute, long keepAliveMillis,
+                                 long idleConnectionTimeoutMillis, int connectTimeoutMillis, int readTimeoutMillis) {
+
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", SSLConnectionSocketFactory.getSystemSocketFactory())
+                .build();
+        connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+        // Without timeouts, a request to an unreachable or stalled server holds its thread for the socket defaults,
+        // which can be minutes.
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setConnectionRequestTimeout(connectTimeoutMillis)
+                .setSocketTimeout(readTimeoutMillis)
+                .build();
+        httpClient = HttpClientBuilder.create()
+                .useSystemProperties()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(buildKeepAliveStrategy(keepAliveMillis))
+                // Compression of range responses is negotiated and decoded by the range requests themselves, the
+                // same way for this client and the non-blocking one.
+                .disableContentCompression()
+                .build();
+
+        idleConnectionEvictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hibp-idle-connection-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long evictionInterval = Math.max(1000L, idleConnectionTimeoutMillis / 2);
+        idleConnectionEvictor.scheduleWithFixedDelay(() -> {
+            try {
+                connectionManager.closeExpiredConnections();
+                connectionManager.closeIdleConnections(idleConnectionTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                LOG.warn("Error while evicting idle HIBP connections.", e);
+            }
+        }, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the shared HTTP client.
+     *
+     * @return pooled HTTP client.
+     */
+    public CloseableHttpClient getHttpClient() {
+
+        return httpClient;
+    }
+
+    /**
+     * Get the connection manager backing the shared HTTP client.
+     *
+     * @return pooling connection manager.
+     */
+    public PoolingHttpClientConnectionManager getConnectionManager() {
+
+        return connectionManager;
+    }
+
+    /**
+     * Stop the idle connection evictor and release all pooled connections.
+     */
+    @Override
+    public void close() {
+
+        idleConnectionEvictor.shutdownNow();
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            LOG.warn("Error while closing the HIBP HTTP client.", e);
+        }
+        connectionManager.shutdown();
+    }
+
+    /**
+     * Honour the keep alive timeout sent by the server, but never keep a connection longer than the configured
+     * maximum.
+     */
+    private static ConnectionKeepAliveStrategy buildKeepAliveStrategy(long keepAliveMillis) {
+
+        return (response, context) -> {
+            long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            if (serverKeepAlive > 0) {
+                return Math.min(serverKeepAlive, keepAliveMillis);
+            }
+            return keepAliveMillis;
+        };
+    }
+}
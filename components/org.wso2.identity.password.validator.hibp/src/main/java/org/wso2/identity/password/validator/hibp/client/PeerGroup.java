@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.client;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.identity.password.validator.hibp.range.HashRange;
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+import org.wso2.identity.password.validator.hibp.range.RangeParser;
+import org.wso2.identity.password.validator.hibp.util.Constants;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Static group of cluster members that share their range caches.
+ *
+ * The hash prefixes are split across the members by consistent hashing: each member takes a number of points on a
+ * hash ring, and a prefix is owned by the member of the first point at or after the hash of the prefix. A node that
+ * misses a range it does not own asks the owner for it, so each range is fetched from the HIBP API and cached by one
+ * member only, and the cluster caches as many ranges as all of its members together.
+ *
+ * Peers serve ranges in the format of the HIBP range API on {@link Constants#HIBP_PEER_SERVLET_PATH}, and requests
+ * between them carry a shared secret. The API keys of tenants are never sent to a peer: the owner of a prefix fetches
+ * its range with its own background API key. Members should be reached over HTTPS, since the secret is sent in
+ * clear text otherwise. A peer that fails a number of consecutive requests is taken off the ring for
+ * the retry interval, during which its prefixes move to the next members on the ring, and is tried again after that.
+ * Any request that a peer does not answer with a range is left to the caller to fetch from the HIBP API.
+ */
+public class PeerGroup implements Closeable {
+
+    private static final Log log = LogFactory.getLog(PeerGroup.class);
+
+    private final Member[] members;
+    private final Member self;
+    private final int[] points;
+    private final Member[] pointMembers;
+    private final String secret;
+    private final int failureThreshold;
+    private final long retryIntervalMillis;
+    private final LongSupplier clock;
+
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final Duration timeout;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder fallbackCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+
+    /**
+     * Create a peer group.
+     *
+     * @param memberUrls          Base URLs of all members, including this node
+     * @param selfUrl             Base URL of this node
+     * @param secret              Secret shared by the members
+     * @param virtualNodes        Number of points of each member on the hash ring
+     * @param failureThreshold    Number of consecutive failed requests after which a peer is taken off the ring
+     * @param retryIntervalMillis Time in milliseconds a failed peer stays off the ring
+     * @param threads             Number of threads completing requests and parsing responses
+     * @param timeoutMillis       Timeout for connecting to a peer and for receiving its response
+     */
+    public PeerGroup(List<String> memberUrls, String selfUrl, String secret, int virtualNodes, int failureThreshold,
+                     long retryIntervalMillis, int threads, long timeoutMillis) {
+
+        this(memberUrls, selfUrl, secret, virtualNodes, failureThreshold, retryIntervalMillis, threads, timeoutMillis,
+                System::currentTimeMillis);
+    }
+
+    PeerGroup(List<String> memberUrls, String selfUrl, String secret, int virtualNodes, int failureThreshold,
+              long retryIntervalMillis, int threads, long timeoutMillis, LongSupplier clock) {
+
+        if (StringUtils.isBlank(secret)) {
+            throw new IllegalArgumentException("Peer secret must not be blank.");
+        }
+        if (virtualNodes <= 0 || failureThreshold <= 0) {
+            throw new IllegalArgumentException("Virtual nodes and failure threshold must be positive.");
+        }
+        Set<String> urls = new LinkedHashSet<>();
+        for (String memberUrl : memberUrls) {
+            if (StringUtils.isNotBlank(memberUrl)) {
+                urls.add(normalize(memberUrl));
+            }
+        }
+        for (String url : urls) {
+            String scheme = URI.create(url).getScheme();
+            if (!"https".equalsIgnoreCase(scheme) && !"http".equalsIgnoreCase(scheme)) {
+                throw new IllegalArgumentException("Peer member URL must be an HTTP or HTTPS URL: " + url);
+            }
+            if (!"https".equalsIgnoreCase(scheme)) {
+                log.warn("HIBP peer " + url + " is not an HTTPS URL. The peer secret is sent to it in clear text.");
+            }
+        }
+        String normalizedSelfUrl = selfUrl == null ? null : normalize(selfUrl);
+        if (!urls.contains(normalizedSelfUrl)) {
+            throw new IllegalArgumentException("Peer members do not include this node: " + selfUrl);
+        }
+
+        members = new Member[urls.size()];
+        Member selfMember = null;
+        int index = 0;
+        for (String url : urls) {
+            members[index] = new Member(url, index);
+            if (url.equals(normalizedSelfUrl)) {
+                selfMember = members[index];
+            }
+            index++;
+        }
+        self = selfMember;
+
+        // Points are sorted along with the index of their member, which also orders colliding points consistently
+        // on every node.
+        long[] ring = new long[members.length * virtualNodes];
+        for (Member member : members) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring[member.index * virtualNodes + i] = ((long) hashPoint(member.url + "#" + i) << 32)
+                        | member.index;
+            }
+        }
+        Arrays.sort(ring);
+        points = new int[ring.length];
+        pointMembers = new Member[ring.length];
+        for (int i = 0; i < ring.length; i++) {
+            points[i] = (int) (ring[i] >> 32);
+            pointMembers[i] = members[(int) ring[i]];
+        }
+
+        this.secret = secret;
+        this.failureThreshold = failureThreshold;
+        this.retryIntervalMillis = retryIntervalMillis;
+        this.clock = clock;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "hibp-peer-client-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        timeout = Duration.ofMillis(timeoutMillis);
+        httpClient = HttpClient.newBuilder()
+                .executor(executor)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    /**
+     * Get the range of a prefix from the peer that owns it.
+     *
+     * The returned future never fails. It completes with null if this node owns the prefix, or if the owner could
+     * not provide the range, in which case the caller fetches it from the HIBP API itself.
+     *
+     * @param hashPrefix 5 character hash prefix.
+     * @return future of the range, or of null if the range is to be fetched locally.
+     */
+    public CompletableFuture<HashRange> getRange(String hashPrefix) {
+
+        Member owner = getOwner(hashPrefix);
+        if (owner == self) {
+            return CompletableFuture.completedFuture(null);
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(owner.url + Constants.HIBP_PEER_SERVLET_PATH
+                        + "/" + hashPrefix))
+                .timeout(timeout)
+                .header(Constants.HIBP_PEER_SECRET_HEADER, secret)
+                .GET()
+                .build();
+        CompletableFuture<HttpResponse<byte[]>> response;
+        try {
+            response = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        return response.handle((peerResponse, e) -> toRange(owner, hashPrefix, peerResponse, e));
+    }
+
+    private HashRange toRange(Member owner, String hashPrefix, HttpResponse<byte[]> response, Throwable failure) {
+
+        if (failure == null) {
+            int statusCode = response.statusCode();
+            if (statusCode == HttpServletResponse.SC_OK) {
+                try {
+                    HashRange range = RangeParser.parse(new ByteArrayInputStream(response.body()));
+                    owner.consecutiveFailures.set(0);
+                    hitCount.increment();
+                    return range;
+                } catch (IOException | RuntimeException e) {
+                    failure = e;
+                }
+            } else if (statusCode == HttpServletResponse.SC_BAD_GATEWAY
+                    || statusCode == Constants.TOO_MANY_REQUESTS) {
+                // The peer is up, but could not get the range from the HIBP API either
+                owner.consecutiveFailures.set(0);
+                fallbackCount.increment();
+                return null;
+            }
+        }
+
+        failureCount.increment();
+        fallbackCount.increment();
+        if (owner.consecutiveFailures.incrementAndGet() >= failureThreshold && !owner.isDown(clock.getAsLong())) {
+            owner.downUntil = clock.getAsLong() + retryIntervalMillis;
+            log.warn("HIBP peer " + owner.url + " failed " + owner.consecutiveFailures.get()
+                    + " consecutive range requests. Its prefixes are fetched by other members for "
+                    + retryIntervalMillis + " ms.");
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Failed to get the HIBP range of prefix " + hashPrefix + " from peer " + owner.url
+                    + (failure == null ? ". Status: " + response.statusCode() : "."), failure);
+        }
+        return null;
+    }
+
+    /**
+     * Check the secret of a request from a peer, in constant time.
+     *
+     * @param requestSecret secret sent with the request, or null.
+     * @return true if the secret is the one shared by the members.
+     */
+    public boolean isAuthorized(String requestSecret) {
+
+        return requestSecret != null
+                && MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8),
+                requestSecret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Check whether this node currently owns a prefix.
+     *
+     * @param hashPrefix 5 character hash prefix.
+     * @return true if the range of the prefix is fetched and cached by this node.
+     */
+    public boolean isOwner(String hashPrefix) {
+
+        return getOwner(hashPrefix) == self;
+    }
+
+    /**
+     * Get the base URL of the member that currently owns a prefix, skipping members that are off the ring.
+     *
+     * @param hashPrefix 5 character hash prefix.
+     * @return base URL of the owner, which is this node if every other member is off the ring.
+     */
+    String getOwnerUrl(String hashPrefix) {
+
+        return getOwner(hashPrefix).url;
+    }
+
+    private Member getOwner(String hashPrefix) {
+
+        int hash = mix(HexUtils.decodePrefix(hashPrefix));
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+        } else {
+            // Take the first of colliding points
+            while (index > 0 && points[index - 1] == hash) {
+                index--;
+            }
+        }
+        long now = clock.getAsLong();
+        for (int i = 0; i < points.length; i++) {
+            Member member = pointMembers[(index + i) % points.length];
+            if (member == self || !member.isDown(now)) {
+                return member;
+            }
+        }
+        return self;
+    }
+
+    /**
+     * Get the number of members, including this node.
+     *
+     * @return number of members.
+     */
+    public int getMemberCount() {
+
+        return members.length;
+    }
+
+    /**
+     * Get the number of members currently on the ring, including this node.
+     *
+     * @return number of live members.
+     */
+    public int getLiveMemberCount() {
+
+        long now = clock.getAsLong();
+        int count = 0;
+        for (Member member : members) {
+            if (member == self || !member.isDown(now)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public long getHitCount() {
+
+        return hitCount.sum();
+    }
+
+    public long getFallbackCount() {
+
+        return fallbackCount.sum();
+    }
+
+    public long getFailureCount() {
+
+        return failureCount.sum();
+    }
+
+    /**
+     * Stop the worker threads. Requests in flight are not completed.
+     */
+    @Override
+    public void close() {
+
+        executor.shutdownNow();
+    }
+
+    private static String normalize(String url) {
+
+        String normalized = url.trim();
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+    /**
+     * Hash a point of a member onto the ring. MD5 spreads the points of similar URLs evenly, and is only used while
+     * the ring is built.
+     */
+    private static int hashPoint(String key) {
+
+        MessageDigest md5;
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available.", e);
+        }
+        byte[] digest = md5.digest(key.getBytes(StandardCharsets.UTF_8));
+        return (digest[0] & 0xFF) << 24 | (digest[1] & 0xFF) << 16 | (digest[2] & 0xFF) << 8 | (digest[3] & 0xFF);
+    }
+
+    /**
+     * Spread the 20 bit prefix over the ring with the finalizer of MurmurHash3.
+     */
+    private static int mix(int value) {
+
+        int hash = value;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * Member of the group along with the failure state of its requests.
+     */
+    private static final class Member {
+
+        final String url;
+        final int index;
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+        volatile long downUntil;
+
+        private Member(String url, int index) {
+
+            this.url = url;
+            this.index = index;
+        }
+
+        boolean isDown(long now) {
+
+            return now < downUntil;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.client;
+
+import org.wso2.identity.password.validator.hibp.metrics.LatencyHistogram;
+
+import java.io.Closeable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Hedges range requests to cut their tail latency.
+ *
+ * A request that has not completed when it reaches a given percentile of the recent request latencies is sent a
+ * second time, possibly to another endpoint. The first successful response is used and the other attempt is
+ * cancelled. The request only fails if both attempts fail.
+ *
+ * Hedges are limited by a budget, so that they add at most a given percentage of extra requests: each request earns a
+ * fraction of a hedge, and a hedge is only sent if a whole one has been earned. No hedges are sent until enough
+ * latencies have been recorded to estimate the percentile. Blocking hedges run on a bounded pool, and a request is
+ * not hedged while every thread of the pool is busy.
+ */
+public class RequestHedger implements Closeable {
+
+    /**
+     * Number of recent latencies needed before the hedge delay is estimated from them.
+     */
+    static final int MIN_SAMPLES = 50;
+
+    private static final long WINDOW_MILLIS = 60000L;
+    private static final long DELAY_UPDATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Budget is kept in thousandths of a hedge, and at most this many whole hedges can be saved up for bursts.
+     */
+    private static final long HEDGE_COST = 1000L;
+    private static final long MAX_BUDGET = 10 * HEDGE_COST;
+
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram(WINDOW_MILLIS);
+    private final double percentile;
+    private final long minDelayMicros;
+    private final long budgetPerRequest;
+    private final AtomicLong budget = new AtomicLong();
+    private final ScheduledExecutorService timer;
+    private final ExecutorService executor;
+
+    private volatile long delayMicros = -1;
+    private volatile long delayUpdatedAt = System.nanoTime() - DELAY_UPDATE_INTERVAL_NANOS;
+
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder hedgeCount = new LongAdder();
+    private final LongAdder hedgeWinCount = new LongAdder();
+    private final LongAdder budgetExhaustedCount = new LongAdder();
+    private final LongAdder saturatedCount = new LongAdder();
+
+    /**
+     * Create a request hedger.
+     *
+     * @param percentile     Percentile of the recent request latencies after which a request is hedged
+     * @param minDelayMillis Minimum time in milliseconds before a request is hedged
+     * @param budgetPercent  Maximum number of hedges, as a percentage of the requests
+     * @param maxThreads     Maximum number of blocking hedges in flight
+     */
+    public RequestHedger(double percentile, long minDelayMillis, int budgetPercent, int maxThreads) {
+
+        this.percentile = percentile;
+        this.minDelayMicros = TimeUnit.MILLISECONDS.toMicros(minDelayMillis);
+        this.budgetPerRequest = Math.max(0, budgetPercent) * HEDGE_COST / 100;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hibp-hedge-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadCount = new AtomicInteger();
+        // Hedges are not queued: one that cannot start right away would only add load once the API is already slow.
+        this.executor = new ThreadPoolExecutor(0, Math.max(1, maxThreads), 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "hibp-hedged-request-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Make a hedged request.
+     *
+     * The first attempt is made right away. The second one is made on the timer thread of the hedger if the first has
+     * not completed within the hedge delay, so attempts must not block. Cancelling the future of an attempt should
+     * abort it.
+     *
+     * @param attempt makes an attempt of the request, given 0 for the first and 1 for the hedge.
+     * @param <T>     type of the response.
+     * @return future of the first successful response, or of the first failure if no attempt succeeds.
+     */
+    public <T> CompletableFuture<T> execute(IntFunction<CompletableFuture<T>> attempt) {
+
+        requestCount.increment();
+        budget.getAndUpdate(value -> Math.min(MAX_BUDGET, value + budgetPerRequest));
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Attempts attempts = new Attempts();
+        long start = System.nanoTime();
+        CompletableFuture<T> first = attempt.apply(0);
+        first.whenComplete((value, e) -> {
+            if (e == null || e instanceof CancellationException) {
+                // The latency of a cancelled attempt is a lower bound, which is still worth recording as cancelled
+                // attempts are the slow ones.
+                latencyHistogram.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            complete(result, attempts, false, value, e);
+        });
+        result.whenComplete((value, e) -> first.cancel(true));
+
+        long delay = getDelayMicros();
+        if (delay >= 0 && !result.isDone()) {
+            ScheduledFuture<?> hedgeTimer = timer.schedule(() -> hedge(result, attempts, attempt), delay,
+                    TimeUnit.MICROSECONDS);
+            result.whenComplete((value, e) -> hedgeTimer.cancel(false));
+        }
+        return result;
+    }
+
+    /**
+     * Get the executor on which blocking attempts can be run. It rejects attempts with a
+     * {@link RejectedExecutionException} while all its threads are busy, and the request is then not hedged.
+     *
+     * @return executor of hedged requests.
+     */
+    public ExecutorService getExecutor() {
+
+        return executor;
+    }
+
+    /**
+     * Get the current hedge delay.
+     *
+     * @return time in microseconds after which requests are hedged, or -1 if not enough latencies were recorded.
+     */
+    public long getDelayMicros() {
+
+        long now = System.nanoTime();
+        if (now - delayUpdatedAt >= DELAY_UPDATE_INTERVAL_NANOS) {
+            // Estimating the percentile reads the whole histogram, so the delay is only updated periodically.
+            delayUpdatedAt = now;
+            delayMicros = latencyHistogram.getCount() < MIN_SAMPLES ? -1
+                    : Math.max(minDelayMicros, latencyHistogram.getPercentileMicros(percentile));
+        }
+        return delayMicros;
+    }
+
+    /**
+     * Get the histogram of recent request latencies.
+     *
+     * @return latency histogram.
+     */
+    public LatencyHistogram getLatencyHistogram() {
+
+        return latencyHistogram;
+    }
+
+    public long getRequestCount() {
+
+        return requestCount.sum();
+    }
+
+    public long getHedgeCount() {
+
+        return hedgeCount.sum();
+    }
+
+    public long getHedgeWinCount() {
+
+        return hedgeWinCount.sum();
+    }
+
+    public long getBudgetExhaustedCount() {
+
+        return budgetExhaustedCount.sum();
+    }
+
+    public long getSaturatedCount() {
+
+        return saturatedCount.sum();
+    }
+
+    /**
+     * Stop the timer and the threads of blocking attempts.
+     */
+    @Override
+    public void close() {
+
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private <T> void hedge(CompletableFuture<T> result, Attempts attempts, IntFunction<CompletableFuture<T>> attempt) {
+
+        if (result.isDone()) {
+            return;
+        }
+        attempts.pending.incrementAndGet();
+        if (budget.getAndUpdate(value -> value >= HEDGE_COST ? value - HEDGE_COST : value) < HEDGE_COST) {
+            budgetExhaustedCount.increment();
+            complete(result, attempts, true, null, new CancellationException("Hedge budget is exhausted."));
+            return;
+        }
+        CompletableFuture<T> second;
+        try {
+            second = attempt.apply(1);
+        } catch (RejectedExecutionException e) {
+            // The hedge was not sent, so it gives back its share of the budget.
+            budget.getAndUpdate(value -> Math.min(MAX_BUDGET, value + HEDGE_COST));
+            saturatedCount.increment();
+            complete(result, attempts, true, null, new CancellationException("Hedge threads are all busy."));
+            return;
+        } catch (RuntimeException e) {
+            hedgeCount.increment();
+            complete(result, attempts, true, null, e);
+            return;
+        }
+        hedgeCount.increment();
+        second.whenComplete((value, e) -> complete(result, attempts, true, value, e));
+        result.whenComplete((value, e) -> second.cancel(true));
+    }
+
+    /**
+     * Complete the request with the first successful attempt, or with the first failure once no attempt is pending.
+     */
+    private <T> void complete(CompletableFuture<T> result, Attempts attempts, boolean hedge, T value, Throwable e) {
+
+        if (e == null) {
+            // The win is counted before the request completes, so that it is visible to whoever waits for it.
+            if (attempts.succeeded.compareAndSet(false, true)) {
+                if (hedge) {
+                    hedgeWinCount.increment();
+                }
+                result.complete(value);
+            }
+            return;
+        }
+        if (!(e instanceof CancellationException)) {
+            attempts.failure.compareAndSet(null, e instanceof CompletionException && e.getCause() != null
+                    ? e.getCause() : e);
+        }
+        if (attempts.pending.decrementAndGet() == 0) {
+            Throwable failure = attempts.failure.get();
+            result.completeExceptionally(failure != null ? failure : e);
+        }
+    }
+
+    /**
+     * Attempts of a request that have not completed, whether one has succeeded, and the first failure of an attempt.
+     */
+    private static final class Attempts {
+
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final AtomicBoolean succeeded = new AtomicBoolean();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.identity.password.validator.hibp.client;
+
+import org.wso2.identity.password.validator.hibp.exception.HIBPUnavailableException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key into a single load.
+ *
+ * The first caller for a key runs the load and every caller arriving while it is in flight waits for, and shares,
+ * its result or failure. Nothing is kept once the load completes, so this complements a cache rather than replacing
+ * one. Blocking and asynchronous callers of the same key share the same flight.
+ *
+ * @param <K> key type.
+ * @param <V> value type.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder sharedCount = new LongAdder();
+
+    /**
+     * Load the value of a key in the calling thread, or wait for the load already in flight for the key. The wait is
+     * bounded, as the load in flight may be an asynchronous one that nothing else bounds.
+     *
+     * @param key         key to load.
+     * @param loader      loads the value of the key.
+     * @param waitTimeout time in milliseconds to wait for a load already in flight.
+     * @return loaded value.
+     * @throws HIBPUnavailableException if the load in flight does not complete in time.
+     * @throws Exception                the exception thrown by the load, which is shared by all callers waiting for it.
+     */
+    public V execute(K key, Callable<V> loader, long waitTimeout) throws Exception {
+
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existingFlight = flights.putIfAbsent(key, flight);
+        if (existingFlight != null) {
+            sharedCount.increment();
+            return await(existingFlight, waitTimeout);
+        }
+
+        loadCount.increment();
+        try {
+            V value = loader.call();
+            flight.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Load the value of a key asynchronously, or share the load already in flight for the key.
+     *
+     * @param key    key to load.
+     * @param loader starts loading the value of the key.
+     * @return future of the loaded value.
+     */
+    public CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> loader) {
+
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existingFlight = flights.putIfAbsent(key, flight);
+        if (existingFlight != null) {
+            sharedCount.increment();
+            // Callers must not be able to complete the shared flight.
+            return existingFlight.copy();
+        }
+
+        loadCount.increment();
+        CompletableFuture<V> load;
+        try {
+            load = loader.get();
+        } catch (RuntimeException | Error e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        load.whenComplete((value, e) -> {
+            flights.remove(key, flight);
+            if (e != null) {
+                flight.completeExceptionally(e instanceof CompletionException && e.getCause() != null
+                        ? e.getCause() : e);
+            } else {
+                flight.complete(value);
+            }
+        });
+        return flight.copy();
+    }
+
+    /**
+     * Get the number of loads that were run.
+     *
+     * @return load count.
+     */
+    public long getLoadCount() {
+
+        return loadCount.sum();
+    }
+
+    /**
+     * Get the number of calls that shared a load already in flight instead of running their own.
+     *
+     * @return shared call count.
+     */
+    public long getSharedCount() {
+
+        return sharedCount.sum();
+    }
+
+    private static <V> V await(CompletableFuture<V> flight, long waitTimeout) throws Exception {
+
+        try {
+            return flight.get(waitTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new HIBPUnavailableException("Timed out after " + waitTimeout + " ms waiting for the load in flight.",
+                    e, false);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
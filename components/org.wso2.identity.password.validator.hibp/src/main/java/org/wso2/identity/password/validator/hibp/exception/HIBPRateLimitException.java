@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.exception;
+
+import org.apache.http.client.HttpResponseException;
+import org.wso2.identity.password.validator.hibp.util.Constants;
+
+/**
+ * Exception thrown when the HIBP API rejects a request with "429 Too Many Requests".
+ */
+public class HIBPRateLimitException extends HttpResponseException {
+
+    private static final long serialVersionUID = 6179203525381902574L;
+
+    private final long retryAfterMillis;
+
+    /**
+     * Constructor with the delay requested by the API.
+     *
+     * @param retryAfterMillis Time in milliseconds to wait before the next request, or -1 if the API did not say
+     */
+    public HIBPRateLimitException(long retryAfterMillis) {
+        super(Constants.TOO_MANY_REQUESTS, "HIBP API rate limit exceeded.");
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Gets the time to wait before the next request, from the Retry-After header of the response.
+     *
+     * @return Time in milliseconds, or -1 if the response did not have a Retry-After header in seconds
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.exception;
+
+/**
+ * Exception thrown when a password cannot be checked because the HIBP API is unavailable, either because the call
+ * failed or timed out, or because the circuit breaker is open and the API is not called at all.
+ */
+public class HIBPUnavailableException extends HIBPException {
+
+    private static final long serialVersionUID = 2467813093856044279L;
+
+    private final boolean failOpen;
+
+    /**
+     * Constructor with error message.
+     *
+     * @param message Error message
+     */
+    public HIBPUnavailableException(String message) {
+        this(message, null, false);
+    }
+
+    /**
+     * Constructor with error message, cause and the policy of the tenant for unavailable checks.
+     *
+     * @param message  Error message
+     * @param cause    Cause of the exception
+     * @param failOpen true if the tenant accepts passwords that cannot be checked
+     */
+    public HIBPUnavailableException(String message, Throwable cause, boolean failOpen) {
+        super(message, cause);
+        this.failOpen = failOpen;
+    }
+
+    /**
+     * Checks whether the password should be accepted even though it could not be checked.
+     *
+     * @return true if the tenant fails open, false if it fails closed
+     */
+    public boolean isFailOpen() {
+        return failOpen;
+    }
+}
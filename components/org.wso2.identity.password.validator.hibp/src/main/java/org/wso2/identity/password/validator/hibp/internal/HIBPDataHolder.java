@@ -19,6 +19,24 @@
 package org.wso2.identity.password.validator.hibp.internal;
 
 import org.wso2.carbon.identity.governance.IdentityGovernanceService;
+import org.wso2.identity.password.validator.hibp.cache.CacheWarmer;
+import org.wso2.identity.password.validator.hibp.cache.ConnectorConfigCache;
+import org.wso2.identity.password.validator.hibp.cache.PrefixPopularitySketch;
+import org.wso2.identity.password.validator.hibp.cache.PrefixRangeCache;
+import org.wso2.identity.password.validator.hibp.cache.RangeRefresher;
+import org.wso2.identity.password.validator.hibp.client.CircuitBreaker;
+import org.wso2.identity.password.validator.hibp.client.ClientRateLimiter;
+import org.wso2.identity.password.validator.hibp.client.HIBPAsyncHttpClient;
+import org.wso2.identity.password.validator.hibp.client.HIBPHttpClientManager;
+import org.wso2.identity.password.validator.hibp.client.PeerGroup;
+import org.wso2.identity.password.validator.hibp.client.RequestHedger;
+import org.wso2.identity.password.validator.hibp.client.SingleFlight;
+import org.wso2.identity.password.validator.hibp.metrics.HIBPMetrics;
+import org.wso2.identity.password.validator.hibp.range.HashRange;
+import org.wso2.identity.password.validator.hibp.store.LocalPwnedPasswordStore;
+import org.wso2.identity.password.validator.hibp.store.PwnedPasswordFilter;
+
+import java.util.concurrent.ExecutorService;
 
 public class HIBPDataHolder {
 
@@ -35,6 +53,107 @@ public class HIBPDataHolder {
      */
     private IdentityGovernanceService identityGovernanceService;
 
+    /**
+     * Pooled HTTP client shared by all HIBP range lookups.
+     * Created when the bundle is activated and closed when it is deactivated.
+     */
+    private HIBPHttpClientManager httpClientManager;
+
+    /**
+     * Cache of HIBP range responses keyed by hash prefix.
+     * Null when the cache is disabled or the bundle is not active.
+     */
+    private PrefixRangeCache prefixRangeCache;
+
+    /**
+     * Per tenant cache of the connector configuration.
+     * Null when configuration caching is disabled or the bundle is not active.
+     */
+    private ConnectorConfigCache connectorConfigCache;
+
+    /**
+     * Local Pwned Passwords store used by tenants that enable local lookups.
+     * Null when no store is configured or the bundle is not active.
+     */
+    private LocalPwnedPasswordStore localPasswordStore;
+
+    /**
+     * Filter of the Pwned Passwords corpus used to skip lookups of passwords that are definitely not pwned.
+     * Null when no filter is configured or the bundle is not active.
+     */
+    private PwnedPasswordFilter passwordFilter;
+
+    /**
+     * Background refresher of the prefix range cache.
+     * Null when refreshing is disabled or the bundle is not active.
+     */
+    private RangeRefresher rangeRefresher;
+
+    /**
+     * Approximate lookup counts of the hash prefixes, used to warm up the prefix range cache.
+     * Null when warm-up is disabled or the bundle is not active.
+     */
+    private PrefixPopularitySketch prefixPopularity;
+
+    /**
+     * Background warmer of the prefix range cache.
+     * Null when warm-up is disabled or the bundle is not active.
+     */
+    private CacheWarmer cacheWarmer;
+
+    /**
+     * Cluster members sharing their range caches.
+     * Null when the peer cache is disabled or the bundle is not active.
+     */
+    private PeerGroup peerGroup;
+
+    /**
+     * Thread pool that fetches the ranges of batch requests in parallel.
+     * Null when the bundle is not active, in which case batches are fetched in the calling thread.
+     */
+    private ExecutorService batchExecutor;
+
+    /**
+     * Rate limit of the passwords each client checks with batch requests.
+     * Null when batch requests are not rate limited or the bundle is not active.
+     */
+    private ClientRateLimiter batchRateLimiter;
+
+    /**
+     * Thread pool that looks up the passwords of asynchronous servlet requests.
+     * Null when the bundle is not active, in which case requests are processed on the container threads.
+     */
+    private ExecutorService lookupExecutor;
+
+    /**
+     * Non-blocking HTTP client used by asynchronous lookups.
+     * Null when the bundle is not active.
+     */
+    private HIBPAsyncHttpClient asyncHttpClient;
+
+    /**
+     * Circuit breaker around calls to the HIBP API.
+     * Null when the circuit breaker is disabled or the bundle is not active.
+     */
+    private CircuitBreaker circuitBreaker;
+
+    /**
+     * Hedger of slow range requests.
+     * Null when hedging is disabled or the bundle is not active.
+     */
+    private RequestHedger requestHedger;
+
+    /**
+     * Metrics of the lookup pipeline.
+     * Null when metrics are disabled or the bundle is not active.
+     */
+    private HIBPMetrics metrics;
+
+    /**
+     * Coalesces concurrent requests for the range of the same hash prefix, whether ranges are cached or not.
+     */
+    private final SingleFlight<String, HashRange> rangeFlights = new SingleFlight<>();
+
     /**
      * Private constructor to prevent instantiation from outside this class.
      * This enforces the Singleton pattern by making the constructor inaccessible.
@@ -70,4 +189,314 @@ public class HIBPDataHolder {
     public void setIdentityGovernanceService(IdentityGovernanceService identityGovernanceService) {
         this.identityGovernanceService = identityGovernanceService;
     }
+
+    /**
+     * Retrieves the shared HTTP client manager.
+     *
+     * @return The HIBPHttpClientManager instance, or null if the bundle is not active
+     */
+    public HIBPHttpClientManager getHttpClientManager() {
+        return httpClientManager;
+    }
+
+    /**
+     * Sets the shared HTTP client manager.
+     *
+     * @param httpClientManager The HIBPHttpClientManager instance to be used for HIBP API calls
+     */
+    public void setHttpClientManager(HIBPHttpClientManager httpClientManager) {
+        this.httpClientManager = httpClientManager;
+    }
+
+    /**
+     * Retrieves the connector configuration cache.
+     *
+     * @return The ConnectorConfigCache instance, or null if configuration caching is disabled
+     */
+    public ConnectorConfigCache getConnectorConfigCache() {
+
+        return connectorConfigCache;
+    }
+
+    /**
+     * Sets the connector configuration cache.
+     *
+     * @param connectorConfigCache The ConnectorConfigCache instance to be used for configuration lookups
+     */
+    public void setConnectorConfigCache(ConnectorConfigCache connectorConfigCache) {
+
+        this.connectorConfigCache = connectorConfigCache;
+    }
+
+    /**
+     * Retrieves the hash prefix range cache.
+     *
+     * @return The PrefixRangeCache instance, or null if caching is disabled
+     */
+    public PrefixRangeCache getPrefixRangeCache() {
+        return prefixRangeCache;
+    }
+
+    /**
+     * Sets the hash prefix range cache.
+     *
+     * @param prefixRangeCache The PrefixRangeCache instance to be used for range lookups
+     */
+    public void setPrefixRangeCache(PrefixRangeCache prefixRangeCache) {
+        this.prefixRangeCache = prefixRangeCache;
+    }
+
+    /**
+     * Retrieves the local Pwned Passwords store.
+     *
+     * @return The LocalPwnedPasswordStore instance, or null if no store is configured
+     */
+    public LocalPwnedPasswordStore getLocalPasswordStore() {
+        return localPasswordStore;
+    }
+
+    /**
+     * Sets the local Pwned Passwords store.
+     *
+     * @param localPasswordStore The LocalPwnedPasswordStore instance to be used for local lookups
+     */
+    public void setLocalPasswordStore(LocalPwnedPasswordStore localPasswordStore) {
+        this.localPasswordStore = localPasswordStore;
+    }
+
+    /**
+     * Gets the Pwned Passwords filter.
+     *
+     * @return The PwnedPasswordFilter instance, or null if no filter is configured
+     */
+    public PwnedPasswordFilter getPasswordFilter() {
+        return passwordFilter;
+    }
+
+    /**
+     * Sets the Pwned Passwords filter.
+     *
+     * @param passwordFilter The PwnedPasswordFilter instance to be checked before lookups
+     */
+    public void setPasswordFilter(PwnedPasswordFilter passwordFilter) {
+        this.passwordFilter = passwordFilter;
+    }
+
+    /**
+     * Gets the background refresher of the prefix range cache.
+     *
+     * @return The RangeRefresher instance, or null if refreshing is disabled
+     */
+    public RangeRefresher getRangeRefresher() {
+        return rangeRefresher;
+    }
+
+    /**
+     * Sets the background refresher of the prefix range cache.
+     *
+     * @param rangeRefresher The RangeRefresher instance keeping the cached ranges fresh
+     */
+    public void setRangeRefresher(RangeRefresher rangeRefresher) {
+        this.rangeRefresher = rangeRefresher;
+    }
+
+    /**
+     * Gets the approximate lookup counts of the hash prefixes.
+     *
+     * @return The PrefixPopularitySketch instance, or null if warm-up is disabled
+     */
+    public PrefixPopularitySketch getPrefixPopularity() {
+        return prefixPopularity;
+    }
+
+    /**
+     * Sets the approximate lookup counts of the hash prefixes.
+     *
+     * @param prefixPopularity The PrefixPopularitySketch instance range lookups are recorded in
+     */
+    public void setPrefixPopularity(PrefixPopularitySketch prefixPopularity) {
+        this.prefixPopularity = prefixPopularity;
+    }
+
+    /**
+     * Gets the background warmer of the prefix range cache.
+     *
+     * @return The CacheWarmer instance, or null if warm-up is disabled
+     */
+    public CacheWarmer getCacheWarmer() {
+        return cacheWarmer;
+    }
+
+    /**
+     * Sets the background warmer of the prefix range cache.
+     *
+     * @param cacheWarmer The CacheWarmer instance fetching the popular prefixes on startup
+     */
+    public void setCacheWarmer(CacheWarmer cacheWarmer) {
+        this.cacheWarmer = cacheWarmer;
+    }
+
+    /**
+     * Gets the cluster members sharing their range caches.
+     *
+     * @return The PeerGroup instance, or null if the peer cache is disabled
+     */
+    public PeerGroup getPeerGroup() {
+        return peerGroup;
+    }
+
+    /**
+     * Sets the cluster members sharing their range caches.
+     *
+     * @param peerGroup The PeerGroup instance ranges owned by other members are requested from
+     */
+    public void setPeerGroup(PeerGroup peerGroup) {
+        this.peerGroup = peerGroup;
+    }
+
+    /**
+     * Gets the thread pool that fetches the ranges of batch requests.
+     *
+     * @return The ExecutorService instance, or null if the bundle is not active
+     */
+    public ExecutorService getBatchExecutor() {
+        return batchExecutor;
+    }
+
+    /**
+     * Sets the thread pool that fetches the ranges of batch requests.
+     *
+     * @param batchExecutor The ExecutorService instance to fetch ranges on
+     */
+    public void setBatchExecutor(ExecutorService batchExecutor) {
+        this.batchExecutor = batchExecutor;
+    }
+
+    /**
+     * Gets the rate limit of the passwords each client checks with batch requests.
+     *
+     * @return The ClientRateLimiter instance, or null if batch requests are not rate limited
+     */
+    public ClientRateLimiter getBatchRateLimiter() {
+        return batchRateLimiter;
+    }
+
+    /**
+     * Sets the rate limit of the passwords each client checks with batch requests.
+     *
+     * @param batchRateLimiter The ClientRateLimiter instance batch requests take permits from
+     */
+    public void setBatchRateLimiter(ClientRateLimiter batchRateLimiter) {
+        this.batchRateLimiter = batchRateLimiter;
+    }
+
+    /**
+     * Get the executor looking up passwords for asynchronous requests.
+     *
+     * @return lookup executor, or null if requests are processed on the container threads.
+     */
+    public ExecutorService getLookupExecutor() {
+
+        return lookupExecutor;
+    }
+
+    /**
+     * Set the executor looking up passwords for asynchronous requests.
+     *
+     * @param lookupExecutor lookup executor.
+     */
+    public void setLookupExecutor(ExecutorService lookupExecutor) {
+
+        this.lookupExecutor = lookupExecutor;
+    }
+
+    /**
+     * Get the non-blocking HTTP client used by asynchronous lookups.
+     *
+     * @return async HTTP client.
+     */
+    public HIBPAsyncHttpClient getAsyncHttpClient() {
+
+        return asyncHttpClient;
+    }
+
+    /**
+     * Set the non-blocking HTTP client used by asynchronous lookups.
+     *
+     * @param asyncHttpClient async HTTP client.
+     */
+    public void setAsyncHttpClient(HIBPAsyncHttpClient asyncHttpClient) {
+
+        this.asyncHttpClient = asyncHttpClient;
+    }
+
+    /**
+     * Get the circuit breaker around calls to the HIBP API.
+     *
+     * @return circuit breaker, or null if it is disabled.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+
+        return circuitBreaker;
+    }
+
+    /**
+     * Set the circuit breaker around calls to the HIBP API.
+     *
+     * @param circuitBreaker circuit breaker.
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Get the hedger of slow range requests.
+     *
+     * @return request hedger, or null if hedging is disabled.
+     */
+    public RequestHedger getRequestHedger() {
+
+        return requestHedger;
+    }
+
+    /**
+     * Set the hedger of slow range requests.
+     *
+     * @param requestHedger request hedger.
+     */
+    public void setRequestHedger(RequestHedger requestHedger) {
+
+        this.requestHedger = requestHedger;
+    }
+
+    /**
+     * Get the metrics of the lookup pipeline.
+     *
+     * @return metrics, or null if they are disabled.
+     */
+    public HIBPMetrics getMetrics() {
+
+        return metrics;
+    }
+
+    /**
+     * Set the metrics of the lookup pipeline.
+     *
+     * @param metrics metrics.
+     */
+    public void setMetrics(HIBPMetrics metrics) {
+
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get the coalescer of concurrent range requests.
+     *
+     * @return range request coalescer.
+     */
+    public SingleFlight<String, HashRange> getRangeFlights() {
+
+        return rangeFlights;
+    }
 }
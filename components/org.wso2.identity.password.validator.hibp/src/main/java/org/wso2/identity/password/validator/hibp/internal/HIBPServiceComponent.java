@@ -18,19 +18,56 @@
 
 package org.wso2.identity.password.validator.hibp.internal;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.eclipse.equinox.http.helper.ContextPathServletAdaptor;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.*;
 import org.osgi.service.http.HttpService;
+import org.osgi.service.http.NamespaceException;
 import org.wso2.carbon.identity.governance.IdentityGovernanceService;
 import org.wso2.carbon.identity.governance.common.IdentityConnectorConfig;
 import org.wso2.identity.password.validator.hibp.HIBPConnectorConfig;
+import org.wso2.identity.password.validator.hibp.HIBPMetricsServlet;
+import org.wso2.identity.password.validator.hibp.HIBPPeerServlet;
 import org.wso2.identity.password.validator.hibp.HIBPServlet;
+import org.wso2.identity.password.validator.hibp.cache.CacheWarmer;
+import org.wso2.identity.password.validator.hibp.cache.ConnectorConfigCache;
+import org.wso2.identity.password.validator.hibp.cache.DiskRangeCache;
+import org.wso2.identity.password.validator.hibp.cache.PrefixPopularitySketch;
+import org.wso2.identity.password.validator.hibp.cache.PrefixRangeCache;
+import org.wso2.identity.password.validator.hibp.cache.RangeRefresher;
+import org.wso2.identity.password.validator.hibp.client.CircuitBreaker;
+import org.wso2.identity.password.validator.hibp.client.ClientRateLimiter;
+import org.wso2.identity.password.validator.hibp.client.HIBPAsyncHttpClient;
+import org.wso2.identity.password.validator.hibp.client.HIBPHttpClientManager;
+import org.wso2.identity.password.validator.hibp.client.PeerGroup;
+import org.wso2.identity.password.validator.hibp.client.RequestHedger;
+import org.wso2.identity.password.validator.hibp.client.SingleFlight;
+import org.wso2.identity.password.validator.hibp.metrics.HIBPMetrics;
+import org.wso2.identity.password.validator.hibp.range.HashRange;
+import org.wso2.identity.password.validator.hibp.store.CorpusDownloader;
+import org.wso2.identity.password.validator.hibp.store.LocalPwnedPasswordStore;
+import org.wso2.identity.password.validator.hibp.store.PwnedPasswordFilter;
+import org.wso2.identity.password.validator.hibp.util.ConfigUtils;
 import org.wso2.identity.password.validator.hibp.util.Constants;
 
 import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * HIBP service component
@@ -41,6 +78,9 @@ public class HIBPServiceComponent {
 
     private static final Log log = LogFactory.getLog(HIBPServiceComponent.class);
     private HttpService httpService;
+    private final List<String> servletAliases = new ArrayList<>();
+    private Thread localStoreDownload;
+    private Thread diskCacheLoad;
 
     @Activate
     protected void activate(ComponentContext context) {
@@ -49,17 +89,531 @@ public class HIBPServiceComponent {
                 Constants.HIBP_SERVLET_PATH);
 
         try {
-            httpService.registerServlet(Constants.HIBP_SERVLET_PATH, commonAuthServlet, null, null);
+            int connectTimeout = ConfigUtils.getInt(Constants.HTTP_CLIENT_CONNECT_TIMEOUT,
+                    Constants.DEFAULT_HTTP_CLIENT_CONNECT_TIMEOUT);
+            int readTimeout = ConfigUtils.getInt(Constants.HTTP_CLIENT_READ_TIMEOUT,
+                    Constants.DEFAULT_HTTP_CLIENT_READ_TIMEOUT);
+            HIBPHttpClientManager httpClientManager = new HIBPHttpClientManager(
+                    ConfigUtils.getInt(Constants.HTTP_CLIENT_MAX_CONNECTIONS,
+                            Constants.DEFAULT_HTTP_CLIENT_MAX_CONNECTIONS),
+                    ConfigUtils.getInt(Constants.HTTP_CLIENT_MAX_CONNECTIONS_PER_ROUTE,
+                            Constants.DEFAULT_HTTP_CLIENT_MAX_CONNECTIONS_PER_ROUTE),
+                    ConfigUtils.getLong(Constants.HTTP_CLIENT_KEEP_ALIVE, Constants.DEFAULT_HTTP_CLIENT_KEEP_ALIVE),
+                    ConfigUtils.getLong(Constants.HTTP_CLIENT_IDLE_CONNECTION_TIMEOUT,
+                            Constants.DEFAULT_HTTP_CLIENT_IDLE_CONNECTION_TIMEOUT),
+                    connectTimeout, readTimeout);
+            HIBPDataHolder.getInstance().setHttpClientManager(httpClientManager);
+            HIBPDataHolder.getInstance().setAsyncHttpClient(new HIBPAsyncHttpClient(ConfigUtils.getInt(
+                    Constants.ASYNC_HTTP_CLIENT_THREADS, Constants.DEFAULT_ASYNC_HTTP_CLIENT_THREADS),
+                    connectTimeout, readTimeout));
+
+            if (ConfigUtils.getBoolean(Constants.CIRCUIT_BREAKER_ENABLED, Constants.DEFAULT_CIRCUIT_BREAKER_ENABLED)) {
+                HIBPDataHolder.getInstance().setCircuitBreaker(new CircuitBreaker(
+                        ConfigUtils.getInt(Constants.CIRCUIT_BREAKER_FAILURE_THRESHOLD,
+                                Constants.DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD),
+                        ConfigUtils.getLong(Constants.CIRCUIT_BREAKER_SLOW_CALL_THRESHOLD,
+                                Constants.DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_THRESHOLD),
+                        ConfigUtils.getLong(Constants.CIRCUIT_BREAKER_OPEN_DURATION,
+                                Constants.DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION)));
+            }
+
+            if (ConfigUtils.getBoolean(Constants.HEDGE_ENABLED, Constants.DEFAULT_HEDGE_ENABLED)) {
+                HIBPDataHolder.getInstance().setRequestHedger(new RequestHedger(
+                        ConfigUtils.getDouble(Constants.HEDGE_PERCENTILE, Constants.DEFAULT_HEDGE_PERCENTILE),
+                        ConfigUtils.getLong(Constants.HEDGE_MIN_DELAY, Constants.DEFAULT_HEDGE_MIN_DELAY),
+                        ConfigUtils.getInt(Constants.HEDGE_BUDGET_PERCENT, Constants.DEFAULT_HEDGE_BUDGET_PERCENT),
+                        // A hedge beyond the connection limit would only wait for a connection
+                        ConfigUtils.getInt(Constants.HTTP_CLIENT_MAX_CONNECTIONS,
+                                Constants.DEFAULT_HTTP_CLIENT_MAX_CONNECTIONS)));
+            }
+
+            long configCacheTimeToLive = ConfigUtils.getLong(Constants.CONFIG_CACHE_TIME_TO_LIVE,
+                    Constants.DEFAULT_CONFIG_CACHE_TIME_TO_LIVE);
+            if (configCacheTimeToLive > 0) {
+                HIBPDataHolder.getInstance().setConnectorConfigCache(new ConnectorConfigCache(
+                        ConfigUtils.getInt(Constants.CONFIG_CACHE_MAX_ENTRIES,
+                                Constants.DEFAULT_CONFIG_CACHE_MAX_ENTRIES), configCacheTimeToLive));
+            }
+
+            if (ConfigUtils.getBoolean(Constants.CACHE_ENABLED, Constants.DEFAULT_CACHE_ENABLED)) {
+                PrefixRangeCache prefixRangeCache = new PrefixRangeCache(
+                        ConfigUtils.getInt(Constants.CACHE_MAX_ENTRIES, Constants.DEFAULT_CACHE_MAX_ENTRIES),
+                        ConfigUtils.getLong(Constants.CACHE_TIME_TO_LIVE, Constants.DEFAULT_CACHE_TIME_TO_LIVE),
+                        ConfigUtils.getLong(Constants.CACHE_STALE_WHILE_REVALIDATE,
+                                Constants.DEFAULT_CACHE_STALE_WHILE_REVALIDATE),
+                        ConfigUtils.getLong(Constants.CACHE_STALE_IF_ERROR, Constants.DEFAULT_CACHE_STALE_IF_ERROR));
+                HIBPDataHolder.getInstance().setPrefixRangeCache(prefixRangeCache);
+                loadDiskRangeCache(prefixRangeCache, createCacheWarmer(prefixRangeCache));
+
+                if (ConfigUtils.getBoolean(Constants.REFRESH_ENABLED, Constants.DEFAULT_REFRESH_ENABLED)) {
+                    RangeRefresher rangeRefresher = new RangeRefresher(prefixRangeCache,
+                            ConfigUtils.getString(Constants.BACKGROUND_API_KEY, null),
+                            ConfigUtils.getInt(Constants.REFRESH_RATE, Constants.DEFAULT_REFRESH_RATE),
+                            ConfigUtils.getLong(Constants.REFRESH_MIN_AGE, Constants.DEFAULT_REFRESH_MIN_AGE));
+                    rangeRefresher.start();
+                    HIBPDataHolder.getInstance().setRangeRefresher(rangeRefresher);
+                }
+            }
+
+            HIBPDataHolder.getInstance().setBatchExecutor(Executors.newFixedThreadPool(
+                    ConfigUtils.getInt(Constants.BATCH_CONCURRENCY, Constants.DEFAULT_BATCH_CONCURRENCY),
+                    newThreadFactory("hibp-batch-lookup-")));
+            int batchClientRate = ConfigUtils.getInt(Constants.BATCH_CLIENT_RATE, Constants.DEFAULT_BATCH_CLIENT_RATE);
+            if (batchClientRate > 0) {
+                // A client can save up enough permits for one batch of the maximum size
+                HIBPDataHolder.getInstance().setBatchRateLimiter(new ClientRateLimiter(batchClientRate,
+                        Math.max(batchClientRate, ConfigUtils.getInt(Constants.BATCH_MAX_SIZE,
+                                Constants.DEFAULT_BATCH_MAX_SIZE)),
+                        ConfigUtils.getInt(Constants.BATCH_MAX_CLIENTS, Constants.DEFAULT_BATCH_MAX_CLIENTS)));
+            }
+
+            // Lookups of asynchronous requests run on their own bounded pool, so that a slow HIBP API holds these
+            // threads rather than the shared container threads.
+            int lookupConcurrency = ConfigUtils.getInt(Constants.LOOKUP_CONCURRENCY,
+                    Constants.DEFAULT_LOOKUP_CONCURRENCY);
+            HIBPDataHolder.getInstance().setLookupExecutor(new ThreadPoolExecutor(lookupConcurrency,
+                    lookupConcurrency, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(
+                    ConfigUtils.getInt(Constants.LOOKUP_QUEUE_SIZE, Constants.DEFAULT_LOOKUP_QUEUE_SIZE)),
+                    newThreadFactory("hibp-lookup-")));
+
+            openLocalPasswordStore();
+            openPasswordFilter();
+
+            registerServlet(Constants.HIBP_SERVLET_PATH, commonAuthServlet);
+
+            PeerGroup peerGroup = createPeerGroup();
+            if (peerGroup != null) {
+                HIBPDataHolder.getInstance().setPeerGroup(peerGroup);
+                registerServlet(Constants.HIBP_PEER_SERVLET_PATH, new ContextPathServletAdaptor(
+                        new HIBPPeerServlet(), Constants.HIBP_PEER_SERVLET_PATH));
+            }
+
+            if (ConfigUtils.getBoolean(Constants.METRICS_ENABLED, Constants.DEFAULT_METRICS_ENABLED)) {
+                HIBPDataHolder.getInstance().setMetrics(new HIBPMetrics());
+                String metricsToken = ConfigUtils.getString(Constants.METRICS_TOKEN, null);
+                if (StringUtils.isBlank(metricsToken)) {
+                    log.warn("HIBP metrics are enabled, but " + Constants.METRICS_TOKEN + " is not set. The metrics "
+                            + "endpoint is not registered.");
+                } else {
+                    registerServlet(Constants.HIBP_METRICS_SERVLET_PATH, new ContextPathServletAdaptor(
+                            new HIBPMetricsServlet(metricsToken), Constants.HIBP_METRICS_SERVLET_PATH));
+                }
+            }
 
             IdentityConnectorConfig connectorConfig = new HIBPConnectorConfig();
             context.getBundleContext().registerService(IdentityConnectorConfig.class, connectorConfig, null);
         } catch (Exception e) {
+            // A component that fails to activate is not deactivated, so release what was started so far
+            releaseResources();
             throw new RuntimeException("Failed to start HIBP component.", e);
         }
 
         log.info("Successfully started HIBP component.");
     }
 
+    @Deactivate
+    protected void deactivate(ComponentContext context) {
+
+        releaseResources();
+        if (log.isDebugEnabled()) {
+            log.debug("HIBP component is deactivated.");
+        }
+    }
+
+    /**
+     * Stop and release everything the component started. Only what was started is released, so that this also
+     * cleans up after an activation that failed partway.
+     */
+    private void releaseResources() {
+
+        // Stop taking requests before the resources they use are closed. The aliases have to be released for the
+        // servlets to be registered again when the component is reactivated.
+        unregisterServlets();
+
+        if (localStoreDownload != null) {
+            localStoreDownload.interrupt();
+            localStoreDownload = null;
+        }
+        synchronized (this) {
+            if (diskCacheLoad != null) {
+                diskCacheLoad.interrupt();
+                diskCacheLoad = null;
+            }
+        }
+
+        CacheWarmer cacheWarmer = HIBPDataHolder.getInstance().getCacheWarmer();
+        if (cacheWarmer != null) {
+            // Saves the popularity of the prefixes for the next start
+            cacheWarmer.close();
+            if (log.isDebugEnabled()) {
+                log.debug("HIBP cache warm-up statistics. Fetched: " + cacheWarmer.getFetchedCount()
+                        + ", already cached: " + cacheWarmer.getCachedCount() + ", failures: "
+                        + cacheWarmer.getFailureCount());
+            }
+            HIBPDataHolder.getInstance().setCacheWarmer(null);
+            HIBPDataHolder.getInstance().setPrefixPopularity(null);
+        }
+
+        PeerGroup peerGroup = HIBPDataHolder.getInstance().getPeerGroup();
+        if (peerGroup != null) {
+            HIBPDataHolder.getInstance().setPeerGroup(null);
+            peerGroup.close();
+            if (log.isDebugEnabled()) {
+                log.debug("HIBP peer cache statistics. Ranges from peers: " + peerGroup.getHitCount()
+                        + ", fetched locally: " + peerGroup.getFallbackCount() + ", failed peer requests: "
+                        + peerGroup.getFailureCount());
+            }
+        }
+
+        RangeRefresher rangeRefresher = HIBPDataHolder.getInstance().getRangeRefresher();
+        if (rangeRefresher != null) {
+            rangeRefresher.close();
+            if (log.isDebugEnabled()) {
+                log.debug("HIBP range refresh statistics. Not modified: " + rangeRefresher.getNotModifiedCount()
+                        + ", updated: " + rangeRefresher.getUpdatedCount() + ", failures: "
+                        + rangeRefresher.getFailureCount());
+            }
+            HIBPDataHolder.getInstance().setRangeRefresher(null);
+        }
+
+        HIBPHttpClientManager httpClientManager = HIBPDataHolder.getInstance().getHttpClientManager();
+        if (httpClientManager != null) {
+            httpClientManager.close();
+            HIBPDataHolder.getInstance().setHttpClientManager(null);
+        }
+
+        HIBPAsyncHttpClient asyncHttpClient = HIBPDataHolder.getInstance().getAsyncHttpClient();
+        if (asyncHttpClient != null) {
+            asyncHttpClient.close();
+            HIBPDataHolder.getInstance().setAsyncHttpClient(null);
+        }
+
+        ExecutorService lookupExecutor = HIBPDataHolder.getInstance().getLookupExecutor();
+        if (lookupExecutor != null) {
+            lookupExecutor.shutdownNow();
+            HIBPDataHolder.getInstance().setLookupExecutor(null);
+        }
+
+        ExecutorService batchExecutor = HIBPDataHolder.getInstance().getBatchExecutor();
+        if (batchExecutor != null) {
+            batchExecutor.shutdownNow();
+            HIBPDataHolder.getInstance().setBatchExecutor(null);
+        }
+
+        ClientRateLimiter batchRateLimiter = HIBPDataHolder.getInstance().getBatchRateLimiter();
+        if (batchRateLimiter != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("HIBP batch rate limit statistics. Rejected requests: "
+                        + batchRateLimiter.getRejectedCount());
+            }
+            HIBPDataHolder.getInstance().setBatchRateLimiter(null);
+        }
+
+        CircuitBreaker circuitBreaker = HIBPDataHolder.getInstance().getCircuitBreaker();
+        if (circuitBreaker != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("HIBP circuit breaker statistics. Opened: " + circuitBreaker.getOpenCount()
+                        + ", rejected calls: " + circuitBreaker.getRejectedCount());
+            }
+            HIBPDataHolder.getInstance().setCircuitBreaker(null);
+        }
+
+        HIBPDataHolder.getInstance().setMetrics(null);
+
+        RequestHedger requestHedger = HIBPDataHolder.getInstance().getRequestHedger();
+        if (requestHedger != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("HIBP request hedging statistics. Requests: " + requestHedger.getRequestCount()
+                        + ", hedged: " + requestHedger.getHedgeCount() + ", won by the hedge: "
+                        + requestHedger.getHedgeWinCount() + ", not hedged for lack of budget: "
+                        + requestHedger.getBudgetExhaustedCount() + ", not hedged for lack of threads: "
+                        + requestHedger.getSaturatedCount());
+            }
+            requestHedger.close();
+            HIBPDataHolder.getInstance().setRequestHedger(null);
+        }
+
+        if (log.isDebugEnabled()) {
+            SingleFlight<String, HashRange> rangeFlights = HIBPDataHolder.getInstance().getRangeFlights();
+            log.debug("HIBP range request statistics. Requests: " + rangeFlights.getLoadCount() + ", coalesced: "
+                    + rangeFlights.getSharedCount());
+        }
+
+        ConnectorConfigCache connectorConfigCache = HIBPDataHolder.getInstance().getConnectorConfigCache();
+        if (connectorConfigCache != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("HIBP connector configuration cache statistics. Hits: " + connectorConfigCache.getHitCount()
+                        + ", misses: " + connectorConfigCache.getMissCount());
+            }
+            HIBPDataHolder.getInstance().setConnectorConfigCache(null);
+        }
+
+        PrefixRangeCache prefixRangeCache = HIBPDataHolder.getInstance().getPrefixRangeCache();
+        if (prefixRangeCache != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("HIBP range cache statistics. Hits: " + prefixRangeCache.getHitCount() + ", misses: "
+                        + prefixRangeCache.getMissCount() + ", evictions: " + prefixRangeCache.getEvictionCount()
+                        + ", stale hits: " + prefixRangeCache.getStaleHitCount() + ", stale on error: "
+                        + prefixRangeCache.getStaleIfErrorCount());
+            }
+            DiskRangeCache diskRangeCache = prefixRangeCache.getDiskCache();
+            if (diskRangeCache != null) {
+                prefixRangeCache.setDiskCache(null);
+                diskRangeCache.close();
+                if (log.isDebugEnabled()) {
+                    log.debug("HIBP disk cache statistics. Hits: " + diskRangeCache.getHitCount() + ", misses: "
+                            + diskRangeCache.getMissCount() + ", writes: " + diskRangeCache.getWriteCount()
+                            + ", dropped writes: " + diskRangeCache.getDroppedWriteCount() + ", failures: "
+                            + diskRangeCache.getFailureCount() + ", evicted segments: "
+                            + diskRangeCache.getEvictionCount());
+                }
+            }
+            HIBPDataHolder.getInstance().setPrefixRangeCache(null);
+        }
+
+        LocalPwnedPasswordStore localPasswordStore = HIBPDataHolder.getInstance().getLocalPasswordStore();
+        if (localPasswordStore != null) {
+            try {
+                localPasswordStore.close();
+            } catch (IOException e) {
+                log.warn("Error while closing the local Pwned Passwords store.", e);
+            }
+            HIBPDataHolder.getInstance().setLocalPasswordStore(null);
+        }
+
+        PwnedPasswordFilter passwordFilter = HIBPDataHolder.getInstance().getPasswordFilter();
+        if (passwordFilter != null) {
+            try {
+                passwordFilter.close();
+            } catch (IOException e) {
+                log.warn("Error while closing the Pwned Passwords filter.", e);
+            }
+            HIBPDataHolder.getInstance().setPasswordFilter(null);
+        }
+    }
+
+    /**
+     * Open the local Pwned Passwords store if one is configured. A store that cannot be opened does not prevent the
+     * component from starting; tenants that enable local lookups get an error until it is fixed.
+     */
+    private void openLocalPasswordStore() {
+
+        String localStorePath = ConfigUtils.getString(Constants.LOCAL_STORE_PATH, null);
+        if (localStorePath == null) {
+            return;
+        }
+        if (Files.notExists(Paths.get(localStorePath))
+                && ConfigUtils.getBoolean(Constants.LOCAL_STORE_DOWNLOAD, Constants.DEFAULT_LOCAL_STORE_DOWNLOAD)) {
+            downloadLocalPasswordStore(localStorePath);
+            return;
+        }
+        try {
+            LocalPwnedPasswordStore localPasswordStore = LocalPwnedPasswordStore.open(Paths.get(localStorePath));
+            HIBPDataHolder.getInstance().setLocalPasswordStore(localPasswordStore);
+            log.info("Loaded local Pwned Passwords store with " + localPasswordStore.getRecordCount()
+                    + " hashes from " + localStorePath);
+        } catch (IOException e) {
+            log.error("Failed to open the local Pwned Passwords store at " + localStorePath, e);
+        }
+    }
+
+    /**
+     * Download the local Pwned Passwords store in the background and open it once it is complete. An interrupted
+     * download resumes from its last checkpoint the next time the component starts.
+     */
+    private void downloadLocalPasswordStore(String localStorePath) {
+
+        CorpusDownloader downloader = new CorpusDownloader(Paths.get(localStorePath),
+                ConfigUtils.getString(Constants.BACKGROUND_API_KEY, null),
+                ConfigUtils.getInt(Constants.LOCAL_STORE_DOWNLOAD_CONCURRENCY,
+                        Constants.DEFAULT_LOCAL_STORE_DOWNLOAD_CONCURRENCY),
+                ConfigUtils.getInt(Constants.LOCAL_STORE_DOWNLOAD_RATE, Constants.DEFAULT_LOCAL_STORE_DOWNLOAD_RATE));
+        localStoreDownload = new Thread(() -> {
+            try {
+                log.info("Downloading the local Pwned Passwords store to " + localStorePath);
+                downloader.download();
+                openLocalPasswordStore();
+            } catch (InterruptedException e) {
+                log.info("Download of the local Pwned Passwords store was stopped.");
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                log.error("Failed to download the local Pwned Passwords store to " + localStorePath, e);
+            }
+        }, "hibp-local-store-download");
+        localStoreDownload.setDaemon(true);
+        localStoreDownload.start();
+    }
+
+    /**
+     * Create the group of cluster members sharing their range caches if members are configured. An invalid
+     * configuration does not prevent the component from starting; the node then fetches all ranges itself.
+     *
+     * @return the peer group, or null if the peer cache is disabled.
+     */
+    private PeerGroup createPeerGroup() {
+
+        String members = ConfigUtils.getString(Constants.PEER_MEMBERS, null);
+        if (StringUtils.isBlank(members)) {
+            return null;
+        }
+        try {
+            PeerGroup peerGroup = new PeerGroup(Arrays.asList(members.split(",")),
+                    ConfigUtils.getString(Constants.PEER_SELF, null),
+                    ConfigUtils.getString(Constants.PEER_SECRET, null),
+                    ConfigUtils.getInt(Constants.PEER_VIRTUAL_NODES, Constants.DEFAULT_PEER_VIRTUAL_NODES),
+                    ConfigUtils.getInt(Constants.PEER_FAILURE_THRESHOLD, Constants.DEFAULT_PEER_FAILURE_THRESHOLD),
+                    ConfigUtils.getLong(Constants.PEER_RETRY_INTERVAL, Constants.DEFAULT_PEER_RETRY_INTERVAL),
+                    ConfigUtils.getInt(Constants.ASYNC_HTTP_CLIENT_THREADS,
+                            Constants.DEFAULT_ASYNC_HTTP_CLIENT_THREADS),
+                    ConfigUtils.getLong(Constants.PEER_TIMEOUT, Constants.DEFAULT_PEER_TIMEOUT));
+            log.info("HIBP peer cache is enabled with " + peerGroup.getMemberCount() + " members.");
+            return peerGroup;
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid HIBP peer cache configuration. The peer cache is disabled.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Create the warmer of the range cache if warm-up is configured, and start recording the popularity of the
+     * prefixes. The warmer is started once the disk tier of the cache is loaded.
+     *
+     * @return the cache warmer, or null if warm-up is disabled.
+     */
+    private CacheWarmer createCacheWarmer(PrefixRangeCache prefixRangeCache) {
+
+        String warmupPath = ConfigUtils.getString(Constants.WARMUP_PATH, null);
+        if (warmupPath == null) {
+            return null;
+        }
+        PrefixPopularitySketch prefixPopularity = new PrefixPopularitySketch();
+        CacheWarmer cacheWarmer = new CacheWarmer(prefixRangeCache, prefixPopularity, Paths.get(warmupPath),
+                ConfigUtils.getString(Constants.BACKGROUND_API_KEY, null),
+                ConfigUtils.getInt(Constants.WARMUP_PREFIXES, Constants.DEFAULT_WARMUP_PREFIXES),
+                ConfigUtils.getInt(Constants.WARMUP_RATE, Constants.DEFAULT_WARMUP_RATE),
+                ConfigUtils.getLong(Constants.WARMUP_SAVE_INTERVAL, Constants.DEFAULT_WARMUP_SAVE_INTERVAL));
+        HIBPDataHolder.getInstance().setPrefixPopularity(prefixPopularity);
+        HIBPDataHolder.getInstance().setCacheWarmer(cacheWarmer);
+        return cacheWarmer;
+    }
+
+    /**
+     * Load the disk tier of the range cache in the background if one is configured, and attach it to the cache once
+     * it is loaded. Until then, lookups are served from memory and the HIBP API, so the component starts without
+     * waiting for the disk. The cache warmer, if any, is started afterwards, so that it only fetches the popular
+     * prefixes that are not on disk.
+     */
+    private void loadDiskRangeCache(PrefixRangeCache prefixRangeCache, CacheWarmer cacheWarmer) {
+
+        String diskCachePath = ConfigUtils.getString(Constants.DISK_CACHE_PATH, null);
+        if (diskCachePath == null) {
+            if (cacheWarmer != null) {
+                cacheWarmer.start();
+            }
+            return;
+        }
+        long maxBytes = ConfigUtils.getLong(Constants.DISK_CACHE_MAX_SIZE_MB,
+                Constants.DEFAULT_DISK_CACHE_MAX_SIZE_MB) << 20;
+        int writeQueueSize = ConfigUtils.getInt(Constants.DISK_CACHE_WRITE_QUEUE_SIZE,
+                Constants.DEFAULT_DISK_CACHE_WRITE_QUEUE_SIZE);
+        Thread load = new Thread(() -> {
+            DiskRangeCache diskRangeCache = null;
+            try {
+                diskRangeCache = DiskRangeCache.open(Paths.get(diskCachePath), maxBytes, writeQueueSize);
+            } catch (IOException | RuntimeException e) {
+                if (!Thread.currentThread().isInterrupted()) {
+                    log.error("Failed to load the HIBP disk cache at " + diskCachePath, e);
+                }
+            }
+            synchronized (this) {
+                // The component was deactivated while the cache was loading
+                if (Thread.currentThread().isInterrupted()) {
+                    if (diskRangeCache != null) {
+                        diskRangeCache.close();
+                    }
+                    return;
+                }
+                if (diskRangeCache != null) {
+                    prefixRangeCache.setDiskCache(diskRangeCache);
+                    log.info("Loaded " + diskRangeCache.size() + " ranges from the HIBP disk cache at "
+                            + diskCachePath);
+                }
+                if (cacheWarmer != null) {
+                    cacheWarmer.start();
+                }
+                diskCacheLoad = null;
+            }
+        }, "hibp-disk-cache-load");
+        load.setDaemon(true);
+        synchronized (this) {
+            diskCacheLoad = load;
+        }
+        load.start();
+    }
+
+    /**
+     * Open the Pwned Passwords filter if one is configured. Without a filter every password is looked up.
+     */
+    private void openPasswordFilter() {
+
+        String filterPath = ConfigUtils.getString(Constants.LOCAL_FILTER_PATH, null);
+        if (filterPath == null) {
+            return;
+        }
+        try {
+            PwnedPasswordFilter passwordFilter = PwnedPasswordFilter.open(Paths.get(filterPath));
+            HIBPDataHolder.getInstance().setPasswordFilter(passwordFilter);
+            log.info("Loaded Pwned Passwords filter of " + passwordFilter.getEntryCount() + " hashes from "
+                    + filterPath + " with an expected false positive rate of "
+                    + passwordFilter.getExpectedFalsePositiveRate());
+        } catch (IOException e) {
+            log.error("Failed to open the Pwned Passwords filter at " + filterPath, e);
+        }
+    }
+
+    /**
+     * Create a factory of daemon threads named with the given prefix and a sequence number.
+     */
+    private static ThreadFactory newThreadFactory(String namePrefix) {
+
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Register a servlet with the HTTP service, keeping its alias to unregister it on deactivation.
+     */
+    private void registerServlet(String alias, Servlet servlet) throws ServletException, NamespaceException {
+
+        httpService.registerServlet(alias, servlet, null, null);
+        servletAliases.add(alias);
+    }
+
+    /**
+     * Unregister the servlets registered on activation.
+     */
+    private void unregisterServlets() {
+
+        for (String alias : servletAliases) {
+            if (httpService == null) {
+                break;
+            }
+            try {
+                httpService.unregister(alias);
+            } catch (IllegalArgumentException e) {
+                // The HTTP service no longer holds the alias, e.g. it was replaced
+                if (log.isDebugEnabled()) {
+                    log.debug("HIBP servlet " + alias + " is not registered.", e);
+                }
+            }
+        }
+        servletAliases.clear();
+    }
+
     @Reference(
             name = "osgi.httpservice",
             service = HttpService.class,
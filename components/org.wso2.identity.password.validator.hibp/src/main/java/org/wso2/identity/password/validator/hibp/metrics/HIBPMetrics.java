@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the password lookup pipeline: latencies of its stages, status codes of the HIBP API responses and failed
+ * lookups of each tenant.
+ *
+ * Recording is lock free. Latencies go to {@link LatencyDistribution}s and counts to {@link LongAdder}s, which are
+ * only looked up in concurrent maps on the recording path.
+ */
+public class HIBPMetrics {
+
+    /**
+     * Stages of a password lookup whose latencies are recorded.
+     */
+    public enum Stage {
+
+        /**
+         * Reading the connector configuration of the tenant.
+         */
+        CONFIG("config"),
+
+        /**
+         * Hashing the password.
+         */
+        HASH("hash"),
+
+        /**
+         * Requesting a range from the HIBP API, until its response is received. The blocking client reads the body
+         * of the response while parsing it, the non-blocking client receives the whole body before.
+         */
+        FETCH("fetch"),
+
+        /**
+         * Reading and parsing the body of a range response.
+         */
+        PARSE("parse"),
+
+        /**
+         * A whole lookup of a single password.
+         */
+        TOTAL("total");
+
+        private final String label;
+
+        Stage(String label) {
+
+            this.label = label;
+        }
+
+        public String getLabel() {
+
+            return label;
+        }
+    }
+
+    /**
+     * Failed lookups are counted for at most this many tenants, and for any further tenant under
+     * {@link #OTHER_TENANTS}, so that requests for arbitrary tenant domains cannot grow the metrics without bound.
+     */
+    static final int MAX_TENANTS = 1000;
+    static final String OTHER_TENANTS = "_other";
+
+    private static final String UNAVAILABLE = "unavailable";
+    private static final String ERROR = "error";
+
+    private final LatencyDistribution[] stageLatencies = new LatencyDistribution[Stage.values().length];
+    private final Map<Integer, LongAdder> upstreamStatusCounts = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder[]> tenantErrorCounts = new ConcurrentHashMap<>();
+
+    public HIBPMetrics() {
+
+        for (int i = 0; i < stageLatencies.length; i++) {
+            stageLatencies[i] = new LatencyDistribution();
+        }
+    }
+
+    /**
+     * Record the latency of a stage of a lookup.
+     *
+     * @param stage      stage of the lookup.
+     * @param startNanos {@link System#nanoTime()} when the stage started.
+     */
+    public void record(Stage stage, long startNanos) {
+
+        stageLatencies[stage.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Count a response of the HIBP API.
+     *
+     * @param statusCode status code of the response.
+     */
+    public void countUpstreamStatus(int statusCode) {
+
+        LongAdder count = upstreamStatusCounts.get(statusCode);
+        if (count == null) {
+            count = upstreamStatusCounts.computeIfAbsent(statusCode, key -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    /**
+     * Count a failed lookup of a tenant.
+     *
+     * @param tenantDomain tenant domain.
+     * @param unavailable  true if the lookup failed because the HIBP API was unavailable.
+     */
+    public void countError(String tenantDomain, boolean unavailable) {
+
+        String tenant = String.valueOf(tenantDomain);
+        LongAdder[] counts = tenantErrorCounts.get(tenant);
+        if (counts == null) {
+            counts = tenantErrorCounts.computeIfAbsent(tenantErrorCounts.size() < MAX_TENANTS ? tenant
+                    : OTHER_TENANTS, key -> new LongAdder[]{new LongAdder(), new LongAdder()});
+        }
+        counts[unavailable ? 0 : 1].increment();
+    }
+
+    /**
+     * Get the recorded latencies of a stage of a lookup.
+     *
+     * @param stage stage of the lookup.
+     * @return recorded latencies.
+     */
+    public LatencyDistribution getLatencies(Stage stage) {
+
+        return stageLatencies[stage.ordinal()];
+    }
+
+    /**
+     * Write the metrics.
+     *
+     * @param writer writer of the metrics.
+     */
+    public void writeTo(PrometheusTextWriter writer) {
+
+        writer.family("hibp_lookup_stage_duration_seconds", PrometheusTextWriter.HISTOGRAM,
+                "Latency of the stages of password lookups.");
+        for (Stage stage : Stage.values()) {
+            writer.histogram("hibp_lookup_stage_duration_seconds", getLatencies(stage), "stage", stage.getLabel());
+        }
+
+        writer.family("hibp_upstream_responses_total", PrometheusTextWriter.COUNTER,
+                "Responses of the HIBP API by status code.");
+        upstreamStatusCounts.forEach((statusCode, count) -> writer.sample("hibp_upstream_responses_total",
+                count.sum(), "status", String.valueOf(statusCode)));
+
+        writer.family("hibp_lookup_errors_total", PrometheusTextWriter.COUNTER,
+                "Failed password lookups by tenant, unavailable when the HIBP API could not be reached.");
+        tenantErrorCounts.forEach((tenant, counts) -> {
+            writer.sample("hibp_lookup_errors_total", counts[0].sum(), "tenant", tenant, "reason", UNAVAILABLE);
+            writer.sample("hibp_lookup_errors_total", counts[1].sum(), "tenant", tenant, "reason", ERROR);
+        });
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free distribution of all latencies recorded since it was created, exported as a Prometheus histogram.
+ *
+ * Latencies are recorded in microseconds into the log-linear buckets of {@link LatencyHistogram}. Every bucket is a
+ * {@link LongAdder}, so that threads recording the same latency do not contend on one counter.
+ */
+public class LatencyDistribution {
+
+    private final LongAdder[] counts = new LongAdder[LatencyHistogram.BUCKET_COUNT];
+    private final LongAdder sumMicros = new LongAdder();
+
+    public LatencyDistribution() {
+
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param latency latency.
+     * @param unit    unit of the latency.
+     */
+    public void record(long latency, TimeUnit unit) {
+
+        long micros = Math.max(0L, unit.toMicros(latency));
+        counts[LatencyHistogram.bucketOf(micros)].increment();
+        sumMicros.add(micros);
+    }
+
+    /**
+     * Get the number of latencies at most the given value. The count is exact up to the resolution of the buckets,
+     * i.e. latencies up to 12.5% above the value may not be counted.
+     *
+     * @param micros latency in microseconds.
+     * @return number of recorded latencies whose bucket lies at or below the given latency.
+     */
+    public long getCountAtMost(long micros) {
+
+        long count = 0;
+        for (int i = 0; i < counts.length && LatencyHistogram.upperBoundOf(i) <= micros; i++) {
+            count += counts[i].sum();
+        }
+        return count;
+    }
+
+    /**
+     * Get a percentile of the recorded latencies.
+     *
+     * @param percentile percentile, between 0 and 100.
+     * @return upper bound of the latency in microseconds below which the given percentage of latencies lies, or -1 if
+     * no latencies were recorded.
+     */
+    public long getPercentileMicros(double percentile) {
+
+        long[] snapshot = new long[counts.length];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            snapshot[i] = counts[i].sum();
+            total += snapshot[i];
+        }
+        return LatencyHistogram.getPercentileMicros(snapshot, total, percentile);
+    }
+
+    public long getCount() {
+
+        long count = 0;
+        for (LongAdder bucketCount : counts) {
+            count += bucketCount.sum();
+        }
+        return count;
+    }
+
+    public long getSumMicros() {
+
+        return sumMicros.sum();
+    }
+}
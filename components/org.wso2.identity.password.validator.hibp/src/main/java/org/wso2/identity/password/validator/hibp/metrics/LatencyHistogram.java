@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock free histogram of recent latencies, used to estimate latency percentiles.
+ *
+ * Latencies are recorded in microseconds into log-linear buckets: values below 16 have a bucket each, and every
+ * power of two above is split into 8 buckets, so a percentile is reported with an error of at most 12.5%. Recording
+ * is a single atomic increment.
+ *
+ * Only recent latencies are kept. Values are recorded into the current window, and percentiles are computed over the
+ * current and the previous window, so the estimate follows changes of the latency within one to two window lengths.
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_BITS = 4;
+    static final int BUCKET_COUNT = LINEAR_BUCKETS + (Long.SIZE - 1 - LINEAR_BITS) * SUB_BUCKETS;
+
+    private final long windowMillis;
+    private final LongSupplier clock;
+
+    private volatile Window current;
+    private volatile Window previous;
+
+    /**
+     * Create a histogram.
+     *
+     * @param windowMillis Length in milliseconds of a window of recorded latencies
+     */
+    public LatencyHistogram(long windowMillis) {
+
+        this(windowMillis, System::currentTimeMillis);
+    }
+
+    LatencyHistogram(long windowMillis, LongSupplier clock) {
+
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("Window length must be positive.");
+        }
+        this.windowMillis = windowMillis;
+        this.clock = clock;
+        this.current = new Window(clock.getAsLong());
+        this.previous = new Window(clock.getAsLong());
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param latency latency.
+     * @param unit    unit of the latency.
+     */
+    public void record(long latency, TimeUnit unit) {
+
+        getCurrentWindow().counts.incrementAndGet(bucketOf(Math.max(0L, unit.toMicros(latency))));
+    }
+
+    /**
+     * Get a percentile of the recent latencies.
+     *
+     * @param percentile percentile, between 0 and 100.
+     * @return upper bound of the latency in microseconds below which the given percentage of recent latencies lies,
+     * or -1 if no latencies were recorded recently.
+     */
+    public long getPercentileMicros(double percentile) {
+
+        Window window = getCurrentWindow();
+        Window previousWindow = previous;
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = window.counts.get(i) + previousWindow.counts.get(i);
+            total += counts[i];
+        }
+        return getPercentileMicros(counts, total, percentile);
+    }
+
+    /**
+     * Get the number of recent latencies, i.e. of the current and the previous window.
+     *
+     * @return number of recent latencies.
+     */
+    public long getCount() {
+
+        Window window = getCurrentWindow();
+        Window previousWindow = previous;
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += window.counts.get(i) + previousWindow.counts.get(i);
+        }
+        return count;
+    }
+
+    static long getPercentileMicros(long[] counts, long total, double percentile) {
+
+        if (total == 0) {
+            return -1;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(counts.length - 1);
+    }
+
+    static int bucketOf(long micros) {
+
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - LINEAR_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + LINEAR_BITS;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long lowerBound = (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Get the window latencies are recorded in, starting a new window if the current one has ended.
+     */
+    private Window getCurrentWindow() {
+
+        Window window = current;
+        long now = clock.getAsLong();
+        if (now - window.start < windowMillis) {
+            return window;
+        }
+        synchronized (this) {
+            window = current;
+            if (now - window.start >= windowMillis) {
+                // Latencies older than two windows are dropped along with the previous window.
+                previous = now - window.start < 2 * windowMillis ? window : new Window(now);
+                window = new Window(now);
+                current = window;
+            }
+            return window;
+        }
+    }
+
+    /**
+     * Bucket counts of the latencies recorded in a window.
+     */
+    private static final class Window {
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+        private final long start;
+
+        private Window(long start) {
+
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.metrics;
+
+import java.math.BigDecimal;
+
+/**
+ * Writes metrics in the Prometheus text exposition format.
+ *
+ * Every metric family is started with {@link #family(String, String, String)}, followed by its samples. Labels are
+ * given as alternating names and values.
+ */
+public class PrometheusTextWriter {
+
+    /**
+     * Content type of the Prometheus text exposition format.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    public static final String COUNTER = "counter";
+    public static final String GAUGE = "gauge";
+    public static final String HISTOGRAM = "histogram";
+
+    /**
+     * Upper bounds in microseconds of the buckets latency histograms are exported with, from 100us to 10s.
+     */
+    private static final long[] BUCKET_BOUNDS_MICROS = {100L, 250L, 500L, 1000L, 2500L, 5000L, 10000L, 25000L,
+            50000L, 100000L, 250000L, 500000L, 1000000L, 2500000L, 5000000L, 10000000L};
+
+    private final StringBuilder out = new StringBuilder();
+
+    /**
+     * Start a metric family.
+     *
+     * @param name name of the metric.
+     * @param type type of the metric, e.g. {@link #COUNTER}.
+     * @param help description of the metric.
+     */
+    public void family(String name, String type, String help) {
+
+        out.append("# HELP ").append(name).append(' ')
+                .append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Write a sample of the current metric family.
+     *
+     * @param name   name of the sample.
+     * @param value  value of the sample.
+     * @param labels names and values of the labels of the sample.
+     */
+    public void sample(String name, long value, String... labels) {
+
+        appendName(name, labels);
+        out.append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Write a sample of the current metric family.
+     *
+     * @param name   name of the sample.
+     * @param value  value of the sample.
+     * @param labels names and values of the labels of the sample.
+     */
+    public void sample(String name, double value, String... labels) {
+
+        appendName(name, labels);
+        out.append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Write the samples of a latency histogram of the current metric family, in seconds.
+     *
+     * @param name         name of the histogram.
+     * @param distribution recorded latencies.
+     * @param labels       names and values of the labels of the histogram.
+     */
+    public void histogram(String name, LatencyDistribution distribution, String... labels) {
+
+        String[] bucketLabels = new String[labels.length + 2];
+        System.arraycopy(labels, 0, bucketLabels, 0, labels.length);
+        bucketLabels[labels.length] = "le";
+        for (long bound : BUCKET_BOUNDS_MICROS) {
+            bucketLabels[labels.length + 1] = BigDecimal.valueOf(bound, 6).stripTrailingZeros().toPlainString();
+            sample(name + "_bucket", distribution.getCountAtMost(bound), bucketLabels);
+        }
+        // Buckets are read one by one while latencies are recorded, so the total is read last and is at least the
+        // count of any bucket.
+        long count = distribution.getCount();
+        bucketLabels[labels.length + 1] = "+Inf";
+        sample(name + "_bucket", count, bucketLabels);
+        sample(name + "_sum", distribution.getSumMicros() / 1e6, labels);
+        sample(name + "_count", count, labels);
+    }
+
+    @Override
+    public String toString() {
+
+        return out.toString();
+    }
+
+    private void appendName(String name, String[] labels) {
+
+        out.append(name);
+        if (labels.length == 0) {
+            return;
+        }
+        out.append('{');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        out.append('}');
+    }
+}
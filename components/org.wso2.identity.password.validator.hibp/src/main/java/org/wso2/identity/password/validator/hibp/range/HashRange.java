@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.range;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Compact, immutable representation of a HIBP range response.
+ *
+ * Instead of a map of suffix strings to boxed counts, the suffixes are kept packed (see {@link HexUtils}) and sorted
+ * in a single byte array with the appearance counts in a parallel int array. A range of ~1000 hashes takes ~22 KB
+ * and is looked up with a binary search over the packed suffixes.
+ */
+public final class HashRange {
+
+    private static final HashRange EMPTY = new HashRange(new byte[0], new int[0], 0);
+
+    private final byte[] suffixes;
+    private final int[] counts;
+    private final int size;
+
+    private HashRange(byte[] suffixes, int[] counts, int size) {
+
+        this.suffixes = suffixes;
+        this.counts = counts;
+        this.size = size;
+    }
+
+    /**
+     * Get an empty range.
+     *
+     * @return range without any hashes.
+     */
+    public static HashRange empty() {
+
+        return EMPTY;
+    }
+
+    /**
+     * Get the number of hashes in the range.
+     *
+     * @return number of hashes.
+     */
+    public int size() {
+
+        return size;
+    }
+
+    public boolean isEmpty() {
+
+        return size == 0;
+    }
+
+    /**
+     * Get the appearance count of the given hash suffix.
+     *
+     * @param suffix 35 character hex suffix of the SHA-1 hash.
+     * @return appearance count, or 0 if the suffix is not in the range.
+     */
+    public int getCount(String suffix) {
+
+        byte[] packedSuffix = HexUtils.decodeSuffix(suffix);
+        return packedSuffix == null ? 0 : getCount(packedSuffix, 0);
+    }
+
+    /**
+     * Get the appearance count of the given packed hash suffix.
+     *
+     * @param packedSuffix array holding the packed suffix.
+     * @param offset       index of the first of the {@link HexUtils#SUFFIX_BYTES} suffix bytes.
+     * @return appearance count, or 0 if the suffix is not in the range.
+     */
+    public int getCount(byte[] packedSuffix, int offset) {
+
+        int index = indexOf(packedSuffix, offset);
+        return index < 0 ? 0 : counts[index];
+    }
+
+    /**
+     * Get the appearance count of the suffix of the given 20 byte digest, without decoding or copying the suffix.
+     * Bytes 2 to 19 of a digest are its packed suffix, except for the high nibble of byte 2 which is part of the
+     * prefix.
+     *
+     * @param digest array holding the digest.
+     * @param offset index of the first of the {@link HexUtils#DIGEST_BYTES} digest bytes.
+     * @return appearance count, or 0 if the suffix is not in the range.
+     */
+    public int getDigestCount(byte[] digest, int offset) {
+
+        int suffixOffset = offset + HexUtils.DIGEST_BYTES - HexUtils.SUFFIX_BYTES;
+        int first = digest[suffixOffset] & 0x0F;
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int from = mid * HexUtils.SUFFIX_BYTES;
+            int comparison = Integer.compare(suffixes[from], first);
+            if (comparison == 0) {
+                comparison = Arrays.compareUnsigned(suffixes, from + 1, from + HexUtils.SUFFIX_BYTES, digest,
+                        suffixOffset + 1, suffixOffset + HexUtils.SUFFIX_BYTES);
+            }
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return counts[mid];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Copy the packed suffix at the given index. Suffixes are in ascending order.
+     *
+     * @param index      index of the hash, between 0 and {@link #size()} - 1.
+     * @param dest       destination of the packed suffix.
+     * @param destOffset index in the destination to write the {@link HexUtils#SUFFIX_BYTES} packed bytes to.
+     */
+    public void getSuffix(int index, byte[] dest, int destOffset) {
+
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        System.arraycopy(suffixes, index * HexUtils.SUFFIX_BYTES, dest, destOffset, HexUtils.SUFFIX_BYTES);
+    }
+
+    /**
+     * Get the appearance count of the hash at the given index.
+     *
+     * @param index index of the hash, between 0 and {@link #size()} - 1.
+     * @return appearance count.
+     */
+    public int getCountAt(int index) {
+
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return counts[index];
+    }
+
+    /**
+     * Write the range in the format of the HIBP range API, one "SUFFIX:COUNT" line per hash, so that it can be read
+     * back with {@link RangeParser}.
+     *
+     * @param out stream to write to, which is neither flushed nor closed.
+     * @throws IOException if the range cannot be written.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+
+        // Suffix, separator, at most 10 count digits and the line break
+        byte[] line = new byte[HexUtils.SUFFIX_LENGTH + 13];
+        line[HexUtils.SUFFIX_LENGTH] = ':';
+        for (int i = 0; i < size; i++) {
+            HexUtils.encodeSuffix(suffixes, i * HexUtils.SUFFIX_BYTES, line, 0);
+            int length = HexUtils.SUFFIX_LENGTH + 1;
+            String count = Integer.toString(counts[i]);
+            for (int j = 0; j < count.length(); j++) {
+                line[length++] = (byte) count.charAt(j);
+            }
+            line[length++] = '\r';
+            line[length++] = '\n';
+            out.write(line, 0, length);
+        }
+    }
+
+    private int indexOf(byte[] packedSuffix, int offset) {
+
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = compare(suffixes, mid, packedSuffix, offset);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static int compare(byte[] suffixes, int index, byte[] other, int otherOffset) {
+
+        int from = index * HexUtils.SUFFIX_BYTES;
+        return Arrays.compareUnsigned(suffixes, from, from + HexUtils.SUFFIX_BYTES, other, otherOffset,
+                otherOffset + HexUtils.SUFFIX_BYTES);
+    }
+
+    /**
+     * Accumulates packed suffixes and counts into a {@link HashRange}.
+     */
+    public static final class Builder {
+
+        private byte[] suffixes;
+        private int[] counts;
+        private int size;
+
+        public Builder() {
+
+            this(1024);
+        }
+
+        /**
+         * Create a builder.
+         *
+         * @param expectedSize expected number of hashes in the range.
+         */
+        public Builder(int expectedSize) {
+
+            int capacity = Math.max(expectedSize, 16);
+            suffixes = new byte[capacity * HexUtils.SUFFIX_BYTES];
+            counts = new int[capacity];
+        }
+
+        /**
+         * Add a hash to the range.
+         *
+         * @param packedSuffix array holding the packed suffix.
+         * @param offset       index of the first of the {@link HexUtils#SUFFIX_BYTES} suffix bytes.
+         * @param count        appearance count of the hash.
+         * @return this builder.
+         */
+        public Builder add(byte[] packedSuffix, int offset, int count) {
+
+            if (size == counts.length) {
+                int capacity = size * 2;
+                suffixes = Arrays.copyOf(suffixes, capacity * HexUtils.SUFFIX_BYTES);
+                counts = Arrays.copyOf(counts, capacity);
+            }
+            System.arraycopy(packedSuffix, offset, suffixes, size * HexUtils.SUFFIX_BYTES, HexUtils.SUFFIX_BYTES);
+            counts[size++] = count;
+            return this;
+        }
+
+        /**
+         * Build the range. Arrays are trimmed to size and sorted if the hashes were not added in order.
+         *
+         * @return immutable range.
+         */
+        public HashRange build() {
+
+            if (size == 0) {
+                return EMPTY;
+            }
+            byte[] builtSuffixes = Arrays.copyOf(suffixes, size * HexUtils.SUFFIX_BYTES);
+            int[] builtCounts = Arrays.copyOf(counts, size);
+            if (!isSorted(builtSuffixes, size)) {
+                sort(builtSuffixes, builtCounts, size);
+            }
+            return new HashRange(builtSuffixes, builtCounts, size);
+        }
+
+        private static boolean isSorted(byte[] suffixes, int size) {
+
+            for (int i = 1; i < size; i++) {
+                if (compare(suffixes, i - 1, suffixes, i * HexUtils.SUFFIX_BYTES) > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static void sort(byte[] suffixes, int[] counts, int size) {
+
+            byte[] unsortedSuffixes = suffixes.clone();
+            int[] unsortedCounts = counts.clone();
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> compare(unsortedSuffixes, a, unsortedSuffixes, b * HexUtils.SUFFIX_BYTES));
+            for (int i = 0; i < size; i++) {
+                System.arraycopy(unsortedSuffixes, order[i] * HexUtils.SUFFIX_BYTES, suffixes,
+                        i * HexUtils.SUFFIX_BYTES, HexUtils.SUFFIX_BYTES);
+                counts[i] = unsortedCounts[order[i]];
+            }
+        }
+    }
+}
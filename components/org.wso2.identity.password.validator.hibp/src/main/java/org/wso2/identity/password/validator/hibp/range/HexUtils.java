@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.range;
+
+import java.util.Arrays;
+
+/**
+ * Table driven helpers to decode the hexadecimal hashes used by the HIBP range API into packed bytes.
+ *
+ * A range suffix is the 35 hex characters of a SHA-1 hash that follow the 5 character prefix. It is packed
+ * right-aligned into {@link #SUFFIX_BYTES} bytes: the first byte holds the single leading nibble and every following
+ * byte holds two nibbles. This is exactly the last 18 bytes of the raw SHA-1 digest with the prefix nibble of the
+ * first byte masked out, so packed suffixes can be compared against a digest without any shifting.
+ */
+public final class HexUtils {
+
+    /**
+     * Number of hex characters in a range suffix.
+     */
+    public static final int SUFFIX_LENGTH = 35;
+
+    /**
+     * Number of bytes in a packed range suffix.
+     */
+    public static final int SUFFIX_BYTES = 18;
+
+    /**
+     * Number of hex characters in a range prefix.
+     */
+    public static final int PREFIX_LENGTH = 5;
+
+    /**
+     * Number of distinct range prefixes.
+     */
+    public static final int PREFIX_COUNT = 1 << (4 * PREFIX_LENGTH);
+
+    /**
+     * Number of hex characters in a full SHA-1 hash.
+     */
+    public static final int HASH_LENGTH = 40;
+
+    /**
+     * Number of bytes in a SHA-1 digest.
+     */
+    public static final int DIGEST_BYTES = 20;
+
+    private static final byte[] HEX_VALUES = new byte[256];
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+        }
+    }
+
+    private HexUtils() {
+
+    }
+
+    /**
+     * Get the value of a single hex character.
+     *
+     * @param c hex character.
+     * @return value between 0 and 15, or -1 if the character is not a hex digit.
+     */
+    public static int nibble(int c) {
+
+        return (c & ~0xFF) == 0 ? HEX_VALUES[c] : -1;
+    }
+
+    /**
+     * Decode a 35 character hex suffix into its packed form.
+     *
+     * @param source     characters holding the suffix.
+     * @param offset     index of the first suffix character.
+     * @param dest       destination of the packed suffix.
+     * @param destOffset index in the destination to write the {@link #SUFFIX_BYTES} packed bytes to.
+     * @return true if all characters were valid hex digits.
+     */
+    public static boolean decodeSuffix(CharSequence source, int offset, byte[] dest, int destOffset) {
+
+        int first = nibble(source.charAt(offset));
+        if (first < 0) {
+            return false;
+        }
+        dest[destOffset] = (byte) first;
+        for (int i = 1; i < SUFFIX_BYTES; i++) {
+            int high = nibble(source.charAt(offset + 2 * i - 1));
+            int low = nibble(source.charAt(offset + 2 * i));
+            if ((high | low) < 0) {
+                return false;
+            }
+            dest[destOffset + i] = (byte) ((high << 4) | low);
+        }
+        return true;
+    }
+
+    /**
+     * Decode a 35 character hex suffix given as ASCII bytes into its packed form.
+     *
+     * @param source     bytes holding the suffix.
+     * @param offset     index of the first suffix character.
+     * @param dest       destination of the packed suffix.
+     * @param destOffset index in the destination to write the {@link #SUFFIX_BYTES} packed bytes to.
+     * @return true if all characters were valid hex digits.
+     */
+    public static boolean decodeSuffix(byte[] source, int offset, byte[] dest, int destOffset) {
+
+        int first = HEX_VALUES[source[offset] & 0xFF];
+        if (first < 0) {
+            return false;
+        }
+        dest[destOffset] = (byte) first;
+        for (int i = 1; i < SUFFIX_BYTES; i++) {
+            int high = HEX_VALUES[source[offset + 2 * i - 1] & 0xFF];
+            int low = HEX_VALUES[source[offset + 2 * i] & 0xFF];
+            if ((high | low) < 0) {
+                return false;
+            }
+            dest[destOffset + i] = (byte) ((high << 4) | low);
+        }
+        return true;
+    }
+
+    /**
+     * Encode a packed suffix as 35 upper case hex characters given as ASCII bytes.
+     *
+     * @param packedSuffix array holding the packed suffix.
+     * @param offset       index of the first of the {@link #SUFFIX_BYTES} suffix bytes.
+     * @param dest         destination of the hex suffix.
+     * @param destOffset   index in the destination to write the {@link #SUFFIX_LENGTH} characters to.
+     */
+    public static void encodeSuffix(byte[] packedSuffix, int offset, byte[] dest, int destOffset) {
+
+        dest[destOffset] = (byte) HEX_DIGITS[packedSuffix[offset] & 0x0F];
+        for (int i = 1; i < SUFFIX_BYTES; i++) {
+            int value = packedSuffix[offset + i];
+            dest[destOffset + 2 * i - 1] = (byte) HEX_DIGITS[(value >> 4) & 0x0F];
+            dest[destOffset + 2 * i] = (byte) HEX_DIGITS[value & 0x0F];
+        }
+    }
+
+    /**
+     * Decode a 40 character hex SHA-1 hash into its 20 byte digest.
+     *
+     * @param hash hex hash.
+     * @return digest, or null if the hash is not a valid 40 character hex string.
+     */
+    public static byte[] decodeHash(CharSequence hash) {
+
+        if (hash == null || hash.length() != HASH_LENGTH) {
+            return null;
+        }
+        byte[] digest = new byte[DIGEST_BYTES];
+        for (int i = 0; i < DIGEST_BYTES; i++) {
+            int high = nibble(hash.charAt(2 * i));
+            int low = nibble(hash.charAt(2 * i + 1));
+            if ((high | low) < 0) {
+                return null;
+            }
+            digest[i] = (byte) ((high << 4) | low);
+        }
+        return digest;
+    }
+
+    /**
+     * Decode a 35 character hex suffix into a new packed array.
+     *
+     * @param suffix hex suffix.
+     * @return packed suffix, or null if the suffix is not a valid 35 character hex string.
+     */
+    public static byte[] decodeSuffix(CharSequence suffix) {
+
+        if (suffix == null || suffix.length() != SUFFIX_LENGTH) {
+            return null;
+        }
+        byte[] packed = new byte[SUFFIX_BYTES];
+        return decodeSuffix(suffix, 0, packed, 0) ? packed : null;
+    }
+
+    /**
+     * Encode a 20 byte digest as a 40 character upper case hex hash.
+     *
+     * @param digest array holding the digest.
+     * @param offset index of the first of the {@link #DIGEST_BYTES} digest bytes.
+     * @return hex hash.
+     */
+    public static String encodeHash(byte[] digest, int offset) {
+
+        char[] hash = new char[HASH_LENGTH];
+        for (int i = 0; i < DIGEST_BYTES; i++) {
+            int value = digest[offset + i];
+            hash[2 * i] = HEX_DIGITS[(value >> 4) & 0x0F];
+            hash[2 * i + 1] = HEX_DIGITS[value & 0x0F];
+        }
+        return new String(hash);
+    }
+
+    /**
+     * Encode the first 5 hex characters of a 20 byte digest, i.e. the prefix sent to the range API.
+     *
+     * @param digest array holding the digest.
+     * @param offset index of the first digest byte.
+     * @return 5 character upper case hex prefix.
+     */
+    public static String encodePrefix(byte[] digest, int offset) {
+
+        int first = digest[offset];
+        int second = digest[offset + 1];
+        return new String(new char[]{
+                HEX_DIGITS[(first >> 4) & 0x0F], HEX_DIGITS[first & 0x0F],
+                HEX_DIGITS[(second >> 4) & 0x0F], HEX_DIGITS[second & 0x0F],
+                HEX_DIGITS[(digest[offset + 2] >> 4) & 0x0F]});
+    }
+
+    /**
+     * Encode a prefix given as a number.
+     *
+     * @param prefix prefix between 0 and {@link #PREFIX_COUNT} - 1.
+     * @return 5 character upper case hex prefix.
+     */
+    public static String encodePrefix(int prefix) {
+
+        char[] hex = new char[PREFIX_LENGTH];
+        for (int i = PREFIX_LENGTH - 1; i >= 0; i--) {
+            hex[i] = HEX_DIGITS[prefix & 0x0F];
+            prefix >>>= 4;
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Decode a 5 character hex prefix into a number.
+     *
+     * @param prefix hex prefix.
+     * @return prefix between 0 and {@link #PREFIX_COUNT} - 1, or -1 if the prefix is not valid.
+     */
+    public static int decodePrefix(CharSequence prefix) {
+
+        if (prefix == null || prefix.length() != PREFIX_LENGTH) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < PREFIX_LENGTH; i++) {
+            int nibble = nibble(prefix.charAt(i));
+            if (nibble < 0) {
+                return -1;
+            }
+            value = (value << 4) | nibble;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.range;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads "HASH:COUNT" lines from a byte stream without creating per line strings.
+ *
+ * Each line is copied into a small reusable array, from which the hash and the count are decoded on demand. The same
+ * reader is used for range API responses, where the hash is the 35 character suffix, and for the downloadable
+ * Pwned Passwords corpus, where the hash is the full 40 character SHA-1 hash, so that both paths decode hashes the
+ * same way.
+ */
+public final class RangeLineReader {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Longest line that can hold a hash and a count. Longer lines are malformed and skipped.
+     */
+    private static final int MAX_LINE_LENGTH = 64;
+
+    private final InputStream in;
+    private final int hashLength;
+    private final int suffixOffset;
+    private final byte[] buffer;
+    private final byte[] line = new byte[MAX_LINE_LENGTH];
+    private int position;
+    private int limit;
+    private int lineLength;
+    private boolean endOfStream;
+
+    /**
+     * Create a reader for range responses, where each line holds a 35 character hash suffix.
+     *
+     * @param in response body.
+     */
+    public RangeLineReader(InputStream in) {
+
+        this(in, HexUtils.SUFFIX_LENGTH, BUFFER_SIZE);
+    }
+
+    /**
+     * Create a reader.
+     *
+     * @param in         stream of lines.
+     * @param hashLength number of hex characters before the colon, either {@link HexUtils#SUFFIX_LENGTH} or
+     *                   {@link HexUtils#HASH_LENGTH}.
+     * @param bufferSize size of the read buffer.
+     */
+    public RangeLineReader(InputStream in, int hashLength, int bufferSize) {
+
+        if (hashLength != HexUtils.SUFFIX_LENGTH && hashLength != HexUtils.HASH_LENGTH) {
+            throw new IllegalArgumentException("Unsupported hash length: " + hashLength);
+        }
+        this.in = in;
+        this.hashLength = hashLength;
+        this.suffixOffset = hashLength - HexUtils.SUFFIX_LENGTH;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Advance to the next line.
+     *
+     * @return false once the end of the stream is reached.
+     * @throws IOException if reading fails.
+     */
+    public boolean nextLine() throws IOException {
+
+        lineLength = 0;
+        boolean overflow = false;
+        boolean read = false;
+        while (true) {
+            if (position == limit) {
+                if (endOfStream || !fill()) {
+                    endOfStream = true;
+                    if (!read) {
+                        return false;
+                    }
+                    break;
+                }
+            }
+            read = true;
+            byte b = buffer[position++];
+            if (b == '\n') {
+                break;
+            }
+            if (lineLength < MAX_LINE_LENGTH) {
+                line[lineLength++] = b;
+            } else {
+                overflow = true;
+            }
+        }
+        if (lineLength > 0 && line[lineLength - 1] == '\r') {
+            lineLength--;
+        }
+        if (overflow) {
+            // Mark the line as malformed.
+            lineLength = 0;
+        }
+        return true;
+    }
+
+    private boolean fill() throws IOException {
+
+        int n = in.read(buffer, 0, buffer.length);
+        while (n == 0) {
+            n = in.read(buffer, 0, buffer.length);
+        }
+        if (n < 0) {
+            return false;
+        }
+        position = 0;
+        limit = n;
+        return true;
+    }
+
+    /**
+     * Get the count of the current line.
+     *
+     * @return count, or -1 if the line is malformed.
+     */
+    public int count() {
+
+        int countStart = hashLength + 1;
+        if (lineLength <= countStart || line[countStart - 1] != ':') {
+            return -1;
+        }
+        long count = 0;
+        for (int i = countStart; i < lineLength; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            count = Math.min(count * 10 + digit, Integer.MAX_VALUE);
+        }
+        return (int) count;
+    }
+
+    /**
+     * Decode the hash suffix of the current line into its packed form (see {@link HexUtils}).
+     *
+     * @param packedSuffix destination of the packed suffix.
+     * @param offset       index in the destination to write the {@link HexUtils#SUFFIX_BYTES} packed bytes to.
+     * @return true if the line holds a valid hash.
+     */
+    public boolean decodeSuffix(byte[] packedSuffix, int offset) {
+
+        if (lineLength < hashLength) {
+            return false;
+        }
+        for (int i = 0; i < suffixOffset; i++) {
+            if (HexUtils.nibble(line[i] & 0xFF) < 0) {
+                return false;
+            }
+        }
+        return HexUtils.decodeSuffix(line, suffixOffset, packedSuffix, offset);
+    }
+
+    /**
+     * Decode the hash of the current line into a 20 byte SHA-1 digest.
+     *
+     * @param prefix 20 bit hash prefix to use when the lines only hold suffixes, ignored otherwise.
+     * @param digest destination of the digest.
+     * @param offset index in the destination to write the digest to.
+     * @return true if the line holds a valid hash.
+     */
+    public boolean decodeDigest(int prefix, byte[] digest, int offset) {
+
+        if (hashLength == HexUtils.HASH_LENGTH) {
+            if (lineLength < hashLength) {
+                return false;
+            }
+            prefix = 0;
+            for (int i = 0; i < HexUtils.PREFIX_LENGTH; i++) {
+                int nibble = HexUtils.nibble(line[i] & 0xFF);
+                if (nibble < 0) {
+                    return false;
+                }
+                prefix = (prefix << 4) | nibble;
+            }
+        }
+        // The packed suffix is the last 18 bytes of the digest, with the last prefix nibble masked out.
+        if (!decodeSuffix(digest, offset + 2)) {
+            return false;
+        }
+        digest[offset] = (byte) (prefix >>> 12);
+        digest[offset + 1] = (byte) (prefix >>> 4);
+        digest[offset + 2] = (byte) (((prefix & 0x0F) << 4) | digest[offset + 2]);
+        return true;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.range;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming parser for HIBP range API responses.
+ *
+ * The response is a series of lines with each line containing a 35 character hash suffix and count separated by a
+ * colon (e.g. "0018A45C4D1DEF81644B54AB7F969B88D65:10"). The parser works directly on the response bytes through a
+ * {@link RangeLineReader} and never creates per line strings. Malformed lines and padding entries (count of 0) are
+ * skipped.
+ */
+public final class RangeParser {
+
+    private RangeParser() {
+
+    }
+
+    /**
+     * Parse a complete range response.
+     *
+     * @param in response body.
+     * @return parsed range.
+     * @throws IOException if reading the response fails.
+     */
+    public static HashRange parse(InputStream in) throws IOException {
+
+        HashRange.Builder builder = new HashRange.Builder();
+        byte[] packedSuffix = new byte[HexUtils.SUFFIX_BYTES];
+        RangeLineReader reader = new RangeLineReader(in);
+        while (reader.nextLine()) {
+            int count = reader.count();
+            if (count > 0 && reader.decodeSuffix(packedSuffix, 0)) {
+                builder.add(packedSuffix, 0, count);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Parse a complete range response.
+     *
+     * @param response String content of the HIBP API response.
+     * @return parsed range.
+     */
+    public static HashRange parse(String response) {
+
+        if (StringUtils.isBlank(response)) {
+            return HashRange.empty();
+        }
+        try {
+            return parse(new ByteArrayInputStream(response.getBytes(StandardCharsets.US_ASCII)));
+        } catch (IOException e) {
+            // Reading from a byte array does not fail.
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.range;
+
+/**
+ * Range API response along with the validators used to revalidate it with a conditional request.
+ */
+public final class RangeResponse {
+
+    private static final RangeResponse NOT_MODIFIED = new RangeResponse(null, null, null);
+
+    private final HashRange range;
+    private final String etag;
+    private final String lastModified;
+
+    /**
+     * Create a range response.
+     *
+     * @param range        range of the prefix.
+     * @param etag         value of the ETag header, or null if the response had none.
+     * @param lastModified value of the Last-Modified header, or null if the response had none.
+     */
+    public RangeResponse(HashRange range, String etag, String lastModified) {
+
+        this.range = range;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Get the response to a conditional request for a range that has not changed.
+     *
+     * @return not modified response.
+     */
+    public static RangeResponse notModified() {
+
+        return NOT_MODIFIED;
+    }
+
+    /**
+     * Check whether the range has not changed since the validators sent with the request.
+     *
+     * @return true if the response has no range since the cached one is still current.
+     */
+    public boolean isNotModified() {
+
+        return range == null;
+    }
+
+    /**
+     * Get the range of the prefix.
+     *
+     * @return range, or null if the range has not changed.
+     */
+    public HashRange getRange() {
+
+        return range;
+    }
+
+    public String getETag() {
+
+        return etag;
+    }
+
+    public String getLastModified() {
+
+        return lastModified;
+    }
+}
@@ -0,0 +1,528 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.store;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.identity.password.validator.hibp.client.HIBPHttpClientManager;
+import org.wso2.identity.password.validator.hibp.exception.HIBPRateLimitException;
+import org.wso2.identity.password.validator.hibp.exception.HIBPUnavailableException;
+import org.wso2.identity.password.validator.hibp.internal.HIBPDataHolder;
+import org.wso2.identity.password.validator.hibp.range.HashRange;
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+import org.wso2.identity.password.validator.hibp.util.Constants;
+import org.wso2.identity.password.validator.hibp.util.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Builds a local Pwned Passwords index file (see {@link LocalStoreFormat}) by fetching the range of every prefix from
+ * the range API.
+ *
+ * Ranges are fetched concurrently over the shared HTTP client and written to the index in prefix order as soon as all
+ * lower prefixes are done, so at most a small window of ranges is held in memory. The index is written to a ".part"
+ * file, and every few seconds the written records and their offset table entries are flushed and the next prefix is
+ * recorded in a ".checkpoint" file. A download that is interrupted or fails resumes from the last checkpoint.
+ *
+ * Requests are spread evenly to stay under an optional maximum rate. When the API answers "429 Too Many Requests",
+ * all requests are paused for the time given in its Retry-After header. Requests bypass the circuit breaker and are
+ * not hedged, so that a download does not make password checks fail.
+ *
+ * <pre>
+ * java -cp &lt;bundle and dependency jars&gt; org.wso2.identity.password.validator.hibp.store.CorpusDownloader \
+ *     [--concurrency &lt;n&gt;] [--rate &lt;ranges per second&gt;] [--api-key &lt;key&gt;] &lt;index&gt;
+ * </pre>
+ */
+public class CorpusDownloader {
+
+    private static final Log log = LogFactory.getLog(CorpusDownloader.class);
+
+    private static final String PART_SUFFIX = ".part";
+
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    private static final String NEXT_PREFIX_PROPERTY = "next.prefix";
+
+    private static final String RECORD_COUNT_PROPERTY = "record.count";
+
+    private static final int WRITE_BUFFER_SIZE = (1 << 20) / LocalStoreFormat.RECORD_SIZE
+            * LocalStoreFormat.RECORD_SIZE;
+
+    /**
+     * Number of fetched ranges that may wait for a lower prefix, per concurrent request.
+     */
+    private static final int WINDOW_PER_REQUEST = 4;
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    private static final long MAX_BACKOFF = 60000L;
+
+    private static final long CHECKPOINT_INTERVAL = 5000L;
+
+    private static final long PROGRESS_INTERVAL = 30000L;
+
+    private final Path index;
+    private final String apiKey;
+    private final int concurrency;
+    private final long requestIntervalNanos;
+    private final int prefixLimit;
+    private final long initialBackoff;
+    private final AtomicLong nextRequestTime = new AtomicLong();
+
+    private final LongAdder fetchedCount = new LongAdder();
+    private final LongAdder retryCount = new LongAdder();
+    private final LongAdder rateLimitedCount = new LongAdder();
+    private volatile long startTime;
+    private volatile long endTime;
+
+    /**
+     * Create a downloader.
+     *
+     * @param index              path of the index file to build.
+     * @param apiKey             HIBP API key to send, or null.
+     * @param concurrency        number of concurrent requests.
+     * @param maxRangesPerSecond maximum request rate, or 0 for no limit.
+     */
+    public CorpusDownloader(Path index, String apiKey, int concurrency, double maxRangesPerSecond) {
+
+        this(index, apiKey, concurrency, maxRangesPerSecond, LocalStoreFormat.PREFIX_COUNT, 1000L);
+    }
+
+    /**
+     * Create a downloader that only fetches the first prefixes, treating the others as empty.
+     */
+    CorpusDownloader(Path index, String apiKey, int concurrency, double maxRangesPerSecond, int prefixLimit,
+                     long initialBackoff) {
+
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive.");
+        }
+        if (maxRangesPerSecond < 0) {
+            throw new IllegalArgumentException("Maximum rate must not be negative.");
+        }
+        this.index = index;
+        this.apiKey = apiKey;
+        this.concurrency = concurrency;
+        this.requestIntervalNanos = maxRangesPerSecond > 0
+                ? (long) (TimeUnit.SECONDS.toNanos(1) / maxRangesPerSecond) : 0L;
+        this.prefixLimit = prefixLimit;
+        this.initialBackoff = initialBackoff;
+    }
+
+    /**
+     * Download the corpus into the index file, resuming from the last checkpoint if there is one. The index file is
+     * only replaced once the download is complete.
+     *
+     * @return number of hashes in the index.
+     * @throws IOException          if a range cannot be fetched or the index cannot be written.
+     * @throws InterruptedException if the download is interrupted, in which case it can be resumed later.
+     */
+    public long download() throws IOException, InterruptedException {
+
+        Path part = index.resolveSibling(index.getFileName() + PART_SUFFIX);
+        Path checkpointFile = index.resolveSibling(index.getFileName() + CHECKPOINT_SUFFIX);
+        startTime = System.currentTimeMillis();
+        endTime = 0;
+        nextRequestTime.set(System.nanoTime());
+        fetchedCount.reset();
+
+        long recordCount;
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            Output output = new Output(channel);
+            if (Files.exists(checkpointFile)) {
+                output.resume(checkpointFile);
+                log.info("Resuming the Pwned Passwords download of " + index + " at prefix "
+                        + String.format("%05X", output.nextPrefix));
+            } else {
+                channel.truncate(0);
+            }
+            recordCount = fetchAll(output, checkpointFile);
+        } finally {
+            endTime = System.currentTimeMillis();
+        }
+        Files.move(part, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(checkpointFile);
+        log.info("Downloaded " + recordCount + " Pwned Passwords hashes into " + index + " at "
+                + Math.round(getRangesPerSecond()) + " ranges/s.");
+        return recordCount;
+    }
+
+    private long fetchAll(Output output, Path checkpointFile) throws IOException, InterruptedException {
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "hibp-corpus-downloader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<HashRange>> pending = new ArrayDeque<>();
+        int submitted = output.nextPrefix;
+        long lastCheckpoint = System.currentTimeMillis();
+        long lastProgress = lastCheckpoint;
+        boolean completed = false;
+        try {
+            while (output.nextPrefix < LocalStoreFormat.PREFIX_COUNT) {
+                while (submitted < LocalStoreFormat.PREFIX_COUNT
+                        && submitted - output.nextPrefix < concurrency * WINDOW_PER_REQUEST) {
+                    int prefix = submitted++;
+                    pending.add(executor.submit(() -> fetch(prefix)));
+                }
+                HashRange range;
+                try {
+                    range = pending.remove().get();
+                } catch (ExecutionException e) {
+                    throw new IOException("Failed to download the range of prefix "
+                            + String.format("%05X", output.nextPrefix), e.getCause());
+                }
+                output.append(range);
+
+                long now = System.currentTimeMillis();
+                if (now - lastCheckpoint >= CHECKPOINT_INTERVAL) {
+                    output.checkpoint(checkpointFile);
+                    lastCheckpoint = now;
+                }
+                if (now - lastProgress >= PROGRESS_INTERVAL) {
+                    log.info("Downloaded " + output.nextPrefix + " of " + LocalStoreFormat.PREFIX_COUNT
+                            + " Pwned Passwords ranges, " + Math.round(getRangesPerSecond()) + " ranges/s.");
+                    lastProgress = now;
+                }
+            }
+            long recordCount = output.finish();
+            completed = true;
+            return recordCount;
+        } finally {
+            executor.shutdownNow();
+            if (!completed) {
+                // Keep what was downloaded so far for the next attempt.
+                try {
+                    output.checkpoint(checkpointFile);
+                } catch (IOException e) {
+                    log.error("Failed to checkpoint the Pwned Passwords download of " + index, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fetch the range of a prefix, retrying failed requests with exponential backoff.
+     */
+    private HashRange fetch(int prefix) throws Exception {
+
+        if (prefix >= prefixLimit) {
+            return HashRange.empty();
+        }
+        String hashPrefix = String.format("%05X", prefix);
+        long backoff = initialBackoff;
+        int attempt = 0;
+        while (true) {
+            awaitTurn();
+            try {
+                HashRange range = Utils.getHIBPRangeInBackground(apiKey, hashPrefix, null, null).getRange();
+                fetchedCount.increment();
+                return range;
+            } catch (HIBPRateLimitException e) {
+                // Rate limited requests are not failures, but pause every request.
+                rateLimitedCount.increment();
+                long delay = e.getRetryAfterMillis() >= 0 ? e.getRetryAfterMillis() : backoff;
+                nextRequestTime.accumulateAndGet(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay),
+                        Math::max);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF);
+            } catch (IOException | HIBPUnavailableException e) {
+                if (++attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                retryCount.increment();
+                if (log.isDebugEnabled()) {
+                    log.debug("Retrying the range of prefix " + hashPrefix + " in " + backoff + " ms.", e);
+                }
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF);
+            }
+        }
+    }
+
+    /**
+     * Wait for the next request slot, spacing requests by the request interval.
+     */
+    private void awaitTurn() throws InterruptedException {
+
+        long slot = nextRequestTime.getAndAccumulate(System.nanoTime(),
+                (next, now) -> Math.max(next, now) + requestIntervalNanos);
+        long wait = slot - System.nanoTime();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Get the average number of ranges fetched per second by the current or last download.
+     *
+     * @return ranges per second.
+     */
+    public double getRangesPerSecond() {
+
+        long end = endTime > 0 ? endTime : System.currentTimeMillis();
+        long elapsed = Math.max(end - startTime, 1L);
+        return fetchedCount.sum() * 1000.0 / elapsed;
+    }
+
+    public long getFetchedCount() {
+
+        return fetchedCount.sum();
+    }
+
+    public long getRetryCount() {
+
+        return retryCount.sum();
+    }
+
+    public long getRateLimitedCount() {
+
+        return rateLimitedCount.sum();
+    }
+
+    /**
+     * Entry point of the command line tool.
+     *
+     * @param args command line arguments.
+     */
+    public static void main(String[] args) {
+
+        int concurrency = 16;
+        double rate = 0;
+        String apiKey = null;
+        String path = null;
+        boolean valid = true;
+        try {
+            for (int i = 0; i < args.length && valid; i++) {
+                if ("--concurrency".equals(args[i]) && i + 1 < args.length) {
+                    concurrency = Integer.parseInt(args[++i]);
+                } else if ("--rate".equals(args[i]) && i + 1 < args.length) {
+                    rate = Double.parseDouble(args[++i]);
+                } else if ("--api-key".equals(args[i]) && i + 1 < args.length) {
+                    apiKey = args[++i];
+                } else if (path == null) {
+                    path = args[i];
+                } else {
+                    valid = false;
+                }
+            }
+        } catch (NumberFormatException e) {
+            valid = false;
+        }
+        if (!valid || path == null || concurrency < 1 || rate < 0) {
+            System.err.println("Usage: CorpusDownloader [--concurrency <n>] [--rate <ranges per second>] "
+                    + "[--api-key <key>] <index file>");
+            System.exit(2);
+        }
+
+        HIBPHttpClientManager httpClientManager = new HIBPHttpClientManager(concurrency, concurrency,
+                Constants.DEFAULT_HTTP_CLIENT_KEEP_ALIVE, Constants.DEFAULT_HTTP_CLIENT_IDLE_CONNECTION_TIMEOUT);
+        HIBPDataHolder.getInstance().setHttpClientManager(httpClientManager);
+        try {
+            new CorpusDownloader(Paths.get(path), apiKey, concurrency, rate).download();
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Download failed: " + e.getMessage() + ". Run again to resume.");
+            System.exit(1);
+        } finally {
+            httpClientManager.close();
+        }
+    }
+
+    /**
+     * Index file being written, along with the state needed to checkpoint it.
+     */
+    private static final class Output {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        private final long[] prefixCounts = new long[LocalStoreFormat.PREFIX_COUNT];
+        private final byte[] suffix = new byte[HexUtils.SUFFIX_BYTES];
+        private int nextPrefix;
+        private long recordCount;
+        private long position = LocalStoreFormat.RECORDS_POSITION;
+        private int checkpointedPrefix;
+        private long checkpointedRecordCount;
+
+        Output(FileChannel channel) {
+
+            this.channel = channel;
+        }
+
+        /**
+         * Append the range of the next prefix.
+         */
+        void append(HashRange range) throws IOException {
+
+            int prefix = nextPrefix;
+            for (int i = 0; i < range.size(); i++) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                range.getSuffix(i, suffix, 0);
+                // The packed suffix holds the last prefix nibble in the high nibble of its first byte.
+                buffer.put((byte) (prefix >>> 12));
+                buffer.put((byte) (prefix >>> 4));
+                buffer.put((byte) (((prefix & 0x0F) << 4) | suffix[0]));
+                buffer.put(suffix, 1, HexUtils.SUFFIX_BYTES - 1);
+                buffer.putInt(range.getCountAt(i));
+            }
+            prefixCounts[prefix] = range.size();
+            recordCount += range.size();
+            nextPrefix++;
+        }
+
+        /**
+         * Make the records and offset table entries written so far durable, and record where to resume.
+         */
+        void checkpoint(Path checkpointFile) throws IOException {
+
+            flush();
+            ByteBuffer entries = ByteBuffer.allocate((nextPrefix - checkpointedPrefix + 1) * Long.BYTES);
+            long offset = checkpointedRecordCount;
+            for (int prefix = checkpointedPrefix; prefix < nextPrefix; prefix++) {
+                entries.putLong(offset);
+                offset += prefixCounts[prefix];
+            }
+            entries.putLong(offset);
+            entries.flip();
+            write(entries, LocalStoreFormat.OFFSET_TABLE_POSITION + (long) checkpointedPrefix * Long.BYTES);
+            channel.force(false);
+
+            Properties properties = new Properties();
+            properties.setProperty(NEXT_PREFIX_PROPERTY, Integer.toString(nextPrefix));
+            properties.setProperty(RECORD_COUNT_PROPERTY, Long.toString(recordCount));
+            Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                properties.store(out, "Pwned Passwords download checkpoint");
+            }
+            Files.move(temporary, checkpointFile, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            checkpointedPrefix = nextPrefix;
+            checkpointedRecordCount = recordCount;
+        }
+
+        /**
+         * Restore the state of the last checkpoint from the checkpoint file and the offset table.
+         */
+        void resume(Path checkpointFile) throws IOException {
+
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(checkpointFile)) {
+                properties.load(in);
+            }
+            try {
+                nextPrefix = Integer.parseInt(properties.getProperty(NEXT_PREFIX_PROPERTY));
+                recordCount = Long.parseLong(properties.getProperty(RECORD_COUNT_PROPERTY));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid checkpoint file " + checkpointFile, e);
+            }
+            if (nextPrefix < 0 || nextPrefix > LocalStoreFormat.PREFIX_COUNT || recordCount < 0
+                    || channel.size() < LocalStoreFormat.RECORDS_POSITION
+                    + recordCount * LocalStoreFormat.RECORD_SIZE) {
+                throw new IOException("Checkpoint " + checkpointFile + " does not match the partial download. "
+                        + "Delete it to start over.");
+            }
+
+            ByteBuffer entries = ByteBuffer.allocate((nextPrefix + 1) * Long.BYTES);
+            long tablePosition = LocalStoreFormat.OFFSET_TABLE_POSITION;
+            while (entries.hasRemaining()) {
+                int n = channel.read(entries, tablePosition + entries.position());
+                if (n < 0) {
+                    throw new IOException("Partial download is truncated. Delete " + checkpointFile
+                            + " to start over.");
+                }
+            }
+            entries.flip();
+            long previous = entries.getLong();
+            if (previous != 0) {
+                throw new IOException("Partial download is corrupt. Delete " + checkpointFile + " to start over.");
+            }
+            for (int prefix = 0; prefix < nextPrefix; prefix++) {
+                long offset = entries.getLong();
+                if (offset < previous) {
+                    throw new IOException("Partial download is corrupt. Delete " + checkpointFile
+                            + " to start over.");
+                }
+                prefixCounts[prefix] = offset - previous;
+                previous = offset;
+            }
+            if (previous != recordCount) {
+                throw new IOException("Partial download is corrupt. Delete " + checkpointFile + " to start over.");
+            }
+            position = LocalStoreFormat.RECORDS_POSITION + recordCount * LocalStoreFormat.RECORD_SIZE;
+            checkpointedPrefix = nextPrefix;
+            checkpointedRecordCount = recordCount;
+        }
+
+        /**
+         * Write the offset table, the checksum and the header once every prefix is written.
+         *
+         * @return number of records.
+         */
+        long finish() throws IOException {
+
+            flush();
+            channel.truncate(position);
+            LocalStoreWriter.writeOffsetTable(channel, prefixCounts);
+            LocalStoreWriter.writeHeader(channel, recordCount,
+                    LocalStoreChecksum.compute(channel, recordCount, ForkJoinPool.commonPool()));
+            channel.force(true);
+            return recordCount;
+        }
+
+        private void flush() throws IOException {
+
+            buffer.flip();
+            position = write(buffer, position);
+            buffer.clear();
+        }
+
+        private long write(ByteBuffer source, long start) throws IOException {
+
+            long end = start;
+            while (source.hasRemaining()) {
+                end += channel.write(source, end);
+            }
+            return end;
+        }
+    }
+}
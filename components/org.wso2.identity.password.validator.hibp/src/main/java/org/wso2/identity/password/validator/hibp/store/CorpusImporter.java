@@ -0,0 +1,677 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.store;
+
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+import org.wso2.identity.password.validator.hibp.range.RangeLineReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Command line tool that builds a local Pwned Passwords index file (see {@link LocalStoreFormat}) from the
+ * downloadable corpus.
+ *
+ * The corpus can either be a single "HASH:COUNT" text file ordered by hash, or a directory holding one "SUFFIX:COUNT"
+ * file per 5 character prefix as written by the official downloader (e.g. "21BD1.txt"). Lines are decoded with the
+ * same {@link RangeLineReader} that parses range API responses.
+ *
+ * The corpus is split into shards (chunks of the text file, or prefix files) that are processed in parallel with
+ * fork-join in two passes. The first pass counts the records of each shard and each prefix and checks the ordering,
+ * which gives the position of every shard in the index file. The second pass writes the records of each shard
+ * directly to its position through a fixed size buffer, so memory use does not depend on the size of the corpus.
+ * The index is written to a temporary file that replaces the target once its checksum has been verified.
+ *
+ * <pre>
+ * java -cp org.wso2.identity.password.validator.hibp-&lt;version&gt;.jar \
+ *     org.wso2.identity.password.validator.hibp.store.CorpusImporter [--threads &lt;n&gt;] &lt;corpus&gt; &lt;index&gt;
+ * java -cp org.wso2.identity.password.validator.hibp-&lt;version&gt;.jar \
+ *     org.wso2.identity.password.validator.hibp.store.CorpusImporter --verify &lt;index&gt;
+ * </pre>
+ */
+public final class CorpusImporter implements Closeable {
+
+    private static final long DEFAULT_CHUNK_SIZE = 64L << 20;
+
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private static final long PROGRESS_INTERVAL = 5000L;
+
+    private static final String THREADS_OPTION = "--threads";
+
+    private static final String VERIFY_OPTION = "--verify";
+
+    private final ForkJoinPool pool;
+    private final long chunkSize;
+    private final PrintStream out;
+
+    /**
+     * Create an importer.
+     *
+     * @param parallelism number of threads used to process shards.
+     * @param out         stream to report progress to.
+     */
+    public CorpusImporter(int parallelism, PrintStream out) {
+
+        this(parallelism, DEFAULT_CHUNK_SIZE, out);
+    }
+
+    CorpusImporter(int parallelism, long chunkSize, PrintStream out) {
+
+        this.pool = new ForkJoinPool(parallelism);
+        this.chunkSize = chunkSize;
+        this.out = out;
+    }
+
+    /**
+     * Build an index file from a corpus. Any existing file at the target path is replaced once the new index is
+     * complete.
+     *
+     * @param corpus corpus text file or directory of prefix files.
+     * @param target path of the index file.
+     * @return number of records written.
+     * @throws IOException if the corpus cannot be read, is not ordered by hash or the index cannot be written.
+     */
+    public long importCorpus(Path corpus, Path target) throws IOException {
+
+        long startTime = System.currentTimeMillis();
+        List<Shard> shards = Files.isDirectory(corpus) ? listPrefixFiles(corpus) : splitFile(corpus);
+        long totalBytes = 0;
+        for (Shard shard : shards) {
+            totalBytes += shard.end - shard.start;
+        }
+        out.printf("Importing %,d bytes from %s in %d shards.%n", totalBytes, corpus, shards.size());
+
+        AtomicLongArray prefixCounts = new AtomicLongArray(LocalStoreFormat.PREFIX_COUNT);
+        run("Counting", totalBytes, progress -> new CountTask(shards, 0, shards.size(), prefixCounts, progress));
+        long recordCount = assignRecordPositions(shards);
+        long skippedLines = 0;
+        for (Shard shard : shards) {
+            skippedLines += shard.skippedLines;
+        }
+        if (skippedLines > 0) {
+            out.printf("Skipped %,d malformed lines.%n", skippedLines);
+        }
+
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        boolean completed = false;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ, StandardOpenOption.TRUNCATE_EXISTING)) {
+            run("Writing", totalBytes, progress -> new WriteTask(shards, 0, shards.size(), channel, progress));
+
+            long[] counts = new long[LocalStoreFormat.PREFIX_COUNT];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = prefixCounts.get(i);
+            }
+            LocalStoreWriter.writeOffsetTable(channel, counts);
+            long checksum = LocalStoreChecksum.compute(channel, recordCount, pool);
+            LocalStoreWriter.writeHeader(channel, recordCount, checksum);
+            channel.force(true);
+            completed = true;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        if (!verify(temporary)) {
+            Files.deleteIfExists(temporary);
+            throw new IOException("Verification of the written index failed.");
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        out.printf("Imported %,d hashes into %s in %,d s.%n", recordCount, target,
+                TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - startTime));
+        return recordCount;
+    }
+
+    /**
+     * Verify the offset table and the checksum of an index file.
+     *
+     * @param index path of the index file.
+     * @return true if the index file is consistent.
+     * @throws IOException if the file cannot be read or is not an index file.
+     */
+    public boolean verify(Path index) throws IOException {
+
+        long recordCount;
+        long expectedChecksum;
+        try (LocalPwnedPasswordStore store = LocalPwnedPasswordStore.open(index)) {
+            recordCount = store.getRecordCount();
+            expectedChecksum = store.getChecksum();
+        }
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            ByteBuffer table = ByteBuffer.allocate((int) LocalStoreFormat.OFFSET_TABLE_SIZE);
+            long position = LocalStoreFormat.OFFSET_TABLE_POSITION;
+            while (table.hasRemaining()) {
+                int n = channel.read(table, position);
+                if (n < 0) {
+                    throw new IOException("Local Pwned Passwords store is truncated.");
+                }
+                position += n;
+            }
+            table.flip();
+            long previous = 0;
+            for (int i = 0; i <= LocalStoreFormat.PREFIX_COUNT; i++) {
+                long offset = table.getLong();
+                if (offset < previous || offset > recordCount) {
+                    out.printf("Offset table of %s is corrupt at prefix %05X.%n", index, i);
+                    return false;
+                }
+                previous = offset;
+            }
+            if (previous != recordCount) {
+                out.printf("Offset table of %s does not cover all %,d records.%n", index, recordCount);
+                return false;
+            }
+
+            long checksum = LocalStoreChecksum.compute(channel, recordCount, pool);
+            if (checksum != expectedChecksum) {
+                out.printf("Checksum of %s is %08X, expected %08X.%n", index, checksum, expectedChecksum);
+                return false;
+            }
+            out.printf("Verified %,d hashes in %s (checksum %08X).%n", recordCount, index, checksum);
+            return true;
+        }
+    }
+
+    /**
+     * Run a pass over the shards while reporting progress periodically.
+     */
+    private void run(String pass, long totalBytes, TaskFactory factory) throws IOException {
+
+        LongAdder progress = new LongAdder();
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hibp-import-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long startTime = System.currentTimeMillis();
+        reporter.scheduleAtFixedRate(() -> report(pass, progress.sum(), totalBytes, startTime), PROGRESS_INTERVAL,
+                PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+        try {
+            pool.invoke(factory.create(progress));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            reporter.shutdownNow();
+        }
+        report(pass, progress.sum(), totalBytes, startTime);
+    }
+
+    private void report(String pass, long bytes, long totalBytes, long startTime) {
+
+        long elapsed = Math.max(System.currentTimeMillis() - startTime, 1L);
+        out.printf("%s: %d%% (%,d MB, %,d MB/s)%n", pass, totalBytes == 0 ? 100 : bytes * 100 / totalBytes,
+                bytes >> 20, (bytes >> 20) * 1000 / elapsed);
+    }
+
+    /**
+     * Check that the shards are ordered relative to each other and assign the index of the first record of each.
+     *
+     * @return total number of records.
+     */
+    private static long assignRecordPositions(List<Shard> shards) throws IOException {
+
+        long recordIndex = 0;
+        Shard previous = null;
+        for (Shard shard : shards) {
+            shard.recordIndex = recordIndex;
+            recordIndex += shard.recordCount;
+            if (shard.recordCount == 0) {
+                continue;
+            }
+            if (previous != null && Arrays.compareUnsigned(previous.lastDigest, shard.firstDigest) >= 0) {
+                throw new IOException("Corpus is not ordered by hash at " + shard.describe()
+                        + ". Use the corpus ordered by hash.");
+            }
+            previous = shard;
+        }
+        return recordIndex;
+    }
+
+    /**
+     * Split a corpus text file into chunks that end at line boundaries.
+     */
+    private List<Shard> splitFile(Path file) throws IOException {
+
+        List<Shard> shards = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(256);
+            long start = 0;
+            while (start < size) {
+                long end = Math.min(start + chunkSize, size);
+                // Move the end of the chunk past the end of the line it falls in.
+                while (end < size) {
+                    buffer.clear();
+                    int n = channel.read(buffer, end);
+                    int newLine = -1;
+                    for (int i = 0; i < n && newLine < 0; i++) {
+                        if (buffer.get(i) == '\n') {
+                            newLine = i;
+                        }
+                    }
+                    if (newLine >= 0) {
+                        end += newLine + 1;
+                        break;
+                    }
+                    end = n > 0 ? end + n : size;
+                }
+                shards.add(new Shard(file, start, end, -1));
+                start = end;
+            }
+        }
+        return shards;
+    }
+
+    /**
+     * List the prefix files of a corpus directory in prefix order.
+     */
+    private static List<Shard> listPrefixFiles(Path directory) throws IOException {
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(Files::isRegularFile).filter(path -> parsePrefix(path) >= 0)
+                    .sorted(Comparator.comparingInt(CorpusImporter::parsePrefix)).collect(Collectors.toList());
+        }
+        List<Shard> shards = new ArrayList<>(files.size());
+        int previousPrefix = -1;
+        for (Path file : files) {
+            int prefix = parsePrefix(file);
+            if (prefix == previousPrefix) {
+                throw new IOException("Corpus directory has more than one file for prefix " + file.getFileName());
+            }
+            previousPrefix = prefix;
+            shards.add(new Shard(file, 0, Files.size(file), prefix));
+        }
+        if (shards.isEmpty()) {
+            throw new IOException("No prefix files found in " + directory);
+        }
+        return shards;
+    }
+
+    /**
+     * Get the prefix of a prefix file from its name (e.g. "21BD1.txt").
+     *
+     * @return 20 bit prefix, or -1 if the name does not start with a prefix.
+     */
+    private static int parsePrefix(Path file) {
+
+        String name = file.getFileName().toString();
+        if (name.length() < HexUtils.PREFIX_LENGTH
+                || (name.length() > HexUtils.PREFIX_LENGTH && name.charAt(HexUtils.PREFIX_LENGTH) != '.')) {
+            return -1;
+        }
+        int prefix = 0;
+        for (int i = 0; i < HexUtils.PREFIX_LENGTH; i++) {
+            int nibble = HexUtils.nibble(name.charAt(i));
+            if (nibble < 0) {
+                return -1;
+            }
+            prefix = (prefix << 4) | nibble;
+        }
+        return prefix;
+    }
+
+    /**
+     * Decode the records of a shard in order.
+     */
+    private static void scan(Shard shard, LongAdder progress, RecordConsumer consumer) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(shard.file, StandardOpenOption.READ)) {
+            InputStream in = new ChannelRangeInputStream(channel, shard.start, shard.end, progress);
+            RangeLineReader reader = new RangeLineReader(in,
+                    shard.prefix < 0 ? HexUtils.HASH_LENGTH : HexUtils.SUFFIX_LENGTH, READ_BUFFER_SIZE);
+            byte[] digest = new byte[HexUtils.DIGEST_BYTES];
+            while (reader.nextLine()) {
+                int count = reader.count();
+                if (count > 0 && reader.decodeDigest(shard.prefix, digest, 0)) {
+                    consumer.accept(digest, count);
+                } else {
+                    shard.skippedLines++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Entry point of the command line tool.
+     *
+     * @param args command line arguments.
+     */
+    public static void main(String[] args) {
+
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        boolean verifyOnly = false;
+        List<String> paths = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (THREADS_OPTION.equals(args[i]) && i + 1 < args.length) {
+                    parallelism = Integer.parseInt(args[++i]);
+                } else if (VERIFY_OPTION.equals(args[i])) {
+                    verifyOnly = true;
+                } else {
+                    paths.add(args[i]);
+                }
+            }
+        } catch (NumberFormatException e) {
+            paths.clear();
+        }
+        if (parallelism < 1 || paths.size() != (verifyOnly ? 1 : 2)) {
+            System.err.println("Usage: CorpusImporter [" + THREADS_OPTION + " <n>] <corpus file or directory> "
+                    + "<index file>");
+            System.err.println("       CorpusImporter " + VERIFY_OPTION + " <index file>");
+            System.exit(2);
+        }
+
+        try (CorpusImporter importer = new CorpusImporter(parallelism, System.out)) {
+            if (verifyOnly) {
+                if (!importer.verify(Paths.get(paths.get(0)))) {
+                    System.exit(1);
+                }
+            } else {
+                importer.importCorpus(Paths.get(paths.get(0)), Paths.get(paths.get(1)));
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Import failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Shut down the threads of the importer. An import or verification in progress completes first.
+     */
+    @Override
+    public void close() {
+
+        pool.shutdown();
+    }
+
+    /**
+     * Part of the corpus processed by a single task.
+     */
+    private static final class Shard {
+
+        private final Path file;
+        private final long start;
+        private final long end;
+        /**
+         * Prefix of the records for prefix files, or -1 for chunks of a file holding full hashes.
+         */
+        private final int prefix;
+        private long recordCount;
+        private long recordIndex;
+        private long skippedLines;
+        private byte[] firstDigest;
+        private byte[] lastDigest;
+
+        Shard(Path file, long start, long end, int prefix) {
+
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.prefix = prefix;
+        }
+
+        String describe() {
+
+            return prefix < 0 ? file + " at byte " + start : file.toString();
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordConsumer {
+
+        void accept(byte[] digest, int count) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface TaskFactory {
+
+        RecursiveAction create(LongAdder progress);
+    }
+
+    /**
+     * Splits a range of shards until a single shard is left, which is then processed by {@link #process(Shard)}.
+     */
+    private abstract static class ShardTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        final transient List<Shard> shards;
+        final int from;
+        final int to;
+
+        ShardTask(List<Shard> shards, int from, int to) {
+
+            this.shards = shards;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(split(from, middle), split(middle, to));
+                return;
+            }
+            if (from < to) {
+                try {
+                    process(shards.get(from));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        abstract ShardTask split(int from, int to);
+
+        abstract void process(Shard shard) throws IOException;
+    }
+
+    /**
+     * First pass: counts the records of each shard and each prefix, and checks that each shard is ordered.
+     */
+    private static final class CountTask extends ShardTask {
+
+        private static final long serialVersionUID = 1L;
+
+        private final AtomicLongArray prefixCounts;
+        private final LongAdder progress;
+
+        CountTask(List<Shard> shards, int from, int to, AtomicLongArray prefixCounts, LongAdder progress) {
+
+            super(shards, from, to);
+            this.prefixCounts = prefixCounts;
+            this.progress = progress;
+        }
+
+        @Override
+        ShardTask split(int from, int to) {
+
+            return new CountTask(shards, from, to, prefixCounts, progress);
+        }
+
+        @Override
+        void process(Shard shard) throws IOException {
+
+            byte[] previous = new byte[HexUtils.DIGEST_BYTES];
+            // Records are ordered, so the count of a prefix is added once per run instead of once per record.
+            int[] run = {-1, 0};
+            scan(shard, progress, (digest, count) -> {
+                if (shard.recordCount > 0 && Arrays.compareUnsigned(previous, digest) >= 0) {
+                    throw new IOException("Corpus is not ordered by hash in " + shard.describe()
+                            + ". Use the corpus ordered by hash.");
+                }
+                System.arraycopy(digest, 0, previous, 0, HexUtils.DIGEST_BYTES);
+                if (shard.recordCount == 0) {
+                    shard.firstDigest = digest.clone();
+                }
+                shard.recordCount++;
+
+                int prefix = LocalStoreFormat.prefixOf(digest, 0);
+                if (prefix != run[0]) {
+                    if (run[1] > 0) {
+                        prefixCounts.addAndGet(run[0], run[1]);
+                    }
+                    run[0] = prefix;
+                    run[1] = 0;
+                }
+                run[1]++;
+            });
+            if (run[1] > 0) {
+                prefixCounts.addAndGet(run[0], run[1]);
+            }
+            if (shard.recordCount > 0) {
+                shard.lastDigest = previous;
+            }
+        }
+    }
+
+    /**
+     * Second pass: writes the records of each shard to its position in the index file.
+     */
+    private static final class WriteTask extends ShardTask {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+        private final LongAdder progress;
+
+        WriteTask(List<Shard> shards, int from, int to, FileChannel channel, LongAdder progress) {
+
+            super(shards, from, to);
+            this.channel = channel;
+            this.progress = progress;
+        }
+
+        @Override
+        ShardTask split(int from, int to) {
+
+            return new WriteTask(shards, from, to, channel, progress);
+        }
+
+        @Override
+        void process(Shard shard) throws IOException {
+
+            if (shard.recordCount == 0) {
+                progress.add(shard.end - shard.start);
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE
+                    - WRITE_BUFFER_SIZE % LocalStoreFormat.RECORD_SIZE);
+            long[] position = {LocalStoreFormat.RECORDS_POSITION
+                    + shard.recordIndex * LocalStoreFormat.RECORD_SIZE};
+            long[] written = {0};
+            scan(shard, progress, (digest, count) -> {
+                if (!buffer.hasRemaining()) {
+                    position[0] = flush(buffer, position[0]);
+                }
+                buffer.put(digest, 0, HexUtils.DIGEST_BYTES);
+                buffer.putInt(count);
+                written[0]++;
+            });
+            flush(buffer, position[0]);
+            if (written[0] != shard.recordCount) {
+                throw new IOException("Corpus changed while importing " + shard.describe());
+            }
+        }
+
+        private long flush(ByteBuffer buffer, long position) throws IOException {
+
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+            return position;
+        }
+    }
+
+    /**
+     * Reads a byte range of a file channel with positional reads, counting the bytes read.
+     */
+    private static final class ChannelRangeInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private final long end;
+        private final LongAdder progress;
+        private long position;
+
+        ChannelRangeInputStream(FileChannel channel, long start, long end, LongAdder progress) {
+
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+            this.progress = progress;
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+
+            if (position >= end) {
+                return -1;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, end - position));
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                // The file was truncated after it was split.
+                position = end;
+                return -1;
+            }
+            position += n;
+            progress.add(n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.store;
+
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Offline lookup engine over a local Pwned Passwords index file (see {@link LocalStoreFormat}).
+ *
+ * The file is memory mapped read only, so lookups do not perform any I/O once the pages are resident and the OS page
+ * cache is shared by all threads. A lookup reads the record range of the hash prefix from the offset table and binary
+ * searches the sorted digests inside it. Files larger than 2 GB are mapped in several segments.
+ */
+public class LocalPwnedPasswordStore implements Closeable {
+
+    /**
+     * Records per mapped segment, chosen so that a segment stays below the 2 GB limit of a single mapping.
+     */
+    private static final long RECORDS_PER_SEGMENT = Integer.MAX_VALUE / LocalStoreFormat.RECORD_SIZE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer offsetTable;
+    private final MappedByteBuffer[] segments;
+    private final long recordCount;
+    private final long checksum;
+
+    private LocalPwnedPasswordStore(FileChannel channel) throws IOException {
+
+        this.channel = channel;
+        ByteBuffer header = ByteBuffer.allocate(LocalStoreFormat.HEADER_SIZE);
+        long position = 0;
+        while (header.hasRemaining()) {
+            int n = channel.read(header, position);
+            if (n < 0) {
+                throw new IOException("Local Pwned Passwords store is truncated.");
+            }
+            position += n;
+        }
+        if (header.getLong(LocalStoreFormat.MAGIC_POSITION) != LocalStoreFormat.MAGIC
+                || header.getInt(LocalStoreFormat.VERSION_POSITION) != LocalStoreFormat.VERSION
+                || header.getInt(LocalStoreFormat.RECORD_SIZE_POSITION) != LocalStoreFormat.RECORD_SIZE) {
+            throw new IOException("Unsupported Pwned Passwords store format.");
+        }
+        recordCount = header.getLong(LocalStoreFormat.RECORD_COUNT_POSITION);
+        checksum = header.getLong(LocalStoreFormat.CHECKSUM_POSITION);
+        if (channel.size() < LocalStoreFormat.RECORDS_POSITION + recordCount * LocalStoreFormat.RECORD_SIZE) {
+            throw new IOException("Local Pwned Passwords store is truncated.");
+        }
+
+        offsetTable = channel.map(FileChannel.MapMode.READ_ONLY, LocalStoreFormat.OFFSET_TABLE_POSITION,
+                LocalStoreFormat.OFFSET_TABLE_SIZE);
+        int segmentCount = (int) ((recordCount + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT);
+        segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long firstRecord = i * RECORDS_PER_SEGMENT;
+            long records = Math.min(RECORDS_PER_SEGMENT, recordCount - firstRecord);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    LocalStoreFormat.RECORDS_POSITION + firstRecord * LocalStoreFormat.RECORD_SIZE,
+                    records * LocalStoreFormat.RECORD_SIZE);
+        }
+    }
+
+    /**
+     * Open a local Pwned Passwords index file.
+     *
+     * @param path path of the index file.
+     * @return store backed by the file.
+     * @throws IOException if the file cannot be read or is not a valid index file.
+     */
+    public static LocalPwnedPasswordStore open(Path path) throws IOException {
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new LocalPwnedPasswordStore(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the appearance count of a password hash.
+     *
+     * @param digest 20 byte SHA-1 digest of the password.
+     * @return appearance count, or 0 if the hash is not in the store.
+     */
+    public int getCount(byte[] digest) {
+
+        int prefix = LocalStoreFormat.prefixOf(digest, 0);
+        long low = offsetTable.getLong(prefix * Long.BYTES);
+        long high = offsetTable.getLong((prefix + 1) * Long.BYTES) - 1;
+
+        long keyHigh = readLong(digest, 0);
+        long keyMiddle = readLong(digest, Long.BYTES);
+        int keyLow = (int) (readLong(digest, 2 * Long.BYTES - Integer.BYTES));
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            MappedByteBuffer segment = segments[(int) (mid / RECORDS_PER_SEGMENT)];
+            int position = (int) (mid % RECORDS_PER_SEGMENT) * LocalStoreFormat.RECORD_SIZE;
+            int comparison = Long.compareUnsigned(segment.getLong(position), keyHigh);
+            if (comparison == 0) {
+                comparison = Long.compareUnsigned(segment.getLong(position + Long.BYTES), keyMiddle);
+            }
+            if (comparison == 0) {
+                comparison = Integer.compareUnsigned(segment.getInt(position + 2 * Long.BYTES), keyLow);
+            }
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return segment.getInt(position + HexUtils.DIGEST_BYTES);
+            }
+        }
+        return 0;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Get the number of hashes in the store.
+     *
+     * @return number of records.
+     */
+    public long getRecordCount() {
+
+        return recordCount;
+    }
+
+    /**
+     * Get the checksum recorded in the header of the index file.
+     *
+     * @return checksum of the records, or 0 if none was recorded.
+     */
+    public long getChecksum() {
+
+        return checksum;
+    }
+
+    /**
+     * Close the underlying file. The mappings are released once they are garbage collected.
+     *
+     * @throws IOException if closing the file fails.
+     */
+    @Override
+    public void close() throws IOException {
+
+        channel.close();
+    }
+}
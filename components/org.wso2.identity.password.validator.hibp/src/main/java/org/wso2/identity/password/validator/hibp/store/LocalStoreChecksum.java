@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32C;
+
+/**
+ * Computes the checksum of the records of a local Pwned Passwords index file.
+ *
+ * The records are split into fixed size blocks that are checksummed in parallel with CRC32C. The checksum of the
+ * file is the CRC32C of the block checksums, so it does not depend on the number of threads used.
+ */
+final class LocalStoreChecksum {
+
+    static final int BLOCK_SIZE = 64 << 20;
+
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    private LocalStoreChecksum() {
+
+    }
+
+    /**
+     * Compute the checksum of the records of an index file.
+     *
+     * @param channel     channel of the index file, opened for reading.
+     * @param recordCount number of records in the file.
+     * @param pool        pool to checksum the blocks in.
+     * @return checksum of the records.
+     * @throws IOException if reading the file fails.
+     */
+    static long compute(FileChannel channel, long recordCount, ForkJoinPool pool) throws IOException {
+
+        long length = recordCount * LocalStoreFormat.RECORD_SIZE;
+        int blockCount = (int) ((length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        int[] blockChecksums = new int[blockCount];
+        if (blockCount > 0) {
+            try {
+                pool.invoke(new BlockTask(channel, length, blockChecksums, 0, blockCount));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        ByteBuffer checksums = ByteBuffer.allocate(blockCount * Integer.BYTES);
+        for (int blockChecksum : blockChecksums) {
+            checksums.putInt(blockChecksum);
+        }
+        checksums.flip();
+        CRC32C crc = new CRC32C();
+        crc.update(checksums);
+        return crc.getValue();
+    }
+
+    /**
+     * Checksums a range of blocks, splitting it until a single block is left.
+     */
+    private static final class BlockTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+        private final long length;
+        private final int[] blockChecksums;
+        private final int from;
+        private final int to;
+
+        BlockTask(FileChannel channel, long length, int[] blockChecksums, int from, int to) {
+
+            this.channel = channel;
+            this.length = length;
+            this.blockChecksums = blockChecksums;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BlockTask(channel, length, blockChecksums, from, middle),
+                        new BlockTask(channel, length, blockChecksums, middle, to));
+                return;
+            }
+            try {
+                blockChecksums[from] = checksumBlock();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private int checksumBlock() throws IOException {
+
+            long start = (long) from * BLOCK_SIZE;
+            long end = Math.min(start + BLOCK_SIZE, length);
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            CRC32C crc = new CRC32C();
+            long position = start;
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                int n = channel.read(buffer, LocalStoreFormat.RECORDS_POSITION + position);
+                if (n < 0) {
+                    throw new IOException("Local Pwned Passwords store is truncated.");
+                }
+                buffer.flip();
+                crc.update(buffer);
+                position += n;
+            }
+            return (int) crc.getValue();
+        }
+    }
+}
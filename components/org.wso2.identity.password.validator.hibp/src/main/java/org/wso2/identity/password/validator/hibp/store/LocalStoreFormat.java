@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.store;
+
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+
+/**
+ * Layout of the local Pwned Passwords index file.
+ *
+ * <pre>
+ * header        64 bytes      magic, version, record size, record count, checksum
+ * offset table  (2^20 + 1) * 8 index of the first record of each 5 character prefix, followed by the record count
+ * records       n * 24        20 byte SHA-1 digest and 4 byte appearance count, sorted by digest
+ * </pre>
+ *
+ * All numbers are big endian. The checksum is computed over the records as described in {@link LocalStoreChecksum}.
+ */
+final class LocalStoreFormat {
+
+    /**
+     * "HIBPIDX1" in ASCII.
+     */
+    static final long MAGIC = 0x4849425049445831L;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 64;
+
+    static final int MAGIC_POSITION = 0;
+
+    static final int VERSION_POSITION = 8;
+
+    static final int RECORD_SIZE_POSITION = 12;
+
+    static final int RECORD_COUNT_POSITION = 16;
+
+    static final int CHECKSUM_POSITION = 24;
+
+    static final int PREFIX_COUNT = 1 << 20;
+
+    static final int COUNT_BYTES = 4;
+
+    static final int RECORD_SIZE = HexUtils.DIGEST_BYTES + COUNT_BYTES;
+
+    static final long OFFSET_TABLE_POSITION = HEADER_SIZE;
+
+    static final long OFFSET_TABLE_SIZE = (PREFIX_COUNT + 1L) * Long.BYTES;
+
+    static final long RECORDS_POSITION = OFFSET_TABLE_POSITION + OFFSET_TABLE_SIZE;
+
+    private LocalStoreFormat() {
+
+    }
+
+    /**
+     * Get the 20 bit prefix (the first 5 hex characters) of a digest.
+     *
+     * @param digest array holding the digest.
+     * @param offset index of the first digest byte.
+     * @return prefix between 0 and 2^20 - 1.
+     */
+    static int prefixOf(byte[] digest, int offset) {
+
+        return ((digest[offset] & 0xFF) << 12) | ((digest[offset + 1] & 0xFF) << 4)
+                | ((digest[offset + 2] & 0xFF) >>> 4);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.store;
+
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Writes a local Pwned Passwords index file (see {@link LocalStoreFormat}) from hashes supplied in sorted order.
+ * Records are streamed to disk through a fixed size buffer; only the per prefix record counts are kept in memory.
+ * The offset table and the header, including the checksum of the records, are written when the writer is closed.
+ */
+public class LocalStoreWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final long[] prefixCounts = new long[LocalStoreFormat.PREFIX_COUNT];
+    private final byte[] previousDigest = new byte[HexUtils.DIGEST_BYTES];
+    private long recordCount;
+    private long position = LocalStoreFormat.RECORDS_POSITION;
+    private boolean closed;
+
+    /**
+     * Create a writer. Any existing file at the given path is replaced.
+     *
+     * @param path path of the index file.
+     * @throws IOException if the file cannot be created.
+     */
+    public LocalStoreWriter(Path path) throws IOException {
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Add a hash. Hashes must be added in ascending order without duplicates.
+     *
+     * @param digest array holding the 20 byte SHA-1 digest.
+     * @param offset index of the first digest byte.
+     * @param count  appearance count of the hash.
+     * @throws IOException if writing fails.
+     */
+    public void add(byte[] digest, int offset, int count) throws IOException {
+
+        if (recordCount > 0 && Arrays.compareUnsigned(previousDigest, 0, HexUtils.DIGEST_BYTES, digest, offset,
+                offset + HexUtils.DIGEST_BYTES) >= 0) {
+            throw new IllegalArgumentException("Hashes must be added in ascending order.");
+        }
+        System.arraycopy(digest, offset, previousDigest, 0, HexUtils.DIGEST_BYTES);
+
+        if (buffer.remaining() < LocalStoreFormat.RECORD_SIZE) {
+            flush();
+        }
+        buffer.put(digest, offset, HexUtils.DIGEST_BYTES);
+        buffer.putInt(count);
+        prefixCounts[LocalStoreFormat.prefixOf(digest, offset)]++;
+        recordCount++;
+    }
+
+    /**
+     * Get the number of hashes added so far.
+     *
+     * @return number of records.
+     */
+    public long getRecordCount() {
+
+        return recordCount;
+    }
+
+    /**
+     * Write the offset table and the header, and close the file.
+     *
+     * @throws IOException if writing fails.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+            writeOffsetTable(channel, prefixCounts);
+            writeHeader(channel, recordCount, LocalStoreChecksum.compute(channel, recordCount,
+                    ForkJoinPool.commonPool()));
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flush() throws IOException {
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Write the offset table built from the number of records of each prefix.
+     */
+    static void writeOffsetTable(FileChannel channel, long[] prefixCounts) throws IOException {
+
+        ByteBuffer table = ByteBuffer.allocate((int) LocalStoreFormat.OFFSET_TABLE_SIZE);
+        long offset = 0;
+        for (long prefixCount : prefixCounts) {
+            table.putLong(offset);
+            offset += prefixCount;
+        }
+        table.putLong(offset);
+        table.flip();
+        long position = LocalStoreFormat.OFFSET_TABLE_POSITION;
+        while (table.hasRemaining()) {
+            position += channel.write(table, position);
+        }
+    }
+
+    /**
+     * Write the header of the index file.
+     */
+    static void writeHeader(FileChannel channel, long recordCount, long checksum) throws IOException {
+
+        ByteBuffer header = ByteBuffer.allocate(LocalStoreFormat.HEADER_SIZE);
+        header.putLong(LocalStoreFormat.MAGIC_POSITION, LocalStoreFormat.MAGIC);
+        header.putInt(LocalStoreFormat.VERSION_POSITION, LocalStoreFormat.VERSION);
+        header.putInt(LocalStoreFormat.RECORD_SIZE_POSITION, LocalStoreFormat.RECORD_SIZE);
+        header.putLong(LocalStoreFormat.RECORD_COUNT_POSITION, recordCount);
+        header.putLong(LocalStoreFormat.CHECKSUM_POSITION, checksum);
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory mapped Bloom filter over the SHA-1 hashes of the Pwned Passwords corpus.
+ *
+ * The filter answers "definitely not pwned" without a range fetch or an index lookup; hashes it reports as possibly
+ * contained still need an exact lookup. Since SHA-1 digests are uniformly distributed, the bit positions are derived
+ * from the first 16 bytes of the digest by double hashing instead of hashing it again.
+ *
+ * <pre>
+ * header  64 bytes   magic, version, hash function count, bit count, entry count
+ * bits    m / 8      bit array, as big endian longs
+ * </pre>
+ */
+public class PwnedPasswordFilter implements Closeable {
+
+    /**
+     * "HIBPBLM1" in ASCII.
+     */
+    static final long MAGIC = 0x48494250424C4D31L;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 64;
+
+    static final int MAGIC_POSITION = 0;
+
+    static final int VERSION_POSITION = 8;
+
+    static final int HASH_COUNT_POSITION = 12;
+
+    static final int BIT_COUNT_POSITION = 16;
+
+    static final int ENTRY_COUNT_POSITION = 24;
+
+    static final int MAX_HASH_COUNT = 32;
+
+    /**
+     * Number of bit array bytes mapped per buffer. A power of two, so that a bit index is split with shifts.
+     */
+    private static final int SEGMENT_SHIFT = 30;
+
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.BIG_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final int hashCount;
+    private final long bitCount;
+    private final long entryCount;
+
+    private PwnedPasswordFilter(FileChannel channel, FileChannel.MapMode mode, int hashCount, long bitCount,
+                                long entryCount) throws IOException {
+
+        this.channel = channel;
+        this.hashCount = hashCount;
+        this.bitCount = bitCount;
+        this.entryCount = entryCount;
+        long length = bitArraySize(bitCount);
+        segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i << SEGMENT_SHIFT;
+            segments[i] = channel.map(mode, HEADER_SIZE + start, Math.min(SEGMENT_SIZE, length - start));
+        }
+    }
+
+    /**
+     * Open a filter file for lookups.
+     *
+     * @param path path of the filter file.
+     * @return opened filter.
+     * @throws IOException if the file cannot be read or is not a filter file.
+     */
+    public static PwnedPasswordFilter open(Path path) throws IOException {
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            long position = 0;
+            while (header.hasRemaining()) {
+                int n = channel.read(header, position);
+                if (n < 0) {
+                    throw new IOException("Pwned Passwords filter is truncated.");
+                }
+                position += n;
+            }
+            if (header.getLong(MAGIC_POSITION) != MAGIC) {
+                throw new IOException("Not a Pwned Passwords filter file: " + path);
+            }
+            if (header.getInt(VERSION_POSITION) != VERSION) {
+                throw new IOException("Unsupported Pwned Passwords filter version: "
+                        + header.getInt(VERSION_POSITION));
+            }
+            int hashCount = header.getInt(HASH_COUNT_POSITION);
+            long bitCount = header.getLong(BIT_COUNT_POSITION);
+            if (hashCount < 1 || hashCount > MAX_HASH_COUNT || bitCount < Long.SIZE || bitCount % Long.SIZE != 0) {
+                throw new IOException("Invalid Pwned Passwords filter parameters in " + path);
+            }
+            if (channel.size() < HEADER_SIZE + bitArraySize(bitCount)) {
+                throw new IOException("Pwned Passwords filter is truncated.");
+            }
+            return new PwnedPasswordFilter(channel, FileChannel.MapMode.READ_ONLY, hashCount, bitCount,
+                    header.getLong(ENTRY_COUNT_POSITION));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Create an empty filter file to add hashes to. Any existing file at the given path is replaced.
+     *
+     * @param path       path of the filter file.
+     * @param bitCount   number of bits, rounded up to a multiple of 64.
+     * @param hashCount  number of bits set per hash.
+     * @param entryCount number of hashes that will be added, recorded for reporting.
+     * @return filter that hashes can be added to.
+     * @throws IOException if the file cannot be created.
+     */
+    static PwnedPasswordFilter create(Path path, long bitCount, int hashCount, long entryCount) throws IOException {
+
+        if (hashCount < 1 || hashCount > MAX_HASH_COUNT) {
+            throw new IllegalArgumentException("Hash function count must be between 1 and " + MAX_HASH_COUNT);
+        }
+        bitCount = Math.max(Long.SIZE, (bitCount + Long.SIZE - 1) / Long.SIZE * Long.SIZE);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putLong(MAGIC_POSITION, MAGIC);
+            header.putInt(VERSION_POSITION, VERSION);
+            header.putInt(HASH_COUNT_POSITION, hashCount);
+            header.putLong(BIT_COUNT_POSITION, bitCount);
+            header.putLong(ENTRY_COUNT_POSITION, entryCount);
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+            return new PwnedPasswordFilter(channel, FileChannel.MapMode.READ_WRITE, hashCount, bitCount,
+                    entryCount);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Check whether a hash may be in the corpus.
+     *
+     * @param digest 20 byte SHA-1 digest of the password.
+     * @return false if the hash is definitely not in the corpus, true if it may be.
+     */
+    public boolean mightContain(byte[] digest) {
+
+        long h1 = readLong(digest, 0);
+        long h2 = readLong(digest, Long.BYTES) | 1L;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            long word = getWord(bit);
+            if ((word & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add a hash. Hashes can be added concurrently from multiple threads.
+     *
+     * @param digest array holding the 20 byte SHA-1 digest.
+     * @param offset index of the first digest byte.
+     */
+    void put(byte[] digest, int offset) {
+
+        long h1 = readLong(digest, offset);
+        long h2 = readLong(digest, offset + Long.BYTES) | 1L;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            long byteIndex = (bit >>> 6) << 3;
+            LONGS.getAndBitwiseOr(segments[(int) (byteIndex >>> SEGMENT_SHIFT)],
+                    (int) (byteIndex & (SEGMENT_SIZE - 1)), 1L << (bit & 63));
+        }
+    }
+
+    private long getWord(long bit) {
+
+        long byteIndex = (bit >>> 6) << 3;
+        return segments[(int) (byteIndex >>> SEGMENT_SHIFT)].getLong((int) (byteIndex & (SEGMENT_SIZE - 1)));
+    }
+
+    /**
+     * Get the number of hash functions, i.e. the number of bits checked per lookup.
+     *
+     * @return number of hash functions.
+     */
+    public int getHashCount() {
+
+        return hashCount;
+    }
+
+    /**
+     * Get the size of the bit array.
+     *
+     * @return number of bits.
+     */
+    public long getBitCount() {
+
+        return bitCount;
+    }
+
+    /**
+     * Get the number of hashes the filter was built from.
+     *
+     * @return number of hashes.
+     */
+    public long getEntryCount() {
+
+        return entryCount;
+    }
+
+    /**
+     * Get the expected false positive rate of the filter for the number of hashes it was built from.
+     *
+     * @return probability that a hash which is not in the corpus is reported as possibly contained.
+     */
+    public double getExpectedFalsePositiveRate() {
+
+        return Math.pow(1 - Math.exp(-(double) hashCount * entryCount / bitCount), hashCount);
+    }
+
+    /**
+     * Flush the bit array of a filter that hashes were added to.
+     */
+    void force() throws IOException {
+
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        channel.force(true);
+    }
+
+    /**
+     * Close the underlying file. The mappings are released once they are garbage collected.
+     *
+     * @throws IOException if closing the file fails.
+     */
+    @Override
+    public void close() throws IOException {
+
+        channel.close();
+    }
+
+    private static long bitArraySize(long bitCount) {
+
+        return bitCount / Long.SIZE * Long.BYTES;
+    }
+
+    private static long readLong(byte[] digest, int offset) {
+
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            value = (value << 8) | (digest[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command line tool that builds a {@link PwnedPasswordFilter} from a local Pwned Passwords index file (see
+ * {@link CorpusImporter}).
+ *
+ * The filter is sized for a target false positive rate, optionally capped at a maximum size, and the number of hash
+ * functions is chosen to minimise the false positive rate for that size. The records of the index are added in
+ * parallel with fork-join.
+ *
+ * <pre>
+ * java -cp org.wso2.identity.password.validator.hibp-&lt;version&gt;.jar \
+ *     org.wso2.identity.password.validator.hibp.store.PwnedPasswordFilterBuilder [--threads &lt;n&gt;] \
+ *     [--false-positive-rate &lt;rate&gt;] [--max-size-mb &lt;size&gt;] &lt;index&gt; &lt;filter&gt;
+ * </pre>
+ */
+public final class PwnedPasswordFilterBuilder implements Closeable {
+
+    /**
+     * Default false positive rate, which takes about 11.5 bits (1.4 bytes) per hash.
+     */
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.004;
+
+    private static final long RECORDS_PER_TASK = 1L << 20;
+
+    private static final int READ_BUFFER_SIZE = (1 << 20) / LocalStoreFormat.RECORD_SIZE
+            * LocalStoreFormat.RECORD_SIZE;
+
+    private static final String THREADS_OPTION = "--threads";
+
+    private static final String FALSE_POSITIVE_RATE_OPTION = "--false-positive-rate";
+
+    private static final String MAX_SIZE_OPTION = "--max-size-mb";
+
+    private final ForkJoinPool pool;
+    private final PrintStream out;
+
+    /**
+     * Create a filter builder.
+     *
+     * @param parallelism number of threads used to add hashes.
+     * @param out         stream to report progress to.
+     */
+    public PwnedPasswordFilterBuilder(int parallelism, PrintStream out) {
+
+        this.pool = new ForkJoinPool(parallelism);
+        this.out = out;
+    }
+
+    /**
+     * Build a filter file from an index file. Any existing file at the filter path is replaced once the new filter
+     * is complete.
+     *
+     * @param index             path of the index file.
+     * @param filter            path of the filter file.
+     * @param falsePositiveRate target false positive rate, between 0 and 1.
+     * @param maxSize           maximum size of the bit array in bytes, or 0 for no limit.
+     * @return expected false positive rate of the built filter.
+     * @throws IOException if the index cannot be read or the filter cannot be written.
+     */
+    public double build(Path index, Path filter, double falsePositiveRate, long maxSize) throws IOException {
+
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1.");
+        }
+        long startTime = System.currentTimeMillis();
+        long recordCount;
+        try (LocalPwnedPasswordStore store = LocalPwnedPasswordStore.open(index)) {
+            recordCount = store.getRecordCount();
+        }
+        long bitCount = getBitCount(recordCount, falsePositiveRate);
+        if (maxSize > 0) {
+            bitCount = Math.min(bitCount, maxSize * Byte.SIZE);
+        }
+        int hashCount = getHashCount(recordCount, bitCount);
+        out.printf("Building a %,d MB filter with %d hash functions for %,d hashes.%n",
+                bitCount / Byte.SIZE >> 20, hashCount, recordCount);
+
+        Path temporary = filter.resolveSibling(filter.getFileName() + ".tmp");
+        double expectedFalsePositiveRate;
+        boolean completed = false;
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ);
+             PwnedPasswordFilter passwordFilter = PwnedPasswordFilter.create(temporary, bitCount, hashCount,
+                     recordCount)) {
+            try {
+                pool.invoke(new AddTask(channel, passwordFilter, 0, recordCount));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            passwordFilter.force();
+            expectedFalsePositiveRate = passwordFilter.getExpectedFalsePositiveRate();
+            completed = true;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+        Files.move(temporary, filter, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        out.printf("Built %s in %,d s with an expected false positive rate of %.4f%%.%n", filter,
+                TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - startTime),
+                expectedFalsePositiveRate * 100);
+        return expectedFalsePositiveRate;
+    }
+
+    /**
+     * Get the number of bits needed for a false positive rate, using the optimal number of hash functions.
+     *
+     * @param entryCount        number of hashes.
+     * @param falsePositiveRate target false positive rate.
+     * @return number of bits.
+     */
+    static long getBitCount(long entryCount, double falsePositiveRate) {
+
+        return (long) Math.ceil(-Math.max(entryCount, 1) * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+    }
+
+    /**
+     * Get the number of hash functions that minimises the false positive rate of a filter.
+     *
+     * @param entryCount number of hashes.
+     * @param bitCount   number of bits.
+     * @return number of hash functions.
+     */
+    static int getHashCount(long entryCount, long bitCount) {
+
+        long hashCount = Math.round((double) bitCount / Math.max(entryCount, 1) * Math.log(2));
+        return (int) Math.max(1, Math.min(hashCount, PwnedPasswordFilter.MAX_HASH_COUNT));
+    }
+
+    /**
+     * Entry point of the command line tool.
+     *
+     * @param args command line arguments.
+     */
+    public static void main(String[] args) {
+
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        double falsePositiveRate = DEFAULT_FALSE_POSITIVE_RATE;
+        long maxSize = 0;
+        List<String> paths = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (THREADS_OPTION.equals(args[i]) && i + 1 < args.length) {
+                    parallelism = Integer.parseInt(args[++i]);
+                } else if (FALSE_POSITIVE_RATE_OPTION.equals(args[i]) && i + 1 < args.length) {
+                    falsePositiveRate = Double.parseDouble(args[++i]);
+                } else if (MAX_SIZE_OPTION.equals(args[i]) && i + 1 < args.length) {
+                    maxSize = Long.parseLong(args[++i]) << 20;
+                } else {
+                    paths.add(args[i]);
+                }
+            }
+        } catch (NumberFormatException e) {
+            paths.clear();
+        }
+        if (parallelism < 1 || maxSize < 0 || paths.size() != 2) {
+            System.err.println("Usage: PwnedPasswordFilterBuilder [" + THREADS_OPTION + " <n>] ["
+                    + FALSE_POSITIVE_RATE_OPTION + " <rate>] [" + MAX_SIZE_OPTION + " <size>] <index file> "
+                    + "<filter file>");
+            System.exit(2);
+        }
+
+        try (PwnedPasswordFilterBuilder builder = new PwnedPasswordFilterBuilder(parallelism, System.out)) {
+            builder.build(Paths.get(paths.get(0)), Paths.get(paths.get(1)), falsePositiveRate, maxSize);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Building the filter failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Shut down the threads of the builder. A build in progress completes first.
+     */
+    @Override
+    public void close() {
+
+        pool.shutdown();
+    }
+
+    /**
+     * Adds a range of index records to the filter, splitting it until it is small enough.
+     */
+    private static final class AddTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+        private final transient PwnedPasswordFilter filter;
+        private final long from;
+        private final long to;
+
+        AddTask(FileChannel channel, PwnedPasswordFilter filter, long from, long to) {
+
+            this.channel = channel;
+            this.filter = filter;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > RECORDS_PER_TASK) {
+                long middle = (from + to) >>> 1;
+                invokeAll(new AddTask(channel, filter, from, middle), new AddTask(channel, filter, middle, to));
+                return;
+            }
+            try {
+                addRecords();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void addRecords() throws IOException {
+
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            byte[] records = buffer.array();
+            long position = LocalStoreFormat.RECORDS_POSITION + from * LocalStoreFormat.RECORD_SIZE;
+            long end = LocalStoreFormat.RECORDS_POSITION + to * LocalStoreFormat.RECORD_SIZE;
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                while (buffer.hasRemaining()) {
+                    int n = channel.read(buffer, position + buffer.position());
+                    if (n < 0) {
+                        throw new IOException("Local Pwned Passwords store is truncated.");
+                    }
+                }
+                for (int offset = 0; offset < buffer.limit(); offset += LocalStoreFormat.RECORD_SIZE) {
+                    filter.put(records, offset);
+                }
+                position += buffer.limit();
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Reads node level tuning parameters of the HIBP connector.
+ * Values are taken from JVM system properties (e.g. -Dhibp.http.client.max.connections=200) and fall back to the
+ * given defaults when a property is not set or cannot be parsed.
+ */
+public class ConfigUtils {
+
+    private static final Log LOG = LogFactory.getLog(ConfigUtils.class);
+
+    private ConfigUtils() {
+
+    }
+
+    /**
+     * Get a string configuration value.
+     *
+     * @param name         Name of the system property
+     * @param defaultValue Value to return if the property is not set
+     * @return Configured value or the default value
+     */
+    public static String getString(String name, String defaultValue) {
+
+        String value = System.getProperty(name);
+        return StringUtils.isBlank(value) ? defaultValue : value.trim();
+    }
+
+    /**
+     * Get an integer configuration value.
+     *
+     * @param name         Name of the system property
+     * @param defaultValue Value to return if the property is not set or invalid
+     * @return Configured value or the default value
+     */
+    public static int getInt(String name, int defaultValue) {
+
+        String value = System.getProperty(name);
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid value: " + value + " for the property: " + name + ". Using the default value: "
+                    + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Get a long configuration value.
+     *
+     * @param name         Name of the system property
+     * @param defaultValue Value to return if the property is not set or invalid
+     * @return Configured value or the default value
+     */
+    public static long getLong(String name, long defaultValue) {
+
+        String value = System.getProperty(name);
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid value: " + value + " for the property: " + name + ". Using the default value: "
+                    + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Get a decimal configuration value.
+     *
+     * @param name         Name of the system property
+     * @param defaultValue Value to return if the property is not set or invalid
+     * @return Configured value or the default value
+     */
+    public static double getDouble(String name, double defaultValue) {
+
+        String value = System.getProperty(name);
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid value: " + value + " for the property: " + name + ". Using the default value: "
+                    + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Get a boolean configuration value.
+     *
+     * @param name         Name of the system property
+     * @param defaultValue Value to return if the property is not set
+     * @return Configured value or the default value
+     */
+    public static boolean getBoolean(String name, boolean defaultValue) {
+
+        String value = System.getProperty(name);
+        return StringUtils.isBlank(value) ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+}
@@ -29,6 +29,20 @@ public class Constants {
 
     public static final String COUNT_PARAM = "count";
 
+    /**
+     * Parameter names of the passwords, or of their SHA-1 hashes, and of their counts in batch requests
+     */
+    public static final String PASSWORDS_PARAM = "passwords";
+
+    public static final String HASHES_PARAM = "hashes";
+
+    public static final String COUNTS_PARAM = "counts";
+
+    /**
+     * Parameter name of the flag set in responses when the passwords could not be checked and the tenant fails open
+     */
+    public static final String UNAVAILABLE_PARAM = "unavailable";
+
     /**
      * Parameter name for enabling/disabling the HIBP validator
      */
@@ -49,11 +63,36 @@ public class Constants {
      */
     public static final String HIBP_API_URL = "https://api.pwnedpasswords.com/range/";
 
+    /**
+     * System property for overriding the base URL of the HIBP password range API, e.g. to use a mirror
+     */
+    public static final String API_URL = "hibp.api.url";
+
+    /**
+     * HTTP status code sent by the HIBP API when the rate limit is exceeded
+     */
+    public static final int TOO_MANY_REQUESTS = 429;
+
     /**
      * Servlet path for the HIBP validator endpoint
      */
     public static final String HIBP_SERVLET_PATH = "/hibp";
 
+    /**
+     * Servlet path for the metrics endpoint, in the Prometheus text format
+     */
+    public static final String HIBP_METRICS_SERVLET_PATH = HIBP_SERVLET_PATH + "/metrics";
+
+    /**
+     * Servlet path for the range endpoint the members of the peer cache serve each other ranges on
+     */
+    public static final String HIBP_PEER_SERVLET_PATH = HIBP_SERVLET_PATH + "/peer/range";
+
+    /**
+     * HTTP header name for the shared secret authenticating requests between the members of the peer cache
+     */
+    public static final String HIBP_PEER_SECRET_HEADER = "hibp-peer-secret";
+
     /**
      * Name of the HIBP password validator connector
      */
@@ -69,9 +108,407 @@ public class Constants {
      */
     public static final String CONNECTOR_API_KEY = CONNECTOR_NAME + ".api.key";
 
+    /**
+     * Configuration property name for looking up passwords in the local Pwned Passwords store instead of the HIBP API
+     */
+    public static final String CONNECTOR_LOCAL_LOOKUP = CONNECTOR_NAME + ".local.lookup";
+
+    /**
+     * Configuration property name for accepting passwords that cannot be checked while the HIBP API is unavailable
+     */
+    public static final String CONNECTOR_FAIL_OPEN = CONNECTOR_NAME + ".fail.open";
+
     /**
      * Parameter name for tenant domain
      */
     public static final String TENANT_DOMAIN = "tenant_domain";
 
+    /**
+     * System property for the maximum number of pooled connections to the HIBP API
+     */
+    public static final String HTTP_CLIENT_MAX_CONNECTIONS = "hibp.http.client.max.connections";
+
+    public static final int DEFAULT_HTTP_CLIENT_MAX_CONNECTIONS = 100;
+
+    /**
+     * System property for the maximum number of pooled connections per route
+     */
+    public static final String HTTP_CLIENT_MAX_CONNECTIONS_PER_ROUTE = "hibp.http.client.max.connections.per.route";
+
+    public static final int DEFAULT_HTTP_CLIENT_MAX_CONNECTIONS_PER_ROUTE = 50;
+
+    /**
+     * System property for the maximum keep alive time of a pooled connection in milliseconds
+     */
+    public static final String HTTP_CLIENT_KEEP_ALIVE = "hibp.http.client.keep.alive";
+
+    public static final long DEFAULT_HTTP_CLIENT_KEEP_ALIVE = 60000L;
+
+    /**
+     * System property for the idle time in milliseconds after which a pooled connection is evicted
+     */
+    public static final String HTTP_CLIENT_IDLE_CONNECTION_TIMEOUT = "hibp.http.client.idle.connection.timeout";
+
+    public static final long DEFAULT_HTTP_CLIENT_IDLE_CONNECTION_TIMEOUT = 30000L;
+
+    /**
+     * System property for enabling/disabling compressed (gzip/deflate) transfer of range responses
+     */
+    public static final String HTTP_CLIENT_COMPRESSION_ENABLED = "hibp.http.client.compression.enabled";
+
+    public static final boolean DEFAULT_HTTP_CLIENT_COMPRESSION_ENABLED = true;
+
+    /**
+     * System property for the timeout in milliseconds for connecting to the HIBP API
+     */
+    public static final String HTTP_CLIENT_CONNECT_TIMEOUT = "hibp.http.client.connect.timeout";
+
+    public static final int DEFAULT_HTTP_CLIENT_CONNECT_TIMEOUT = 2000;
+
+    /**
+     * System property for the timeout in milliseconds for reading a response of the HIBP API
+     */
+    public static final String HTTP_CLIENT_READ_TIMEOUT = "hibp.http.client.read.timeout";
+
+    public static final int DEFAULT_HTTP_CLIENT_READ_TIMEOUT = 5000;
+
+    /**
+     * System property for enabling/disabling the circuit breaker around calls to the HIBP API
+     */
+    public static final String CIRCUIT_BREAKER_ENABLED = "hibp.circuit.breaker.enabled";
+
+    public static final boolean DEFAULT_CIRCUIT_BREAKER_ENABLED = true;
+
+    /**
+     * System property for the number of consecutive failed or slow calls after which the circuit breaker opens
+     */
+    public static final String CIRCUIT_BREAKER_FAILURE_THRESHOLD = "hibp.circuit.breaker.failure.threshold";
+
+    public static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+
+    /**
+     * System property for the duration in milliseconds after which a call counts as failed, 0 to not count slow calls
+     */
+    public static final String CIRCUIT_BREAKER_SLOW_CALL_THRESHOLD = "hibp.circuit.breaker.slow.call.threshold";
+
+    public static final long DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_THRESHOLD = 3000L;
+
+    /**
+     * System property for the time in milliseconds the circuit breaker stays open before probing the HIBP API
+     */
+    public static final String CIRCUIT_BREAKER_OPEN_DURATION = "hibp.circuit.breaker.open.duration";
+
+    public static final long DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION = 30000L;
+
+    /**
+     * System property for enabling/disabling hedging of slow range requests
+     */
+    public static final String HEDGE_ENABLED = "hibp.hedge.enabled";
+
+    public static final boolean DEFAULT_HEDGE_ENABLED = false;
+
+    /**
+     * System property for the percentile of recent request latencies after which a range request is hedged
+     */
+    public static final String HEDGE_PERCENTILE = "hibp.hedge.percentile";
+
+    public static final double DEFAULT_HEDGE_PERCENTILE = 95.0;
+
+    /**
+     * System property for the minimum time in milliseconds before a range request is hedged
+     */
+    public static final String HEDGE_MIN_DELAY = "hibp.hedge.min.delay";
+
+    public static final long DEFAULT_HEDGE_MIN_DELAY = 20L;
+
+    /**
+     * System property for the maximum number of hedges, as a percentage of the range requests
+     */
+    public static final String HEDGE_BUDGET_PERCENT = "hibp.hedge.budget.percent";
+
+    public static final int DEFAULT_HEDGE_BUDGET_PERCENT = 10;
+
+    /**
+     * System property for the HIBP API URL hedges are sent to, the primary API URL by default
+     */
+    public static final String HEDGE_API_URL = "hibp.hedge.api.url";
+
+    /**
+     * System property for enabling/disabling the in-memory hash prefix range cache
+     */
+    public static final String CACHE_ENABLED = "hibp.cache.enabled";
+
+    public static final boolean DEFAULT_CACHE_ENABLED = true;
+
+    /**
+     * System property for the maximum number of hash prefixes kept in the range cache
+     */
+    public static final String CACHE_MAX_ENTRIES = "hibp.cache.max.entries";
+
+    public static final int DEFAULT_CACHE_MAX_ENTRIES = 5000;
+
+    /**
+     * System property for the time in milliseconds a cached range is served after it was fetched
+     */
+    public static final String CACHE_TIME_TO_LIVE = "hibp.cache.time.to.live";
+
+    public static final long DEFAULT_CACHE_TIME_TO_LIVE = 3600000L;
+
+    /**
+     * System property for the time in milliseconds an expired range is served while it is revalidated in the background
+     */
+    public static final String CACHE_STALE_WHILE_REVALIDATE = "hibp.cache.stale.while.revalidate";
+
+    public static final long DEFAULT_CACHE_STALE_WHILE_REVALIDATE = 300000L;
+
+    /**
+     * System property for the time in milliseconds an expired range is served when it cannot be fetched from the API
+     */
+    public static final String CACHE_STALE_IF_ERROR = "hibp.cache.stale.if.error";
+
+    public static final long DEFAULT_CACHE_STALE_IF_ERROR = 3600000L;
+
+    /**
+     * System property for the directory of the disk tier of the range cache, which keeps cached ranges across restarts
+     */
+    public static final String DISK_CACHE_PATH = "hibp.cache.disk.path";
+
+    /**
+     * System property for the maximum size in megabytes of the disk tier of the range cache
+     */
+    public static final String DISK_CACHE_MAX_SIZE_MB = "hibp.cache.disk.max.size.mb";
+
+    public static final long DEFAULT_DISK_CACHE_MAX_SIZE_MB = 256L;
+
+    /**
+     * System property for the maximum number of ranges waiting to be written to the disk tier of the range cache
+     */
+    public static final String DISK_CACHE_WRITE_QUEUE_SIZE = "hibp.cache.disk.write.queue.size";
+
+    public static final int DEFAULT_DISK_CACHE_WRITE_QUEUE_SIZE = 256;
+
+    /**
+     * System property for the file the popularity of the hash prefixes is saved to, enabling the range cache warm-up
+     */
+    public static final String WARMUP_PATH = "hibp.cache.warmup.path";
+
+    /**
+     * System property for the number of the most popular hash prefixes fetched when the server starts
+     */
+    public static final String WARMUP_PREFIXES = "hibp.cache.warmup.prefixes";
+
+    public static final int DEFAULT_WARMUP_PREFIXES = 1000;
+
+    /**
+     * System property for the maximum number of ranges fetched per second to warm up the range cache
+     */
+    public static final String WARMUP_RATE = "hibp.cache.warmup.rate";
+
+    public static final int DEFAULT_WARMUP_RATE = 10;
+
+    /**
+     * System property for the time in milliseconds between saves of the popularity of the hash prefixes
+     */
+    public static final String WARMUP_SAVE_INTERVAL = "hibp.cache.warmup.save.interval";
+
+    public static final long DEFAULT_WARMUP_SAVE_INTERVAL = 300000L;
+
+    /**
+     * System property for the path of the local Pwned Passwords index file
+     */
+    public static final String LOCAL_STORE_PATH = "hibp.local.store.path";
+
+    /**
+     * System property for downloading the local Pwned Passwords store from the range API when the index file does not
+     * exist yet
+     */
+    public static final String LOCAL_STORE_DOWNLOAD = "hibp.local.store.download";
+
+    public static final boolean DEFAULT_LOCAL_STORE_DOWNLOAD = false;
+
+    /**
+     * System property for the number of concurrent range requests of the local store download
+     */
+    public static final String LOCAL_STORE_DOWNLOAD_CONCURRENCY = "hibp.local.store.download.concurrency";
+
+    public static final int DEFAULT_LOCAL_STORE_DOWNLOAD_CONCURRENCY = 16;
+
+    /**
+     * System property for the maximum number of ranges fetched per second by the local store download, 0 for no limit
+     */
+    public static final String LOCAL_STORE_DOWNLOAD_RATE = "hibp.local.store.download.rate";
+
+    public static final int DEFAULT_LOCAL_STORE_DOWNLOAD_RATE = 0;
+
+    /**
+     * System property for the path of the Pwned Passwords filter file checked before any lookup
+     */
+    public static final String LOCAL_FILTER_PATH = "hibp.local.filter.path";
+
+    /**
+     * System property for enabling the background refresh of cached ranges with conditional requests
+     */
+    public static final String REFRESH_ENABLED = "hibp.refresh.enabled";
+
+    public static final boolean DEFAULT_REFRESH_ENABLED = false;
+
+    /**
+     * System property for the maximum number of ranges revalidated per second by the background refresh
+     */
+    public static final String REFRESH_RATE = "hibp.refresh.rate";
+
+    public static final int DEFAULT_REFRESH_RATE = 10;
+
+    /**
+     * System property for the age in milliseconds after which a cached range is revalidated
+     */
+    public static final String REFRESH_MIN_AGE = "hibp.refresh.min.age";
+
+    public static final long DEFAULT_REFRESH_MIN_AGE = 600000L;
+
+    /**
+     * System property for the time in milliseconds the connector configuration of a tenant is cached, or 0 to read
+     * it on every password check
+     */
+    public static final String CONFIG_CACHE_TIME_TO_LIVE = "hibp.config.cache.time.to.live";
+
+    public static final long DEFAULT_CONFIG_CACHE_TIME_TO_LIVE = 0L;
+
+    /**
+     * System property for the maximum number of tenants whose connector configuration is cached
+     */
+    public static final String CONFIG_CACHE_MAX_ENTRIES = "hibp.config.cache.max.entries";
+
+    public static final int DEFAULT_CONFIG_CACHE_MAX_ENTRIES = 1000;
+
+    /**
+     * System property for the HIBP API key sent with background requests, i.e. range refreshes and the local store
+     * download, which are not made for a tenant
+     */
+    public static final String BACKGROUND_API_KEY = "hibp.background.api.key";
+
+    /**
+     * System property for the maximum number of passwords in a batch request
+     */
+    public static final String BATCH_MAX_SIZE = "hibp.batch.max.size";
+
+    public static final int DEFAULT_BATCH_MAX_SIZE = 100;
+
+    /**
+     * System property for the maximum size in bytes of the body of a batch request
+     */
+    public static final String BATCH_MAX_BODY_SIZE = "hibp.batch.max.body.size";
+
+    public static final int DEFAULT_BATCH_MAX_BODY_SIZE = 65536;
+
+    /**
+     * System property for the number of passwords per second each client can check with batch requests, or 0 for no
+     * limit
+     */
+    public static final String BATCH_CLIENT_RATE = "hibp.batch.client.rate";
+
+    public static final int DEFAULT_BATCH_CLIENT_RATE = 100;
+
+    /**
+     * System property for the maximum number of clients whose batch request rate is tracked
+     */
+    public static final String BATCH_MAX_CLIENTS = "hibp.batch.max.clients";
+
+    public static final int DEFAULT_BATCH_MAX_CLIENTS = 10000;
+
+    /**
+     * System property for the number of ranges fetched in parallel for a batch request, and the size of the shared
+     * batch lookup thread pool
+     */
+    public static final String BATCH_CONCURRENCY = "hibp.batch.concurrency";
+
+    public static final int DEFAULT_BATCH_CONCURRENCY = 16;
+
+    /**
+     * System property for the number of threads looking up passwords for asynchronous requests
+     */
+    public static final String LOOKUP_CONCURRENCY = "hibp.lookup.concurrency";
+
+    public static final int DEFAULT_LOOKUP_CONCURRENCY = 32;
+
+    /**
+     * System property for the maximum number of asynchronous requests waiting for a lookup thread. Requests beyond
+     * this are rejected with 503 Service Unavailable
+     */
+    public static final String LOOKUP_QUEUE_SIZE = "hibp.lookup.queue.size";
+
+    public static final int DEFAULT_LOOKUP_QUEUE_SIZE = 512;
+
+    /**
+     * System property for the time in milliseconds after which an asynchronous request is answered with 503 Service
+     * Unavailable
+     */
+    public static final String ASYNC_TIMEOUT = "hibp.async.timeout";
+
+    public static final long DEFAULT_ASYNC_TIMEOUT = 10000L;
+
+    /**
+     * System property for the number of threads of the non-blocking HTTP client, which complete range requests and
+     * parse their responses
+     */
+    public static final String ASYNC_HTTP_CLIENT_THREADS = "hibp.async.http.client.threads";
+
+    public static final int DEFAULT_ASYNC_HTTP_CLIENT_THREADS = 4;
+
+    /**
+     * System property for enabling/disabling the metrics of the lookup pipeline and their endpoint
+     */
+    public static final String METRICS_ENABLED = "hibp.metrics.enabled";
+
+    public static final boolean DEFAULT_METRICS_ENABLED = false;
+
+    /**
+     * System property for the bearer token that requests to the metrics endpoint must carry. The endpoint is not
+     * registered without it
+     */
+    public static final String METRICS_TOKEN = "hibp.metrics.token";
+
+    /**
+     * System property for the comma separated base URLs of all members of the peer cache, including this node, which
+     * enables sharing cached ranges across the cluster
+     */
+    public static final String PEER_MEMBERS = "hibp.peer.members";
+
+    /**
+     * System property for the base URL of this node, as listed in the members of the peer cache
+     */
+    public static final String PEER_SELF = "hibp.peer.self";
+
+    /**
+     * System property for the secret shared by the members of the peer cache
+     */
+    public static final String PEER_SECRET = "hibp.peer.secret";
+
+    /**
+     * System property for the number of points of each member on the consistent hash ring of the peer cache
+     */
+    public static final String PEER_VIRTUAL_NODES = "hibp.peer.virtual.nodes";
+
+    public static final int DEFAULT_PEER_VIRTUAL_NODES = 160;
+
+    /**
+     * System property for the time in milliseconds to wait for the range of a peer before fetching it from the API
+     */
+    public static final String PEER_TIMEOUT = "hibp.peer.timeout";
+
+    public static final long DEFAULT_PEER_TIMEOUT = 1000L;
+
+    /**
+     * System property for the number of consecutive failed requests after which a peer is taken off the hash ring
+     */
+    public static final String PEER_FAILURE_THRESHOLD = "hibp.peer.failure.threshold";
+
+    public static final int DEFAULT_PEER_FAILURE_THRESHOLD = 3;
+
+    /**
+     * System property for the time in milliseconds a failed peer stays off the hash ring before it is tried again
+     */
+    public static final String PEER_RETRY_INTERVAL = "hibp.peer.retry.interval";
+
+    public static final long DEFAULT_PEER_RETRY_INTERVAL = 30000L;
 }
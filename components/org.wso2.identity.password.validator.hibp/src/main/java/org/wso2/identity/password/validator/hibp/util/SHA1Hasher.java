@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.identity.password.validator.hibp.util;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Computes SHA-1 digests of passwords without allocating on the hot path.
+ *
+ * Each thread keeps its own {@link MessageDigest} and a buffer the password is encoded into as UTF-8, so hashing a
+ * password neither looks up the digest provider nor allocates the encoded bytes. The buffer is cleared after each
+ * call, so that no password stays in memory. The digest is written into an array supplied by the caller.
+ */
+final class SHA1Hasher {
+
+    /**
+     * Passwords are short, so encoding buffers larger than this are only used for the call that needed them.
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024;
+
+    private static final ThreadLocal<SHA1Hasher> HASHERS = ThreadLocal.withInitial(SHA1Hasher::new);
+
+    private final MessageDigest messageDigest;
+    private byte[] buffer = new byte[256];
+
+    private SHA1Hasher() {
+
+        try {
+            messageDigest = MessageDigest.getInstance(Constants.SHA1);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-1.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compute the SHA-1 digest of the UTF-8 encoding of a value.
+     *
+     * @param value  value to hash.
+     * @param digest destination of the digest.
+     * @param offset index in the destination to write the 20 digest bytes to.
+     * @throws DigestException if the destination is too small.
+     */
+    static void hash(String value, byte[] digest, int offset) throws DigestException {
+
+        HASHERS.get().digest(value, digest, offset);
+    }
+
+    private void digest(String value, byte[] digest, int offset) throws DigestException {
+
+        // A UTF-8 encoded char takes at most 3 bytes, as supplementary characters take 4 bytes for 2 chars.
+        int maxLength = value.length() * 3;
+        byte[] encoded = buffer;
+        if (maxLength > encoded.length) {
+            encoded = new byte[maxLength];
+            if (maxLength <= MAX_RETAINED_BUFFER_SIZE) {
+                buffer = encoded;
+            }
+        }
+        int length = 0;
+        try {
+            length = encodeUtf8(value, encoded);
+            messageDigest.update(encoded, 0, length);
+        } finally {
+            // The buffer outlives the call, so the password must not stay in it.
+            Arrays.fill(encoded, 0, length, (byte) 0);
+        }
+        messageDigest.digest(digest, offset, messageDigest.getDigestLength());
+    }
+
+    /**
+     * Encode a value as UTF-8, replacing unpaired surrogates with '?' like {@link String#getBytes(
+     * java.nio.charset.Charset)}.
+     */
+    private static int encodeUtf8(String value, byte[] dest) {
+
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                dest[length++] = (byte) c;
+            } else if (c < 0x800) {
+                dest[length++] = (byte) (0xC0 | (c >> 6));
+                dest[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (!Character.isSurrogate(c)) {
+                dest[length++] = (byte) (0xE0 | (c >> 12));
+                dest[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dest[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                dest[length++] = (byte) (0xF0 | (codePoint >> 18));
+                dest[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                dest[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                dest[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                dest[length++] = '?';
+            }
+        }
+        return length;
+    }
+}
@@ -19,26 +19,45 @@
 package org.wso2.identity.password.validator.hibp.util;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
-import org.apache.commons.io.IOUtils;
+import com.google.gson.JsonPrimitive;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
 import org.wso2.carbon.identity.application.common.model.Property;
 import org.wso2.carbon.identity.governance.IdentityGovernanceException;
+import org.wso2.identity.password.validator.hibp.cache.ConnectorConfigCache;
+import org.wso2.identity.password.validator.hibp.client.CircuitBreaker;
+import org.wso2.identity.password.validator.hibp.client.ContentEncoding;
+import org.wso2.identity.password.validator.hibp.client.HIBPHttpClientManager;
+import org.wso2.identity.password.validator.hibp.client.RequestHedger;
+import org.wso2.identity.password.validator.hibp.exception.HIBPRateLimitException;
 import org.wso2.identity.password.validator.hibp.internal.HIBPDataHolder;
+import org.wso2.identity.password.validator.hibp.metrics.HIBPMetrics;
+import org.wso2.identity.password.validator.hibp.range.HashRange;
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+import org.wso2.identity.password.validator.hibp.range.RangeParser;
+import org.wso2.identity.password.validator.hibp.range.RangeResponse;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.io.InputStream;
-import java.math.BigInteger;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.util.*;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
 
 import static org.wso2.identity.password.validator.hibp.util.Constants.*;
 
@@ -57,8 +76,57 @@ public class Utils {
      */
     public static String buildResponse(int passwordAppearanceCount) {
 
+        return buildResponse(passwordAppearanceCount, false);
+    }
+
+    /**
+     * Builds a JSON response containing the number of times a password has appeared in data breaches, flagged if
+     * the password could not be checked because the HIBP API is unavailable.
+     *
+     * @param passwordAppearanceCount The number of times the password has appeared in known data breaches
+     * @param unavailable             True if the password could not be checked and the count is not known
+     * @return JSON string containing the password appearance count
+     */
+    public static String buildResponse(int passwordAppearanceCount, boolean unavailable) {
+
         JsonObject jsonObject = new JsonObject();
         jsonObject.addProperty(COUNT_PARAM, passwordAppearanceCount);
+        if (unavailable) {
+            jsonObject.addProperty(UNAVAILABLE_PARAM, true);
+        }
+        return new Gson().toJson(jsonObject);
+    }
+
+    /**
+     * Builds a JSON response containing the number of times each password of a batch has appeared in data breaches.
+     *
+     * @param passwordAppearanceCounts The appearance counts of the passwords, in the order of the request
+     * @return JSON string containing the password appearance counts
+     */
+    public static String buildBatchResponse(int[] passwordAppearanceCounts) {
+
+        return buildBatchResponse(passwordAppearanceCounts, false);
+    }
+
+    /**
+     * Builds a JSON response containing the number of times each password of a batch has appeared in data breaches,
+     * flagged if the passwords could not be checked because the HIBP API is unavailable.
+     *
+     * @param passwordAppearanceCounts The appearance counts of the passwords, in the order of the request
+     * @param unavailable              True if the passwords could not be checked and the counts are not known
+     * @return JSON string containing the password appearance counts
+     */
+    public static String buildBatchResponse(int[] passwordAppearanceCounts, boolean unavailable) {
+
+        JsonArray counts = new JsonArray();
+        for (int passwordAppearanceCount : passwordAppearanceCounts) {
+            counts.add(new JsonPrimitive(passwordAppearanceCount));
+        }
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.add(COUNTS_PARAM, counts);
+        if (unavailable) {
+            jsonObject.addProperty(UNAVAILABLE_PARAM, true);
+        }
         return new Gson().toJson(jsonObject);
     }
 
@@ -85,14 +153,30 @@ public class Utils {
      */
     public static String getSHA1(String value) throws Exception {
 
+        return HexUtils.encodeHash(getSHA1Digest(value), 0);
+    }
+
+    /**
+     * Computes the SHA-1 digest of the given value, without hex encoding it.
+     *
+     * @param value The string to hash
+     * @return The 20 byte SHA-1 digest of the UTF-8 encoded value
+     * @throws Exception If the hashing algorithm fails
+     */
+    public static byte[] getSHA1Digest(String value) throws Exception {
+
+        long start = System.nanoTime();
+        byte[] digest = new byte[HexUtils.DIGEST_BYTES];
         try {
-            MessageDigest digest = MessageDigest.getInstance(SHA1);
-            digest.reset();
-            digest.update(value.getBytes(StandardCharsets.UTF_8));
-            return String.format("%040x", new BigInteger(1, digest.digest())).toUpperCase();
+            SHA1Hasher.hash(value, digest, 0);
         } catch (Exception e) {
             throw new Exception("Failed to build digest value", e);
         }
+        HIBPMetrics metrics = HIBPDataHolder.getInstance().getMetrics();
+        if (metrics != null) {
+            metrics.record(HIBPMetrics.Stage.HASH, start);
+        }
+        return digest;
     }
 
     /**
@@ -100,71 +184,267 @@ public class Utils {
      * Uses the k-anonymity model where only the first 5 characters of the hash are sent to the API.
      * 
      * The API returns a list of hash suffixes and their occurrence counts that match the provided prefix.
+     * When validators of a previous response are given, the request is conditional and the range is only
+     * transferred if it has changed since.
      *
      * @param apiKey The API key for authenticating with the HIBP service
      * @param firstFiveLettersOfHash The first 5 characters of the SHA-1 hash of the password
-     * @return Map containing hash suffixes as keys and their breach occurrence counts as values
+     * @param etag ETag of a previous response of the prefix, or null
+     * @param lastModified Last-Modified date of a previous response of the prefix, or null
+     * @return Range containing the hash suffixes and their breach occurrence counts along with its validators,
+     * or a not modified response if the range has not changed
      * @throws Exception If the API request fails or returns an unexpected response
      */
-    public static Map<String, Integer> getHIBPAppearanceMap(String apiKey, String firstFiveLettersOfHash) throws Exception {
+    public static RangeResponse getHIBPRange(String apiKey, String firstFiveLettersOfHash, String etag,
+                                             String lastModified) throws Exception {
 
-        // Set up the API key header required by HIBP API
-        Header apiKeyHeader = new BasicHeader(HIBP_API_KEY_HEADER, apiKey);
-        List<Header> headers = new ArrayList<>();
-        headers.add(apiKeyHeader);
+        return executeRangeRequest(apiKey, firstFiveLettersOfHash, etag, lastModified, true,
+                Utils::toRangeResponse);
+    }
+
+    /**
+     * Queries the HIBP API for a range on behalf of a background task, such as a corpus download, a cache warm up
+     * or a cache refresh. Unlike {@link #getHIBPRange(String, String, String, String)}, the request bypasses the
+     * circuit breaker and is never hedged, so that bulk traffic and the rate limiting it causes neither open the
+     * breaker for password checks nor double the load on the API. Callers are expected to back off on failures.
+     *
+     * @param apiKey The API key for authenticating with the HIBP service
+     * @param firstFiveLettersOfHash The first 5 characters of the SHA-1 hash of the password
+     * @param etag ETag of a previous response of the prefix, or null
+     * @param lastModified Last-Modified date of a previous response of the prefix, or null
+     * @return Range containing the hash suffixes and their breach occurrence counts along with its validators,
+     * or a not modified response if the range has not changed
+     * @throws Exception If the API request fails or returns an unexpected response
+     */
+    public static RangeResponse getHIBPRangeInBackground(String apiKey, String firstFiveLettersOfHash, String etag,
+                                                         String lastModified) throws Exception {
 
-        try (CloseableHttpClient httpclient =
-                     HttpClientBuilder.create().useSystemProperties().setDefaultHeaders(headers).build()) {
-            // Create GET request to the HIBP API with the hash prefix
-            HttpGet httpGet = new HttpGet(HIBP_API_URL + firstFiveLettersOfHash);
+        return executeRangeRequest(apiKey, firstFiveLettersOfHash, etag, lastModified, false,
+                Utils::toRangeResponse);
+    }
+
+    /**
+     * Reads a range response, decoding the hash suffixes and occurrence counts while the response is being read.
+     */
+    private static RangeResponse toRangeResponse(HttpResponse response) throws IOException {
 
-            // Execute the request and check response status
-            HttpResponse response = httpclient.execute(httpGet);
-            if (HttpServletResponse.SC_OK != response.getStatusLine().getStatusCode()) {
-                throw new Exception("Failed to get HIBP API response.");
+        if (HttpServletResponse.SC_NOT_MODIFIED == response.getStatusLine().getStatusCode()) {
+            EntityUtils.consume(response.getEntity());
+            return RangeResponse.notModified();
+        }
+        HttpEntity entity = getRangeEntity(response);
+        HashRange range = HashRange.empty();
+        if (entity != null) {
+            try (InputStream in = getRangeContent(entity)) {
+                range = RangeParser.parse(in);
             }
+        }
+        return new RangeResponse(range, getHeaderValue(response, HttpHeaders.ETAG),
+                getHeaderValue(response, HttpHeaders.LAST_MODIFIED));
+    }
 
-            // Process the response entity
-            HttpEntity entity = response.getEntity();
-            if (entity == null) {
-                return Collections.emptyMap();
+    /**
+     * Executes a range request for the given hash prefix on the shared HTTP client, made conditional on the given
+     * validators if any. The response handler is given the response before the connection is released back to
+     * the pool. Interactive requests go through the circuit breaker when it is enabled, and are not sent while it
+     * is open. They are hedged when hedging is enabled, in which case the response handler may run twice
+     * concurrently.
+     */
+    private static <T> T executeRangeRequest(String apiKey, String firstFiveLettersOfHash, String etag,
+                                             String lastModified, boolean interactive, ResponseHandler<T> handler)
+            throws Exception {
+
+        HIBPHttpClientManager httpClientManager = HIBPDataHolder.getInstance().getHttpClientManager();
+        if (httpClientManager == null) {
+            throw new Exception("HIBP HTTP client is not initialized.");
+        }
+
+        HIBPMetrics metrics = HIBPDataHolder.getInstance().getMetrics();
+        ResponseHandler<T> responseHandler = metrics == null ? handler : timed(metrics, handler);
+        RequestHedger requestHedger = interactive ? HIBPDataHolder.getInstance().getRequestHedger() : null;
+        Callable<T> request = requestHedger == null
+                ? () -> httpClientManager.getHttpClient().execute(
+                        newRangeRequest(getApiUrl(0), apiKey, firstFiveLettersOfHash, etag, lastModified),
+                        responseHandler)
+                : () -> executeHedged(requestHedger, httpClientManager.getHttpClient(),
+                        attempt -> newRangeRequest(getApiUrl(attempt), apiKey, firstFiveLettersOfHash, etag,
+                                lastModified), responseHandler);
+        CircuitBreaker circuitBreaker = interactive ? HIBPDataHolder.getInstance().getCircuitBreaker() : null;
+        if (circuitBreaker == null) {
+            return request.call();
+        }
+        return circuitBreaker.execute(request);
+    }
+
+    /**
+     * Wraps a response handler to record the status of the response, the time until the response was received and
+     * the time taken to handle it. The time until the response is measured from when the wrapper is created.
+     */
+    private static <T> ResponseHandler<T> timed(HIBPMetrics metrics, ResponseHandler<T> responseHandler) {
+
+        long start = System.nanoTime();
+        return response -> {
+            metrics.record(HIBPMetrics.Stage.FETCH, start);
+            metrics.countUpstreamStatus(response.getStatusLine().getStatusCode());
+            long received = System.nanoTime();
+            try {
+                return responseHandler.handleResponse(response);
+            } finally {
+                metrics.record(HIBPMetrics.Stage.PARSE, received);
             }
+        };
+    }
 
-            // Read the response content and build a map of hash suffixes to occurrence counts
-            try (InputStream in = entity.getContent()) {
-                return buildResponseMap(IOUtils.toString(in, StandardCharsets.UTF_8));
+    /**
+     * Executes a hedged request. The first attempt is made on the calling thread and the hedge on a thread of the
+     * hedger. The attempt that loses is aborted, which closes its connection.
+     */
+    private static <T> T executeHedged(RequestHedger requestHedger, HttpClient httpClient,
+                                       IntFunction<HttpGet> requests, ResponseHandler<T> responseHandler)
+            throws Exception {
+
+        HttpGet firstRequest = requests.apply(0);
+        CompletableFuture<T> firstAttempt = new CompletableFuture<>();
+        CompletableFuture<T> result = requestHedger.execute(attempt -> {
+            if (attempt == 0) {
+                return abortOnCancel(firstAttempt, firstRequest);
             }
+            HttpGet hedgeRequest = requests.apply(attempt);
+            return abortOnCancel(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return httpClient.execute(hedgeRequest, responseHandler);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, requestHedger.getExecutor()), hedgeRequest);
+        });
+        try {
+            firstAttempt.complete(httpClient.execute(firstRequest, responseHandler));
+        } catch (IOException | RuntimeException e) {
+            firstAttempt.completeExceptionally(e);
         }
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static <T> CompletableFuture<T> abortOnCancel(CompletableFuture<T> attempt, HttpGet httpGet) {
+
+        attempt.whenComplete((value, e) -> {
+            if (e instanceof CancellationException) {
+                httpGet.abort();
+            }
+        });
+        return attempt;
     }
 
     /**
-     * Parses the HIBP API response and builds a map of hash suffixes to their occurrence counts.
-     * The response format is a series of lines with each line containing a hash suffix and count
-     * separated by a colon (e.g., "1E4C9B93F3F0682250B6CF8331B7EE68D:3").
+     * Gets the HIBP API URL for an attempt of a range request. Hedges go to the hedge API URL if one is configured.
      *
-     * @param response String content from the HIBP API response
-     * @return Map with hash suffixes as keys and breach occurrence counts as values
+     * @param attempt 0 for the first attempt of a request and 1 for its hedge
+     * @return HIBP API URL the hash prefix is appended to
+     */
+    public static String getApiUrl(int attempt) {
+
+        String apiUrl = ConfigUtils.getString(API_URL, HIBP_API_URL);
+        return attempt == 0 ? apiUrl : ConfigUtils.getString(HEDGE_API_URL, apiUrl);
+    }
+
+    /**
+     * Creates a range request for the given hash prefix, made conditional on the given validators if any.
      */
-    private static Map<String, Integer> buildResponseMap(String response) {
+    private static HttpGet newRangeRequest(String apiUrl, String apiKey, String firstFiveLettersOfHash, String etag,
+                                           String lastModified) {
 
-        if (StringUtils.isBlank(response)) {
-            return Collections.emptyMap();
+        // Create GET request to the HIBP API with the hash prefix and the API key header required by HIBP API
+        HttpGet httpGet = new HttpGet(apiUrl + firstFiveLettersOfHash);
+        if (StringUtils.isNotBlank(apiKey)) {
+            httpGet.setHeader(HIBP_API_KEY_HEADER, apiKey);
         }
+        if (etag != null) {
+            httpGet.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            httpGet.setHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+        if (ConfigUtils.getBoolean(HTTP_CLIENT_COMPRESSION_ENABLED, DEFAULT_HTTP_CLIENT_COMPRESSION_ENABLED)) {
+            httpGet.setHeader(HttpHeaders.ACCEPT_ENCODING, ContentEncoding.ACCEPT_ENCODING);
+        }
+        return httpGet;
+    }
+
+    /**
+     * Checks the status of a range response and returns its entity.
+     */
+    private static HttpEntity getRangeEntity(HttpResponse response) throws IOException {
+
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (TOO_MANY_REQUESTS == statusCode) {
+            EntityUtils.consume(response.getEntity());
+            throw new HIBPRateLimitException(getRetryAfterMillis(response));
+        }
+        if (HttpServletResponse.SC_OK != statusCode) {
+            throw new HttpResponseException(statusCode, "Failed to get HIBP API response.");
+        }
+        return response.getEntity();
+    }
+
+    /**
+     * Gets the content of a range response entity, decompressed while it is read if the response is compressed.
+     */
+    private static InputStream getRangeContent(HttpEntity entity) throws IOException {
+
+        Header contentEncoding = entity.getContentEncoding();
+        return ContentEncoding.decode(entity.getContent(), contentEncoding == null ? null : contentEncoding.getValue());
+    }
+
+    /**
+     * Gets the delay requested by the Retry-After header of a response, which HIBP sends in seconds.
+     *
+     * @return delay in milliseconds, or -1 if the response does not have a Retry-After header in seconds.
+     */
+    private static long getRetryAfterMillis(HttpResponse response) {
+
+        return getRetryAfterMillis(getHeaderValue(response, HttpHeaders.RETRY_AFTER));
+    }
+
+    /**
+     * Gets the delay requested by a Retry-After header value, which HIBP sends in seconds.
+     *
+     * @param retryAfter The value of the Retry-After header, or null if the response does not have one
+     * @return delay in milliseconds, or -1 if the value is not a number of seconds
+     */
+    public static long getRetryAfterMillis(String retryAfter) {
 
-        Map<String, Integer> responseMap = new HashMap<>();
-        String[] lines = response.split("\\r?\\n");
-        for (String line : lines) {
-            String[] elements = line.split(":");
-            if (elements.length == 2) {
-                responseMap.put(elements[0], Integer.parseInt(elements[1]));
+        if (retryAfter != null) {
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+            } catch (NumberFormatException e) {
+                // Retry-After can also be an HTTP date, which HIBP does not use.
             }
         }
-        return responseMap;
+        return -1;
+    }
+
+    /**
+     * Gets the value of a response header, or null if the response does not have it.
+     */
+    private static String getHeaderValue(HttpResponse response, String name) {
+
+        Header header = response.getFirstHeader(name);
+        return header == null ? null : header.getValue();
     }
 
     /**
      * Retrieves the HIBP validator connector configuration properties for the specified tenant.
-     * Gets both the enabled status and API key configurations.
+     * Gets the enabled status, the API key, the local lookup and the fail open configurations, in that order.
+     * The properties are served from the connector configuration cache when it is enabled, and must not be modified.
      *
      * @param tenantDomain The domain of the tenant for which to retrieve the configuration
      * @return Array of configuration properties
@@ -172,15 +452,67 @@ public class Utils {
      */
     public static Property[] getConnectorConfiguration(String tenantDomain) throws Exception {
 
+        HIBPMetrics metrics = HIBPDataHolder.getInstance().getMetrics();
+        if (metrics == null) {
+            return loadConnectorConfiguration(tenantDomain);
+        }
+        long start = System.nanoTime();
+        try {
+            return loadConnectorConfiguration(tenantDomain);
+        } finally {
+            metrics.record(HIBPMetrics.Stage.CONFIG, start);
+        }
+    }
+
+    private static Property[] loadConnectorConfiguration(String tenantDomain) throws Exception {
+
+        ConnectorConfigCache connectorConfigCache = HIBPDataHolder.getInstance().getConnectorConfigCache();
+        long generation = 0L;
+        if (connectorConfigCache != null) {
+            generation = connectorConfigCache.getGeneration(tenantDomain);
+            Property[] connectorConfigs = connectorConfigCache.get(tenantDomain);
+            if (connectorConfigs != null) {
+                return connectorConfigs;
+            }
+        }
+
         Property[] connectorConfigs;
         try {
             connectorConfigs =
                     HIBPDataHolder.getInstance().getIdentityGovernanceService().getConfiguration(new String[]{
-                            CONNECTOR_ENABLE, CONNECTOR_API_KEY}, tenantDomain);
+                            CONNECTOR_ENABLE, CONNECTOR_API_KEY, CONNECTOR_LOCAL_LOOKUP, CONNECTOR_FAIL_OPEN},
+                            tenantDomain);
         } catch (IdentityGovernanceException e) {
             throw new Exception("Failed to load connector configurations.", e);
         }
+        if (connectorConfigCache != null && connectorConfigs != null) {
+            // Not cached if the configuration was updated while it was being read
+            connectorConfigCache.put(tenantDomain, connectorConfigs, generation);
+        }
         return connectorConfigs;
     }
 
+    /**
+     * Updates HIBP validator connector configuration properties of the specified tenant, and drops the cached
+     * configuration of the tenant so that the change applies to the next password check.
+     *
+     * @param tenantDomain     The domain of the tenant whose configuration is updated
+     * @param connectorConfigs Names and new values of the properties to update
+     * @throws Exception If the configuration update fails
+     */
+    public static void updateConnectorConfiguration(String tenantDomain, Map<String, String> connectorConfigs)
+            throws Exception {
+
+        try {
+            HIBPDataHolder.getInstance().getIdentityGovernanceService().updateConfiguration(tenantDomain,
+                    connectorConfigs);
+        } catch (IdentityGovernanceException e) {
+            throw new Exception("Failed to update connector configurations.", e);
+        } finally {
+            ConnectorConfigCache connectorConfigCache = HIBPDataHolder.getInstance().getConnectorConfigCache();
+            if (connectorConfigCache != null) {
+                connectorConfigCache.invalidate(tenantDomain);
+            }
+        }
+    }
 }
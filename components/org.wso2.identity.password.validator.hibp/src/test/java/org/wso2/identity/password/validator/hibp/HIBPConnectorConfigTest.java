@@ -90,9 +90,13 @@ public class HIBPConnectorConfigTest {
     public void testGetPropertyNames() {
         String[] propertyNames = connectorConfig.getPropertyNames();
         
-        Assert.assertEquals(propertyNames.length, 2, "Should return 2 property names");
+        Assert.assertEquals(propertyNames.length, 4, "Should return 4 property names");
         Assert.assertEquals(propertyNames[0], Constants.CONNECTOR_ENABLE, "First property should be CONNECTOR_ENABLE");
         Assert.assertEquals(propertyNames[1], Constants.CONNECTOR_API_KEY, "Second property should be CONNECTOR_API_KEY");
+        Assert.assertEquals(propertyNames[2], Constants.CONNECTOR_LOCAL_LOOKUP,
+                "Third property should be CONNECTOR_LOCAL_LOOKUP");
+        Assert.assertEquals(propertyNames[3], Constants.CONNECTOR_FAIL_OPEN,
+                "Fourth property should be CONNECTOR_FAIL_OPEN");
     }
 
     /**
@@ -102,9 +106,13 @@ public class HIBPConnectorConfigTest {
     public void testGetPropertyNameMapping() {
         Map<String, String> nameMapping = connectorConfig.getPropertyNameMapping();
         
-        Assert.assertEquals(nameMapping.size(), 2, "Should return 2 property name mappings");
+        Assert.assertEquals(nameMapping.size(), 4, "Should return 4 property name mappings");
         Assert.assertTrue(nameMapping.containsKey(Constants.CONNECTOR_ENABLE), "Should contain CONNECTOR_ENABLE key");
         Assert.assertTrue(nameMapping.containsKey(Constants.CONNECTOR_API_KEY), "Should contain CONNECTOR_API_KEY key");
+        Assert.assertTrue(nameMapping.containsKey(Constants.CONNECTOR_LOCAL_LOOKUP),
+                "Should contain CONNECTOR_LOCAL_LOOKUP key");
+        Assert.assertTrue(nameMapping.containsKey(Constants.CONNECTOR_FAIL_OPEN),
+                "Should contain CONNECTOR_FAIL_OPEN key");
         
         // Verify the friendly names are appropriate
         Assert.assertEquals(nameMapping.get(Constants.CONNECTOR_ENABLE), "Enable HaveIBeenPwned pwned password checker",
@@ -120,9 +128,13 @@ public class HIBPConnectorConfigTest {
     public void testGetPropertyDescriptionMapping() {
         Map<String, String> descMapping = connectorConfig.getPropertyDescriptionMapping();
         
-        Assert.assertEquals(descMapping.size(), 2, "Should return 2 property description mappings");
+        Assert.assertEquals(descMapping.size(), 4, "Should return 4 property description mappings");
         Assert.assertTrue(descMapping.containsKey(Constants.CONNECTOR_ENABLE), "Should contain CONNECTOR_ENABLE key");
         Assert.assertTrue(descMapping.containsKey(Constants.CONNECTOR_API_KEY), "Should contain CONNECTOR_API_KEY key");
+        Assert.assertTrue(descMapping.containsKey(Constants.CONNECTOR_LOCAL_LOOKUP),
+                "Should contain CONNECTOR_LOCAL_LOOKUP key");
+        Assert.assertTrue(descMapping.containsKey(Constants.CONNECTOR_FAIL_OPEN),
+                "Should contain CONNECTOR_FAIL_OPEN key");
         
         // Verify the descriptions are appropriate
         Assert.assertTrue(descMapping.get(Constants.CONNECTOR_ENABLE).contains("HaveIBeenPwned"),
@@ -138,11 +150,15 @@ public class HIBPConnectorConfigTest {
     public void testGetDefaultPropertyValues() throws Exception {
         Properties properties = connectorConfig.getDefaultPropertyValues("carbon.super");
         
-        Assert.assertEquals(properties.size(), 2, "Should return 2 default property values");
+        Assert.assertEquals(properties.size(), 4, "Should return 4 default property values");
         Assert.assertEquals(properties.getProperty(Constants.CONNECTOR_ENABLE), "false", 
                 "Default value for CONNECTOR_ENABLE should be 'false'");
         Assert.assertEquals(properties.getProperty(Constants.CONNECTOR_API_KEY), "", 
                 "Default value for CONNECTOR_API_KEY should be empty string");
+        Assert.assertEquals(properties.getProperty(Constants.CONNECTOR_LOCAL_LOOKUP), "false",
+                "Default value for CONNECTOR_LOCAL_LOOKUP should be 'false'");
+        Assert.assertEquals(properties.getProperty(Constants.CONNECTOR_FAIL_OPEN), "false",
+                "Default value for CONNECTOR_FAIL_OPEN should be 'false'");
     }
 
     /**
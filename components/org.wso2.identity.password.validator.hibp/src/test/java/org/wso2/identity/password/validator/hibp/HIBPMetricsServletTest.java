@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp;
+
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.identity.password.validator.hibp.client.CircuitBreaker;
+import org.wso2.identity.password.validator.hibp.internal.HIBPDataHolder;
+import org.wso2.identity.password.validator.hibp.metrics.HIBPMetrics;
+import org.wso2.identity.password.validator.hibp.metrics.PrometheusTextWriter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Tests for the HIBPMetricsServlet class.
+ */
+public class HIBPMetricsServletTest {
+
+    private static final String TOKEN = "metrics-token";
+
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private StringWriter responseBody;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        request = Mockito.mock(HttpServletRequest.class);
+        response = Mockito.mock(HttpServletResponse.class);
+        responseBody = new StringWriter();
+        Mockito.when(response.getWriter()).thenReturn(new PrintWriter(responseBody));
+        Mockito.when(request.getHeader("Authorization")).thenReturn("Bearer " + TOKEN);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        HIBPDataHolder.getInstance().setMetrics(null);
+        HIBPDataHolder.getInstance().setCircuitBreaker(null);
+    }
+
+    /**
+     * Test that the metrics endpoint is not found when metrics are disabled.
+     */
+    @Test
+    public void testDoGet_Disabled() throws Exception {
+        new HIBPMetricsServlet(TOKEN).doGet(request, response);
+
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
+        Assert.assertEquals(responseBody.toString(), "");
+    }
+
+    /**
+     * Test that requests without the token are rejected.
+     */
+    @Test
+    public void testDoGet_Unauthorized() throws Exception {
+        HIBPDataHolder.getInstance().setMetrics(new HIBPMetrics());
+        HIBPMetricsServlet servlet = new HIBPMetricsServlet(TOKEN);
+
+        Mockito.when(request.getHeader("Authorization")).thenReturn(null);
+        servlet.doGet(request, response);
+        Mockito.when(request.getHeader("Authorization")).thenReturn("Bearer other-token");
+        servlet.doGet(request, response);
+
+        Mockito.verify(response, Mockito.times(2)).setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        Mockito.verify(response, Mockito.never()).setContentType(Mockito.anyString());
+        Assert.assertEquals(responseBody.toString(), "");
+    }
+
+    /**
+     * Test that the metrics of the lookup pipeline and of the enabled components are written.
+     */
+    @Test
+    public void testDoGet() throws Exception {
+        HIBPMetrics metrics = new HIBPMetrics();
+        metrics.countUpstreamStatus(200);
+        HIBPDataHolder.getInstance().setMetrics(metrics);
+        HIBPDataHolder.getInstance().setCircuitBreaker(new CircuitBreaker(5, 0L, 30000L));
+
+        new HIBPMetricsServlet(TOKEN).doGet(request, response);
+
+        Mockito.verify(response).setContentType(PrometheusTextWriter.CONTENT_TYPE);
+        String body = responseBody.toString();
+        Assert.assertTrue(body.contains("hibp_upstream_responses_total{status=\"200\"} 1\n"));
+        Assert.assertTrue(body.contains("hibp_range_requests_total{coalesced=\"false\"} "));
+        Assert.assertTrue(body.contains("hibp_circuit_breaker_state{state=\"closed\"} 1\n"));
+        Assert.assertFalse(body.contains("hibp_range_cache_requests_total"), "The range cache is not enabled");
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.common.model.Property;
+import org.wso2.identity.password.validator.hibp.cache.ConnectorConfigCache;
+import org.wso2.identity.password.validator.hibp.client.HIBPAsyncHttpClient;
+import org.wso2.identity.password.validator.hibp.client.HIBPHttpClientManager;
+import org.wso2.identity.password.validator.hibp.exception.HIBPException;
+import org.wso2.identity.password.validator.hibp.internal.HIBPDataHolder;
+import org.wso2.identity.password.validator.hibp.util.Constants;
+import org.wso2.identity.password.validator.hibp.util.StubHIBPServer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests of concurrent lookups of the same prefix by tenants with different API keys, against a stand-in HIBP API.
+ */
+public class HIBPServiceRangeFlightTest {
+
+    private static final String PASSWORD = "range-flight-password";
+    private static final String REVOKED_TENANT = "revoked.com";
+    private static final String VALID_TENANT = "valid.com";
+
+    private StubHIBPServer server;
+    private HIBPHttpClientManager httpClientManager;
+    private HIBPAsyncHttpClient asyncHttpClient;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        server = new StubHIBPServer();
+        server.generateRanges(10);
+        server.addPassword(PASSWORD, 42);
+        server.rejectApiKey("revoked-api-key");
+        System.setProperty(Constants.API_URL, server.getRangeUrl());
+
+        httpClientManager = new HIBPHttpClientManager(4, 4, 60000L, 30000L);
+        HIBPDataHolder.getInstance().setHttpClientManager(httpClientManager);
+        asyncHttpClient = new HIBPAsyncHttpClient(2);
+        HIBPDataHolder.getInstance().setAsyncHttpClient(asyncHttpClient);
+        ConnectorConfigCache connectorConfigCache = new ConnectorConfigCache(16, TimeUnit.DAYS.toMillis(1));
+        connectorConfigCache.put(REVOKED_TENANT, new Property[]{newProperty(Constants.CONNECTOR_ENABLE, "true"),
+                newProperty(Constants.CONNECTOR_API_KEY, "revoked-api-key")});
+        connectorConfigCache.put(VALID_TENANT, new Property[]{newProperty(Constants.CONNECTOR_ENABLE, "true"),
+                newProperty(Constants.CONNECTOR_API_KEY, "valid-api-key")});
+        HIBPDataHolder.getInstance().setConnectorConfigCache(connectorConfigCache);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        HIBPDataHolder.getInstance().setConnectorConfigCache(null);
+        HIBPDataHolder.getInstance().setHttpClientManager(null);
+        HIBPDataHolder.getInstance().setAsyncHttpClient(null);
+        System.clearProperty(Constants.API_URL);
+        httpClientManager.close();
+        asyncHttpClient.close();
+        server.close();
+    }
+
+    /**
+     * Test that a lookup does not share the failure of a concurrent lookup of the same prefix with a revoked key.
+     */
+    @Test
+    public void testLookupWithDifferentKeyIsNotCoalesced() throws Exception {
+        server.setLatency(300L, 0L);
+        CompletableFuture<Integer> revokedLookup = CompletableFuture.supplyAsync(() -> {
+            try {
+                return HIBPService.getPasswordAppearanceCount(PASSWORD, REVOKED_TENANT);
+            } catch (HIBPException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        waitForRequests(1);
+
+        Assert.assertEquals(HIBPService.getPasswordAppearanceCount(PASSWORD, VALID_TENANT), 42);
+        Assert.assertEquals(server.getRequestCount(), 2);
+        try {
+            revokedLookup.get();
+            Assert.fail("The lookup with the revoked key should fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause().getCause() instanceof HIBPException);
+        }
+    }
+
+    /**
+     * Test that a lookup does not share the failure of a concurrent asynchronous lookup of the same prefix with a
+     * revoked key.
+     */
+    @Test
+    public void testLookupWithDifferentKeyIsNotCoalesced_Async() throws Exception {
+        server.setLatency(300L, 0L);
+        CompletableFuture<Integer> revokedLookup = HIBPService.getPasswordAppearanceCountAsync(PASSWORD,
+                REVOKED_TENANT);
+        waitForRequests(1);
+
+        Assert.assertEquals(HIBPService.getPasswordAppearanceCountAsync(PASSWORD, VALID_TENANT)
+                .get(10, TimeUnit.SECONDS).intValue(), 42);
+        Assert.assertEquals(server.getRequestCount(), 2);
+        try {
+            revokedLookup.get(10, TimeUnit.SECONDS);
+            Assert.fail("The lookup with the revoked key should fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof HIBPException);
+        }
+    }
+
+    private void waitForRequests(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (server.getRequestCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5L);
+        }
+        Assert.assertEquals(server.getRequestCount(), count);
+    }
+
+    private static Property newProperty(String name, String value) {
+        Property property = new Property();
+        property.setName(name);
+        property.setValue(value);
+        return property;
+    }
+}
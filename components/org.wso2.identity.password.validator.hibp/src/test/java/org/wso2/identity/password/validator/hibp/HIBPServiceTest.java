@@ -27,12 +27,35 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 import org.wso2.carbon.identity.application.common.model.Property;
+import org.wso2.identity.password.validator.hibp.cache.PrefixRangeCache;
+import org.wso2.identity.password.validator.hibp.client.HIBPAsyncHttpClient;
+import org.wso2.identity.password.validator.hibp.exception.HIBPException;
+import org.wso2.identity.password.validator.hibp.exception.HIBPUnavailableException;
+import org.wso2.identity.password.validator.hibp.internal.HIBPDataHolder;
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+import org.wso2.identity.password.validator.hibp.range.RangeParser;
+import org.wso2.identity.password.validator.hibp.range.RangeResponse;
+import org.wso2.identity.password.validator.hibp.store.LocalPwnedPasswordStore;
+import org.wso2.identity.password.validator.hibp.store.LocalStoreWriter;
+import org.wso2.identity.password.validator.hibp.store.PwnedPasswordFilter;
+import org.wso2.identity.password.validator.hibp.store.PwnedPasswordFilterBuilder;
+import org.wso2.identity.password.validator.hibp.util.Constants;
+import org.wso2.identity.password.validator.hibp.util.StubHIBPServer;
 import org.wso2.identity.password.validator.hibp.util.Utils;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 
 /**
  * Tests for the HIBPService class.
@@ -71,13 +94,13 @@ public class HIBPServiceTest extends PowerMockTestCase {
         // Mock Utils.getConnectorConfiguration to return our config
         mockedUtils.when(() -> Utils.getConnectorConfiguration(anyString())).thenReturn(connectorConfigs);
         
-        // Mock Utils.getSHA1 to return our pre-calculated hash
-        mockedUtils.when(() -> Utils.getSHA1(anyString())).thenReturn(mockedHash);
+        // Mock Utils.getSHA1Digest to return the digest of our pre-calculated hash
+        mockedUtils.when(() -> Utils.getSHA1Digest(anyString()))
+                .thenReturn(HexUtils.decodeHash(mockedHash));
         
         // Mock the API response with a breach count of 42
-        Map<String, Integer> apiResponse = new HashMap<>();
-        apiResponse.put(remaining, 42);
-        mockedUtils.when(() -> Utils.getHIBPAppearanceMap(anyString(), anyString())).thenReturn(apiResponse);
+        mockedUtils.when(() -> Utils.getHIBPRange(anyString(), eq("CBF8C"), isNull(), isNull()))
+                .thenReturn(new RangeResponse(RangeParser.parse(remaining + ":42"), null, null));
         
         // Call the method under test
         int result = HIBPService.getPasswordAppearanceCount("password123", "carbon.super");
@@ -105,12 +128,13 @@ public class HIBPServiceTest extends PowerMockTestCase {
         // Mock Utils.getConnectorConfiguration to return our config
         mockedUtils.when(() -> Utils.getConnectorConfiguration(anyString())).thenReturn(connectorConfigs);
         
-        // Mock Utils.getSHA1 to return our pre-calculated hash
-        mockedUtils.when(() -> Utils.getSHA1(anyString())).thenReturn(mockedHash);
+        // Mock Utils.getSHA1Digest to return the digest of our pre-calculated hash
+        mockedUtils.when(() -> Utils.getSHA1Digest(anyString()))
+                .thenReturn(HexUtils.decodeHash(mockedHash));
         
         // Mock the API response with an empty result (no breaches)
-        Map<String, Integer> apiResponse = new HashMap<>();
-        mockedUtils.when(() -> Utils.getHIBPAppearanceMap(anyString(), anyString())).thenReturn(apiResponse);
+        mockedUtils.when(() -> Utils.getHIBPRange(anyString(), anyString(), isNull(), isNull()))
+                .thenReturn(new RangeResponse(RangeParser.parse(""), null, null));
         
         // Call the method under test
         int result = HIBPService.getPasswordAppearanceCount("StrongP@ssw0rd!", "carbon.super");
@@ -119,6 +143,239 @@ public class HIBPServiceTest extends PowerMockTestCase {
         Assert.assertEquals(result, 0, "Strong password should have 0 breaches");
     }
 
+    /**
+     * Test getPasswordAppearanceCount when the HIBP API cannot be reached, for tenants that fail open and closed.
+     */
+    @Test
+    public void testGetPasswordAppearanceCount_Unavailable() throws Exception {
+        Property[] connectorConfigs = new Property[4];
+        connectorConfigs[0] = new Property();
+        connectorConfigs[0].setValue("true"); // enabled
+        connectorConfigs[1] = new Property();
+        connectorConfigs[1].setValue("api-key-12345"); // API key
+        connectorConfigs[2] = new Property();
+        connectorConfigs[2].setName(Constants.CONNECTOR_LOCAL_LOOKUP);
+        connectorConfigs[2].setValue("false");
+        connectorConfigs[3] = new Property();
+        connectorConfigs[3].setName(Constants.CONNECTOR_FAIL_OPEN);
+        connectorConfigs[3].setValue("true");
+
+        mockedUtils.when(() -> Utils.getConnectorConfiguration(anyString())).thenReturn(connectorConfigs);
+        mockedUtils.when(() -> Utils.getSHA1Digest(anyString()))
+                .thenReturn(HexUtils.decodeHash("CBF8CD1B8FF6840F67D7F5F5A17A4CF0D4B72D62"));
+        mockedUtils.when(() -> Utils.getHIBPRange(anyString(), anyString(), isNull(), isNull()))
+                .thenThrow(new SocketTimeoutException("Read timed out"));
+
+        try {
+            HIBPService.getPasswordAppearanceCount("password123", "carbon.super");
+            Assert.fail("Lookup should fail while the HIBP API is unavailable");
+        } catch (HIBPUnavailableException e) {
+            Assert.assertTrue(e.isFailOpen(), "The tenant fails open");
+        }
+
+        connectorConfigs[3].setValue("false");
+        try {
+            HIBPService.getPasswordAppearanceCount("password123", "carbon.super");
+            Assert.fail("Lookup should fail while the HIBP API is unavailable");
+        } catch (HIBPUnavailableException e) {
+            Assert.assertFalse(e.isFailOpen(), "The tenant fails closed");
+        }
+    }
+
+    /**
+     * Test getPasswordAppearanceCount when the prefix range cache is enabled.
+     */
+    @Test
+    public void testGetPasswordAppearanceCount_CachedRange() throws Exception {
+        String mockedHash = "CBF8CD1B8FF6840F67D7F5F5A17A4CF0D4B72D62";
+        String remaining = "D1B8FF6840F67D7F5F5A17A4CF0D4B72D62";
+
+        Property[] connectorConfigs = new Property[2];
+        connectorConfigs[0] = new Property();
+        connectorConfigs[0].setValue("true"); // enabled
+        connectorConfigs[1] = new Property();
+        connectorConfigs[1].setValue("api-key-12345"); // API key
+
+        mockedUtils.when(() -> Utils.getConnectorConfiguration(anyString())).thenReturn(connectorConfigs);
+        mockedUtils.when(() -> Utils.getSHA1Digest(anyString()))
+                .thenReturn(HexUtils.decodeHash(mockedHash));
+        mockedUtils.when(() -> Utils.getHIBPRange(anyString(), anyString(), isNull(), isNull()))
+                .thenReturn(new RangeResponse(RangeParser.parse(remaining + ":42"), "\"etag\"", null));
+
+        HIBPDataHolder.getInstance().setPrefixRangeCache(new PrefixRangeCache(16, 60000L));
+        try {
+            Assert.assertEquals(HIBPService.getPasswordAppearanceCount("password123", "carbon.super"), 42);
+            Assert.assertEquals(HIBPService.getPasswordAppearanceCount("password123", "carbon.super"), 42);
+        } finally {
+            HIBPDataHolder.getInstance().setPrefixRangeCache(null);
+        }
+
+        // The range should be fetched once and served from the cache afterwards
+        mockedUtils.verify(() -> Utils.getHIBPRange(anyString(), anyString(), isNull(), isNull()),
+                Mockito.times(1));
+    }
+
+    /**
+     * Test getPasswordAppearanceCount when the tenant looks up passwords in the local store.
+     */
+    @Test
+    public void testGetPasswordAppearanceCount_LocalLookup() throws Exception {
+        String hash = "CBFDAC6008F9CAB4083784CBD1874F76618D2A97";
+
+        Property[] connectorConfigs = new Property[3];
+        connectorConfigs[0] = new Property();
+        connectorConfigs[0].setValue("true"); // enabled
+        connectorConfigs[1] = new Property();
+        connectorConfigs[1].setValue(""); // API key is not needed for local lookups
+        connectorConfigs[2] = new Property();
+        connectorConfigs[2].setName(Constants.CONNECTOR_LOCAL_LOOKUP);
+        connectorConfigs[2].setValue("true");
+
+        mockedUtils.when(() -> Utils.getConnectorConfiguration(anyString())).thenReturn(connectorConfigs);
+        mockedUtils.when(() -> Utils.getSHA1Digest(anyString()))
+                .thenReturn(HexUtils.decodeHash(hash));
+
+        Path storeFile = Files.createTempFile("hibp-store", ".idx");
+        try {
+            try (LocalStoreWriter writer = new LocalStoreWriter(storeFile)) {
+                writer.add(HexUtils.decodeHash(hash), 0, 250);
+            }
+            try (LocalPwnedPasswordStore store = LocalPwnedPasswordStore.open(storeFile)) {
+                HIBPDataHolder.getInstance().setLocalPasswordStore(store);
+                Assert.assertEquals(HIBPService.getPasswordAppearanceCount("password123", "carbon.super"), 250);
+            }
+        } finally {
+            HIBPDataHolder.getInstance().setLocalPasswordStore(null);
+            Files.deleteIfExists(storeFile);
+        }
+
+        // The HIBP API should not be called
+        mockedUtils.verify(() -> Utils.getHIBPRange(anyString(), anyString(), any(), any()), Mockito.never());
+    }
+
+    /**
+     * Test getPasswordAppearanceCount when the Pwned Passwords filter rules out the password.
+     */
+    @Test
+    public void testGetPasswordAppearanceCount_FilteredOut() throws Exception {
+        String mockedHash = "CBF8CD1B8FF6840F67D7F5F5A17A4CF0D4B72D62";
+
+        Property[] connectorConfigs = new Property[2];
+        connectorConfigs[0] = new Property();
+        connectorConfigs[0].setValue("true"); // enabled
+        connectorConfigs[1] = new Property();
+        connectorConfigs[1].setValue("api-key-12345"); // API key
+
+        mockedUtils.when(() -> Utils.getConnectorConfiguration(anyString())).thenReturn(connectorConfigs);
+        mockedUtils.when(() -> Utils.getSHA1Digest(anyString()))
+                .thenReturn(HexUtils.decodeHash(mockedHash));
+
+        Path storeFile = Files.createTempFile("hibp-store", ".idx");
+        Path filterFile = Files.createTempFile("hibp-filter", ".bloom");
+        try {
+            try (LocalStoreWriter writer = new LocalStoreWriter(storeFile)) {
+                writer.add(HexUtils.decodeHash("21BD10018A45C4D1DEF81644B54AB7F969B88D65"), 0, 10);
+            }
+            try (PwnedPasswordFilterBuilder builder = new PwnedPasswordFilterBuilder(1,
+                    new PrintStream(new ByteArrayOutputStream()))) {
+                builder.build(storeFile, filterFile, PwnedPasswordFilterBuilder.DEFAULT_FALSE_POSITIVE_RATE, 0);
+            }
+            try (PwnedPasswordFilter filter = PwnedPasswordFilter.open(filterFile)) {
+                HIBPDataHolder.getInstance().setPasswordFilter(filter);
+                Assert.assertEquals(HIBPService.getPasswordAppearanceCount("password123", "carbon.super"), 0);
+            }
+        } finally {
+            HIBPDataHolder.getInstance().setPasswordFilter(null);
+            Files.deleteIfExists(storeFile);
+            Files.deleteIfExists(filterFile);
+        }
+
+        // The HIBP API should not be called
+        mockedUtils.verify(() -> Utils.getHIBPRange(anyString(), anyString(), any(), any()), Mockito.never());
+    }
+
+    /**
+     * Test getPasswordAppearanceCountAsync against a local stub of the HIBP range API.
+     */
+    @Test
+    public void testGetPasswordAppearanceCountAsync() throws Exception {
+        String mockedHash = "CBF8CD1B8FF6840F67D7F5F5A17A4CF0D4B72D62";
+        String remaining = "D1B8FF6840F67D7F5F5A17A4CF0D4B72D62";
+
+        Property[] connectorConfigs = new Property[2];
+        connectorConfigs[0] = new Property();
+        connectorConfigs[0].setValue("true"); // enabled
+        connectorConfigs[1] = new Property();
+        connectorConfigs[1].setValue("api-key-12345"); // API key
+
+        mockedUtils.when(() -> Utils.getConnectorConfiguration(anyString())).thenReturn(connectorConfigs);
+        mockedUtils.when(() -> Utils.getSHA1Digest(anyString()))
+                .thenReturn(HexUtils.decodeHash(mockedHash));
+
+        try (StubHIBPServer server = new StubHIBPServer();
+             HIBPAsyncHttpClient asyncHttpClient = new HIBPAsyncHttpClient(1)) {
+            server.setRange("CBF8C", remaining + ":42\r\n");
+            System.setProperty(Constants.API_URL, server.getRangeUrl());
+            HIBPDataHolder.getInstance().setAsyncHttpClient(asyncHttpClient);
+
+            CompletableFuture<Integer> result = HIBPService.getPasswordAppearanceCountAsync("password123",
+                    "carbon.super");
+            Assert.assertEquals(result.get(10, TimeUnit.SECONDS).intValue(), 42);
+
+            // Failures of the range request fail the future
+            server.failRequests("CBF8C", 503, 1);
+            try {
+                HIBPService.getPasswordAppearanceCountAsync("password123", "carbon.super").get(10, TimeUnit.SECONDS);
+                Assert.fail("Failed range request should fail the lookup");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof HIBPException);
+            }
+        } finally {
+            HIBPDataHolder.getInstance().setAsyncHttpClient(null);
+            System.clearProperty(Constants.API_URL);
+        }
+
+        // The blocking HTTP client should not be used
+        mockedUtils.verify(() -> Utils.getHIBPRange(anyString(), anyString(), any(), any()), Mockito.never());
+    }
+
+    /**
+     * Test getPasswordAppearanceCounts with a batch of hashes sharing prefixes.
+     */
+    @Test
+    public void testGetPasswordAppearanceCounts_Batch() throws Exception {
+        String[] hashes = {
+                "CBF8CD1B8FF6840F67D7F5F5A17A4CF0D4B72D62",
+                "21BD10018A45C4D1DEF81644B54AB7F969B88D65",
+                "cbf8cd0000000000000000000000000000000000",
+                "21BD1FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF"
+        };
+
+        Property[] connectorConfigs = new Property[2];
+        connectorConfigs[0] = new Property();
+        connectorConfigs[0].setValue("true"); // enabled
+        connectorConfigs[1] = new Property();
+        connectorConfigs[1].setValue("api-key-12345"); // API key
+
+        mockedUtils.when(() -> Utils.getConnectorConfiguration(anyString())).thenReturn(connectorConfigs);
+        mockedUtils.when(() -> Utils.getHIBPRange(anyString(), eq("CBF8C"), isNull(), isNull()))
+                .thenReturn(new RangeResponse(RangeParser.parse(
+                        "D0000000000000000000000000000000000:3\r\nD1B8FF6840F67D7F5F5A17A4CF0D4B72D62:42"), null,
+                        null));
+        mockedUtils.when(() -> Utils.getHIBPRange(anyString(), eq("21BD1"), isNull(), isNull()))
+                .thenReturn(new RangeResponse(RangeParser.parse("0018A45C4D1DEF81644B54AB7F969B88D65:7"), null,
+                        null));
+
+        int[] counts = HIBPService.getPasswordAppearanceCounts(hashes, true, "carbon.super");
+        Assert.assertEquals(counts, new int[]{42, 7, 3, 0});
+
+        // Each distinct prefix should be fetched only once
+        mockedUtils.verify(() -> Utils.getHIBPRange(anyString(), eq("CBF8C"), isNull(), isNull()),
+                Mockito.times(1));
+        mockedUtils.verify(() -> Utils.getHIBPRange(anyString(), eq("21BD1"), isNull(), isNull()),
+                Mockito.times(1));
+    }
+
     /**
      * Test getPasswordAppearanceCount when connector is disabled.
      */
@@ -140,9 +397,9 @@ public class HIBPServiceTest extends PowerMockTestCase {
         // Verify the result is as expected (should be 0 when disabled)
         Assert.assertEquals(result, 0, "Password should have 0 breaches when connector is disabled");
         
-        // Verify that getSHA1 and getHIBPAppearanceMap were not called
-        mockedUtils.verify(() -> Utils.getSHA1(anyString()), Mockito.never());
-        mockedUtils.verify(() -> Utils.getHIBPAppearanceMap(anyString(), anyString()), Mockito.never());
+        // Verify that getSHA1Digest and getHIBPRange were not called
+        mockedUtils.verify(() -> Utils.getSHA1Digest(anyString()), Mockito.never());
+        mockedUtils.verify(() -> Utils.getHIBPRange(anyString(), anyString(), any(), any()), Mockito.never());
     }
 
     /**
@@ -166,9 +423,9 @@ public class HIBPServiceTest extends PowerMockTestCase {
         // Verify the result is as expected (should be 0 when API key is blank)
         Assert.assertEquals(result, 0, "Password should have 0 breaches when API key is blank");
         
-        // Verify that getSHA1 and getHIBPAppearanceMap were not called
-        mockedUtils.verify(() -> Utils.getSHA1(anyString()), Mockito.never());
-        mockedUtils.verify(() -> Utils.getHIBPAppearanceMap(anyString(), anyString()), Mockito.never());
+        // Verify that getSHA1Digest and getHIBPRange were not called
+        mockedUtils.verify(() -> Utils.getSHA1Digest(anyString()), Mockito.never());
+        mockedUtils.verify(() -> Utils.getHIBPRange(anyString(), anyString(), any(), any()), Mockito.never());
     }
 
     /**
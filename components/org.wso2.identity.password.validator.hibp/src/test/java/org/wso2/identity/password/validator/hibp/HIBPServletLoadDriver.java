@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp;
+
+import org.wso2.identity.password.validator.hibp.metrics.LatencyDistribution;
+import org.wso2.identity.password.validator.hibp.util.Constants;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Load driver that posts passwords to a HIBPServlet from concurrent threads, and reports the throughput and the
+ * latency percentiles of the requests.
+ *
+ * Requests are made in-process, with minimal request and response objects instead of a servlet container. A request
+ * completes when the servlet returns, or, for requests the servlet completes asynchronously, when its async context
+ * is completed. Each thread waits for its request to complete before making the next one.
+ */
+public class HIBPServletLoadDriver {
+
+    private static final long REQUEST_TIMEOUT_SECONDS = 30L;
+
+    private final HIBPServlet servlet;
+    private final int threads;
+    private final boolean asyncSupported;
+
+    /**
+     * Create a load driver.
+     *
+     * @param servlet        servlet to post the passwords to.
+     * @param threads        number of concurrent requests.
+     * @param asyncSupported whether the requests support async processing.
+     */
+    public HIBPServletLoadDriver(HIBPServlet servlet, int threads, boolean asyncSupported) {
+
+        this.servlet = servlet;
+        this.threads = threads;
+        this.asyncSupported = asyncSupported;
+    }
+
+    /**
+     * Post passwords to the servlet and wait for all requests to complete.
+     *
+     * @param requests  number of requests.
+     * @param passwords password of each request, by request number.
+     * @return report of the run.
+     * @throws Exception if a request fails to complete.
+     */
+    public Report run(int requests, IntFunction<String> passwords) throws Exception {
+
+        Report report = new Report();
+        AtomicInteger nextRequest = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] workers = new Future<?>[threads];
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < threads; i++) {
+                workers[i] = executor.submit(() -> {
+                    for (int request = nextRequest.getAndIncrement(); request < requests;
+                         request = nextRequest.getAndIncrement()) {
+                        post(passwords.apply(request), report);
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            report.elapsedNanos = System.nanoTime() - startNanos;
+        } finally {
+            executor.shutdownNow();
+        }
+        return report;
+    }
+
+    private void post(String password, Report report) throws Exception {
+
+        AtomicInteger status = new AtomicInteger(HttpServletResponse.SC_OK);
+        StringWriter body = new StringWriter();
+        HttpServletResponse response = newProxy(HttpServletResponse.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "setStatus":
+                    status.set((Integer) args[0]);
+                    return null;
+                case "getStatus":
+                    return status.get();
+                case "getWriter":
+                    return new PrintWriter(body);
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+        CountDownLatch completed = new CountDownLatch(1);
+        AsyncContext asyncContext = newProxy(AsyncContext.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getResponse":
+                    return response;
+                case "complete":
+                    completed.countDown();
+                    return null;
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+        AtomicInteger asyncStarted = new AtomicInteger();
+        HttpServletRequest request = newProxy(HttpServletRequest.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getMethod":
+                    return "POST";
+                case "getParameter":
+                    return Constants.PASSWORD_PARAM.equals(args[0]) ? password : null;
+                case "isAsyncSupported":
+                    return asyncSupported;
+                case "startAsync":
+                    asyncStarted.incrementAndGet();
+                    return asyncContext;
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+
+        long startNanos = System.nanoTime();
+        servlet.doPost(request, response);
+        if (asyncStarted.get() > 0 && !completed.await(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Request for the password did not complete in time.");
+        }
+        report.record(System.nanoTime() - startNanos, status.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newProxy(Class<T> type, InvocationHandler handler) {
+
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    /**
+     * Throughput, latency percentiles and response status counts of a load driver run.
+     */
+    public static class Report {
+
+        private final LatencyDistribution latencies = new LatencyDistribution();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+        private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+        private long elapsedNanos;
+
+        private void record(long latencyNanos, int status) {
+
+            latencies.record(latencyNanos, TimeUnit.NANOSECONDS);
+            maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+            statusCounts.computeIfAbsent(status, key -> new LongAdder()).increment();
+        }
+
+        /**
+         * Get the number of completed requests.
+         *
+         * @return number of requests.
+         */
+        public long getRequestCount() {
+
+            return latencies.getCount();
+        }
+
+        /**
+         * Get the number of requests completed with a status.
+         *
+         * @param status response status code.
+         * @return number of requests.
+         */
+        public long getStatusCount(int status) {
+
+            LongAdder count = statusCounts.get(status);
+            return count == null ? 0L : count.sum();
+        }
+
+        /**
+         * Get the number of requests completed per second.
+         *
+         * @return throughput.
+         */
+        public double getThroughput() {
+
+            return elapsedNanos == 0 ? 0 : latencies.getCount() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        /**
+         * Get a latency percentile of the requests.
+         *
+         * @param percentile percentile, between 0 and 100.
+         * @return upper bound of the percentile in microseconds.
+         */
+        public long getPercentileMicros(double percentile) {
+
+            return latencies.getPercentileMicros(percentile);
+        }
+
+        /**
+         * Get the latency of the slowest request.
+         *
+         * @return latency in microseconds.
+         */
+        public long getMaxMicros() {
+
+            return TimeUnit.NANOSECONDS.toMicros(maxLatencyNanos.get());
+        }
+
+        @Override
+        public String toString() {
+
+            return String.format("%d requests in %d ms: %.1f requests/s, latency p50 %d us, p90 %d us, "
+                            + "p99 %d us, max %d us, statuses %s", getRequestCount(),
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getThroughput(), getPercentileMicros(50),
+                    getPercentileMicros(90), getPercentileMicros(99), getMaxMicros(), new TreeMap<>(statusCounts));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.common.model.Property;
+import org.wso2.identity.password.validator.hibp.cache.ConnectorConfigCache;
+import org.wso2.identity.password.validator.hibp.client.HIBPHttpClientManager;
+import org.wso2.identity.password.validator.hibp.internal.HIBPDataHolder;
+import org.wso2.identity.password.validator.hibp.util.Constants;
+import org.wso2.identity.password.validator.hibp.util.StubHIBPServer;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load tests of the HIBPServlet against a stand-in HIBP API with realistic latency and occasional rate limiting.
+ * The number of requests and threads can be changed with the "hibp.load.requests" and "hibp.load.threads" system
+ * properties.
+ */
+public class HIBPServletLoadTest {
+
+    private static final Log LOG = LogFactory.getLog(HIBPServletLoadTest.class);
+
+    private static final int PASSWORDS = 200;
+
+    private StubHIBPServer server;
+    private HIBPHttpClientManager httpClientManager;
+    private int requests;
+    private int threads;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        requests = Integer.getInteger("hibp.load.requests", 1000);
+        threads = Integer.getInteger("hibp.load.threads", 16);
+
+        server = new StubHIBPServer();
+        server.generateRanges(800);
+        server.setLatency(5L, 10L);
+        server.setErrorRates(0.01, 0);
+        for (int i = 0; i < PASSWORDS; i += 2) {
+            server.addPassword(getPassword(i), i + 1);
+        }
+        System.setProperty(Constants.API_URL, server.getRangeUrl());
+
+        httpClientManager = new HIBPHttpClientManager(threads, threads, 60000L, 30000L);
+        HIBPDataHolder.getInstance().setHttpClientManager(httpClientManager);
+        ConnectorConfigCache connectorConfigCache = new ConnectorConfigCache(16, TimeUnit.DAYS.toMillis(1));
+        connectorConfigCache.put("carbon.super", new Property[]{newProperty(Constants.CONNECTOR_ENABLE, "true"),
+                newProperty(Constants.CONNECTOR_API_KEY, "api-key-12345")});
+        HIBPDataHolder.getInstance().setConnectorConfigCache(connectorConfigCache);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        HIBPDataHolder.getInstance().setLookupExecutor(null);
+        HIBPDataHolder.getInstance().setConnectorConfigCache(null);
+        HIBPDataHolder.getInstance().setHttpClientManager(null);
+        System.clearProperty(Constants.API_URL);
+        httpClientManager.close();
+        server.close();
+    }
+
+    /**
+     * Test lookups on the container threads under load.
+     */
+    @Test
+    public void testPostUnderLoad() throws Exception {
+        HIBPServletLoadDriver.Report report = new HIBPServletLoadDriver(new HIBPServlet(), threads, false)
+                .run(requests, HIBPServletLoadTest::getPassword);
+        LOG.info("Container thread lookups: " + report);
+        assertReport(report);
+    }
+
+    /**
+     * Test lookups on the lookup executor under load.
+     */
+    @Test
+    public void testPostUnderLoad_Async() throws Exception {
+        ThreadPoolExecutor lookupExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads));
+        HIBPDataHolder.getInstance().setLookupExecutor(lookupExecutor);
+        try {
+            HIBPServletLoadDriver.Report report = new HIBPServletLoadDriver(new HIBPServlet(), threads, true)
+                    .run(requests, HIBPServletLoadTest::getPassword);
+            LOG.info("Lookup executor lookups: " + report);
+            assertReport(report);
+        } finally {
+            lookupExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test that lookups fall back to the container threads when the container does not support async processing,
+     * even though the lookup executor is configured.
+     */
+    @Test
+    public void testPostUnderLoad_AsyncNotSupported() throws Exception {
+        ThreadPoolExecutor lookupExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads));
+        HIBPDataHolder.getInstance().setLookupExecutor(lookupExecutor);
+        try {
+            HIBPServletLoadDriver.Report report = new HIBPServletLoadDriver(new HIBPServlet(), threads, false)
+                    .run(requests, HIBPServletLoadTest::getPassword);
+            LOG.info("Container thread lookups with a lookup executor: " + report);
+            assertReport(report);
+            Assert.assertEquals(lookupExecutor.getTaskCount(), 0L, "The lookup executor should not be used");
+        } finally {
+            lookupExecutor.shutdownNow();
+        }
+    }
+
+    private void assertReport(HIBPServletLoadDriver.Report report) {
+        Assert.assertEquals(report.getRequestCount(), requests);
+        long ok = report.getStatusCount(HttpServletResponse.SC_OK);
+        long failed = report.getStatusCount(HttpServletResponse.SC_INTERNAL_SERVER_ERROR)
+                + report.getStatusCount(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        Assert.assertEquals(ok + failed, requests, report.toString());
+        // Only the rate limited requests should fail
+        Assert.assertTrue(ok >= requests * 0.9, report.toString());
+        Assert.assertTrue(report.getPercentileMicros(50) >= TimeUnit.MILLISECONDS.toMicros(5), report.toString());
+    }
+
+    private static String getPassword(int request) {
+        return "load-test-password-" + request % PASSWORDS;
+    }
+
+    private static Property newProperty(String name, String value) {
+        Property property = new Property();
+        property.setName(name);
+        property.setValue(value);
+        return property;
+    }
+}
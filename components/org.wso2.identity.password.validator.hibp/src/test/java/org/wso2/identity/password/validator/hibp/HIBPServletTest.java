@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.identity.password.validator.hibp;
+
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.testng.PowerMockTestCase;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.identity.password.validator.hibp.client.ClientRateLimiter;
+import org.wso2.identity.password.validator.hibp.exception.HIBPUnavailableException;
+import org.wso2.identity.password.validator.hibp.internal.HIBPDataHolder;
+import org.wso2.identity.password.validator.hibp.util.Constants;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * Tests for the HIBPServlet class.
+ */
+@PrepareForTest({HIBPService.class})
+public class HIBPServletTest extends PowerMockTestCase {
+
+    private MockedStatic<HIBPService> mockedService;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private AsyncContext asyncContext;
+    private StringWriter responseBody;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        mockedService = Mockito.mockStatic(HIBPService.class);
+        mockedService.when(() -> HIBPService.getPasswordAppearanceCount(eq("password123"), anyString()))
+                .thenReturn(42);
+
+        request = Mockito.mock(HttpServletRequest.class);
+        response = Mockito.mock(HttpServletResponse.class);
+        asyncContext = Mockito.mock(AsyncContext.class);
+        responseBody = new StringWriter();
+        Mockito.when(request.getParameter(Constants.PASSWORD_PARAM)).thenReturn("password123");
+        Mockito.when(request.isAsyncSupported()).thenReturn(true);
+        Mockito.when(request.startAsync()).thenReturn(asyncContext);
+        Mockito.when(asyncContext.getResponse()).thenReturn(response);
+        Mockito.when(response.getWriter()).thenReturn(new PrintWriter(responseBody));
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        HIBPDataHolder.getInstance().setLookupExecutor(null);
+        HIBPDataHolder.getInstance().setBatchRateLimiter(null);
+        mockedService.close();
+    }
+
+    /**
+     * Test doPost when the password is looked up on the lookup executor.
+     */
+    @Test
+    public void testDoPost_Async() throws Exception {
+        // Static mocks are only visible to the thread that created them, so the lookup runs on the calling thread.
+        HIBPDataHolder.getInstance().setLookupExecutor(new CallerRunsExecutorService());
+
+        new HIBPServlet().doPost(request, response);
+
+        Mockito.verify(request).startAsync();
+        Mockito.verify(asyncContext).complete();
+        Assert.assertTrue(responseBody.toString().contains("42"), "Response should contain the appearance count");
+        Mockito.verify(response, Mockito.never()).setStatus(Mockito.anyInt());
+    }
+
+    /**
+     * Test doPost when the lookup executor does not accept more requests.
+     */
+    @Test
+    public void testDoPost_Rejected() throws Exception {
+        ExecutorService lookupExecutor = new CallerRunsExecutorService();
+        lookupExecutor.shutdown();
+        HIBPDataHolder.getInstance().setLookupExecutor(lookupExecutor);
+
+        new HIBPServlet().doPost(request, response);
+
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        Mockito.verify(asyncContext).complete();
+        mockedService.verify(() -> HIBPService.getPasswordAppearanceCount(anyString(), anyString()), Mockito.never());
+    }
+
+    /**
+     * Test doPost when the container does not support asynchronous processing.
+     */
+    @Test
+    public void testDoPost_AsyncNotSupported() throws Exception {
+        HIBPDataHolder.getInstance().setLookupExecutor(new CallerRunsExecutorService());
+        Mockito.when(request.isAsyncSupported()).thenReturn(false);
+
+        new HIBPServlet().doPost(request, response);
+
+        Assert.assertTrue(responseBody.toString().contains("42"), "Response should contain the appearance count");
+        Mockito.verify(request, Mockito.never()).startAsync();
+    }
+
+    /**
+     * Test doPost when the HIBP API is unavailable and the tenant accepts passwords that cannot be checked.
+     */
+    @Test
+    public void testDoPost_UnavailableFailOpen() throws Exception {
+        mockedService.when(() -> HIBPService.getPasswordAppearanceCount(eq("password123"), anyString()))
+                .thenThrow(new HIBPUnavailableException("HIBP API is unavailable.", null, true));
+
+        new HIBPServlet().doPost(request, response);
+
+        Assert.assertTrue(responseBody.toString().contains("\"" + Constants.UNAVAILABLE_PARAM + "\":true"),
+                "Response should be flagged as unavailable");
+        Mockito.verify(response, Mockito.never()).setStatus(Mockito.anyInt());
+    }
+
+    /**
+     * Test doPost when the HIBP API is unavailable and the tenant fails closed.
+     */
+    @Test
+    public void testDoPost_UnavailableFailClosed() throws Exception {
+        mockedService.when(() -> HIBPService.getPasswordAppearanceCount(eq("password123"), anyString()))
+                .thenThrow(new HIBPUnavailableException("HIBP API is unavailable.", null, false));
+
+        new HIBPServlet().doPost(request, response);
+
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        Assert.assertEquals(responseBody.toString(), "");
+    }
+
+    /**
+     * Test that a batch request with a body larger than the maximum is rejected before it is parsed.
+     */
+    @Test
+    public void testDoPost_BatchBodyTooLarge() throws Exception {
+        StringBuilder body = new StringBuilder("{\"passwords\": [\"");
+        while (body.length() <= Constants.DEFAULT_BATCH_MAX_BODY_SIZE) {
+            body.append("password123");
+        }
+        body.append("\"]}");
+        mockBatchRequest(body.toString());
+
+        new HIBPServlet().doPost(request, response);
+
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+        mockedService.verify(() -> HIBPService.getPasswordAppearanceCounts(Mockito.any(), Mockito.anyBoolean(),
+                anyString()), Mockito.never());
+    }
+
+    /**
+     * Test that a client that has checked too many passwords with batch requests is rejected.
+     */
+    @Test
+    public void testDoPost_BatchRateLimited() throws Exception {
+        HIBPDataHolder.getInstance().setBatchRateLimiter(new ClientRateLimiter(1, 2, 16));
+        mockBatchRequest("{\"passwords\": [\"password123\", \"password456\", \"password789\"]}");
+
+        new HIBPServlet().doPost(request, response);
+
+        Mockito.verify(response).setStatus(Constants.TOO_MANY_REQUESTS);
+        mockedService.verify(() -> HIBPService.getPasswordAppearanceCounts(Mockito.any(), Mockito.anyBoolean(),
+                anyString()), Mockito.never());
+    }
+
+    private void mockBatchRequest(String body) throws Exception {
+        ByteArrayInputStream in = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+        Mockito.when(request.getContentType()).thenReturn(Constants.APPLICATION_JSON);
+        Mockito.when(request.getContentLength()).thenReturn(-1);
+        Mockito.when(request.getRemoteAddr()).thenReturn("10.0.0.1");
+        Mockito.when(request.getInputStream()).thenReturn(new ServletInputStream() {
+
+            @Override
+            public int read() {
+                return in.read();
+            }
+
+            @Override
+            public boolean isFinished() {
+                return in.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                throw new UnsupportedOperationException();
+            }
+        });
+    }
+
+    /**
+     * Executor service running tasks on the submitting thread.
+     */
+    private static class CallerRunsExecutorService extends AbstractExecutorService {
+
+        private volatile boolean shutdown;
+
+        @Override
+        public void execute(Runnable command) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Executor is shut down");
+            }
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return shutdown;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.cache;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.identity.password.validator.hibp.client.HIBPHttpClientManager;
+import org.wso2.identity.password.validator.hibp.internal.HIBPDataHolder;
+import org.wso2.identity.password.validator.hibp.range.HashRange;
+import org.wso2.identity.password.validator.hibp.util.Constants;
+import org.wso2.identity.password.validator.hibp.util.StubHIBPServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Tests for the CacheWarmer class against a local stub of the HIBP range API.
+ */
+public class CacheWarmerTest {
+
+    private static final String SUFFIX = "0018A45C4D1DEF81644B54AB7F969B88D65";
+
+    private StubHIBPServer server;
+    private HIBPHttpClientManager httpClientManager;
+    private Path sketchPath;
+    private PrefixRangeCache cache;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        server = new StubHIBPServer();
+        System.setProperty(Constants.API_URL, server.getRangeUrl());
+        httpClientManager = new HIBPHttpClientManager(4, 4, 60000L, 30000L);
+        HIBPDataHolder.getInstance().setHttpClientManager(httpClientManager);
+        sketchPath = Files.createTempFile("hibp-popularity", ".cms");
+        Files.delete(sketchPath);
+        cache = new PrefixRangeCache(16, 3600000L);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        HIBPDataHolder.getInstance().setHttpClientManager(null);
+        httpClientManager.close();
+        System.clearProperty(Constants.API_URL);
+        server.close();
+        Files.deleteIfExists(sketchPath);
+    }
+
+    /**
+     * Test that the most popular prefixes recorded before a restart are fetched, at most the given number per call,
+     * skipping the prefixes that are already cached.
+     */
+    @Test
+    public void testWarmUp() throws Exception {
+        PrefixPopularitySketch saved = new PrefixPopularitySketch();
+        record(saved, "21BD1", 30);
+        record(saved, "00000", 20);
+        record(saved, "FFFFF", 10);
+        record(saved, "5BAA6", 1);
+        saved.save(sketchPath);
+        server.setRange("21BD1", SUFFIX + ":10\r\n");
+        cache.put("00000", HashRange.empty());
+
+        CacheWarmer warmer = new CacheWarmer(cache, new PrefixPopularitySketch(), sketchPath, null, 3, 10, 0L);
+        try {
+            Assert.assertEquals(warmer.warmUp(10), 0, "Nothing should be fetched before the sketch is loaded");
+            warmer.loadSketch();
+            Assert.assertEquals(warmer.warmUp(1), 1);
+            Assert.assertEquals(cache.get("21BD1").getCount(SUFFIX), 10);
+            Assert.assertEquals(warmer.warmUp(10), 1, "Cached prefix should not be fetched");
+            Assert.assertNotNull(cache.get("FFFFF"));
+            Assert.assertNull(cache.get("5BAA6"), "Only the most popular prefixes should be fetched");
+            Assert.assertEquals(warmer.warmUp(10), 0);
+
+            Assert.assertEquals(server.getRequestCount(), 2);
+            Assert.assertEquals(warmer.getFetchedCount(), 2L);
+            Assert.assertEquals(warmer.getCachedCount(), 1L);
+        } finally {
+            warmer.close();
+        }
+    }
+
+    /**
+     * Test that the popularity recorded since the start is saved along with the one loaded from before the restart,
+     * but never saved over it before it is loaded.
+     */
+    @Test
+    public void testSaveSketch() throws Exception {
+        PrefixPopularitySketch saved = new PrefixPopularitySketch();
+        record(saved, "21BD1", 5);
+        saved.save(sketchPath);
+
+        PrefixPopularitySketch live = new PrefixPopularitySketch();
+        record(live, "00000", 3);
+        CacheWarmer warmer = new CacheWarmer(cache, live, sketchPath, null, 3, 10, 0L);
+        warmer.saveSketch();
+        Assert.assertEquals(PrefixPopularitySketch.load(sketchPath).getTopPrefixes(10), new String[]{"21BD1"});
+
+        warmer.loadSketch();
+        warmer.close();
+        Assert.assertEquals(PrefixPopularitySketch.load(sketchPath).getTopPrefixes(10),
+                new String[]{"21BD1", "00000"});
+    }
+
+    /**
+     * Test that failed fetches are counted and do not stop the warm-up.
+     */
+    @Test
+    public void testWarmUpFailure() throws Exception {
+        PrefixPopularitySketch live = new PrefixPopularitySketch();
+        record(live, "21BD1", 2);
+        record(live, "00000", 1);
+        server.failRequests("21BD1", 500, 1);
+
+        CacheWarmer warmer = new CacheWarmer(cache, live, sketchPath, null, 10, 10, 0L);
+        try {
+            warmer.loadSketch();
+            Assert.assertEquals(warmer.warmUp(10), 2);
+            Assert.assertEquals(warmer.getFailureCount(), 1L);
+            Assert.assertNull(cache.get("21BD1"));
+            Assert.assertNotNull(cache.get("00000"));
+        } finally {
+            warmer.close();
+        }
+    }
+
+    private static void record(PrefixPopularitySketch sketch, String prefix, int times) {
+        for (int i = 0; i < times; i++) {
+            sketch.record(prefix);
+        }
+    }
+}
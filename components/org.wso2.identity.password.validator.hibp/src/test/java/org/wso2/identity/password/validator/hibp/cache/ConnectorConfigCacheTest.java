@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.identity.password.validator.hibp.cache;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.common.model.Property;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for the ConnectorConfigCache class.
+ */
+public class ConnectorConfigCacheTest {
+
+    private static final long TIME_TO_LIVE = 60000L;
+
+    /**
+     * Test that a configuration is served until its time to live expires.
+     */
+    @Test
+    public void testGetExpired() {
+        AtomicLong now = new AtomicLong(1000000L);
+        ConnectorConfigCache cache = new ConnectorConfigCache(16, TIME_TO_LIVE, now::get);
+        Property[] connectorConfigs = new Property[2];
+        cache.put("carbon.super", connectorConfigs);
+
+        now.addAndGet(TIME_TO_LIVE - 1);
+        Assert.assertSame(cache.get("carbon.super"), connectorConfigs);
+        now.incrementAndGet();
+        Assert.assertNull(cache.get("carbon.super"));
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertEquals(cache.getHitCount(), 1L);
+        Assert.assertEquals(cache.getMissCount(), 1L);
+    }
+
+    /**
+     * Test that invalidated configurations are read again.
+     */
+    @Test
+    public void testInvalidate() {
+        ConnectorConfigCache cache = new ConnectorConfigCache(16, TIME_TO_LIVE);
+        cache.put("carbon.super", new Property[2]);
+        cache.put("wso2.com", new Property[2]);
+
+        cache.invalidate("carbon.super");
+        Assert.assertNull(cache.get("carbon.super"));
+        Assert.assertNotNull(cache.get("wso2.com"));
+
+        cache.invalidateAll();
+        Assert.assertNull(cache.get("wso2.com"));
+    }
+
+    /**
+     * Test that a configuration read before an invalidation is not cached, so that it cannot replace an update.
+     */
+    @Test
+    public void testPutAfterInvalidation() {
+        ConnectorConfigCache cache = new ConnectorConfigCache(16, TIME_TO_LIVE);
+        long generation = cache.getGeneration("carbon.super");
+        cache.invalidate("carbon.super");
+        cache.put("carbon.super", new Property[2], generation);
+        Assert.assertNull(cache.get("carbon.super"), "Configuration read before the invalidation should be dropped");
+
+        generation = cache.getGeneration("carbon.super");
+        cache.invalidateAll();
+        cache.put("carbon.super", new Property[2], generation);
+        Assert.assertNull(cache.get("carbon.super"));
+
+        cache.put("carbon.super", new Property[2], cache.getGeneration("carbon.super"));
+        Assert.assertNotNull(cache.get("carbon.super"));
+    }
+
+    /**
+     * Test that invalidating a tenant does not drop the configurations being read for other tenants.
+     */
+    @Test
+    public void testPutAfterInvalidationOfOtherTenant() {
+        ConnectorConfigCache cache = new ConnectorConfigCache(16, TIME_TO_LIVE);
+        long generation = cache.getGeneration("wso2.com");
+        cache.invalidate("carbon.super");
+        cache.put("wso2.com", new Property[2], generation);
+        Assert.assertNotNull(cache.get("wso2.com"));
+    }
+
+    /**
+     * Test that the number of cached tenants is bounded, dropping expired entries first.
+     */
+    @Test
+    public void testMaxEntries() {
+        AtomicLong now = new AtomicLong(1000000L);
+        ConnectorConfigCache cache = new ConnectorConfigCache(2, TIME_TO_LIVE, now::get);
+        cache.put("expired.com", new Property[2]);
+        now.addAndGet(TIME_TO_LIVE);
+        cache.put("carbon.super", new Property[2]);
+        cache.put("wso2.com", new Property[2]);
+
+        Assert.assertEquals(cache.size(), 2);
+        Assert.assertNotNull(cache.get("carbon.super"));
+        Assert.assertNotNull(cache.get("wso2.com"));
+
+        cache.put("example.com", new Property[2]);
+        Assert.assertEquals(cache.size(), 2);
+        Assert.assertNotNull(cache.get("example.com"));
+    }
+}
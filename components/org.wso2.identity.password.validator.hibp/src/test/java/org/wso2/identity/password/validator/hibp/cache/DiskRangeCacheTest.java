@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.cache;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.identity.password.validator.hibp.range.HashRange;
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+import org.wso2.identity.password.validator.hibp.range.RangeParser;
+import org.wso2.identity.password.validator.hibp.util.StubHIBPServer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Tests for the DiskRangeCache class.
+ */
+public class DiskRangeCacheTest {
+
+    private static final long MAX_BYTES = 1 << 20;
+    private static final int WRITE_QUEUE_SIZE = 1024;
+    private static final String ETAG = "W/\"0x8DCDB4E9AA3F7E1\"";
+    private static final String LAST_MODIFIED = "Tue, 15 Oct 2024 10:12:44 GMT";
+
+    private Path directory;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("hibp-disk-cache");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Test that stored ranges and their validators are served again after the cache is reopened.
+     */
+    @Test
+    public void testGetAfterReopen() throws Exception {
+        HashRange range = RangeParser.parse(StubHIBPServer.buildRange(1000));
+        try (DiskRangeCache cache = DiskRangeCache.open(directory, MAX_BYTES, WRITE_QUEUE_SIZE)) {
+            Assert.assertNull(cache.get("21BD1"), "Prefix that was not stored should not be returned");
+            cache.put("21BD1", range, ETAG, LAST_MODIFIED, 1234L);
+            cache.put("21BD2", HashRange.empty(), null, null, 5678L);
+            cache.flush();
+            assertSameRange(cache.get("21BD1").range, range);
+        }
+
+        try (DiskRangeCache cache = DiskRangeCache.open(directory, MAX_BYTES, WRITE_QUEUE_SIZE)) {
+            Assert.assertEquals(cache.size(), 2);
+            DiskRangeCache.Entry entry = cache.get("21BD1");
+            assertSameRange(entry.range, range);
+            Assert.assertEquals(entry.etag, ETAG);
+            Assert.assertEquals(entry.lastModified, LAST_MODIFIED);
+            Assert.assertEquals(entry.fetchedAt, 1234L);
+
+            entry = cache.get("21BD2");
+            Assert.assertTrue(entry.range.isEmpty());
+            Assert.assertNull(entry.etag);
+            Assert.assertNull(entry.lastModified);
+            Assert.assertEquals(entry.fetchedAt, 5678L);
+            Assert.assertEquals(cache.getHitCount(), 2L);
+        }
+    }
+
+    /**
+     * Test that the latest range of a prefix replaces the ones stored before, also after the cache is reopened.
+     */
+    @Test
+    public void testLatestRangeIsServed() throws Exception {
+        HashRange range = RangeParser.parse(StubHIBPServer.buildRange(10));
+        try (DiskRangeCache cache = DiskRangeCache.open(directory, MAX_BYTES, WRITE_QUEUE_SIZE)) {
+            cache.put("21BD1", RangeParser.parse(StubHIBPServer.buildRange(10)), null, null, 1L);
+            cache.put("21BD1", range, null, null, 2L);
+            cache.flush();
+            Assert.assertEquals(cache.size(), 1);
+            assertSameRange(cache.get("21BD1").range, range);
+        }
+        try (DiskRangeCache cache = DiskRangeCache.open(directory, MAX_BYTES, WRITE_QUEUE_SIZE)) {
+            DiskRangeCache.Entry entry = cache.get("21BD1");
+            assertSameRange(entry.range, range);
+            Assert.assertEquals(entry.fetchedAt, 2L);
+        }
+    }
+
+    /**
+     * Test that a record cut short by a crash is discarded when the cache is reopened, and that the cache keeps
+     * working after it.
+     */
+    @Test
+    public void testIncompleteRecordIsDiscarded() throws IOException {
+        HashRange range = RangeParser.parse(StubHIBPServer.buildRange(100));
+        try (DiskRangeCache cache = DiskRangeCache.open(directory, MAX_BYTES, WRITE_QUEUE_SIZE)) {
+            cache.put("21BD1", range, null, null, 1L);
+            cache.put("21BD2", range, null, null, 1L);
+        }
+        Path segment = getSegments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+
+        try (DiskRangeCache cache = DiskRangeCache.open(directory, MAX_BYTES, WRITE_QUEUE_SIZE)) {
+            assertSameRange(cache.get("21BD1").range, range);
+            Assert.assertNull(cache.get("21BD2"), "Incomplete record should be discarded");
+            cache.put("21BD3", range, null, null, 1L);
+        }
+        try (DiskRangeCache cache = DiskRangeCache.open(directory, MAX_BYTES, WRITE_QUEUE_SIZE)) {
+            Assert.assertEquals(cache.size(), 2);
+            assertSameRange(cache.get("21BD3").range, range);
+        }
+    }
+
+    /**
+     * Test that a record that does not match its checksum is not served.
+     */
+    @Test
+    public void testCorruptedRecordIsDiscarded() throws Exception {
+        HashRange range = RangeParser.parse(StubHIBPServer.buildRange(100));
+        try (DiskRangeCache cache = DiskRangeCache.open(directory, MAX_BYTES, WRITE_QUEUE_SIZE)) {
+            cache.put("21BD1", range, null, null, 1L);
+            cache.put("21BD2", range, null, null, 1L);
+            cache.flush();
+
+            // Flip a bit in the counts of the last record, after it was indexed
+            Path segment = getSegments().get(0);
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer lastByte = ByteBuffer.allocate(1);
+                channel.read(lastByte, channel.size() - 1);
+                lastByte.put(0, (byte) (lastByte.get(0) ^ 1));
+                lastByte.rewind();
+                channel.write(lastByte, channel.size() - 1);
+            }
+            Assert.assertNull(cache.get("21BD2"), "Corrupted record should not be served");
+            Assert.assertEquals(cache.size(), 1);
+            assertSameRange(cache.get("21BD1").range, range);
+        }
+        try (DiskRangeCache cache = DiskRangeCache.open(directory, MAX_BYTES, WRITE_QUEUE_SIZE)) {
+            Assert.assertNull(cache.get("21BD2"), "Corrupted record should be discarded when reopened");
+            assertSameRange(cache.get("21BD1").range, range);
+        }
+    }
+
+    /**
+     * Test that the fetch time of a revalidated range is updated in place, unless a newer range was stored since.
+     */
+    @Test
+    public void testFetchTimeIsUpdated() throws Exception {
+        HashRange range = RangeParser.parse(StubHIBPServer.buildRange(100));
+        try (DiskRangeCache cache = DiskRangeCache.open(directory, MAX_BYTES, WRITE_QUEUE_SIZE)) {
+            cache.put("21BD1", range, ETAG, null, 1L);
+            cache.flush();
+            long size = cache.getSizeBytes();
+
+            cache.touch("21BD1", 1L, 2L);
+            cache.flush();
+            Assert.assertEquals(cache.get("21BD1").fetchedAt, 2L);
+            Assert.assertEquals(cache.getSizeBytes(), size, "Range should not be written again");
+
+            cache.touch("21BD1", 1L, 3L);
+            cache.flush();
+            Assert.assertEquals(cache.get("21BD1").fetchedAt, 2L, "Range fetched at another time should be kept");
+        }
+        try (DiskRangeCache cache = DiskRangeCache.open(directory, MAX_BYTES, WRITE_QUEUE_SIZE)) {
+            DiskRangeCache.Entry entry = cache.get("21BD1");
+            assertSameRange(entry.range, range);
+            Assert.assertEquals(entry.etag, ETAG);
+            Assert.assertEquals(entry.fetchedAt, 2L);
+        }
+    }
+
+    /**
+     * Test that the oldest segments are deleted to keep the cache within its maximum size.
+     */
+    @Test
+    public void testOldestSegmentIsEvicted() throws Exception {
+        HashRange range = RangeParser.parse(StubHIBPServer.buildRange(1000));
+        try (DiskRangeCache cache = DiskRangeCache.open(directory, MAX_BYTES, WRITE_QUEUE_SIZE)) {
+            for (int i = 0; i < 100; i++) {
+                cache.put(String.format("%05X", i), range, null, null, i);
+                Assert.assertTrue(cache.getSizeBytes() <= MAX_BYTES, "Cache should not grow beyond its size");
+            }
+            cache.flush();
+            Assert.assertTrue(cache.getEvictionCount() > 0, "Segments should be evicted");
+            Assert.assertNull(cache.get("00000"), "Oldest range should be evicted");
+            Assert.assertNotNull(cache.get("00063"), "Latest range should be kept");
+            // Segments are not filled to the byte, so the last one can take the cache over the size of the others
+            Assert.assertTrue(getSegments().size() <= DiskRangeCache.SEGMENT_COUNT + 1);
+
+            long size = 0;
+            for (Path segment : getSegments()) {
+                size += Files.size(segment);
+            }
+            Assert.assertEquals(size, cache.getSizeBytes());
+        }
+    }
+
+    /**
+     * Test that segments of another format are deleted.
+     */
+    @Test
+    public void testInvalidSegmentIsDeleted() throws IOException {
+        Path segment = directory.resolve("ranges-00000000.seg");
+        Files.write(segment, new byte[DiskRangeCache.SEGMENT_HEADER_SIZE]);
+        try (DiskRangeCache cache = DiskRangeCache.open(directory, MAX_BYTES, WRITE_QUEUE_SIZE)) {
+            Assert.assertEquals(cache.size(), 0);
+            Assert.assertTrue(Files.notExists(segment), "Invalid segment should be deleted");
+            cache.put("21BD1", HashRange.empty(), null, null, 1L);
+        }
+        Assert.assertEquals(getSegments().size(), 1);
+    }
+
+    private List<Path> getSegments() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> path.getFileName().toString().endsWith(".seg")).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void assertSameRange(HashRange actual, HashRange expected) {
+        Assert.assertEquals(actual.size(), expected.size());
+        byte[] actualSuffix = new byte[HexUtils.SUFFIX_BYTES];
+        byte[] expectedSuffix = new byte[HexUtils.SUFFIX_BYTES];
+        for (int i = 0; i < expected.size(); i++) {
+            actual.getSuffix(i, actualSuffix, 0);
+            expected.getSuffix(i, expectedSuffix, 0);
+            Assert.assertEquals(actualSuffix, expectedSuffix);
+            Assert.assertEquals(actual.getCountAt(i), expected.getCountAt(i));
+        }
+    }
+}
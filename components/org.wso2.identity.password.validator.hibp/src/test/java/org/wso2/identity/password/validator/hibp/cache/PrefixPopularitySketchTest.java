@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.cache;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Tests for the PrefixPopularitySketch class.
+ */
+public class PrefixPopularitySketchTest {
+
+    private Path file;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = Files.createTempFile("hibp-popularity", ".cms");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Test that estimates are never below the recorded counts, and exact when the prefixes do not collide.
+     */
+    @Test
+    public void testEstimate() {
+        PrefixPopularitySketch sketch = new PrefixPopularitySketch(1 << 12);
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j <= i; j++) {
+                sketch.record(HexUtils.encodePrefix(i * 997));
+            }
+        }
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(sketch.estimate(i * 997) >= i + 1, "Estimate should not be below the count");
+        }
+        Assert.assertEquals(sketch.estimate(HexUtils.decodePrefix("21BD1")), 0);
+
+        // Prefixes that are not valid are ignored
+        sketch.record("21BD");
+        sketch.record("XXXXX");
+    }
+
+    /**
+     * Test that the most popular prefixes are returned first.
+     */
+    @Test
+    public void testGetTopPrefixes() {
+        PrefixPopularitySketch sketch = new PrefixPopularitySketch();
+        record(sketch, "21BD1", 50);
+        record(sketch, "FFFFF", 30);
+        record(sketch, "00000", 40);
+        record(sketch, "5BAA6", 1);
+
+        Assert.assertEquals(sketch.getTopPrefixes(3), new String[]{"21BD1", "00000", "FFFFF"});
+        Assert.assertEquals(sketch.getTopPrefixes(10), new String[]{"21BD1", "00000", "FFFFF", "5BAA6"});
+        Assert.assertEquals(sketch.getTopPrefixes(0).length, 0);
+        Assert.assertEquals(new PrefixPopularitySketch().getTopPrefixes(10).length, 0);
+    }
+
+    /**
+     * Test that the counters are halved once enough lookups are recorded, so that the sketch follows changes in
+     * popularity.
+     */
+    @Test
+    public void testCountersAreHalved() {
+        int width = 1 << 4;
+        PrefixPopularitySketch sketch = new PrefixPopularitySketch(width);
+        record(sketch, "21BD1", PrefixPopularitySketch.SAMPLE_FACTOR * width - 1);
+        Assert.assertEquals(sketch.estimate(HexUtils.decodePrefix("21BD1")),
+                PrefixPopularitySketch.SAMPLE_FACTOR * width - 1);
+
+        record(sketch, "21BD1", 1);
+        Assert.assertEquals(sketch.estimate(HexUtils.decodePrefix("21BD1")),
+                PrefixPopularitySketch.SAMPLE_FACTOR * width / 2);
+    }
+
+    /**
+     * Test that a saved sketch is loaded with the same counts, and can be merged into another one.
+     */
+    @Test
+    public void testSaveLoadAndMerge() throws IOException {
+        PrefixPopularitySketch sketch = new PrefixPopularitySketch(1 << 10);
+        record(sketch, "21BD1", 5);
+        record(sketch, "00000", 3);
+        sketch.save(file);
+
+        PrefixPopularitySketch loaded = PrefixPopularitySketch.load(file);
+        Assert.assertEquals(loaded.getWidth(), 1 << 10);
+        Assert.assertEquals(loaded.getTopPrefixes(10), new String[]{"21BD1", "00000"});
+
+        PrefixPopularitySketch live = new PrefixPopularitySketch(1 << 10);
+        record(live, "00000", 4);
+        live.merge(loaded);
+        Assert.assertEquals(live.getTopPrefixes(10), new String[]{"00000", "21BD1"});
+        Assert.assertEquals(live.estimate(0), 7);
+    }
+
+    /**
+     * Test that files that are corrupted or of another format are rejected.
+     */
+    @Test
+    public void testLoadInvalidFile() throws IOException {
+        new PrefixPopularitySketch(1 << 10).save(file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+        assertLoadFails();
+
+        Files.write(file, new byte[PrefixPopularitySketch.HEADER_SIZE]);
+        assertLoadFails();
+
+        new PrefixPopularitySketch(1 << 10).save(file);
+        bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 4));
+        assertLoadFails();
+    }
+
+    private void assertLoadFails() {
+        try {
+            PrefixPopularitySketch.load(file);
+            Assert.fail("Invalid file should not be loaded");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    private static void record(PrefixPopularitySketch sketch, String prefix, int times) {
+        for (int i = 0; i < times; i++) {
+            sketch.record(prefix);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.cache;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.identity.password.validator.hibp.range.HashRange;
+import org.wso2.identity.password.validator.hibp.range.RangeParser;
+import org.wso2.identity.password.validator.hibp.range.RangeResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Tests for the PrefixRangeCache class.
+ */
+public class PrefixRangeCacheTest {
+
+    private static final long TTL = 1000L;
+    private static final long STALE_WHILE_REVALIDATE = 500L;
+    private static final long STALE_IF_ERROR = 2000L;
+
+    private AtomicLong clock;
+
+    @BeforeMethod
+    public void setUp() {
+        clock = new AtomicLong(0L);
+    }
+
+    /**
+     * Test that a cached range is returned and counted as a hit.
+     */
+    @Test
+    public void testGetAfterPut() {
+        PrefixRangeCache cache = new PrefixRangeCache(16, TTL, clock::get);
+        HashRange range = RangeParser.parse("0018A45C4D1DEF81644B54AB7F969B88D65:10");
+
+        Assert.assertNull(cache.get("21BD1"), "Uncached prefix should not be returned");
+        cache.put("21BD1", range);
+
+        Assert.assertEquals(cache.get("21BD1"), range, "Cached range should be returned");
+        Assert.assertEquals(cache.getHitCount(), 1L, "One hit should be recorded");
+        Assert.assertEquals(cache.getMissCount(), 1L, "One miss should be recorded");
+    }
+
+    /**
+     * Test that an entry is no longer served once its time to live has passed.
+     */
+    @Test
+    public void testEntryExpires() {
+        PrefixRangeCache cache = new PrefixRangeCache(16, TTL, clock::get);
+        cache.put("21BD1", HashRange.empty());
+
+        clock.set(TTL - 1);
+        Assert.assertNotNull(cache.get("21BD1"), "Entry should be served before it expires");
+
+        clock.set(TTL);
+        Assert.assertNull(cache.get("21BD1"), "Entry should not be served after it expires");
+        Assert.assertEquals(cache.getExpirationCount(), 1L, "One expiration should be recorded");
+        Assert.assertEquals(cache.size(), 0, "Expired entry should be removed");
+    }
+
+    /**
+     * Test that an expired entry is served within the stale-while-revalidate window, while a single revalidation
+     * updates it in the background.
+     */
+    @Test
+    public void testStaleWhileRevalidate() {
+        PrefixRangeCache cache = new PrefixRangeCache(16, TTL, STALE_WHILE_REVALIDATE, STALE_IF_ERROR, clock::get);
+        HashRange range = RangeParser.parse("0018A45C4D1DEF81644B54AB7F969B88D65:10");
+        HashRange updated = RangeParser.parse("0018A45C4D1DEF81644B54AB7F969B88D65:11");
+        cache.put("21BD1", range, "etag", null);
+
+        AtomicInteger revalidations = new AtomicInteger();
+        CompletableFuture<RangeResponse> revalidation = new CompletableFuture<>();
+        PrefixRangeCache.Revalidator revalidator = (hashPrefix, etag, lastModified) -> {
+            revalidations.incrementAndGet();
+            Assert.assertEquals(etag, "etag", "Revalidation should be conditional on the cached ETag");
+            return revalidation;
+        };
+
+        clock.set(TTL);
+        Assert.assertNull(cache.get("21BD1"), "Expired entry should not be served without a revalidator");
+        Assert.assertEquals(cache.get("21BD1", revalidator), range, "Expired entry should be served while stale");
+        Assert.assertEquals(cache.get("21BD1", revalidator), range, "Expired entry should be served while stale");
+        Assert.assertEquals(revalidations.get(), 1, "Only one revalidation should be in flight");
+        Assert.assertEquals(cache.getStaleHitCount(), 2L, "Two stale hits should be recorded");
+
+        revalidation.complete(new RangeResponse(updated, "etag2", null));
+        Assert.assertEquals(cache.get("21BD1"), updated, "Revalidated range should be served as current");
+        Assert.assertEquals(revalidations.get(), 1, "Current entry should not be revalidated");
+
+        clock.set(2 * TTL + STALE_WHILE_REVALIDATE);
+        Assert.assertNull(cache.get("21BD1", revalidator),
+                "Entry should not be served past the stale-while-revalidate window");
+        Assert.assertEquals(revalidations.get(), 1, "Entry past the window should not be revalidated");
+    }
+
+    /**
+     * Test that a failed revalidation keeps the stale entry and lets the next lookup try again.
+     */
+    @Test
+    public void testFailedRevalidationIsRetried() {
+        PrefixRangeCache cache = new PrefixRangeCache(16, TTL, STALE_WHILE_REVALIDATE, STALE_IF_ERROR, clock::get);
+        HashRange range = RangeParser.parse("0018A45C4D1DEF81644B54AB7F969B88D65:10");
+        cache.put("21BD1", range, "etag", null);
+
+        AtomicInteger revalidations = new AtomicInteger();
+        PrefixRangeCache.Revalidator revalidator = (hashPrefix, etag, lastModified) -> {
+            if (revalidations.incrementAndGet() == 1) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Upstream failure"));
+            }
+            return CompletableFuture.completedFuture(RangeResponse.notModified());
+        };
+
+        clock.set(TTL);
+        Assert.assertEquals(cache.get("21BD1", revalidator), range, "Stale entry should be served");
+        Assert.assertEquals(cache.getRevalidationFailureCount(), 1L, "Failed revalidation should be recorded");
+        Assert.assertEquals(cache.get("21BD1", revalidator), range, "Stale entry should still be served");
+        Assert.assertEquals(revalidations.get(), 2, "Revalidation should be retried after a failure");
+
+        Assert.assertEquals(cache.get("21BD1"), range, "Not modified entry should be served as current");
+        Assert.assertEquals(cache.getStaleHitCount(), 2L, "Two stale hits should be recorded");
+    }
+
+    /**
+     * Test that an expired entry is served within the stale-if-error window only, and is then removed.
+     */
+    @Test
+    public void testStaleIfError() {
+        PrefixRangeCache cache = new PrefixRangeCache(16, TTL, STALE_WHILE_REVALIDATE, STALE_IF_ERROR, clock::get);
+        HashRange range = RangeParser.parse("0018A45C4D1DEF81644B54AB7F969B88D65:10");
+        cache.put("21BD1", range);
+
+        clock.set(TTL + STALE_IF_ERROR - 1);
+        Assert.assertNull(cache.get("21BD1"), "Expired entry should not be served as current");
+        Assert.assertEquals(cache.getStale("21BD1"), range, "Expired entry should be served on an error");
+        Assert.assertEquals(cache.getStaleIfErrorCount(), 1L, "One stale range on error should be recorded");
+
+        clock.set(TTL + STALE_IF_ERROR);
+        Assert.assertNull(cache.getStale("21BD1"), "Entry should not be served past the stale-if-error window");
+        Assert.assertEquals(cache.size(), 0, "Entry past every grace period should be removed");
+        Assert.assertEquals(cache.getExpirationCount(), 1L, "One expiration should be recorded");
+    }
+
+    /**
+     * Test that the least recently used entry is evicted once the cache is full.
+     */
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        // A single entry cache has a single segment, which makes the eviction order deterministic.
+        PrefixRangeCache cache = new PrefixRangeCache(1, TTL, clock::get);
+        cache.put("00000", HashRange.empty());
+        cache.put("00001", HashRange.empty());
+
+        Assert.assertNull(cache.get("00000"), "Least recently used entry should be evicted");
+        Assert.assertNotNull(cache.get("00001"), "Most recently added entry should be kept");
+        Assert.assertEquals(cache.getEvictionCount(), 1L, "One eviction should be recorded");
+    }
+
+    /**
+     * Test that the cache never holds more entries than its configured size.
+     */
+    @Test
+    public void testSizeIsBounded() {
+        PrefixRangeCache cache = new PrefixRangeCache(64, TTL, clock::get);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(String.format("%05X", i), HashRange.empty());
+        }
+
+        Assert.assertTrue(cache.size() <= 64, "Cache should not grow beyond its maximum size");
+        Assert.assertEquals(cache.getEvictionCount(), 1000L - cache.size(),
+                "Every entry dropped from the cache should be counted as an eviction");
+    }
+
+    /**
+     * Test that ranges written to the disk tier are served by a new cache, until they expire.
+     */
+    @Test
+    public void testDiskTier() throws Exception {
+        Path directory = Files.createTempDirectory("hibp-disk-cache");
+        try {
+            HashRange range = RangeParser.parse("0018A45C4D1DEF81644B54AB7F969B88D65:10");
+            try (DiskRangeCache diskCache = DiskRangeCache.open(directory, 1 << 20, 16)) {
+                PrefixRangeCache cache = new PrefixRangeCache(16, TTL, clock::get);
+                cache.setDiskCache(diskCache);
+                cache.put("21BD1", range, "etag", null);
+            }
+
+            clock.set(TTL - 1);
+            try (DiskRangeCache diskCache = DiskRangeCache.open(directory, 1 << 20, 16)) {
+                PrefixRangeCache cache = new PrefixRangeCache(16, TTL, clock::get);
+                cache.setDiskCache(diskCache);
+                Assert.assertEquals(cache.get("21BD1").getCount("0018A45C4D1DEF81644B54AB7F969B88D65"), 10);
+                Assert.assertEquals(cache.getHitCount(), 1L, "Range served from disk should count as a hit");
+                Assert.assertEquals(cache.size(), 1, "Range served from disk should be kept in memory");
+                Assert.assertEquals(cache.getEntries().get(0).get().etag, "etag");
+                Assert.assertEquals(diskCache.getHitCount(), 1L);
+
+                // The range keeps the time it was fetched
+                clock.set(TTL);
+                Assert.assertNull(cache.get("21BD1"), "Expired range should not be served");
+                Assert.assertNull(cache.get("21BD1"), "Expired range should not be served from disk");
+                Assert.assertNull(cache.get("21BD2"), "Prefix that was not stored should not be returned");
+                Assert.assertEquals(cache.getMissCount(), 3L);
+            }
+        } finally {
+            try (Stream<Path> paths = Files.list(directory)) {
+                paths.forEach(path -> path.toFile().delete());
+            }
+            Files.delete(directory);
+        }
+    }
+}
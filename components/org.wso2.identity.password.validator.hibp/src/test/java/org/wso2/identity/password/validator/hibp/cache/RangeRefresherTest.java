@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.cache;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.identity.password.validator.hibp.client.HIBPHttpClientManager;
+import org.wso2.identity.password.validator.hibp.internal.HIBPDataHolder;
+import org.wso2.identity.password.validator.hibp.range.RangeResponse;
+import org.wso2.identity.password.validator.hibp.util.Constants;
+import org.wso2.identity.password.validator.hibp.util.StubHIBPServer;
+import org.wso2.identity.password.validator.hibp.util.Utils;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for the RangeRefresher class against a local stub of the HIBP range API.
+ */
+public class RangeRefresherTest {
+
+    private static final String PREFIX = "21BD1";
+    private static final String SUFFIX = "0018A45C4D1DEF81644B54AB7F969B88D65";
+    private static final long MINIMUM_AGE = 60000L;
+
+    private StubHIBPServer server;
+    private HIBPHttpClientManager httpClientManager;
+    private AtomicLong now;
+    private PrefixRangeCache cache;
+    private RangeRefresher refresher;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        server = new StubHIBPServer();
+        System.setProperty(Constants.API_URL, server.getRangeUrl());
+        httpClientManager = new HIBPHttpClientManager(4, 4, 60000L, 30000L);
+        HIBPDataHolder.getInstance().setHttpClientManager(httpClientManager);
+        now = new AtomicLong(1000000L);
+        cache = new PrefixRangeCache(16, 3600000L, now::get);
+        refresher = new RangeRefresher(cache, null, 10, MINIMUM_AGE);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        refresher.close();
+        HIBPDataHolder.getInstance().setHttpClientManager(null);
+        httpClientManager.close();
+        System.clearProperty(Constants.API_URL);
+        server.close();
+    }
+
+    /**
+     * Test that an unchanged range is revalidated with a conditional request and stays cached past its time to live.
+     */
+    @Test
+    public void testRefreshNotModified() throws Exception {
+        server.setRange(PREFIX, SUFFIX + ":10\r\n");
+        cacheRange(PREFIX);
+
+        now.addAndGet(MINIMUM_AGE);
+        Assert.assertEquals(refresher.refresh(10), 1);
+        Assert.assertEquals(server.getNotModifiedCount(), 1);
+        Assert.assertEquals(refresher.getNotModifiedCount(), 1L);
+
+        // The revalidated range is served past the time to live of the original response
+        now.addAndGet(3600000L - 1);
+        Assert.assertEquals(cache.get(PREFIX).getCount(SUFFIX), 10);
+    }
+
+    /**
+     * Test that a changed range is replaced.
+     */
+    @Test
+    public void testRefreshModified() throws Exception {
+        server.setRange(PREFIX, SUFFIX + ":10\r\n");
+        cacheRange(PREFIX);
+
+        server.setRange(PREFIX, SUFFIX + ":11\r\n");
+        now.addAndGet(MINIMUM_AGE);
+        Assert.assertEquals(refresher.refresh(10), 1);
+        Assert.assertEquals(server.getNotModifiedCount(), 0);
+        Assert.assertEquals(refresher.getUpdatedCount(), 1L);
+        Assert.assertEquals(cache.get(PREFIX).getCount(SUFFIX), 11);
+
+        // The validators of the new response are used for the next refresh
+        now.addAndGet(MINIMUM_AGE);
+        Assert.assertEquals(refresher.refresh(10), 1);
+        Assert.assertEquals(server.getNotModifiedCount(), 1);
+    }
+
+    /**
+     * Test that only ranges older than the minimum age are refreshed, at most the given number per call.
+     */
+    @Test
+    public void testRefreshRateAndMinimumAge() throws Exception {
+        cacheRange("00000");
+        cacheRange("00001");
+        cacheRange("00002");
+
+        Assert.assertEquals(refresher.refresh(10), 0, "Recently fetched ranges should not be refreshed");
+
+        now.addAndGet(MINIMUM_AGE);
+        Assert.assertEquals(refresher.refresh(2), 2);
+        Assert.assertEquals(refresher.refresh(2), 1, "Only the range not refreshed yet should be refreshed");
+        Assert.assertEquals(refresher.refresh(2), 0);
+        Assert.assertEquals(server.getRequestCount(), 6);
+    }
+
+    /**
+     * Test that failed refreshes keep the cached range.
+     */
+    @Test
+    public void testRefreshFailure() throws Exception {
+        server.setRange(PREFIX, SUFFIX + ":10\r\n");
+        cacheRange(PREFIX);
+        server.close();
+
+        now.addAndGet(MINIMUM_AGE);
+        Assert.assertEquals(refresher.refresh(10), 1);
+        Assert.assertEquals(refresher.getFailureCount(), 1L);
+        Assert.assertEquals(cache.get(PREFIX).getCount(SUFFIX), 10);
+    }
+
+    private void cacheRange(String prefix) throws Exception {
+        RangeResponse response = Utils.getHIBPRange(null, prefix, null, null);
+        Assert.assertFalse(response.isNotModified());
+        Assert.assertNotNull(response.getETag());
+        cache.put(prefix, response.getRange(), response.getETag(), response.getLastModified());
+    }
+}
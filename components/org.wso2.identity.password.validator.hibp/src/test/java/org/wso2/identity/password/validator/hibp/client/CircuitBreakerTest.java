@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.client;
+
+import org.apache.http.client.HttpResponseException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.identity.password.validator.hibp.exception.HIBPRateLimitException;
+import org.wso2.identity.password.validator.hibp.exception.HIBPUnavailableException;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for the CircuitBreaker class.
+ */
+public class CircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 30000L;
+
+    /**
+     * Test that the breaker opens after consecutive failures, rejects calls without making them while open, and
+     * closes again once a probe succeeds.
+     */
+    @Test
+    public void testOpenAndRecover() throws Exception {
+        AtomicLong now = new AtomicLong(1000000L);
+        CircuitBreaker circuitBreaker = new CircuitBreaker(3, 0L, OPEN_MILLIS, now::get);
+        AtomicInteger calls = new AtomicInteger();
+
+        // A success resets the count of consecutive failures
+        fail(circuitBreaker, calls);
+        fail(circuitBreaker, calls);
+        Assert.assertEquals(circuitBreaker.execute(() -> calls.incrementAndGet()), Integer.valueOf(3));
+        fail(circuitBreaker, calls);
+        fail(circuitBreaker, calls);
+        Assert.assertEquals(circuitBreaker.getState(), CircuitBreaker.State.CLOSED);
+        fail(circuitBreaker, calls);
+        Assert.assertEquals(circuitBreaker.getState(), CircuitBreaker.State.OPEN);
+        Assert.assertEquals(circuitBreaker.getOpenCount(), 1L);
+
+        assertRejected(circuitBreaker, calls);
+        Assert.assertEquals(calls.get(), 6, "Calls should not be made while the breaker is open");
+
+        // The first call after the open duration probes the API, and reopens the breaker if it fails
+        now.addAndGet(OPEN_MILLIS);
+        fail(circuitBreaker, calls);
+        Assert.assertEquals(circuitBreaker.getState(), CircuitBreaker.State.OPEN);
+        Assert.assertEquals(circuitBreaker.getOpenCount(), 2L);
+        assertRejected(circuitBreaker, calls);
+
+        now.addAndGet(OPEN_MILLIS);
+        Assert.assertEquals(circuitBreaker.execute(() -> calls.incrementAndGet()), Integer.valueOf(8));
+        Assert.assertEquals(circuitBreaker.getState(), CircuitBreaker.State.CLOSED);
+        Assert.assertEquals(circuitBreaker.getRejectedCount(), 2L);
+    }
+
+    /**
+     * Test that only one probe call is let through while the breaker is half open.
+     */
+    @Test
+    public void testSingleProbe() throws Exception {
+        AtomicLong now = new AtomicLong(1000000L);
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 0L, OPEN_MILLIS, now::get);
+        AtomicInteger calls = new AtomicInteger();
+        fail(circuitBreaker, calls);
+        now.addAndGet(OPEN_MILLIS);
+
+        CompletableFuture<Integer> probe = new CompletableFuture<>();
+        CompletableFuture<Integer> result = circuitBreaker.executeAsync(() -> probe);
+        Assert.assertEquals(circuitBreaker.getState(), CircuitBreaker.State.HALF_OPEN);
+        assertRejected(circuitBreaker, calls);
+        try {
+            circuitBreaker.executeAsync(() -> CompletableFuture.completedFuture(0)).get();
+            Assert.fail("Calls other than the probe should be rejected");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof HIBPUnavailableException);
+        }
+
+        probe.complete(42);
+        Assert.assertEquals(result.get(), Integer.valueOf(42));
+        Assert.assertEquals(circuitBreaker.getState(), CircuitBreaker.State.CLOSED);
+    }
+
+    /**
+     * Test that slow calls count as failures, and that client errors other than rate limiting do not.
+     */
+    @Test
+    public void testFailureClassification() throws Exception {
+        CircuitBreaker slowCalls = new CircuitBreaker(2, 1L, OPEN_MILLIS);
+        for (int i = 0; i < 2; i++) {
+            slowCalls.execute(() -> {
+                Thread.sleep(5L);
+                return null;
+            });
+        }
+        Assert.assertEquals(slowCalls.getState(), CircuitBreaker.State.OPEN, "Slow calls should open the breaker");
+
+        Assert.assertFalse(CircuitBreaker.isFailure(new HttpResponseException(401, "Unauthorized")));
+        Assert.assertFalse(CircuitBreaker.isFailure(new HttpResponseException(404, "Not Found")));
+        Assert.assertTrue(CircuitBreaker.isFailure(new HIBPRateLimitException(-1)));
+        Assert.assertTrue(CircuitBreaker.isFailure(new HttpResponseException(503, "Service Unavailable")));
+        Assert.assertTrue(CircuitBreaker.isFailure(new SocketTimeoutException("Read timed out")));
+        Assert.assertTrue(CircuitBreaker.isFailure(new ExecutionException(new IOException("Connection reset"))));
+    }
+
+    private static void fail(CircuitBreaker circuitBreaker, AtomicInteger calls) {
+        try {
+            circuitBreaker.execute(() -> {
+                calls.incrementAndGet();
+                throw new SocketTimeoutException("Read timed out");
+            });
+            Assert.fail("Call should fail");
+        } catch (Exception e) {
+            Assert.assertTrue(e instanceof SocketTimeoutException, "The failure of the call should be thrown");
+        }
+    }
+
+    private static void assertRejected(CircuitBreaker circuitBreaker, AtomicInteger calls) {
+        try {
+            circuitBreaker.execute(() -> calls.incrementAndGet());
+            Assert.fail("Call should be rejected");
+        } catch (Exception e) {
+            Assert.assertTrue(e instanceof HIBPUnavailableException, "Rejected calls should fail as unavailable");
+        }
+    }
+}
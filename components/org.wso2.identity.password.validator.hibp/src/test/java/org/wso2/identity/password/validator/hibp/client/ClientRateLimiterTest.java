@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.client;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for the ClientRateLimiter class.
+ */
+public class ClientRateLimiterTest {
+
+    /**
+     * Test that a client can spend its burst at once, and then only the permits that refilled since.
+     */
+    @Test
+    public void testTryAcquire() {
+        AtomicLong now = new AtomicLong();
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(10, 100, 16, now::get);
+
+        Assert.assertTrue(rateLimiter.tryAcquire("10.0.0.1", 100));
+        Assert.assertFalse(rateLimiter.tryAcquire("10.0.0.1", 1));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        Assert.assertFalse(rateLimiter.tryAcquire("10.0.0.1", 6), "A rejected request should not take any permit");
+        Assert.assertTrue(rateLimiter.tryAcquire("10.0.0.1", 5));
+        Assert.assertFalse(rateLimiter.tryAcquire("10.0.0.1", 1));
+        Assert.assertEquals(rateLimiter.getRejectedCount(), 3L);
+
+        // Other clients have their own permits
+        Assert.assertTrue(rateLimiter.tryAcquire("10.0.0.2", 100));
+    }
+
+    /**
+     * Test that clients whose permits have refilled make room for new clients, and that new clients are rejected
+     * while no tracked client can be dropped.
+     */
+    @Test
+    public void testMaxClients() {
+        AtomicLong now = new AtomicLong();
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(10, 100, 2, now::get);
+        Assert.assertTrue(rateLimiter.tryAcquire("10.0.0.1", 50));
+        Assert.assertTrue(rateLimiter.tryAcquire("10.0.0.2", 50));
+
+        Assert.assertFalse(rateLimiter.tryAcquire("10.0.0.3", 1));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        Assert.assertTrue(rateLimiter.tryAcquire("10.0.0.3", 1));
+        Assert.assertEquals(rateLimiter.getClientCount(), 1);
+    }
+}
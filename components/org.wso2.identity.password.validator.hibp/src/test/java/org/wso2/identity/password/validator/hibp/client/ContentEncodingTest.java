@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.identity.password.validator.hibp.client;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests for the ContentEncoding class.
+ */
+public class ContentEncodingTest {
+
+    private static final String BODY = "0018A45C4D1DEF81644B54AB7F969B88D65:10\r\n"
+            + "00D4F6E8FA6EECAD2A3AA415EEC418D38EC:2\r\n";
+
+    /**
+     * Test that each supported coding is decoded, and that bodies without a coding are read as they are.
+     */
+    @Test
+    public void testDecode() throws IOException {
+        byte[] body = BODY.getBytes(StandardCharsets.US_ASCII);
+
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(gzip)) {
+            out.write(body);
+        }
+        ByteArrayOutputStream zlib = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(zlib)) {
+            out.write(body);
+        }
+        ByteArrayOutputStream rawDeflate = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(rawDeflate, new Deflater(Deflater.DEFAULT_COMPRESSION,
+                true))) {
+            out.write(body);
+        }
+
+        Assert.assertEquals(decode(body, null), BODY);
+        Assert.assertEquals(decode(body, "identity"), BODY);
+        Assert.assertEquals(decode(gzip.toByteArray(), "gzip"), BODY);
+        Assert.assertEquals(decode(gzip.toByteArray(), "X-GZIP"), BODY);
+        Assert.assertEquals(decode(zlib.toByteArray(), "deflate"), BODY);
+        Assert.assertEquals(decode(rawDeflate.toByteArray(), "deflate"), BODY);
+        Assert.assertEquals(decode(new byte[0], "deflate"), "");
+
+        // Codings applied one after the other are undone in the reverse order
+        ByteArrayOutputStream stacked = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(stacked)) {
+            out.write(zlib.toByteArray());
+        }
+        Assert.assertEquals(decode(stacked.toByteArray(), "deflate, gzip"), BODY);
+    }
+
+    /**
+     * Test that bodies with an unsupported coding are rejected instead of being parsed as plain text.
+     */
+    @Test(expectedExceptions = IOException.class)
+    public void testDecodeUnsupported() throws IOException {
+        decode(BODY.getBytes(StandardCharsets.US_ASCII), "br");
+    }
+
+    private static String decode(byte[] body, String contentEncoding) throws IOException {
+        try (InputStream in = ContentEncoding.decode(new ByteArrayInputStream(body), contentEncoding)) {
+            return new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.client;
+
+import org.apache.http.client.HttpResponseException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.identity.password.validator.hibp.exception.HIBPRateLimitException;
+import org.wso2.identity.password.validator.hibp.range.RangeResponse;
+import org.wso2.identity.password.validator.hibp.util.Constants;
+import org.wso2.identity.password.validator.hibp.util.StubHIBPServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the HIBPAsyncHttpClient class against a local stub of the HIBP range API.
+ */
+public class HIBPAsyncHttpClientTest {
+
+    private static final String PREFIX = "21BD1";
+    private static final String SUFFIX = "0018A45C4D1DEF81644B54AB7F969B88D65";
+
+    private StubHIBPServer server;
+    private HIBPAsyncHttpClient asyncHttpClient;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        server = new StubHIBPServer();
+        System.setProperty(Constants.API_URL, server.getRangeUrl());
+        asyncHttpClient = new HIBPAsyncHttpClient(1);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        asyncHttpClient.close();
+        System.clearProperty(Constants.API_URL);
+        server.close();
+    }
+
+    /**
+     * Test that many ranges can be requested concurrently on a single client thread.
+     */
+    @Test
+    public void testGetRange() throws Exception {
+        List<CompletableFuture<RangeResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            String prefix = String.format("%05X", i);
+            server.setRange(prefix, SUFFIX + ":" + (i + 1) + "\r\n");
+            responses.add(asyncHttpClient.getRange("api-key-12345", prefix));
+        }
+
+        for (int i = 0; i < responses.size(); i++) {
+            RangeResponse response = responses.get(i).get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(response.getRange().getCount(SUFFIX), i + 1);
+            Assert.assertNotNull(response.getETag(), "The validators of the response should be kept");
+        }
+        Assert.assertEquals(server.getRequestCount(), 100);
+    }
+
+    /**
+     * Test that ranges are transferred compressed unless compression is disabled.
+     */
+    @Test
+    public void testGetRange_Compressed() throws Exception {
+        String body = StubHIBPServer.buildRange(1000);
+        server.setRange(PREFIX, body);
+
+        Assert.assertEquals(asyncHttpClient.getRange(null, PREFIX).get(10, TimeUnit.SECONDS).getRange().size(),
+                1000);
+        long compressedBytes = server.getBytesSent();
+        Assert.assertTrue(compressedBytes < body.length() * 2 / 3, "The range should be transferred compressed");
+
+        System.setProperty(Constants.HTTP_CLIENT_COMPRESSION_ENABLED, "false");
+        try {
+            Assert.assertEquals(asyncHttpClient.getRange(null, PREFIX).get(10, TimeUnit.SECONDS).getRange().size(),
+                    1000);
+            Assert.assertEquals(server.getBytesSent() - compressedBytes, body.length());
+        } finally {
+            System.clearProperty(Constants.HTTP_CLIENT_COMPRESSION_ENABLED);
+        }
+    }
+
+    /**
+     * Test that unexpected responses fail the future.
+     */
+    @Test
+    public void testGetRange_Failure() throws Exception {
+        server.setRange(PREFIX, SUFFIX + ":10\r\n");
+
+        server.failRequests(PREFIX, Constants.TOO_MANY_REQUESTS, 1);
+        try {
+            asyncHttpClient.getRange(null, PREFIX).get(10, TimeUnit.SECONDS);
+            Assert.fail("Rate limited request should fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof HIBPRateLimitException);
+            Assert.assertEquals(((HIBPRateLimitException) e.getCause()).getRetryAfterMillis(), 0L);
+        }
+
+        server.failRequests(PREFIX, 503, 1);
+        try {
+            asyncHttpClient.getRange(null, PREFIX).get(10, TimeUnit.SECONDS);
+            Assert.fail("Failed request should fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof HttpResponseException);
+            Assert.assertEquals(((HttpResponseException) e.getCause()).getStatusCode(), 503);
+        }
+
+        Assert.assertEquals(asyncHttpClient.getRange(null, PREFIX).get(10, TimeUnit.SECONDS).getRange()
+                .getCount(SUFFIX), 10);
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.identity.password.validator.hibp.range.HashRange;
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+import org.wso2.identity.password.validator.hibp.util.Constants;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for the PeerGroup class, with several in-process members on localhost.
+ */
+public class PeerGroupTest {
+
+    private static final String SECRET = "peer-secret";
+    private static final String SUFFIX = "0018A45C4D1DEF81644B54AB7F969B88D65";
+    private static final int VIRTUAL_NODES = 160;
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long RETRY_INTERVAL = 30000L;
+
+    private AtomicLong clock;
+    private List<PeerNode> nodes;
+    private List<PeerGroup> groups;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        clock = new AtomicLong(0L);
+        nodes = new ArrayList<>();
+        groups = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            nodes.add(new PeerNode(i));
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        groups.forEach(PeerGroup::close);
+        nodes.forEach(PeerNode::stop);
+    }
+
+    /**
+     * Test that all members agree on the owner of every prefix, and that the prefixes are spread evenly.
+     */
+    @Test
+    public void testOwnershipIsConsistent() {
+        List<String> urls = getUrls(nodes);
+        PeerGroup[] members = new PeerGroup[nodes.size()];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = createGroup(urls, urls.get(i));
+        }
+
+        int[] owned = new int[members.length];
+        for (int prefix = 0; prefix < HexUtils.PREFIX_COUNT; prefix++) {
+            String hashPrefix = HexUtils.encodePrefix(prefix);
+            String owner = members[0].getOwnerUrl(hashPrefix);
+            for (int i = 0; i < members.length; i++) {
+                Assert.assertEquals(members[i].getOwnerUrl(hashPrefix), owner, "Members should agree on the owner");
+                Assert.assertEquals(members[i].isOwner(hashPrefix), owner.equals(urls.get(i)));
+            }
+            owned[urls.indexOf(owner)]++;
+        }
+        for (int count : owned) {
+            Assert.assertTrue(count > HexUtils.PREFIX_COUNT / 5 && count < HexUtils.PREFIX_COUNT / 2,
+                    "Prefixes should be spread evenly across members: " + Arrays.toString(owned));
+        }
+    }
+
+    /**
+     * Test that a new member only takes prefixes over, and that the other prefixes keep their owner.
+     */
+    @Test
+    public void testNewMemberTakesShareOfPrefixes() throws IOException {
+        List<String> urls = getUrls(nodes);
+        PeerGroup before = createGroup(urls, urls.get(0));
+        nodes.add(new PeerNode(nodes.size()));
+        List<String> newUrls = getUrls(nodes);
+        PeerGroup after = createGroup(newUrls, newUrls.get(0));
+
+        int moved = 0;
+        for (int prefix = 0; prefix < HexUtils.PREFIX_COUNT; prefix++) {
+            String hashPrefix = HexUtils.encodePrefix(prefix);
+            String owner = after.getOwnerUrl(hashPrefix);
+            if (!owner.equals(before.getOwnerUrl(hashPrefix))) {
+                Assert.assertEquals(owner, newUrls.get(3), "Only the new member should take prefixes over");
+                moved++;
+            }
+        }
+        Assert.assertTrue(moved > HexUtils.PREFIX_COUNT / 6 && moved < HexUtils.PREFIX_COUNT / 3,
+                "About a quarter of the prefixes should move: " + moved);
+    }
+
+    /**
+     * Test that a range is requested from its owner, and that ranges owned by this node are left to the caller.
+     */
+    @Test
+    public void testRangeFromOwner() {
+        List<String> urls = getUrls(nodes);
+        PeerGroup group = createGroup(urls, urls.get(0));
+        String remotePrefix = findPrefix(group, urls.get(1));
+        String localPrefix = findPrefix(group, urls.get(0));
+
+        HashRange range = group.getRange(remotePrefix).join();
+        Assert.assertNotNull(range, "Range should be served by its owner");
+        Assert.assertEquals(range.getCount(SUFFIX), 2, "Range should be the one of the owner");
+        Assert.assertEquals(nodes.get(1).requests.get(), 1);
+        Assert.assertEquals(nodes.get(1).lastPrefix, remotePrefix);
+        Assert.assertNull(nodes.get(1).lastApiKey, "Tenant API key should not be sent to the owner");
+
+        Assert.assertNull(group.getRange(localPrefix).join(), "Own prefix should be fetched locally");
+        Assert.assertEquals(nodes.get(0).requests.get(), 0, "Own prefix should not be requested over HTTP");
+        Assert.assertEquals(group.getHitCount(), 1L);
+        Assert.assertEquals(group.getFallbackCount(), 0L);
+    }
+
+    /**
+     * Test that a failing member is taken off the ring, its prefixes move to other members, and it is tried again
+     * after the retry interval.
+     */
+    @Test
+    public void testFailedMemberIsTakenOffRing() {
+        List<String> urls = getUrls(nodes);
+        PeerGroup group = createGroup(urls, urls.get(0));
+        String prefix = findPrefix(group, urls.get(2));
+        nodes.get(2).stop();
+
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            Assert.assertEquals(group.getOwnerUrl(prefix), urls.get(2), "Member should own the prefix until it fails");
+            Assert.assertNull(group.getRange(prefix).join(), "Failed request should be left to the caller");
+        }
+        Assert.assertEquals(group.getFailureCount(), (long) FAILURE_THRESHOLD);
+        Assert.assertEquals(group.getLiveMemberCount(), 2, "Failed member should be taken off the ring");
+        Assert.assertNotEquals(group.getOwnerUrl(prefix), urls.get(2), "Prefix should move to another member");
+
+        clock.addAndGet(RETRY_INTERVAL);
+        Assert.assertEquals(group.getOwnerUrl(prefix), urls.get(2), "Member should be tried again");
+        Assert.assertNull(group.getRange(prefix).join());
+        Assert.assertEquals(group.getLiveMemberCount(), 2, "Member that still fails should be taken off at once");
+    }
+
+    /**
+     * Test that a member that cannot get a range from the HIBP API is not taken off the ring.
+     */
+    @Test
+    public void testUpstreamFailureOfOwner() {
+        List<String> urls = getUrls(nodes);
+        PeerGroup group = createGroup(urls, urls.get(0));
+        String prefix = findPrefix(group, urls.get(1));
+        nodes.get(1).status = 502;
+
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            Assert.assertNull(group.getRange(prefix).join(), "Range should be left to the caller");
+        }
+        Assert.assertEquals(group.getFallbackCount(), (long) FAILURE_THRESHOLD);
+        Assert.assertEquals(group.getFailureCount(), 0L);
+        Assert.assertEquals(group.getLiveMemberCount(), 3, "Member should stay on the ring");
+    }
+
+    /**
+     * Test the shared secret check, and that requests with another secret are rejected by members.
+     */
+    @Test
+    public void testSecret() {
+        List<String> urls = getUrls(nodes);
+        PeerGroup group = createGroup(urls, urls.get(0));
+        Assert.assertTrue(group.isAuthorized(SECRET));
+        Assert.assertFalse(group.isAuthorized("other-secret"));
+        Assert.assertFalse(group.isAuthorized(null));
+
+        PeerGroup other = new PeerGroup(urls, urls.get(0), "other-secret", VIRTUAL_NODES, FAILURE_THRESHOLD,
+                RETRY_INTERVAL, 1, 2000L, clock::get);
+        groups.add(other);
+        Assert.assertNull(other.getRange(findPrefix(other, urls.get(1))).join(),
+                "Rejected request should be left to the caller");
+        Assert.assertEquals(other.getFailureCount(), 1L);
+    }
+
+    /**
+     * Test that the members must include this node.
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testSelfNotMember() {
+        createGroup(getUrls(nodes), "http://localhost:1");
+    }
+
+    /**
+     * Test that members must be reached over HTTP or HTTPS.
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidMemberUrl() {
+        List<String> urls = getUrls(nodes);
+        urls.add("ftp://localhost:1");
+        createGroup(urls, urls.get(0));
+    }
+
+    private PeerGroup createGroup(List<String> urls, String selfUrl) {
+        // Trailing slashes and blanks are ignored
+        List<String> memberUrls = new ArrayList<>();
+        for (String url : urls) {
+            memberUrls.add(" " + url + "/");
+        }
+        PeerGroup group = new PeerGroup(memberUrls, selfUrl, SECRET, VIRTUAL_NODES, FAILURE_THRESHOLD,
+                RETRY_INTERVAL, 1, 2000L, clock::get);
+        groups.add(group);
+        return group;
+    }
+
+    private static List<String> getUrls(List<PeerNode> nodes) {
+        List<String> urls = new ArrayList<>();
+        for (PeerNode node : nodes) {
+            urls.add(node.url);
+        }
+        return urls;
+    }
+
+    private static String findPrefix(PeerGroup group, String ownerUrl) {
+        for (int prefix = 0; prefix < HexUtils.PREFIX_COUNT; prefix++) {
+            String hashPrefix = HexUtils.encodePrefix(prefix);
+            if (group.getOwnerUrl(hashPrefix).equals(ownerUrl)) {
+                return hashPrefix;
+            }
+        }
+        throw new AssertionError("No prefix is owned by " + ownerUrl);
+    }
+
+    /**
+     * Member of the cluster that serves a range with its own count on the peer range path.
+     */
+    private static final class PeerNode {
+
+        private final HttpServer server;
+        private final String url;
+        private final int count;
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile int status = 200;
+        private volatile String lastPrefix;
+        private volatile String lastApiKey;
+        private boolean stopped;
+
+        private PeerNode(int index) throws IOException {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.createContext(Constants.HIBP_PEER_SERVLET_PATH + "/", this::handle);
+            server.start();
+            url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+            count = index + 1;
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+            lastPrefix = path.substring(path.lastIndexOf('/') + 1);
+            lastApiKey = exchange.getRequestHeaders().getFirst(Constants.HIBP_API_KEY_HEADER);
+            int responseStatus = SECRET.equals(exchange.getRequestHeaders().getFirst(
+                    Constants.HIBP_PEER_SECRET_HEADER)) ? status : 401;
+            byte[] body = responseStatus == 200 ? (SUFFIX + ":" + count + "\r\n").getBytes(StandardCharsets.US_ASCII)
+                    : new byte[0];
+            exchange.sendResponseHeaders(responseStatus, body.length == 0 ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+
+        private void stop() {
+            if (!stopped) {
+                server.stop(0);
+                stopped = true;
+            }
+        }
+    }
+}
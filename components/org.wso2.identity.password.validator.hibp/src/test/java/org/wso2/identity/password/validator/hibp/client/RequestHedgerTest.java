@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.client;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tests for the RequestHedger class.
+ */
+public class RequestHedgerTest {
+
+    private static final long TIMEOUT_SECONDS = 5L;
+
+    private RequestHedger requestHedger;
+
+    @AfterMethod
+    public void tearDown() {
+        if (requestHedger != null) {
+            requestHedger.close();
+        }
+    }
+
+    /**
+     * Test that no request is hedged until enough latencies have been recorded to estimate the hedge delay.
+     */
+    @Test
+    public void testNoHedgeWithoutLatencies() throws Exception {
+        requestHedger = new RequestHedger(95.0, 0L, 100, 4);
+        Assert.assertEquals(requestHedger.getDelayMicros(), -1L);
+
+        CompletableFuture<String> first = new CompletableFuture<>();
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<String> result = requestHedger.execute(attempt -> {
+            attempts.incrementAndGet();
+            return first;
+        });
+        Thread.sleep(50L);
+        Assert.assertFalse(result.isDone());
+        first.complete("first");
+        Assert.assertEquals(result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS), "first");
+        Assert.assertEquals(attempts.get(), 1);
+        Assert.assertEquals(requestHedger.getHedgeCount(), 0L);
+    }
+
+    /**
+     * Test that a slow request is hedged, that the hedge response is used, and that the slow attempt is cancelled.
+     */
+    @Test
+    public void testHedgeWins() throws Exception {
+        requestHedger = newWarmRequestHedger(100, 4);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> result = requestHedger.execute(attempt -> attempt == 0 ? first
+                : CompletableFuture.completedFuture("hedge"));
+
+        Assert.assertEquals(result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS), "hedge");
+        waitFor(first::isCancelled);
+        Assert.assertTrue(first.isCancelled(), "The slow attempt should be cancelled");
+        Assert.assertEquals(requestHedger.getHedgeCount(), 1L);
+        Assert.assertEquals(requestHedger.getHedgeWinCount(), 1L);
+    }
+
+    /**
+     * Test that a request that completes before the hedge delay is not hedged.
+     */
+    @Test
+    public void testFirstAttemptWins() throws Exception {
+        requestHedger = newWarmRequestHedger(100, 4);
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<String> result = requestHedger.execute(attempt -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.completedFuture("first");
+        });
+
+        Assert.assertEquals(result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS), "first");
+        Thread.sleep(50L);
+        Assert.assertEquals(attempts.get(), 1);
+        Assert.assertEquals(requestHedger.getHedgeCount(), 0L);
+    }
+
+    /**
+     * Test that a request fails only once both attempts have failed, with the first failure.
+     */
+    @Test
+    public void testBothAttemptsFail() throws Exception {
+        requestHedger = newWarmRequestHedger(100, 4);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> hedge = new CompletableFuture<>();
+        CompletableFuture<String> result = requestHedger.execute(attempt -> attempt == 0 ? first : hedge);
+        waitFor(() -> requestHedger.getHedgeCount() == 1);
+        Assert.assertEquals(requestHedger.getHedgeCount(), 1L);
+
+        IOException failure = new IOException("first");
+        first.completeExceptionally(failure);
+        Assert.assertFalse(result.isDone(), "The request should wait for the hedge");
+        hedge.completeExceptionally(new IOException("hedge"));
+        try {
+            result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            Assert.fail("The request should fail");
+        } catch (ExecutionException e) {
+            Assert.assertSame(e.getCause(), failure);
+        }
+    }
+
+    /**
+     * Test that requests are not hedged once the hedge budget is spent.
+     */
+    @Test
+    public void testBudget() throws Exception {
+        requestHedger = newWarmRequestHedger(0, 4);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<String> result = requestHedger.execute(attempt -> {
+            attempts.incrementAndGet();
+            return first;
+        });
+        waitFor(() -> requestHedger.getBudgetExhaustedCount() == 1);
+        Assert.assertEquals(requestHedger.getBudgetExhaustedCount(), 1L);
+        Assert.assertFalse(result.isDone(), "The request should still wait for the first attempt");
+
+        first.complete("first");
+        Assert.assertEquals(result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS), "first");
+        Assert.assertEquals(attempts.get(), 1);
+        Assert.assertEquals(requestHedger.getHedgeCount(), 0L);
+    }
+
+    /**
+     * Test that a request is not hedged while all the hedge threads are busy.
+     */
+    @Test
+    public void testSaturated() throws Exception {
+        requestHedger = newWarmRequestHedger(100, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            requestHedger.getExecutor().execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            CompletableFuture<String> first = new CompletableFuture<>();
+            CompletableFuture<String> result = requestHedger.execute(attempt -> attempt == 0 ? first
+                    : CompletableFuture.supplyAsync(() -> "hedge", requestHedger.getExecutor()));
+            waitFor(() -> requestHedger.getSaturatedCount() == 1);
+            Assert.assertEquals(requestHedger.getSaturatedCount(), 1L);
+            Assert.assertEquals(requestHedger.getHedgeCount(), 0L);
+            Assert.assertFalse(result.isDone(), "The request should still wait for the first attempt");
+
+            first.complete("first");
+            Assert.assertEquals(result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS), "first");
+            Assert.assertEquals(requestHedger.getBudgetExhaustedCount(), 0L);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * Create a hedger that has recorded enough latencies of 1ms to hedge requests after about 1ms.
+     */
+    private static RequestHedger newWarmRequestHedger(int budgetPercent, int maxThreads) {
+        RequestHedger requestHedger = new RequestHedger(95.0, 0L, budgetPercent, maxThreads);
+        for (int i = 0; i < RequestHedger.MIN_SAMPLES; i++) {
+            requestHedger.getLatencyHistogram().record(1L, TimeUnit.MILLISECONDS);
+        }
+        return requestHedger;
+    }
+
+    /**
+     * Wait for a condition that is met by another thread.
+     */
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(1L);
+        }
+    }
+}
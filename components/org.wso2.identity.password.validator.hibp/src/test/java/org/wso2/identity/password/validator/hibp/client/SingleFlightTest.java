@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.identity.password.validator.hibp.client;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.identity.password.validator.hibp.exception.HIBPUnavailableException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the SingleFlight class.
+ */
+public class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+    private static final long WAIT_TIMEOUT = 10000L;
+
+    /**
+     * Test that concurrent callers of the same key share a single load.
+     */
+    @Test
+    public void testExecute_Shared() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = runConcurrently(singleFlight, "21BD1", () -> {
+            loads.incrementAndGet();
+            release.await();
+            return "range";
+        }, release);
+
+        for (Future<String> result : results) {
+            Assert.assertEquals(result.get(10, TimeUnit.SECONDS), "range");
+        }
+        Assert.assertEquals(loads.get(), 1);
+        Assert.assertEquals(singleFlight.getLoadCount(), 1L);
+        Assert.assertEquals(singleFlight.getSharedCount(), CALLERS - 1L);
+
+        // A completed load is not kept
+        Assert.assertEquals(singleFlight.execute("21BD1", () -> "next", WAIT_TIMEOUT), "next");
+    }
+
+    /**
+     * Test that the failure of a shared load is thrown to every caller waiting for it.
+     */
+    @Test
+    public void testExecute_Failure() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        IOException failure = new IOException("HIBP API is not available");
+
+        List<Future<String>> results = runConcurrently(singleFlight, "21BD1", () -> {
+            release.await();
+            throw failure;
+        }, release);
+
+        for (Future<String> result : results) {
+            try {
+                result.get(10, TimeUnit.SECONDS);
+                Assert.fail("Failed load should fail every caller");
+            } catch (ExecutionException e) {
+                Assert.assertSame(e.getCause(), failure);
+            }
+        }
+        Assert.assertEquals(singleFlight.getLoadCount(), 1L);
+    }
+
+    /**
+     * Test that asynchronous and blocking callers of the same key share a single load.
+     */
+    @Test
+    public void testExecuteAsync() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CompletableFuture<String> load = new CompletableFuture<>();
+
+        CompletableFuture<String> first = singleFlight.executeAsync("21BD1", () -> load);
+        CompletableFuture<String> second = singleFlight.executeAsync("21BD1", () -> {
+            throw new AssertionError("Shared key should not be loaded again");
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> blocking = executor.submit(() -> singleFlight.execute("21BD1", () -> {
+                throw new AssertionError("Shared key should not be loaded again");
+            }, WAIT_TIMEOUT));
+            while (singleFlight.getSharedCount() < 2) {
+                Thread.sleep(1);
+            }
+            Assert.assertFalse(first.isDone());
+
+            load.complete("range");
+            Assert.assertEquals(first.get(10, TimeUnit.SECONDS), "range");
+            Assert.assertEquals(second.get(10, TimeUnit.SECONDS), "range");
+            Assert.assertEquals(blocking.get(10, TimeUnit.SECONDS), "range");
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(singleFlight.getLoadCount(), 1L);
+    }
+
+    /**
+     * Test that a blocking caller stops waiting for an asynchronous load that does not complete in time.
+     */
+    @Test
+    public void testExecute_WaitTimeout() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CompletableFuture<String> load = new CompletableFuture<>();
+        singleFlight.executeAsync("21BD1", () -> load);
+
+        try {
+            singleFlight.execute("21BD1", () -> {
+                throw new AssertionError("Shared key should not be loaded again");
+            }, 50L);
+            Assert.fail("Blocking caller should not wait for the load in flight forever");
+        } catch (HIBPUnavailableException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        load.complete("range");
+        Assert.assertEquals(singleFlight.getLoadCount(), 1L);
+        Assert.assertEquals(singleFlight.getSharedCount(), 1L);
+    }
+
+    /**
+     * Start concurrent callers of the same key and release the load once all of them have joined it.
+     */
+    private static List<Future<String>> runConcurrently(SingleFlight<String, String> singleFlight, String key,
+                                                        Callable<String> loader,
+                                                        CountDownLatch release) throws InterruptedException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        List<Future<String>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> singleFlight.execute(key, loader, WAIT_TIMEOUT)));
+            }
+            while (singleFlight.getSharedCount() < CALLERS - 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+        } finally {
+            executor.shutdown();
+        }
+        return results;
+    }
+}
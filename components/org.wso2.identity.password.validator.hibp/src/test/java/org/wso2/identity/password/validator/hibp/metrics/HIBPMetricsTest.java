@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.metrics;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the HIBPMetrics class.
+ */
+public class HIBPMetricsTest {
+
+    /**
+     * Test that stage latencies are exported as cumulative Prometheus histograms in seconds.
+     */
+    @Test
+    public void testStageHistogram() {
+        HIBPMetrics metrics = new HIBPMetrics();
+        LatencyDistribution latencies = metrics.getLatencies(HIBPMetrics.Stage.FETCH);
+        latencies.record(50, TimeUnit.MICROSECONDS);
+        latencies.record(2, TimeUnit.MILLISECONDS);
+        latencies.record(20, TimeUnit.SECONDS);
+        Assert.assertEquals(latencies.getCount(), 3L);
+        Assert.assertEquals(latencies.getSumMicros(), 20002050L);
+        Assert.assertEquals(latencies.getCountAtMost(100L), 1L);
+        Assert.assertTrue(latencies.getPercentileMicros(50.0) >= 2000L);
+
+        String text = write(metrics);
+        Assert.assertTrue(text.contains("# TYPE hibp_lookup_stage_duration_seconds histogram\n"));
+        String bucket = "hibp_lookup_stage_duration_seconds_bucket{stage=\"fetch\",le=";
+        Assert.assertTrue(text.contains(bucket + "\"0.0001\"} 1\n"));
+        Assert.assertTrue(text.contains(bucket + "\"0.0025\"} 2\n"));
+        Assert.assertTrue(text.contains(bucket + "\"10\"} 2\n"));
+        Assert.assertTrue(text.contains(bucket + "\"+Inf\"} 3\n"));
+        Assert.assertTrue(text.contains("hibp_lookup_stage_duration_seconds_sum{stage=\"fetch\"} 20.00205\n"));
+        Assert.assertTrue(text.contains("hibp_lookup_stage_duration_seconds_count{stage=\"fetch\"} 3\n"));
+        Assert.assertTrue(text.contains("hibp_lookup_stage_duration_seconds_count{stage=\"total\"} 0\n"));
+    }
+
+    /**
+     * Test that responses of the HIBP API are counted by status code.
+     */
+    @Test
+    public void testUpstreamStatus() {
+        HIBPMetrics metrics = new HIBPMetrics();
+        metrics.countUpstreamStatus(200);
+        metrics.countUpstreamStatus(200);
+        metrics.countUpstreamStatus(429);
+
+        String text = write(metrics);
+        Assert.assertTrue(text.contains("hibp_upstream_responses_total{status=\"200\"} 2\n"));
+        Assert.assertTrue(text.contains("hibp_upstream_responses_total{status=\"429\"} 1\n"));
+    }
+
+    /**
+     * Test that failed lookups are counted by tenant, that tenant domains are escaped, and that tenants beyond the
+     * limit are counted together.
+     */
+    @Test
+    public void testTenantErrors() {
+        HIBPMetrics metrics = new HIBPMetrics();
+        metrics.countError("wso2.com", true);
+        metrics.countError("wso2.com", false);
+        metrics.countError("wso2.com", false);
+        metrics.countError("a\"b", false);
+
+        String text = write(metrics);
+        Assert.assertTrue(text.contains("hibp_lookup_errors_total{tenant=\"wso2.com\",reason=\"unavailable\"} 1\n"));
+        Assert.assertTrue(text.contains("hibp_lookup_errors_total{tenant=\"wso2.com\",reason=\"error\"} 2\n"));
+        Assert.assertTrue(text.contains("hibp_lookup_errors_total{tenant=\"a\\\"b\",reason=\"error\"} 1\n"));
+
+        for (int i = 0; i < HIBPMetrics.MAX_TENANTS; i++) {
+            metrics.countError("tenant" + i + ".com", false);
+        }
+        text = write(metrics);
+        Assert.assertTrue(text.contains("tenant=\"" + HIBPMetrics.OTHER_TENANTS + "\",reason=\"error\"} 2\n"),
+                "Tenants beyond the limit should be counted together");
+        Assert.assertFalse(text.contains("tenant=\"tenant" + (HIBPMetrics.MAX_TENANTS - 1) + ".com\""));
+    }
+
+    private static String write(HIBPMetrics metrics) {
+        PrometheusTextWriter writer = new PrometheusTextWriter();
+        metrics.writeTo(writer);
+        return writer.toString();
+    }
+}
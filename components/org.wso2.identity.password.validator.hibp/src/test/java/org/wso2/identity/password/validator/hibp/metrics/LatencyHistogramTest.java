@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.metrics;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for the LatencyHistogram class.
+ */
+public class LatencyHistogramTest {
+
+    private static final long WINDOW_MILLIS = 60000L;
+
+    /**
+     * Test that every value falls in a bucket whose upper bound is at most 12.5% above it.
+     */
+    @Test
+    public void testBuckets() {
+        long[] values = {0L, 1L, 15L, 16L, 17L, 31L, 32L, 1000L, 999999L, 123456789L, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            long upperBound = LatencyHistogram.upperBoundOf(bucket);
+            Assert.assertTrue(upperBound >= value, "Value " + value + " is above its bucket");
+            Assert.assertTrue(upperBound - value <= value / 8, "Bucket of value " + value + " is too wide");
+            if (bucket > 0) {
+                Assert.assertTrue(LatencyHistogram.upperBoundOf(bucket - 1) < value,
+                        "Value " + value + " belongs to a lower bucket");
+            }
+        }
+        Assert.assertEquals(LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)), Long.MAX_VALUE);
+    }
+
+    /**
+     * Test percentiles of recorded latencies.
+     */
+    @Test
+    public void testGetPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram(WINDOW_MILLIS);
+        Assert.assertEquals(histogram.getPercentileMicros(50.0), -1L);
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i, TimeUnit.MILLISECONDS);
+        }
+        Assert.assertEquals(histogram.getCount(), 100L);
+        assertApproximately(histogram.getPercentileMicros(50.0), 50000L);
+        assertApproximately(histogram.getPercentileMicros(95.0), 95000L);
+        assertApproximately(histogram.getPercentileMicros(100.0), 100000L);
+        assertApproximately(histogram.getPercentileMicros(0.0), 1000L);
+    }
+
+    /**
+     * Test that latencies are dropped once they are older than two windows.
+     */
+    @Test
+    public void testWindows() {
+        AtomicLong now = new AtomicLong(1000000L);
+        LatencyHistogram histogram = new LatencyHistogram(WINDOW_MILLIS, now::get);
+        histogram.record(100, TimeUnit.MICROSECONDS);
+
+        now.addAndGet(WINDOW_MILLIS);
+        histogram.record(10, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(histogram.getCount(), 2L);
+        assertApproximately(histogram.getPercentileMicros(100.0), 10000L);
+
+        now.addAndGet(WINDOW_MILLIS);
+        Assert.assertEquals(histogram.getCount(), 1L, "The first latency should have been dropped");
+        assertApproximately(histogram.getPercentileMicros(0.0), 10000L);
+
+        now.addAndGet(2 * WINDOW_MILLIS);
+        Assert.assertEquals(histogram.getCount(), 0L);
+        Assert.assertEquals(histogram.getPercentileMicros(50.0), -1L);
+    }
+
+    private static void assertApproximately(long actual, long expected) {
+        Assert.assertTrue(actual >= expected && actual <= expected + expected / 8,
+                "Expected about " + expected + " but got " + actual);
+    }
+}
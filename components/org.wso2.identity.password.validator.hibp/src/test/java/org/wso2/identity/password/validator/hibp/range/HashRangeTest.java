@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.range;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Tests for the HashRange class.
+ */
+public class HashRangeTest {
+
+    /**
+     * Test that hashes added out of order can still be looked up.
+     */
+    @Test
+    public void testUnsortedInput() {
+        HashRange range = new HashRange.Builder()
+                .add(HexUtils.decodeSuffix("FFFDB9B6B6B2D8B0E6C0C6C9E9F0A7E1F24"), 0, 1)
+                .add(HexUtils.decodeSuffix("0018A45C4D1DEF81644B54AB7F969B88D65"), 0, 2)
+                .add(HexUtils.decodeSuffix("80D4F6E8FA6EECAD2A3AA415EEC418D38EC"), 0, 3)
+                .build();
+
+        Assert.assertEquals(range.getCount("FFFDB9B6B6B2D8B0E6C0C6C9E9F0A7E1F24"), 1);
+        Assert.assertEquals(range.getCount("0018A45C4D1DEF81644B54AB7F969B88D65"), 2);
+        Assert.assertEquals(range.getCount("80D4F6E8FA6EECAD2A3AA415EEC418D38EC"), 3);
+    }
+
+    /**
+     * Test lookups in a range of a realistic size, including suffixes that are not in the range.
+     */
+    @Test
+    public void testLookupInLargeRange() {
+        Random random = new Random(42);
+        int size = 1000;
+        String[] suffixes = new String[size];
+        StringBuilder response = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            // Even values only, so that odd values are guaranteed to be absent.
+            suffixes[i] = String.format("%03X%016X%016X", i, random.nextLong(), random.nextLong() & ~1L);
+            response.append(suffixes[i]).append(':').append(i + 1).append("\r\n");
+        }
+
+        HashRange range = RangeParser.parse(response.toString());
+
+        Assert.assertEquals(range.size(), size);
+        for (int i = 0; i < size; i++) {
+            Assert.assertEquals(range.getCount(suffixes[i]), i + 1, "Count mismatch for " + suffixes[i]);
+            String absent = suffixes[i].substring(0, 34) + "1";
+            Assert.assertEquals(range.getCount(absent), 0, "Absent suffix should have a count of 0");
+        }
+    }
+
+    /**
+     * Test that invalid suffixes are reported as not found.
+     */
+    @Test
+    public void testInvalidSuffix() {
+        HashRange range = RangeParser.parse("0018A45C4D1DEF81644B54AB7F969B88D65:3");
+
+        Assert.assertEquals(range.getCount(null), 0);
+        Assert.assertEquals(range.getCount("0018A45C4D"), 0);
+        Assert.assertEquals(range.getCount("0018A45C4D1DEF81644B54AB7F969B88D6Z"), 0);
+    }
+
+    /**
+     * Test lookups by digest, whatever the high nibble of the first suffix byte, i.e. the last prefix character.
+     */
+    @Test
+    public void testGetDigestCount() {
+        Random random = new Random(42);
+        int size = 1000;
+        String[] hashes = new String[size];
+        StringBuilder response = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            // The prefix differs from hash to hash, only the suffix is part of the range.
+            hashes[i] = String.format("%02X%03X%03X%016X%016X", random.nextInt(256), random.nextInt(4096), i,
+                    random.nextLong(), random.nextLong() & ~1L);
+            response.append(hashes[i].substring(5)).append(':').append(i + 1).append("\r\n");
+        }
+
+        HashRange range = RangeParser.parse(response.toString());
+
+        for (int i = 0; i < size; i++) {
+            byte[] digest = HexUtils.decodeHash(hashes[i]);
+            Assert.assertEquals(range.getDigestCount(digest, 0), i + 1, "Count mismatch for " + hashes[i]);
+            Assert.assertEquals(HexUtils.encodePrefix(digest, 0), hashes[i].substring(0, 5));
+            Assert.assertEquals(HexUtils.encodeHash(digest, 0), hashes[i]);
+
+            digest[HexUtils.DIGEST_BYTES - 1] ^= 1;
+            Assert.assertEquals(range.getDigestCount(digest, 0), 0, "Absent suffix should have a count of 0");
+        }
+        Assert.assertEquals(HashRange.empty().getDigestCount(new byte[HexUtils.DIGEST_BYTES], 0), 0);
+    }
+
+    /**
+     * Test that a written range is in the format of the HIBP API and is parsed back to the same hashes.
+     */
+    @Test
+    public void testWriteTo() throws Exception {
+        HashRange range = RangeParser.parse("0018A45C4D1DEF81644B54AB7F969B88D65:10\r\n"
+                + "FFFDB9B6B6B2D8B0E6C0C6C9E9F0A7E1F24:2147483647");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        range.writeTo(out);
+
+        String written = new String(out.toByteArray(), StandardCharsets.US_ASCII);
+        Assert.assertEquals(written, "0018A45C4D1DEF81644B54AB7F969B88D65:10\r\n"
+                + "FFFDB9B6B6B2D8B0E6C0C6C9E9F0A7E1F24:2147483647\r\n");
+        HashRange parsed = RangeParser.parse(written);
+        Assert.assertEquals(parsed.size(), 2);
+        Assert.assertEquals(parsed.getCount("FFFDB9B6B6B2D8B0E6C0C6C9E9F0A7E1F24"), Integer.MAX_VALUE);
+    }
+}
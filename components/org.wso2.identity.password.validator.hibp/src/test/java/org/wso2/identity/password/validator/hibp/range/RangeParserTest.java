@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.range;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests for the RangeParser class.
+ */
+public class RangeParserTest {
+
+    /**
+     * Test parsing a sample HIBP API response.
+     */
+    @Test
+    public void testParse() {
+        // Example HIBP API response format (hash suffix:count pairs)
+        String response =
+                "0018A45C4D1DEF81644B54AB7F969B88D65:3\r\n" +
+                "00D4F6E8FA6EECAD2A3AA415EEC418D38EC:42\r\n" +
+                "FFFDB9B6B6B2D8B0E6C0C6C9E9F0A7E1F24:1337";
+
+        HashRange range = RangeParser.parse(response);
+
+        Assert.assertEquals(range.size(), 3, "Range should contain 3 entries");
+        Assert.assertEquals(range.getCount("0018A45C4D1DEF81644B54AB7F969B88D65"), 3);
+        Assert.assertEquals(range.getCount("00D4F6E8FA6EECAD2A3AA415EEC418D38EC"), 42);
+        Assert.assertEquals(range.getCount("FFFDB9B6B6B2D8B0E6C0C6C9E9F0A7E1F24"), 1337);
+        Assert.assertEquals(range.getCount("0018A45C4D1DEF81644B54AB7F969B88D66"), 0,
+                "Suffix not in the response should have a count of 0");
+    }
+
+    /**
+     * Test that lines separated only by a line feed are parsed.
+     */
+    @Test
+    public void testParseWithLineFeeds() {
+        HashRange range = RangeParser.parse(
+                "0018A45C4D1DEF81644B54AB7F969B88D65:3\n00D4F6E8FA6EECAD2A3AA415EEC418D38EC:42\n");
+
+        Assert.assertEquals(range.size(), 2, "Range should contain 2 entries");
+        Assert.assertEquals(range.getCount("00D4F6E8FA6EECAD2A3AA415EEC418D38EC"), 42);
+    }
+
+    /**
+     * Test that an empty response results in an empty range.
+     */
+    @Test
+    public void testParseEmptyResponse() {
+        Assert.assertTrue(RangeParser.parse("").isEmpty(), "Range should be empty for empty input");
+        Assert.assertTrue(RangeParser.parse((String) null).isEmpty(), "Range should be empty for null input");
+    }
+
+    /**
+     * Test that malformed lines are skipped.
+     */
+    @Test
+    public void testParseMalformedResponse() {
+        String response =
+                "0018A45C4D1DEF81644B54AB7F969B88D65\r\n" +         // missing count
+                "0018A45C4D1DEF81644B54AB7F969B88D6:3\r\n" +        // short suffix
+                "0018A45C4D1DEF81644B54AB7F969B88D6X:3\r\n" +       // non hex suffix
+                "00D4F6E8FA6EECAD2A3AA415EEC418D38EC:4x\r\n" +      // non numeric count
+                "FFFDB9B6B6B2D8B0E6C0C6C9E9F0A7E1F24:7";
+
+        HashRange range = RangeParser.parse(response);
+
+        Assert.assertEquals(range.size(), 1, "Only the well formed line should be parsed");
+        Assert.assertEquals(range.getCount("FFFDB9B6B6B2D8B0E6C0C6C9E9F0A7E1F24"), 7);
+    }
+
+    /**
+     * Test that padding entries, which have a count of 0, are not kept.
+     */
+    @Test
+    public void testParseSkipsPadding() {
+        HashRange range = RangeParser.parse(
+                "0018A45C4D1DEF81644B54AB7F969B88D65:0\r\n00D4F6E8FA6EECAD2A3AA415EEC418D38EC:42");
+
+        Assert.assertEquals(range.size(), 1, "Padding entry should be skipped");
+    }
+
+    /**
+     * Test that lower case suffixes are decoded the same way as upper case suffixes.
+     */
+    @Test
+    public void testParseLowerCase() {
+        HashRange range = RangeParser.parse("00d4f6e8fa6eecad2a3aa415eec418d38ec:42");
+
+        Assert.assertEquals(range.getCount("00D4F6E8FA6EECAD2A3AA415EEC418D38EC"), 42);
+    }
+
+    /**
+     * Test that a streamed response spanning several read buffers is parsed completely.
+     */
+    @Test
+    public void testParseStream() throws IOException {
+        StringBuilder response = new StringBuilder();
+        for (int i = 1; i <= 2000; i++) {
+            response.append(String.format("%035X", i)).append(':').append(i).append("\r\n");
+        }
+        InputStream in = new ByteArrayInputStream(response.toString().getBytes(StandardCharsets.US_ASCII));
+
+        HashRange range = RangeParser.parse(in);
+
+        Assert.assertEquals(range.size(), 2000);
+        Assert.assertEquals(range.getCount(String.format("%035X", 1234)), 1234);
+    }
+}
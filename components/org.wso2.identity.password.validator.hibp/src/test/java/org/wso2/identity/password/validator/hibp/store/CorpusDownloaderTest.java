@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.store;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.identity.password.validator.hibp.client.HIBPHttpClientManager;
+import org.wso2.identity.password.validator.hibp.internal.HIBPDataHolder;
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+import org.wso2.identity.password.validator.hibp.util.Constants;
+import org.wso2.identity.password.validator.hibp.util.StubHIBPServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Tests for the CorpusDownloader class against a local stub of the HIBP range API.
+ */
+public class CorpusDownloaderTest {
+
+    /**
+     * Only the first prefixes are fetched, the others are treated as empty.
+     */
+    private static final int PREFIX_LIMIT = 16;
+
+    private StubHIBPServer server;
+    private HIBPHttpClientManager httpClientManager;
+    private Path directory;
+    private Path index;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        server = new StubHIBPServer();
+        server.setRange("00000", "00000000000000000000000000000000001:3\r\n"
+                + "00018A45C4D1DEF81644B54AB7F969B88D6:10\r\n");
+        server.setRange("00003", "D4F6E8FA6EECAD2A3AA415EEC418D38EC00:42\r\n");
+        server.setRange("0000F", "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF:7\r\n");
+        System.setProperty(Constants.API_URL, server.getRangeUrl());
+        httpClientManager = new HIBPHttpClientManager(4, 4, 60000L, 30000L);
+        HIBPDataHolder.getInstance().setHttpClientManager(httpClientManager);
+        directory = Files.createTempDirectory("hibp-download");
+        index = directory.resolve("pwned-passwords.idx");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        HIBPDataHolder.getInstance().setHttpClientManager(null);
+        httpClientManager.close();
+        System.clearProperty(Constants.API_URL);
+        server.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Test downloading every prefix into an index file.
+     */
+    @Test
+    public void testDownload() throws Exception {
+        CorpusDownloader downloader = new CorpusDownloader(index, null, 4, 0, PREFIX_LIMIT, 1L);
+
+        Assert.assertEquals(downloader.download(), 4L);
+
+        Assert.assertEquals(server.getRequestCount(), PREFIX_LIMIT);
+        Assert.assertEquals(downloader.getFetchedCount(), PREFIX_LIMIT);
+        Assert.assertTrue(downloader.getRangesPerSecond() > 0);
+        assertIndex();
+        Assert.assertFalse(Files.exists(directory.resolve("pwned-passwords.idx.part")));
+        Assert.assertFalse(Files.exists(directory.resolve("pwned-passwords.idx.checkpoint")));
+    }
+
+    /**
+     * Test that a failed download resumes after the last prefix it completed.
+     */
+    @Test
+    public void testResume() throws Exception {
+        server.failRequests("00008", 500, -1);
+        try {
+            new CorpusDownloader(index, null, 4, 0, PREFIX_LIMIT, 1L).download();
+            Assert.fail("Download should fail while a range cannot be fetched");
+        } catch (IOException e) {
+            // Expected
+        }
+        Assert.assertTrue(Files.exists(directory.resolve("pwned-passwords.idx.checkpoint")));
+        Assert.assertFalse(Files.exists(index));
+
+        server.clearFailures("00008");
+        int requestCount = server.getRequestCount();
+        Assert.assertEquals(new CorpusDownloader(index, null, 4, 0, PREFIX_LIMIT, 1L).download(), 4L);
+
+        // Only the prefixes from the failed one onwards are fetched again
+        Assert.assertEquals(server.getRequestCount() - requestCount, PREFIX_LIMIT - 8);
+        assertIndex();
+    }
+
+    /**
+     * Test that rate limited requests are retried without failing the download.
+     */
+    @Test
+    public void testRateLimited() throws Exception {
+        server.failRequests("00003", 429, 6);
+        CorpusDownloader downloader = new CorpusDownloader(index, null, 2, 1000, PREFIX_LIMIT, 1L);
+
+        Assert.assertEquals(downloader.download(), 4L);
+
+        Assert.assertEquals(downloader.getRateLimitedCount(), 6L);
+        Assert.assertEquals(downloader.getRetryCount(), 0L);
+        assertIndex();
+    }
+
+    private void assertIndex() throws IOException {
+        try (LocalPwnedPasswordStore store = LocalPwnedPasswordStore.open(index)) {
+            Assert.assertEquals(store.getCount(HexUtils.decodeHash("0000000000000000000000000000000000000001")), 3);
+            Assert.assertEquals(store.getCount(HexUtils.decodeHash("0000000018A45C4D1DEF81644B54AB7F969B88D6")), 10);
+            Assert.assertEquals(store.getCount(HexUtils.decodeHash("00003D4F6E8FA6EECAD2A3AA415EEC418D38EC00")), 42);
+            Assert.assertEquals(store.getCount(HexUtils.decodeHash("0000FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF")), 7);
+            Assert.assertEquals(store.getCount(HexUtils.decodeHash("00001D4F6E8FA6EECAD2A3AA415EEC418D38EC00")), 0);
+        }
+        try (CorpusImporter importer = new CorpusImporter(1, new PrintStream(new ByteArrayOutputStream()))) {
+            Assert.assertTrue(importer.verify(index));
+        }
+    }
+}
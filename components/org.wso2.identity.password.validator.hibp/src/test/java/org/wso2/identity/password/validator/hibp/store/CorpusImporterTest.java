@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.store;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Tests for the CorpusImporter class.
+ */
+public class CorpusImporterTest {
+
+    private static final String[] CORPUS = {
+            "0000000000000000000000000000000000000001:1",
+            "21BD10018A45C4D1DEF81644B54AB7F969B88D65:10",
+            "21BD100D4F6E8FA6EECAD2A3AA415EEC418D38EC:42",
+            "21BD1FFFDB9B6B6B2D8B0E6C0C6C9E9F0A7E1F24:1337",
+            "7C4A8D09CA3762AF61E59520943DC26494F8941B:24230577",
+            "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF:7"
+    };
+
+    private Path directory;
+    private Path index;
+    private CorpusImporter importer;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("hibp-corpus");
+        index = directory.resolve("pwned-passwords.idx");
+        // Use small chunks so that the corpus is split into several shards.
+        importer = new CorpusImporter(4, 50, new PrintStream(new ByteArrayOutputStream()));
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        importer.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Test importing a single corpus file split into several chunks, with malformed lines and CRLF line endings.
+     */
+    @Test
+    public void testImportFile() throws IOException {
+        StringBuilder corpus = new StringBuilder();
+        for (String line : CORPUS) {
+            corpus.append(line).append("\r\n");
+            corpus.append("not a hash\r\n");
+        }
+        Path file = directory.resolve("pwned-passwords-sha1-ordered-by-hash.txt");
+        Files.write(file, corpus.toString().getBytes(StandardCharsets.US_ASCII));
+
+        Assert.assertEquals(importer.importCorpus(file, index), CORPUS.length);
+
+        assertIndex();
+        Assert.assertFalse(Files.exists(directory.resolve("pwned-passwords.idx.tmp")));
+    }
+
+    /**
+     * Test importing a directory with one file per prefix.
+     */
+    @Test
+    public void testImportPrefixFiles() throws IOException {
+        Path corpus = Files.createDirectory(directory.resolve("corpus"));
+        for (String line : CORPUS) {
+            Path file = corpus.resolve(line.substring(0, HexUtils.PREFIX_LENGTH) + ".txt");
+            Files.write(file, (line.substring(HexUtils.PREFIX_LENGTH) + "\n").getBytes(StandardCharsets.US_ASCII),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        Files.write(corpus.resolve("README"), "ignored".getBytes(StandardCharsets.US_ASCII));
+
+        Assert.assertEquals(importer.importCorpus(corpus, index), CORPUS.length);
+
+        assertIndex();
+    }
+
+    /**
+     * Test that a corpus that is not ordered by hash is rejected.
+     */
+    @Test(expectedExceptions = IOException.class)
+    public void testImportUnorderedFile() throws IOException {
+        Path file = directory.resolve("pwned-passwords-sha1-ordered-by-count.txt");
+        Files.write(file, (CORPUS[4] + "\n" + CORPUS[1] + "\n").getBytes(StandardCharsets.US_ASCII));
+
+        importer.importCorpus(file, index);
+    }
+
+    /**
+     * Test that verification detects a corrupted record.
+     */
+    @Test
+    public void testVerifyCorruptedIndex() throws IOException {
+        Path file = directory.resolve("corpus.txt");
+        Files.write(file, String.join("\n", CORPUS).getBytes(StandardCharsets.US_ASCII));
+        importer.importCorpus(file, index);
+        Assert.assertTrue(importer.verify(index));
+
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1}), LocalStoreFormat.RECORDS_POSITION + 30);
+        }
+
+        Assert.assertFalse(importer.verify(index));
+    }
+
+    private void assertIndex() throws IOException {
+        try (LocalPwnedPasswordStore store = LocalPwnedPasswordStore.open(index)) {
+            Assert.assertEquals(store.getRecordCount(), CORPUS.length);
+            for (String line : CORPUS) {
+                int separator = line.indexOf(':');
+                Assert.assertEquals(store.getCount(HexUtils.decodeHash(line.substring(0, separator))),
+                        Integer.parseInt(line.substring(separator + 1)), line);
+            }
+            Assert.assertEquals(store.getCount(HexUtils.decodeHash("21BD100D4F6E8FA6EECAD2A3AA415EEC418D38ED")), 0);
+        }
+        Assert.assertTrue(importer.verify(index));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.store;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Tests for the LocalPwnedPasswordStore and LocalStoreWriter classes.
+ */
+public class LocalPwnedPasswordStoreTest {
+
+    private Path storeFile;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        storeFile = Files.createTempFile("hibp-store", ".idx");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(storeFile);
+    }
+
+    /**
+     * Test looking up hashes of the same and of different prefixes, including hashes that are not stored.
+     */
+    @Test
+    public void testGetCount() throws IOException {
+        try (LocalStoreWriter writer = new LocalStoreWriter(storeFile)) {
+            writer.add(HexUtils.decodeHash("0000000000000000000000000000000000000001"), 0, 1);
+            writer.add(HexUtils.decodeHash("21BD10018A45C4D1DEF81644B54AB7F969B88D65"), 0, 10);
+            writer.add(HexUtils.decodeHash("21BD100D4F6E8FA6EECAD2A3AA415EEC418D38EC"), 0, 42);
+            writer.add(HexUtils.decodeHash("21BD1FFFDB9B6B6B2D8B0E6C0C6C9E9F0A7E1F24"), 0, 1337);
+            writer.add(HexUtils.decodeHash("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF"), 0, 7);
+        }
+
+        try (LocalPwnedPasswordStore store = LocalPwnedPasswordStore.open(storeFile)) {
+            Assert.assertEquals(store.getRecordCount(), 5L);
+            Assert.assertEquals(store.getCount(HexUtils.decodeHash("0000000000000000000000000000000000000001")), 1);
+            Assert.assertEquals(store.getCount(HexUtils.decodeHash("21BD10018A45C4D1DEF81644B54AB7F969B88D65")), 10);
+            Assert.assertEquals(store.getCount(HexUtils.decodeHash("21BD100D4F6E8FA6EECAD2A3AA415EEC418D38EC")), 42);
+            Assert.assertEquals(store.getCount(HexUtils.decodeHash("21BD1FFFDB9B6B6B2D8B0E6C0C6C9E9F0A7E1F24")),
+                    1337);
+            Assert.assertEquals(store.getCount(HexUtils.decodeHash("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF")), 7);
+
+            Assert.assertEquals(store.getCount(HexUtils.decodeHash("0000000000000000000000000000000000000000")), 0,
+                    "Hash of an empty prefix should not be found");
+            Assert.assertEquals(store.getCount(HexUtils.decodeHash("21BD100D4F6E8FA6EECAD2A3AA415EEC418D38ED")), 0,
+                    "Hash that is not stored should not be found");
+        }
+    }
+
+    /**
+     * Test that the writer rejects hashes that are not in ascending order.
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWriterRejectsUnsortedInput() throws IOException {
+        try (LocalStoreWriter writer = new LocalStoreWriter(storeFile)) {
+            writer.add(HexUtils.decodeHash("21BD1FFFDB9B6B6B2D8B0E6C0C6C9E9F0A7E1F24"), 0, 1);
+            writer.add(HexUtils.decodeHash("21BD10018A45C4D1DEF81644B54AB7F969B88D65"), 0, 1);
+        }
+    }
+
+    /**
+     * Test that a file that is not an index file is rejected.
+     */
+    @Test(expectedExceptions = IOException.class)
+    public void testOpenInvalidFile() throws IOException {
+        Files.write(storeFile, new byte[128]);
+
+        LocalPwnedPasswordStore.open(storeFile);
+    }
+}
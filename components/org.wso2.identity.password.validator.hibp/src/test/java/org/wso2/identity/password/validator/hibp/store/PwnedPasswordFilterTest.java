@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.store;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.identity.password.validator.hibp.range.HexUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests for the PwnedPasswordFilter and PwnedPasswordFilterBuilder classes.
+ */
+public class PwnedPasswordFilterTest {
+
+    private static final int HASH_COUNT = 20000;
+
+    private Path indexFile;
+    private Path filterFile;
+    private PwnedPasswordFilterBuilder builder;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        indexFile = Files.createTempFile("hibp-store", ".idx");
+        filterFile = Files.createTempFile("hibp-filter", ".bloom");
+        builder = new PwnedPasswordFilterBuilder(4, new PrintStream(new ByteArrayOutputStream()));
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        builder.close();
+        Files.deleteIfExists(indexFile);
+        Files.deleteIfExists(filterFile);
+    }
+
+    /**
+     * Test that every hash of the index is contained and that the false positive rate is close to the target.
+     */
+    @Test
+    public void testMightContain() throws IOException {
+        byte[][] hashes = randomHashes(new Random(42), HASH_COUNT);
+        Arrays.sort(hashes, Arrays::compareUnsigned);
+        try (LocalStoreWriter writer = new LocalStoreWriter(indexFile)) {
+            for (byte[] hash : hashes) {
+                writer.add(hash, 0, 1);
+            }
+        }
+
+        double expectedFalsePositiveRate = builder.build(indexFile, filterFile, 0.01, 0);
+        Assert.assertTrue(expectedFalsePositiveRate <= 0.011, "Expected rate: " + expectedFalsePositiveRate);
+
+        try (PwnedPasswordFilter filter = PwnedPasswordFilter.open(filterFile)) {
+            Assert.assertEquals(filter.getEntryCount(), HASH_COUNT);
+            for (byte[] hash : hashes) {
+                Assert.assertTrue(filter.mightContain(hash), "Filter should contain every hash of the index");
+            }
+
+            int falsePositives = 0;
+            byte[][] others = randomHashes(new Random(7), 100000);
+            for (byte[] other : others) {
+                if (filter.mightContain(other)) {
+                    falsePositives++;
+                }
+            }
+            Assert.assertTrue(falsePositives < 2000, "False positives: " + falsePositives);
+        }
+    }
+
+    /**
+     * Test the size and the number of hash functions chosen for a false positive rate.
+     */
+    @Test
+    public void testSizing() {
+        long bitCount = PwnedPasswordFilterBuilder.getBitCount(850000000L, 0.004);
+        // About 1.2 GB for the full corpus at 0.4%.
+        Assert.assertEquals(bitCount / Byte.SIZE >> 20, 1164L);
+        Assert.assertEquals(PwnedPasswordFilterBuilder.getHashCount(850000000L, bitCount), 8);
+        Assert.assertEquals(PwnedPasswordFilterBuilder.getHashCount(850000000L, 8L << 30), 7);
+        Assert.assertEquals(PwnedPasswordFilterBuilder.getHashCount(1, 1L << 20), PwnedPasswordFilter.MAX_HASH_COUNT);
+    }
+
+    /**
+     * Test that the filter size can be capped.
+     */
+    @Test
+    public void testMaxSize() throws IOException {
+        try (LocalStoreWriter writer = new LocalStoreWriter(indexFile)) {
+            writer.add(HexUtils.decodeHash("21BD10018A45C4D1DEF81644B54AB7F969B88D65"), 0, 10);
+        }
+
+        builder.build(indexFile, filterFile, 0.000001, 1);
+
+        try (PwnedPasswordFilter filter = PwnedPasswordFilter.open(filterFile)) {
+            Assert.assertEquals(filter.getBitCount(), Long.SIZE);
+            Assert.assertTrue(filter.mightContain(HexUtils.decodeHash("21BD10018A45C4D1DEF81644B54AB7F969B88D65")));
+        }
+    }
+
+    /**
+     * Test that a file that is not a filter file is rejected.
+     */
+    @Test(expectedExceptions = IOException.class)
+    public void testOpenInvalidFile() throws IOException {
+        Files.write(filterFile, new byte[128]);
+
+        PwnedPasswordFilter.open(filterFile);
+    }
+
+    private static byte[][] randomHashes(Random random, int count) {
+        byte[][] hashes = new byte[count][HexUtils.DIGEST_BYTES];
+        for (byte[] hash : hashes) {
+            random.nextBytes(hash);
+        }
+        return hashes;
+    }
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (https://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.identity.password.validator.hibp.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local HTTP server that serves HIBP range responses for tests.
+ *
+ * Ranges are served at "/range/{prefix}" along with an ETag derived from their content and the Last-Modified date of
+ * their last change. Conditional requests with a matching If-None-Match header, or an If-Modified-Since header that
+ * is not older than the last change, get a "304 Not Modified" response. Prefixes without a range get an empty one,
+ * or one generated from a synthetic corpus if enabled. Like the HIBP API, ranges are gzip compressed for requests that
+ * accept it.
+ *
+ * To stand in for the HIBP API under load, responses can be delayed and requests can be failed at random.
+ */
+public class StubHIBPServer implements Closeable {
+
+    private static final String RANGE_PATH = "/range/";
+
+    static {
+        // Without TCP_NODELAY, the body of a response is only sent once its headers are acknowledged, which the client
+        // delays by up to 40ms. This has to be set before the first server is created.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Range> ranges = new ConcurrentHashMap<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger notModifiedCount = new AtomicInteger();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final Map<String, Failure> failures = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Integer>> corpusSuffixes = new ConcurrentHashMap<>();
+    private final Set<String> rejectedApiKeys = ConcurrentHashMap.newKeySet();
+    private volatile int generatedRangeSize;
+    private volatile long latencyMillis;
+    private volatile long jitterMillis;
+    private volatile double tooManyRequestsRate;
+    private volatile double failureRate;
+
+    /**
+     * Start a server on a free local port.
+     *
+     * @throws IOException if the server cannot be started.
+     */
+    public StubHIBPServer() throws IOException {
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-hibp-server-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext(RANGE_PATH, this::handle);
+        server.start();
+    }
+
+    /**
+     * Get the base URL of the range API, to be set as the {@link Constants#API_URL} system property.
+     *
+     * @return base URL ending with "/range/".
+     */
+    public String getRangeUrl() {
+
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + RANGE_PATH;
+    }
+
+    /**
+     * Set the range served for a prefix. The ETag and Last-Modified date only change if the content changes.
+     *
+     * @param prefix 5 character hash prefix.
+     * @param body   range response, i.e. "SUFFIX:COUNT" lines.
+     */
+    public void setRange(String prefix, String body) {
+
+        ranges.compute(prefix, (key, range) -> range != null && range.body.equals(body) ? range : new Range(body));
+    }
+
+    /**
+     * Build a range response of random suffixes, in ascending order like the responses of the HIBP API.
+     *
+     * @param size number of suffixes.
+     * @return range response, i.e. "SUFFIX:COUNT" lines.
+     */
+    public static String buildRange(int size) {
+
+        Random random = new Random(size);
+        TreeSet<String> suffixes = new TreeSet<>();
+        char[] suffix = new char[35];
+        while (suffixes.size() < size) {
+            for (int i = 0; i < suffix.length; i++) {
+                suffix[i] = Character.toUpperCase(Character.forDigit(random.nextInt(16), 16));
+            }
+            suffixes.add(new String(suffix));
+        }
+        StringBuilder range = new StringBuilder();
+        for (String value : suffixes) {
+            range.append(value).append(':').append(1 + random.nextInt(10000)).append("\r\n");
+        }
+        return range.toString();
+    }
+
+    /**
+     * Serve ranges generated from a synthetic corpus for prefixes without a range, so that every prefix has a range of
+     * a realistic size. Generated ranges are the same for the same prefix and size.
+     *
+     * @param size number of suffixes of a generated range, or 0 to serve empty ranges.
+     */
+    public void generateRanges(int size) {
+
+        generatedRangeSize = size;
+    }
+
+    /**
+     * Add a password to the synthetic corpus, so that the generated range of its prefix contains it. Passwords must be
+     * added before the range of their prefix is first requested.
+     *
+     * @param password password.
+     * @param count    appearance count of the password.
+     * @throws Exception if the password cannot be hashed.
+     */
+    public void addPassword(String password, int count) throws Exception {
+
+        String hash = Utils.getSHA1(password);
+        corpusSuffixes.computeIfAbsent(hash.substring(0, 5), key -> new ConcurrentHashMap<>())
+                .put(hash.substring(5), count);
+    }
+
+    /**
+     * Delay every response, by the given latency plus a random jitter.
+     *
+     * @param latencyMillis minimum delay in milliseconds.
+     * @param jitterMillis  maximum random delay in milliseconds added to the latency.
+     */
+    public void setLatency(long latencyMillis, long jitterMillis) {
+
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    /**
+     * Fail requests at random, with "429 Too Many Requests" asking to retry after 0 seconds, or with "503 Service
+     * Unavailable".
+     *
+     * @param tooManyRequestsRate fraction of requests rejected with 429.
+     * @param failureRate         fraction of requests failed with 503.
+     */
+    public void setErrorRates(double tooManyRequestsRate, double failureRate) {
+
+        this.tooManyRequestsRate = tooManyRequestsRate;
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Fail the next requests for a prefix. "429 Too Many Requests" responses ask to retry after 0 seconds.
+     *
+     * @param prefix 5 character hash prefix.
+     * @param status status code of the failed responses.
+     * @param times  number of requests to fail, or -1 to fail every request.
+     */
+    public void failRequests(String prefix, int status, int times) {
+
+        failures.put(prefix, new Failure(status, times));
+    }
+
+    /**
+     * Reject every request sent with the given API key with "401 Unauthorized", like the HIBP API does for an invalid
+     * or revoked key.
+     *
+     * @param apiKey HIBP API key.
+     */
+    public void rejectApiKey(String apiKey) {
+
+        rejectedApiKeys.add(apiKey);
+    }
+
+    /**
+     * Stop failing requests for a prefix.
+     *
+     * @param prefix 5 character hash prefix.
+     */
+    public void clearFailures(String prefix) {
+
+        failures.remove(prefix);
+    }
+
+    public int getRequestCount() {
+
+        return requestCount.get();
+    }
+
+    public int getNotModifiedCount() {
+
+        return notModifiedCount.get();
+    }
+
+    /**
+     * Get the number of range body bytes sent, as transferred, i.e. after compression.
+     *
+     * @return number of bytes.
+     */
+    public long getBytesSent() {
+
+        return bytesSent.get();
+    }
+
+    @Override
+    public void close() {
+
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+
+        requestCount.incrementAndGet();
+        delay();
+        String apiKey = exchange.getRequestHeaders().getFirst(Constants.HIBP_API_KEY_HEADER);
+        if (apiKey != null && rejectedApiKeys.contains(apiKey)) {
+            sendFailure(exchange, 401);
+            return;
+        }
+        String prefix = exchange.getRequestURI().getPath().substring(RANGE_PATH.length());
+        Failure failure = failures.get(prefix);
+        if (failure != null && failure.remaining.getAndDecrement() != 0) {
+            sendFailure(exchange, failure.status);
+            return;
+        }
+        double random = ThreadLocalRandom.current().nextDouble();
+        if (random < tooManyRequestsRate) {
+            sendFailure(exchange, 429);
+            return;
+        }
+        if (random < tooManyRequestsRate + failureRate) {
+            sendFailure(exchange, 503);
+            return;
+        }
+        Range range = ranges.computeIfAbsent(prefix, key -> new Range(generateRange(key)));
+
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        boolean notModified = ifNoneMatch != null ? ifNoneMatch.equals(range.etag)
+                : ifModifiedSince != null && !ZonedDateTime.parse(ifModifiedSince,
+                DateTimeFormatter.RFC_1123_DATE_TIME).isBefore(range.lastModified);
+
+        exchange.getResponseHeaders().set("ETag", range.etag);
+        exchange.getResponseHeaders().set("Last-Modified",
+                DateTimeFormatter.RFC_1123_DATE_TIME.format(range.lastModified));
+        if (notModified) {
+            notModifiedCount.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = range.bytes;
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (body.length > 0 && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            body = range.getCompressedBytes();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        bytesSent.addAndGet(body.length);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain");
+        exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void delay() {
+
+        long delay = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void sendFailure(HttpExchange exchange, int status) throws IOException {
+
+        if (status == 429) {
+            exchange.getResponseHeaders().set("Retry-After", "0");
+        }
+        exchange.sendResponseHeaders(status, -1);
+        exchange.close();
+    }
+
+    /**
+     * Generate the range of a prefix from the synthetic corpus, or an empty range if generated ranges are disabled.
+     */
+    private String generateRange(String prefix) {
+
+        int size = generatedRangeSize;
+        if (size <= 0) {
+            return "";
+        }
+        Random random = new Random(prefix.hashCode() * 31L + size);
+        TreeMap<String, Integer> suffixes = new TreeMap<>(corpusSuffixes.getOrDefault(prefix,
+                Collections.emptyMap()));
+        char[] suffix = new char[35];
+        while (suffixes.size() < size) {
+            for (int i = 0; i < suffix.length; i++) {
+                suffix[i] = Character.toUpperCase(Character.forDigit(random.nextInt(16), 16));
+            }
+            suffixes.putIfAbsent(new String(suffix), 1 + random.nextInt(10000));
+        }
+        StringBuilder range = new StringBuilder(size * 42);
+        suffixes.forEach((value, count) -> range.append(value).append(':').append(count).append("\r\n"));
+        return range.toString();
+    }
+
+    /**
+     * Status code to fail requests with, and the number of requests left to fail.
+     */
+    private static final class Failure {
+
+        private final int status;
+        private final AtomicInteger remaining;
+
+        private Failure(int status, int times) {
+
+            this.status = status;
+            this.remaining = new AtomicInteger(times);
+        }
+    }
+
+    /**
+     * Range response along with its validators.
+     */
+    private static final class Range {
+
+        private final String body;
+        private final byte[] bytes;
+        private final String etag;
+        private final ZonedDateTime lastModified;
+        private volatile byte[] compressedBytes;
+
+        private Range(String body) {
+
+            CRC32 crc = new CRC32();
+            this.bytes = body.getBytes(StandardCharsets.US_ASCII);
+            crc.update(bytes);
+            this.body = body;
+            this.etag = "\"" + Long.toHexString(crc.getValue()) + "\"";
+            this.lastModified = ZonedDateTime.now(ZoneOffset.UTC).withNano(0);
+        }
+
+        /**
+         * Get the range gzip compressed, compressing it on first use.
+         */
+        private byte[] getCompressedBytes() throws IOException {
+
+            byte[] compressed = compressedBytes;
+            if (compressed == null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                    gzip.write(bytes);
+                }
+                compressed = out.toByteArray();
+                compressedBytes = compressed;
+            }
+            return compressed;
+        }
+    }
+}
@@ -18,12 +18,32 @@
 
 package org.wso2.identity.password.validator.hibp.util;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
+import org.mockito.Mockito;
 import org.testng.Assert;
 import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.common.model.Property;
+import org.wso2.carbon.identity.governance.IdentityGovernanceService;
+import org.wso2.identity.password.validator.hibp.cache.ConnectorConfigCache;
+import org.wso2.identity.password.validator.hibp.client.CircuitBreaker;
+import org.wso2.identity.password.validator.hibp.client.HIBPHttpClientManager;
+import org.wso2.identity.password.validator.hibp.client.RequestHedger;
+import org.wso2.identity.password.validator.hibp.exception.HIBPRateLimitException;
+import org.wso2.identity.password.validator.hibp.exception.HIBPUnavailableException;
+import org.wso2.identity.password.validator.hibp.internal.HIBPDataHolder;
+import org.wso2.identity.password.validator.hibp.metrics.HIBPMetrics;
+import org.wso2.identity.password.validator.hibp.metrics.PrometheusTextWriter;
 
-import java.util.Map;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests for the HIBP Utils class.
@@ -46,6 +66,23 @@ public class UtilsTest {
         Assert.assertEquals(count, 42, "Password appearance count in response should match the input");
     }
 
+    /**
+     * Test buildBatchResponse method that creates JSON response with the counts of a batch of passwords.
+     */
+    @Test
+    public void testBuildBatchResponse() {
+        String response = Utils.buildBatchResponse(new int[]{42, 0, 7});
+
+        JsonArray counts = new JsonParser().parse(response).getAsJsonObject()
+                .get(Constants.COUNTS_PARAM)
+                .getAsJsonArray();
+
+        Assert.assertEquals(counts.size(), 3);
+        Assert.assertEquals(counts.get(0).getAsInt(), 42);
+        Assert.assertEquals(counts.get(1).getAsInt(), 0);
+        Assert.assertEquals(counts.get(2).getAsInt(), 7);
+    }
+
     /**
      * Test buildStatusResponse method that creates JSON response for enabled status.
      */
@@ -85,31 +122,21 @@ public class UtilsTest {
     }
 
     /**
-     * Test buildResponseMap method by providing a sample HIBP API response.
+     * Test that getSHA1Digest encodes passwords as UTF-8, including multi-byte characters, surrogate pairs, unpaired
+     * surrogates and passwords longer than the per-thread buffer.
      */
     @Test
-    public void testBuildResponseMap() {
-        // Example HIBP API response format (hash suffix:count pairs)
-        String mockResponse = 
-                "0123456789ABCDEF0123456789ABCDEF01234567:3\r\n" +
-                "ABCDEF0123456789ABCDEF0123456789ABCDEF01:42\r\n" +
-                "FEDCBA9876543210FEDCBA9876543210FEDCBA98:1337";
-
-        // Use reflection to access the private method for testing
-        try {
-            java.lang.reflect.Method method = Utils.class.getDeclaredMethod("buildResponseMap", String.class);
-            method.setAccessible(true);
-            
-            @SuppressWarnings("unchecked")
-            Map<String, Integer> resultMap = (Map<String, Integer>) method.invoke(null, mockResponse);
-            
-            // Verify the map contains correct entries
-            Assert.assertEquals(resultMap.size(), 3, "Response map should contain 3 entries");
-            Assert.assertEquals(resultMap.get("0123456789ABCDEF0123456789ABCDEF01234567"), Integer.valueOf(3));
-            Assert.assertEquals(resultMap.get("ABCDEF0123456789ABCDEF0123456789ABCDEF01"), Integer.valueOf(42));
-            Assert.assertEquals(resultMap.get("FEDCBA9876543210FEDCBA9876543210FEDCBA98"), Integer.valueOf(1337));
-        } catch (Exception e) {
-            Assert.fail("Failed to test buildResponseMap: " + e.getMessage());
+    public void testGetSHA1Digest() throws Exception {
+        StringBuilder longPassword = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            longPassword.append((char) ('a' + i % 26)).append('\u00E9');
+        }
+        String[] passwords = {"password123", "p\u00E4ssw\u00F6rd", "\u5BC6\u7801\u20AC", "emoji\uD83D\uDE00!",
+                "unpaired\uD83D", "\uDE00unpaired", longPassword.toString(), "password123"};
+
+        for (String password : passwords) {
+            byte[] expected = MessageDigest.getInstance("SHA-1").digest(password.getBytes(StandardCharsets.UTF_8));
+            Assert.assertEquals(Utils.getSHA1Digest(password), expected, "Digest mismatch for " + password);
         }
     }
 
@@ -127,40 +154,192 @@ public class UtilsTest {
     }
 
     /**
-     * Test that buildResponseMap handles empty input properly.
+     * Test that getHIBPRange negotiates a compressed range and decodes it, and that compression can be disabled.
      */
     @Test
-    public void testBuildResponseMapWithEmptyResponse() {
-        try {
-            java.lang.reflect.Method method = Utils.class.getDeclaredMethod("buildResponseMap", String.class);
-            method.setAccessible(true);
-            
-            // Test with empty response
-            @SuppressWarnings("unchecked")
-            Map<String, Integer> resultMap = (Map<String, Integer>) method.invoke(null, "");
-            
-            Assert.assertEquals(resultMap.size(), 0, "Response map should be empty for empty input");
-        } catch (Exception e) {
-            Assert.fail("Failed to test buildResponseMap with empty response: " + e.getMessage());
+    public void testGetHIBPRange_Compressed() throws Exception {
+        String body = StubHIBPServer.buildRange(1000);
+        try (StubHIBPServer server = new StubHIBPServer();
+             HIBPHttpClientManager httpClientManager = new HIBPHttpClientManager(4, 4, 60000L, 30000L)) {
+            server.setRange("21BD1", body);
+            System.setProperty(Constants.API_URL, server.getRangeUrl());
+            HIBPDataHolder.getInstance().setHttpClientManager(httpClientManager);
+
+            Assert.assertEquals(Utils.getHIBPRange(null, "21BD1", null, null).getRange().size(), 1000);
+            long compressedBytes = server.getBytesSent();
+            Assert.assertTrue(compressedBytes < body.length() * 2 / 3, "The range should be transferred compressed");
+
+            System.setProperty(Constants.HTTP_CLIENT_COMPRESSION_ENABLED, "false");
+            Assert.assertEquals(Utils.getHIBPRange(null, "21BD1", null, null).getRange().size(), 1000);
+            Assert.assertEquals(server.getBytesSent() - compressedBytes, body.length());
+        } finally {
+            System.clearProperty(Constants.HTTP_CLIENT_COMPRESSION_ENABLED);
+            System.clearProperty(Constants.API_URL);
+            HIBPDataHolder.getInstance().setHttpClientManager(null);
         }
     }
 
     /**
-     * Test that buildResponseMap handles malformed input properly.
+     * Test that range requests record the response status and the fetch and parse latencies when metrics are
+     * enabled.
      */
     @Test
-    public void testBuildResponseMapWithMalformedResponse() {
+    public void testGetHIBPRange_Metrics() throws Exception {
+        HIBPMetrics metrics = new HIBPMetrics();
+        try (StubHIBPServer server = new StubHIBPServer();
+             HIBPHttpClientManager httpClientManager = new HIBPHttpClientManager(4, 4, 60000L, 30000L)) {
+            server.setRange("21BD1", StubHIBPServer.buildRange(10));
+            System.setProperty(Constants.API_URL, server.getRangeUrl());
+            HIBPDataHolder.getInstance().setHttpClientManager(httpClientManager);
+            HIBPDataHolder.getInstance().setMetrics(metrics);
+
+            Utils.getHIBPRange(null, "21BD1", null, null);
+            Assert.assertEquals(Utils.getSHA1Digest("password").length, 20);
+            Assert.assertEquals(metrics.getLatencies(HIBPMetrics.Stage.FETCH).getCount(), 1L);
+            Assert.assertEquals(metrics.getLatencies(HIBPMetrics.Stage.PARSE).getCount(), 1L);
+            Assert.assertEquals(metrics.getLatencies(HIBPMetrics.Stage.HASH).getCount(), 1L);
+
+            PrometheusTextWriter writer = new PrometheusTextWriter();
+            metrics.writeTo(writer);
+            Assert.assertTrue(writer.toString().contains("hibp_upstream_responses_total{status=\"200\"} 1\n"));
+        } finally {
+            System.clearProperty(Constants.API_URL);
+            HIBPDataHolder.getInstance().setHttpClientManager(null);
+            HIBPDataHolder.getInstance().setMetrics(null);
+        }
+    }
+
+    /**
+     * Test that range requests to a server that accepts the connection but never answers give up after the read
+     * timeout.
+     */
+    @Test
+    public void testGetHIBPRange_ReadTimeout() throws Exception {
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             HIBPHttpClientManager httpClientManager = new HIBPHttpClientManager(4, 4, 60000L, 30000L, 1000, 200)) {
+            System.setProperty(Constants.API_URL, "http://" + server.getInetAddress().getHostAddress() + ":"
+                    + server.getLocalPort() + "/range/");
+            HIBPDataHolder.getInstance().setHttpClientManager(httpClientManager);
+
+            long start = System.nanoTime();
+            try {
+                Utils.getHIBPRange(null, "21BD1", null, null);
+                Assert.fail("Request should time out");
+            } catch (SocketTimeoutException e) {
+                Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5),
+                        "Request should give up after the read timeout");
+            }
+        } finally {
+            System.clearProperty(Constants.API_URL);
+            HIBPDataHolder.getInstance().setHttpClientManager(null);
+        }
+    }
+
+    /**
+     * Test that a range request to a server that never answers is hedged to another server, and that the slow
+     * attempt is aborted rather than left waiting for the read timeout.
+     */
+    @Test
+    public void testGetHIBPRange_Hedged() throws Exception {
+        RequestHedger requestHedger = new RequestHedger(95.0, 0L, 100, 4);
+        try (ServerSocket slowServer = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             StubHIBPServer server = new StubHIBPServer();
+             HIBPHttpClientManager httpClientManager = new HIBPHttpClientManager(4, 4, 60000L, 30000L, 1000, 5000)) {
+            for (int i = 0; i < 100; i++) {
+                requestHedger.getLatencyHistogram().record(1L, TimeUnit.MILLISECONDS);
+            }
+            server.setRange("21BD1", StubHIBPServer.buildRange(10));
+            System.setProperty(Constants.API_URL, "http://" + slowServer.getInetAddress().getHostAddress() + ":"
+                    + slowServer.getLocalPort() + "/range/");
+            System.setProperty(Constants.HEDGE_API_URL, server.getRangeUrl());
+            HIBPDataHolder.getInstance().setHttpClientManager(httpClientManager);
+            HIBPDataHolder.getInstance().setRequestHedger(requestHedger);
+
+            long start = System.nanoTime();
+            Assert.assertEquals(Utils.getHIBPRange(null, "21BD1", null, null).getRange().size(), 10);
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(4),
+                    "The hedge should answer before the read timeout");
+            Assert.assertEquals(requestHedger.getHedgeWinCount(), 1L);
+        } finally {
+            System.clearProperty(Constants.API_URL);
+            System.clearProperty(Constants.HEDGE_API_URL);
+            HIBPDataHolder.getInstance().setHttpClientManager(null);
+            HIBPDataHolder.getInstance().setRequestHedger(null);
+            requestHedger.close();
+        }
+    }
+
+    /**
+     * Test that background range requests bypass the circuit breaker: rate limited background requests do not open
+     * it, and background requests are still sent while it is open.
+     */
+    @Test
+    public void testGetHIBPRangeInBackground() throws Exception {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 0L, 60000L);
+        try (StubHIBPServer server = new StubHIBPServer();
+             HIBPHttpClientManager httpClientManager = new HIBPHttpClientManager(4, 4, 60000L, 30000L)) {
+            server.setRange("21BD1", StubHIBPServer.buildRange(10));
+            System.setProperty(Constants.API_URL, server.getRangeUrl());
+            HIBPDataHolder.getInstance().setHttpClientManager(httpClientManager);
+            HIBPDataHolder.getInstance().setCircuitBreaker(circuitBreaker);
+
+            server.failRequests("21BD1", 429, 1);
+            try {
+                Utils.getHIBPRangeInBackground(null, "21BD1", null, null);
+                Assert.fail("Rate limited request should fail");
+            } catch (HIBPRateLimitException e) {
+                Assert.assertEquals(circuitBreaker.getState(), CircuitBreaker.State.CLOSED);
+            }
+
+            server.failRequests("21BD1", 503, 1);
+            try {
+                Utils.getHIBPRange(null, "21BD1", null, null);
+                Assert.fail("Failed request should fail");
+            } catch (IOException e) {
+                Assert.assertEquals(circuitBreaker.getState(), CircuitBreaker.State.OPEN);
+            }
+            try {
+                Utils.getHIBPRange(null, "21BD1", null, null);
+                Assert.fail("Open circuit breaker should reject the request");
+            } catch (HIBPUnavailableException e) {
+                Assert.assertEquals(server.getRequestCount(), 2);
+            }
+            Assert.assertEquals(Utils.getHIBPRangeInBackground(null, "21BD1", null, null).getRange().size(), 10);
+            Assert.assertEquals(server.getRequestCount(), 3);
+        } finally {
+            System.clearProperty(Constants.API_URL);
+            HIBPDataHolder.getInstance().setHttpClientManager(null);
+            HIBPDataHolder.getInstance().setCircuitBreaker(null);
+        }
+    }
+
+    /**
+     * Test that getConnectorConfiguration serves the configuration from the cache until it is updated.
+     */
+    @Test
+    public void testGetConnectorConfigurationCached() throws Exception {
+        Property[] connectorConfigs = new Property[2];
+        IdentityGovernanceService identityGovernanceService = Mockito.mock(IdentityGovernanceService.class);
+        Mockito.when(identityGovernanceService.getConfiguration(Mockito.any(String[].class), Mockito.eq("wso2.com")))
+                .thenReturn(connectorConfigs);
+
+        HIBPDataHolder.getInstance().setIdentityGovernanceService(identityGovernanceService);
+        HIBPDataHolder.getInstance().setConnectorConfigCache(new ConnectorConfigCache(16, 60000L));
         try {
-            java.lang.reflect.Method method = Utils.class.getDeclaredMethod("buildResponseMap", String.class);
-            method.setAccessible(true);
-            
-            // Test with malformed response (missing count)
-            @SuppressWarnings("unchecked")
-            Map<String, Integer> resultMap = (Map<String, Integer>) method.invoke(null, "0123456789ABCDEF0123456789ABCDEF01234567");
-            
-            Assert.assertEquals(resultMap.size(), 0, "Response map should be empty for malformed input");
-        } catch (Exception e) {
-            Assert.fail("Failed to test buildResponseMap with malformed response: " + e.getMessage());
+            Assert.assertSame(Utils.getConnectorConfiguration("wso2.com"), connectorConfigs);
+            Assert.assertSame(Utils.getConnectorConfiguration("wso2.com"), connectorConfigs);
+            Mockito.verify(identityGovernanceService, Mockito.times(1))
+                    .getConfiguration(Mockito.any(String[].class), Mockito.eq("wso2.com"));
+
+            // Updating the configuration drops the cached copy
+            Utils.updateConnectorConfiguration("wso2.com", Collections.singletonMap(Constants.CONNECTOR_ENABLE,
+                    "false"));
+            Assert.assertSame(Utils.getConnectorConfiguration("wso2.com"), connectorConfigs);
+            Mockito.verify(identityGovernanceService, Mockito.times(2))
+                    .getConfiguration(Mockito.any(String[].class), Mockito.eq("wso2.com"));
+        } finally {
+            HIBPDataHolder.getInstance().setConnectorConfigCache(null);
+            HIBPDataHolder.getInstance().setIdentityGovernanceService(null);
         }
     }
 }